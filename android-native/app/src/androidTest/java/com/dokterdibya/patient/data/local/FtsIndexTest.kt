@@ -0,0 +1,172 @@
+package com.dokterdibya.patient.data.local
+
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Refreshing a cached row must re-index it: words that left the row stop
+ * matching, new words match, and the FTS table stays consistent.
+ */
+@RunWith(AndroidJUnit4::class)
+class FtsIndexTest {
+
+    private lateinit var database: AppDatabase
+
+    @Before
+    fun setUp() {
+        database = Room.inMemoryDatabaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            AppDatabase::class.java
+        ).build()
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun reconcileReindexesChangedArticle() = runBlocking {
+        val dao = database.articleDao()
+        dao.insertAll(listOf(article(1, "Nutrisi trimester pertama", "Asam folat")))
+
+        dao.insertAll(listOf(article(1, "Olahraga trimester kedua", "Senam hamil")))
+
+        assertEquals(0, ftsCount("articles_fts", "nutrisi"))
+        assertEquals(0, ftsCount("articles_fts", "folat"))
+        assertEquals(1, ftsCount("articles_fts", "olahraga"))
+        assertEquals(1, ftsCount("articles_fts", "senam"))
+        assertIntegrity("articles_fts")
+    }
+
+    @Test
+    fun bodyRefreshAndDeleteKeepIndexConsistent() = runBlocking {
+        val dao = database.articleDao()
+        dao.insert(article(1, "Nutrisi", null))
+        dao.insertBody(ArticleBodyEntity(1, "Konsumsi asam folat setiap hari"))
+
+        dao.insertBody(ArticleBodyEntity(1, "Perbanyak sayuran hijau"))
+        assertEquals(0, ftsCount("article_bodies_fts", "folat"))
+        assertEquals(1, ftsCount("article_bodies_fts", "sayuran"))
+
+        database.cacheBudgetDao().evictArticles(listOf(1))
+        assertEquals(0, ftsCount("article_bodies_fts", "sayuran"))
+        assertIntegrity("article_bodies_fts")
+    }
+
+    @Test
+    fun notificationReconcileDropsRemovedWords() = runBlocking {
+        val dao = database.notificationDao()
+        dao.reconcile(listOf(notification(7, "Jadwal kontrol", "Besok pukul 09.00")))
+        // What cacheIncomingNotification writes when a socket push repeats an id
+        dao.insertAll(listOf(notification(7, "Jadwal diundur", "Lusa pukul 10.00")))
+
+        assertEquals(0, ftsCount("notifications_fts", "kontrol"))
+        assertEquals(1, ftsCount("notifications_fts", "diundur"))
+
+        dao.reconcile(emptyList())
+        assertEquals(0, ftsCount("notifications_fts", "diundur"))
+        assertIntegrity("notifications_fts")
+    }
+
+    @Test
+    fun announcementDeltaReindexesChangedRows() = runBlocking {
+        val dao = database.announcementDao()
+        dao.reconcile(listOf(announcement(3, "Libur klinik", "Tutup hari Jumat")))
+
+        dao.applyDelta(listOf(announcement(3, "Jam praktik", "Buka hari Sabtu")), activeIds = listOf(3))
+
+        assertEquals(0, ftsCount("announcements_fts", "libur"))
+        assertEquals(0, ftsCount("announcements_fts", "jumat"))
+        assertEquals(1, ftsCount("announcements_fts", "sabtu"))
+        assertIntegrity("announcements_fts")
+    }
+
+    @Test
+    fun medicationAndVisitReconcileDropRemovedWords() = runBlocking {
+        val medications = database.medicationDao()
+        medications.reconcile(listOf(MedicationEntity(5, "MR1", "2026-10-01", "Asam folat 1x1", 1)))
+        medications.reconcile(listOf(MedicationEntity(5, "MR1", "2026-10-01", "Kalsium 1x1", 1)))
+        assertEquals(0, ftsCount("medications_fts", "folat"))
+        assertEquals(1, ftsCount("medications_fts", "kalsium"))
+        assertIntegrity("medications_fts")
+
+        val visits = database.visitHistoryDao()
+        visits.reconcile(listOf(visit(9, "USG rutin")))
+        visits.reconcile(listOf(visit(9, "Kontrol tekanan darah")))
+        assertEquals(0, ftsCount("visit_history_fts", "usg"))
+        assertEquals(1, ftsCount("visit_history_fts", "tekanan"))
+        assertIntegrity("visit_history_fts")
+    }
+
+    private fun ftsCount(table: String, term: String): Int =
+        database.openHelper.readableDatabase
+            .query("SELECT COUNT(*) FROM $table WHERE $table MATCH ?", arrayOf(term))
+            .use { cursor ->
+                cursor.moveToFirst()
+                cursor.getInt(0)
+            }
+
+    /**
+     * FTS4 'integrity-check' fails with SQLITE_CORRUPT if the index has
+     * tokens for content that is no longer there
+     */
+    private fun assertIntegrity(table: String) {
+        database.openHelper.writableDatabase.execSQL("INSERT INTO $table($table) VALUES('integrity-check')")
+    }
+
+    private fun article(id: Int, title: String, excerpt: String?) = ArticleEntity(
+        id = id,
+        title = title,
+        slug = null,
+        excerpt = excerpt,
+        category = "Kehamilan",
+        imageUrl = null,
+        author = null,
+        publishedAt = null,
+        createdAt = "2026-10-01"
+    )
+
+    private fun notification(id: Int, title: String, message: String) = NotificationEntity(
+        id = id,
+        patientId = "P0001",
+        type = "info",
+        title = title,
+        message = message,
+        icon = null,
+        iconColor = null,
+        isRead = 0,
+        createdAt = "2026-10-01"
+    )
+
+    private fun announcement(id: Int, title: String, message: String) = AnnouncementEntity(
+        id = id,
+        title = title,
+        message = message,
+        imageUrl = null,
+        formattedContent = null,
+        contentType = null,
+        createdByName = null,
+        priority = null,
+        createdAt = "2026-10-01"
+    )
+
+    private fun visit(id: Int, notes: String) = VisitHistoryEntity(
+        id = id,
+        billingNumber = "INV-$id",
+        billingDate = "2026-10-01",
+        patientId = 1,
+        patientName = "Ibu Sari",
+        totalAmount = 150_000.0,
+        paidAmount = 150_000.0,
+        paymentStatus = "paid",
+        notes = notes
+    )
+}
@@ -0,0 +1,104 @@
+package com.dokterdibya.patient.data.local
+
+import androidx.room.Room
+import androidx.room.testing.MigrationTestHelper
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Replays [AppDatabase.ALL_MIGRATIONS] against the schemas exported to app/schemas
+ * (added as androidTest assets). A missing or mismatching step fails here; in the app
+ * it would crash on open, since only version 1 and downgrades fall back to a rebuild.
+ */
+@RunWith(AndroidJUnit4::class)
+class MigrationTest {
+
+    @get:Rule
+    val helper = MigrationTestHelper(
+        InstrumentationRegistry.getInstrumentation(),
+        AppDatabase::class.java,
+        emptyList(),
+        FrameworkSQLiteOpenHelperFactory()
+    )
+
+    @Test
+    fun migrate2To9_keepsCachedRows() {
+        helper.createDatabase(TEST_DB, 2).apply {
+            execSQL(
+                """INSERT INTO articles (id, title, slug, content, excerpt, category, imageUrl,
+                    author, publishedAt, createdAt, cachedAt)
+                    VALUES (1, 'Nutrisi trimester pertama', 'nutrisi', 'Asam folat setiap hari',
+                    'Ringkasan', 'Kehamilan', NULL, 'dr. Dibya', NULL, NULL, 1000)"""
+            )
+            execSQL(
+                """INSERT INTO notifications (id, patientId, type, title, message, icon,
+                    iconColor, isRead, createdAt, cachedAt)
+                    VALUES (7, 'P0001', 'info', 'Jadwal kontrol', 'Besok pukul 09.00', NULL,
+                    NULL, 0, NULL, 1000)"""
+            )
+            close()
+        }
+
+        val db = helper.runMigrationsAndValidate(TEST_DB, 9, true, *AppDatabase.ALL_MIGRATIONS)
+
+        assertEquals("Nutrisi trimester pertama", db.queryString("SELECT title FROM articles WHERE id = 1"))
+        assertEquals(
+            "Asam folat setiap hari",
+            db.queryString("SELECT content FROM article_bodies WHERE articleId = 1")
+        )
+        // The FTS step indexes rows that were cached before the upgrade
+        assertEquals(1, db.queryInt("SELECT COUNT(*) FROM articles_fts WHERE articles_fts MATCH 'nutrisi'"))
+        assertEquals(1, db.queryInt("SELECT COUNT(*) FROM article_bodies_fts WHERE article_bodies_fts MATCH 'folat'"))
+        assertEquals(1, db.queryInt("SELECT COUNT(*) FROM notifications_fts WHERE notifications_fts MATCH 'kontrol'"))
+        assertEquals(0, db.queryInt("SELECT COUNT(*) FROM outbox"))
+        assertEquals(0, db.queryInt("SELECT COUNT(*) FROM cache_access"))
+        db.close()
+    }
+
+    @Test
+    fun everyExportedVersionMigratesTo9() {
+        for (version in 2 until 9) {
+            val name = "$TEST_DB-$version"
+            helper.createDatabase(name, version).close()
+            helper.runMigrationsAndValidate(name, 9, true, *AppDatabase.ALL_MIGRATIONS).close()
+        }
+    }
+
+    @Test
+    fun migrate2To9_opensWithRoom() {
+        helper.createDatabase(TEST_DB, 2).close()
+
+        // Room checks the identity hash of the compiled schema on open
+        val database = Room.databaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            AppDatabase::class.java,
+            TEST_DB
+        )
+            .addMigrations(*AppDatabase.ALL_MIGRATIONS)
+            .build()
+        database.openHelper.writableDatabase
+        database.close()
+    }
+
+    private fun SupportSQLiteDatabase.queryString(sql: String): String? =
+        query(sql).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getString(0) else null
+        }
+
+    private fun SupportSQLiteDatabase.queryInt(sql: String): Int =
+        query(sql).use { cursor ->
+            cursor.moveToFirst()
+            cursor.getInt(0)
+        }
+
+    companion object {
+        private const val TEST_DB = "migration-test"
+    }
+}
@@ -0,0 +1,134 @@
+package com.dokterdibya.patient.data.repository
+
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.dokterdibya.patient.data.local.AppDatabase
+import com.dokterdibya.patient.data.local.ArticleBodyEntity
+import com.dokterdibya.patient.data.local.ArticleEntity
+import com.dokterdibya.patient.data.local.NotificationEntity
+import com.dokterdibya.patient.data.local.VisitHistoryEntity
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class SearchRepositoryTest {
+
+    private lateinit var database: AppDatabase
+    private lateinit var repository: SearchRepository
+
+    @Before
+    fun setUp() {
+        database = Room.inMemoryDatabaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            AppDatabase::class.java
+        ).build()
+        repository = SearchRepository(database.searchDao())
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun bestMatchWinsPastTheFirstFiftyRows() = runBlocking {
+        // 80 weak matches (once in the excerpt) come first in rowid order
+        database.articleDao().insertAll(
+            (1..80).map { article(it, "Artikel $it", "Sekilas tentang folat") } +
+                article(500, "Asam folat untuk ibu hamil", null)
+        )
+
+        val results = repository.search("folat")
+
+        // A title hit scores three times an excerpt hit
+        assertEquals(500, results.first().id)
+        assertEquals(30, results.size)
+    }
+
+    /**
+     * Target: a search over a full cache returns in under 50 ms
+     */
+    @Test
+    fun searchOverFullCacheStaysUnder50Ms() = runBlocking {
+        fillCache(articles = 1_000, notifications = 1_000, visits = 500)
+        repeat(WARMUP_SEARCHES) { repository.search(QUERIES[it % QUERIES.size]) }
+
+        val timings = LongArray(MEASURED_SEARCHES) {
+            val start = System.nanoTime()
+            repository.search(QUERIES[it % QUERIES.size])
+            (System.nanoTime() - start) / 1_000_000
+        }
+        timings.sort()
+        val median = timings[MEASURED_SEARCHES / 2]
+        println("SearchRepository.search: median $median ms, max ${timings.last()} ms")
+
+        assertTrue("median search took $median ms", median < 50)
+    }
+
+    private suspend fun fillCache(articles: Int, notifications: Int, visits: Int) {
+        val words = listOf(
+            "kehamilan", "trimester", "nutrisi", "folat", "kalsium", "zat", "besi", "kontrol",
+            "usg", "janin", "tekanan", "darah", "mual", "istirahat", "olahraga", "persalinan"
+        )
+        fun text(seed: Int, length: Int) = (0 until length).joinToString(" ") { words[(seed * 31 + it * 7) % words.size] }
+
+        val articleDao = database.articleDao()
+        articleDao.insertAll((1..articles).map { article(it, text(it, 6), text(it + 1, 24)) })
+        (1..articles).forEach { articleDao.insertBody(ArticleBodyEntity(it, text(it + 2, 400))) }
+
+        database.notificationDao().insertAll(
+            (1..notifications).map {
+                NotificationEntity(
+                    id = it,
+                    patientId = "P0001",
+                    type = "info",
+                    title = text(it, 4),
+                    message = text(it + 3, 20),
+                    icon = null,
+                    iconColor = null,
+                    isRead = 0,
+                    createdAt = "2026-10-01"
+                )
+            }
+        )
+        database.visitHistoryDao().insertAll(
+            (1..visits).map {
+                VisitHistoryEntity(
+                    id = it,
+                    billingNumber = "INV-$it",
+                    billingDate = "2026-10-01",
+                    patientId = 1,
+                    patientName = "Ibu Sari",
+                    totalAmount = 150_000.0,
+                    paidAmount = 150_000.0,
+                    paymentStatus = "paid",
+                    notes = text(it + 5, 12)
+                )
+            }
+        )
+    }
+
+    private fun article(id: Int, title: String, excerpt: String?) = ArticleEntity(
+        id = id,
+        title = title,
+        slug = null,
+        excerpt = excerpt,
+        category = "Kehamilan",
+        imageUrl = null,
+        author = null,
+        publishedAt = null,
+        createdAt = "2026-10-01"
+    )
+
+    companion object {
+        private const val WARMUP_SEARCHES = 5
+        private const val MEASURED_SEARCHES = 21
+        private val QUERIES = listOf("folat", "tekanan darah", "tri", "usg janin")
+    }
+}
@@ -8,24 +8,53 @@ import android.content.pm.ApplicationInfo
 import android.media.AudioAttributes
 import android.media.RingtoneManager
 import android.os.Build
+import androidx.hilt.work.HiltWorkerFactory
+import androidx.work.Configuration
 import coil.ImageLoader
 import coil.ImageLoaderFactory
 import coil.decode.SvgDecoder
 import coil.disk.DiskCache
 import coil.memory.MemoryCache
+import com.dokterdibya.patient.data.api.ConnectionPrewarmer
+import com.dokterdibya.patient.data.sync.CacheMaintenanceWorker
+import com.dokterdibya.patient.data.sync.PeriodicSyncWorker
+import com.dokterdibya.patient.di.NetworkModule
+import dagger.Lazy
 import dagger.hilt.android.HiltAndroidApp
+import okhttp3.OkHttpClient
 import timber.log.Timber
 import java.io.File
+import javax.inject.Inject
+import javax.inject.Named
 
 @HiltAndroidApp
-class DokterDibyaApp : Application(), ImageLoaderFactory {
+class DokterDibyaApp : Application(), ImageLoaderFactory, Configuration.Provider {
+
+    @Inject
+    lateinit var workerFactory: HiltWorkerFactory
+
+    // Lazy: building the client (TLS setup included) stays off the main thread in onCreate
+    @Inject
+    @field:Named(NetworkModule.BASE_CLIENT)
+    lateinit var okHttpClient: Lazy<OkHttpClient>
+
+    @Inject
+    lateinit var connectionPrewarmer: ConnectionPrewarmer
 
     private var imageLoader: ImageLoader? = null
 
+    override val workManagerConfiguration: Configuration
+        get() = Configuration.Builder()
+            .setWorkerFactory(workerFactory)
+            .build()
+
     override fun onCreate() {
         super.onCreate()
         setupTimber()
+        connectionPrewarmer.warmUp()
         createNotificationChannels()
+        CacheMaintenanceWorker.schedule(this)
+        PeriodicSyncWorker.schedule(this)
     }
 
     private fun setupTimber() {
@@ -54,6 +83,8 @@ class DokterDibyaApp : Application(), ImageLoaderFactory {
             .components {
                 add(SvgDecoder.Factory())
             }
+            // Same connection pool and host queue as the API; built on Coil's first request
+            .okHttpClient { okHttpClient.get() }
             .crossfade(true)
             .respectCacheHeaders(false) // Ignore server cache headers, use our cache policy
             .build()
@@ -15,7 +15,10 @@ import androidx.compose.runtime.*
 import androidx.compose.ui.Modifier
 import androidx.core.content.ContextCompat
 import androidx.hilt.navigation.compose.hiltViewModel
+import androidx.navigation.NavController
 import androidx.navigation.compose.rememberNavController
+import com.dokterdibya.patient.data.api.RequestPriority
+import com.dokterdibya.patient.data.api.RequestScheduler
 import com.dokterdibya.patient.data.service.FCMTokenManager
 import com.dokterdibya.patient.data.service.NotificationService
 import com.dokterdibya.patient.ui.navigation.NavGraph
@@ -37,6 +40,9 @@ class MainActivity : ComponentActivity() {
     @Inject
     lateinit var fcmTokenManager: FCMTokenManager
 
+    @Inject
+    lateinit var requestScheduler: RequestScheduler
+
     private lateinit var googleSignInClient: GoogleSignInClient
     private var currentPatientId: String? = null
 
@@ -108,6 +114,15 @@ class MainActivity : ComponentActivity() {
                     val authState by viewModel.uiState.collectAsState()
                     val navController = rememberNavController()
 
+                    // Prefetches belong to the screen that started them
+                    DisposableEffect(navController) {
+                        val listener = NavController.OnDestinationChangedListener { _, _, _ ->
+                            requestScheduler.cancel(RequestPriority.PREFETCH)
+                        }
+                        navController.addOnDestinationChangedListener(listener)
+                        onDispose { navController.removeOnDestinationChangedListener(listener) }
+                    }
+
                     // Handle FCM token based on login state
                     LaunchedEffect(isLoggedIn) {
                         if (isLoggedIn == true) {
@@ -0,0 +1,242 @@
+package com.dokterdibya.patient.data.api
+
+import kotlinx.coroutines.delay
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import retrofit2.Response
+import timber.log.Timber
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.random.Random
+
+/**
+ * Thrown without touching the network while a host's circuit is open.
+ * An IOException, so callers that queue writes offline (the outbox paths in
+ * PatientRepository) treat it like a dropped connection.
+ */
+class CircuitOpenException(host: String) : IOException("Circuit open for $host")
+
+/**
+ * Runs every ApiService call made by the repositories
+ *
+ * - Idempotent calls (GETs, and writes carrying an Idempotency-Key) are
+ *   retried on connection failures, timeouts, 408, 429 and 5xx, with
+ *   exponential backoff and full jitter. Retry-After is honoured.
+ * - Retries draw on a shared [RetryBudget], so when the server is struggling
+ *   the seven concurrent home calls don't each retry and triple the load.
+ * - A per-host [CircuitBreaker] opens after consecutive 5xx responses and
+ *   fails fast with [CircuitOpenException]. Callers fall back to Room through
+ *   CacheEngine until a probe succeeds. Connection errors and timeouts don't
+ *   count: on a phone they mostly mean the device lost its network, and an
+ *   open circuit would then keep serving stale data after it came back.
+ *
+ * OkHttp's retryOnConnectionFailure only covers connection setup; this covers
+ * the whole exchange.
+ */
+@Singleton
+class ApiCallExecutor @Inject constructor() {
+
+    companion object {
+        private const val MAX_ATTEMPTS = 3
+        private const val BASE_BACKOFF_MS = 300L
+        private const val MAX_BACKOFF_MS = 3_000L
+        private const val MAX_RETRY_AFTER_MS = 10_000L
+        private val API_HOST = ApiService.BASE_URL.toHttpUrl().host
+        private val RETRYABLE_CODES = setOf(408, 429, 500, 502, 503, 504)
+    }
+
+    private val retryBudget = RetryBudget()
+    private val breakers = ConcurrentHashMap<String, CircuitBreaker>()
+
+    /**
+     * Idempotent read; retried within the budget
+     */
+    suspend fun <T> read(call: suspend () -> Response<T>): Response<T> {
+        return execute(idempotent = true, call = call)
+    }
+
+    /**
+     * Write; retried only when [idempotent], i.e. the request carries an
+     * Idempotency-Key the server deduplicates on
+     */
+    suspend fun <T> write(idempotent: Boolean = false, call: suspend () -> Response<T>): Response<T> {
+        return execute(idempotent = idempotent, call = call)
+    }
+
+    private suspend fun <T> execute(
+        idempotent: Boolean,
+        host: String = API_HOST,
+        call: suspend () -> Response<T>
+    ): Response<T> {
+        val breaker = breakers[host] ?: breakers.computeIfAbsent(host) { CircuitBreaker(host) }
+        retryBudget.onRequest()
+
+        var attempt = 0
+        while (true) {
+            attempt++
+            if (!breaker.tryAcquire()) {
+                throw CircuitOpenException(host)
+            }
+
+            val response = try {
+                call()
+            } catch (e: IOException) {
+                // No answer from the server, often just no network: not a breaker failure
+                breaker.onAbandoned()
+                if (!shouldRetry(idempotent, attempt, e)) throw e
+                Timber.d("Retrying after ${e.javaClass.simpleName} (attempt $attempt)")
+                delay(backoff(attempt))
+                continue
+            } catch (e: Throwable) {
+                // Cancellation or a converter error: says nothing about the server
+                breaker.onAbandoned()
+                throw e
+            }
+
+            val code = response.code()
+            breaker.onResult(success = code < 500)
+            if (code !in RETRYABLE_CODES) {
+                return response
+            }
+
+            val wait = retryAfter(response) ?: backoff(attempt)
+            if (wait > MAX_RETRY_AFTER_MS || !shouldRetry(idempotent, attempt, null)) {
+                return response
+            }
+            Timber.d("Retrying after HTTP $code (attempt $attempt)")
+            response.errorBody()?.close()
+            delay(wait)
+        }
+    }
+
+    private fun shouldRetry(idempotent: Boolean, attempt: Int, error: IOException?): Boolean {
+        if (!idempotent || attempt >= MAX_ATTEMPTS) return false
+        // OkHttp reports a cancelled call as IOException("Canceled")
+        if (error != null && error.message == "Canceled") return false
+        return retryBudget.tryWithdraw()
+    }
+
+    private fun backoff(attempt: Int): Long {
+        val ceiling = minOf(MAX_BACKOFF_MS, BASE_BACKOFF_MS shl (attempt - 1))
+        return Random.nextLong(ceiling + 1)
+    }
+
+    private fun retryAfter(response: Response<*>): Long? {
+        val seconds = response.headers()["Retry-After"]?.trim()?.toLongOrNull() ?: return null
+        return seconds * 1000
+    }
+
+    /**
+     * Token bucket shared by all calls: each request deposits [RATIO] of a
+     * token, each retry spends one. [MIN_TOKENS] lets an idle app still retry
+     * its first failures.
+     */
+    private class RetryBudget {
+
+        companion object {
+            private const val RATIO = 0.2
+            private const val MIN_TOKENS = 3.0
+            private const val MAX_TOKENS = 10.0
+        }
+
+        private var tokens = MIN_TOKENS
+
+        @Synchronized
+        fun onRequest() {
+            tokens = minOf(MAX_TOKENS, tokens + RATIO)
+        }
+
+        @Synchronized
+        fun tryWithdraw(): Boolean {
+            if (tokens < 1.0) {
+                Timber.d("Retry budget exhausted")
+                return false
+            }
+            tokens -= 1.0
+            return true
+        }
+    }
+
+    /**
+     * Closed -> open after [FAILURE_THRESHOLD] consecutive 5xx responses. Once the
+     * open period ends a single probe goes through (half-open). The circuit
+     * closes if the probe succeeds. If it fails, the circuit opens again for
+     * twice as long, up to [MAX_OPEN_MS].
+     */
+    private class CircuitBreaker(private val host: String) {
+
+        companion object {
+            private const val FAILURE_THRESHOLD = 5
+            private const val BASE_OPEN_MS = 15_000L
+            private const val MAX_OPEN_MS = 120_000L
+        }
+
+        private enum class State { CLOSED, OPEN, HALF_OPEN }
+
+        private var state = State.CLOSED
+        private var consecutiveFailures = 0
+        private var openedAt = 0L
+        private var openFor = BASE_OPEN_MS
+        private var probeInFlight = false
+
+        @Synchronized
+        fun tryAcquire(): Boolean {
+            return when (state) {
+                State.CLOSED -> true
+                State.OPEN -> {
+                    if (System.currentTimeMillis() - openedAt < openFor) return false
+                    state = State.HALF_OPEN
+                    probeInFlight = true
+                    true
+                }
+                State.HALF_OPEN -> {
+                    if (probeInFlight) return false
+                    probeInFlight = true
+                    true
+                }
+            }
+        }
+
+        @Synchronized
+        fun onResult(success: Boolean) {
+            if (success) {
+                if (state != State.CLOSED) {
+                    Timber.i("Circuit for $host closed")
+                }
+                state = State.CLOSED
+                consecutiveFailures = 0
+                openFor = BASE_OPEN_MS
+                probeInFlight = false
+                return
+            }
+
+            when (state) {
+                State.HALF_OPEN -> {
+                    openFor = minOf(MAX_OPEN_MS, openFor * 2)
+                    open()
+                }
+                State.CLOSED -> {
+                    consecutiveFailures++
+                    if (consecutiveFailures >= FAILURE_THRESHOLD) open()
+                }
+                State.OPEN -> Unit
+            }
+        }
+
+        /**
+         * The call ended without an answer either way; let another probe through
+         */
+        @Synchronized
+        fun onAbandoned() {
+            probeInFlight = false
+        }
+
+        private fun open() {
+            state = State.OPEN
+            openedAt = System.currentTimeMillis()
+            probeInFlight = false
+            Timber.w("Circuit for $host open for ${openFor}ms")
+        }
+    }
+}
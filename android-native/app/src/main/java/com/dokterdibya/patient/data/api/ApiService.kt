@@ -20,12 +20,18 @@ interface ApiService {
 
     // ==================== Authentication ====================
 
+    @Priority(RequestPriority.CRITICAL)
     @POST("api/patients/google-auth-code")
     suspend fun googleAuth(@Body request: GoogleAuthRequest): Response<AuthResponse>
 
+    @Priority(RequestPriority.CRITICAL)
     @POST("api/auth/patient-login")
     suspend fun emailLogin(@Body request: EmailLoginRequest): Response<AuthResponse>
 
+    @POST("api/auth/logout")
+    suspend fun logout(@Body request: RefreshTokenRequest): Response<Unit>
+
+    @Priority(RequestPriority.CRITICAL)
     @GET("api/patients/profile")
     suspend fun getPatientProfile(): Response<PatientProfileResponse>
 
@@ -56,12 +62,16 @@ interface ApiService {
     ): Response<SlotsForDateResponse>
 
     @POST("api/sunday-appointments/book")
-    suspend fun bookAppointment(@Body request: BookingRequest): Response<BookingResponse>
+    suspend fun bookAppointment(
+        @Body request: BookingRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
+    ): Response<BookingResponse>
 
     @PUT("api/sunday-appointments/{id}/cancel")
     suspend fun cancelAppointment(
         @Path("id") id: Int,
-        @Body request: CancelRequest
+        @Body request: CancelRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
     ): Response<BookingResponse>
 
     // ==================== Medical Records ====================
@@ -93,13 +103,19 @@ interface ApiService {
     ): Response<FertilityPredictionResponse>
 
     @POST("api/fertility-calendar")
-    suspend fun createFertilityCycle(@Body request: CreateCycleRequest): Response<FertilityCycleResponse>
+    suspend fun createFertilityCycle(
+        @Body request: CreateCycleRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
+    ): Response<FertilityCycleResponse>
 
     @DELETE("api/fertility-calendar/{id}")
     suspend fun deleteFertilityCycle(@Path("id") id: Int): Response<DeleteCycleResponse>
 
     @POST("api/fertility-calendar/intercourse")
-    suspend fun toggleIntercourse(@Body request: IntercourseRequest): Response<IntercourseResponse>
+    suspend fun toggleIntercourse(
+        @Body request: IntercourseRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
+    ): Response<IntercourseResponse>
 
     // ==================== Articles ====================
 
@@ -111,7 +127,13 @@ interface ApiService {
     ): Response<ArticleListResponse>
 
     @GET("api/articles/{id}")
-    suspend fun getArticleDetail(@Path("id") id: Int): Response<ArticleResponse>
+    suspend fun getArticleDetail(
+        @Path("id") id: Int,
+        @Query("prefetch") prefetch: Int? = null
+    ): Response<ArticleResponse>
+
+    @POST("api/articles/{id}/view")
+    suspend fun recordArticleView(@Path("id") id: Int): Response<Unit>
 
     // ==================== Practice Schedules ====================
 
@@ -130,6 +152,7 @@ interface ApiService {
 
     // ==================== App Updates ====================
 
+    @Priority(RequestPriority.BACKGROUND)
     @GET("api/app/version")
     suspend fun checkAppVersion(): Response<AppVersionResponse>
 
@@ -137,13 +160,15 @@ interface ApiService {
 
     @GET("api/announcements/active")
     suspend fun getActiveAnnouncements(
-        @Query("patient_id") patientId: String? = null
+        @Query("patient_id") patientId: String? = null,
+        @Query("since") since: String? = null
     ): Response<AnnouncementsResponse>
 
     @POST("api/announcements/{id}/like")
     suspend fun toggleAnnouncementLike(
         @Path("id") id: Int,
-        @Body request: LikeRequest
+        @Body request: LikeRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
     ): Response<LikeResponse>
 
     // ==================== Medications ====================
@@ -162,20 +187,28 @@ interface ApiService {
     suspend fun getUnreadNotificationCount(): Response<NotificationCountResponse>
 
     @GET("api/patient-notifications")
-    suspend fun getNotifications(): Response<NotificationsResponse>
+    suspend fun getNotifications(
+        @Query("since_id") sinceId: Int? = null,
+        @Query("since") since: String? = null
+    ): Response<NotificationsResponse>
 
     // ==================== FCM Token ====================
 
+    @Priority(RequestPriority.BACKGROUND)
     @POST("api/patients/fcm-token")
     suspend fun registerFcmToken(@Body request: Map<String, String>): Response<FcmTokenResponse>
 
+    @Priority(RequestPriority.BACKGROUND)
     @DELETE("api/patients/fcm-token")
     suspend fun unregisterFcmToken(@Body request: Map<String, String>): Response<FcmTokenResponse>
 
     // ==================== Patient Intake ====================
 
     @POST("api/patient-intake")
-    suspend fun submitPatientIntake(@Body request: PatientIntakeRequest): Response<PatientIntakeResponse>
+    suspend fun submitPatientIntake(
+        @Body request: PatientIntakeRequest,
+        @Header("Idempotency-Key") idempotencyKey: String? = null
+    ): Response<PatientIntakeResponse>
 
     @GET("api/patient-intake/my-intake")
     suspend fun getMyIntake(): Response<MyIntakeResponse>
@@ -235,7 +268,17 @@ data class NotificationCountResponse(
 
 data class NotificationsResponse(
     val success: Boolean,
-    val notifications: List<PatientNotificationItem>
+    val notifications: List<PatientNotificationItem>,
+    // Delta sync fields (present when since_id/since were sent)
+    val delta: Boolean = false,
+    val read_ids: List<Int>? = null,
+    val has_more: Boolean = false,
+    val sync_cursor: NotificationSyncCursor? = null
+)
+
+data class NotificationSyncCursor(
+    val max_id: Int,
+    val synced_at: String
 )
 
 // Practice Schedule models
@@ -269,7 +312,8 @@ data class Article(
 
 data class ArticleListResponse(
     val success: Boolean,
-    val data: List<Article>?
+    val data: List<Article>?,
+    val total: Int? = null
 )
 
 data class ArticleResponse(
@@ -354,7 +398,11 @@ data class Announcement(
 
 data class AnnouncementsResponse(
     val success: Boolean,
-    val data: List<Announcement>
+    val data: List<Announcement>,
+    // Delta sync fields: with since, data holds only changed announcements
+    val delta: Boolean = false,
+    val active_ids: List<Int>? = null,
+    val sync_cursor: String? = null
 )
 
 data class LikeRequest(
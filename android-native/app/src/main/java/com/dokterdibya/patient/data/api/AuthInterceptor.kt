@@ -8,7 +8,8 @@ import javax.inject.Singleton
 
 @Singleton
 class AuthInterceptor @Inject constructor(
-    private val tokenRepository: TokenRepository
+    private val tokenRepository: TokenRepository,
+    private val sessionRefresher: SessionRefresher
 ) : Interceptor {
 
     override fun intercept(chain: Interceptor.Chain): Response {
@@ -24,7 +25,13 @@ class AuthInterceptor @Inject constructor(
 
         // Use cached token (non-blocking) instead of runBlocking
         // This prevents ANR by avoiding blocking the OkHttp thread
-        val token = tokenRepository.getCachedToken()
+        var token = tokenRepository.getCachedToken()
+
+        // Refresh ahead of expiry rather than spending a round trip on a 401.
+        // If the refresh fails the current token is still sent; it may be valid.
+        if (token != null && sessionRefresher.isExpiring(token)) {
+            token = sessionRefresher.refresh(staleToken = token) ?: token
+        }
 
         return if (token != null) {
             val newRequest = originalRequest.newBuilder()
@@ -0,0 +1,57 @@
+package com.dokterdibya.patient.data.api
+
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.net.HttpURLConnection
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Lets the OkHttp cache revalidate the JSON endpoints that rarely change
+ *
+ * For [ENDPOINTS], a response carrying an ETag or Last-Modified is stored as
+ * `private, no-cache`: OkHttp keeps it and sends If-None-Match / If-Modified-Since
+ * on the next request, so an unchanged list comes back as a 304 of a few hundred
+ * bytes. Installed as a network interceptor so it sees the server's headers
+ * before the cache does.
+ */
+@Singleton
+class ConditionalCacheInterceptor @Inject constructor() : Interceptor {
+
+    companion object {
+        val ENDPOINTS = setOf(
+            "/api/articles",
+            "/api/announcements/active",
+            "/api/patients/medications",
+            "/api/app/version"
+        )
+    }
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val response = chain.proceed(request)
+
+        if (request.method != "GET" || request.url.encodedPath !in ENDPOINTS) {
+            return response
+        }
+        val hasValidator = response.header("ETag") != null || response.header("Last-Modified") != null
+        if (!response.isSuccessful || !hasValidator) {
+            return response
+        }
+
+        // Older backends mark these responses no-store; the validator makes caching safe
+        return response.newBuilder()
+            .header("Cache-Control", "private, no-cache")
+            .removeHeader("Pragma")
+            .removeHeader("Expires")
+            .build()
+    }
+}
+
+/**
+ * True when the server answered 304 and OkHttp served the body from its cache,
+ * i.e. nothing changed since the last download
+ */
+fun retrofit2.Response<*>.isNotModified(): Boolean {
+    return raw().networkResponse?.code == HttpURLConnection.HTTP_NOT_MODIFIED
+}
@@ -0,0 +1,60 @@
+package com.dokterdibya.patient.data.api
+
+import com.dokterdibya.patient.di.NetworkModule
+import dagger.Lazy
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import timber.log.Timber
+import java.io.IOException
+import javax.inject.Inject
+import javax.inject.Named
+import javax.inject.Singleton
+
+/**
+ * Opens the connection to the API host while the app is still starting
+ *
+ * A HEAD request runs DNS, TCP and TLS in parallel with Hilt, Room and the
+ * first frame. The profile request then finds a pooled HTTP/2 connection
+ * instead of paying the handshake on the critical path.
+ *
+ * The client itself is built on a background thread too, so Application.onCreate
+ * does not pay for OkHttp and platform TLS initialisation.
+ */
+@Singleton
+class ConnectionPrewarmer @Inject constructor(
+    @Named(NetworkModule.BASE_CLIENT) private val client: Lazy<OkHttpClient>
+) {
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+
+    fun warmUp() {
+        scope.launch { enqueueHead(client.get()) }
+    }
+
+    private fun enqueueHead(client: OkHttpClient) {
+        val request = Request.Builder()
+            .url(ApiService.BASE_URL)
+            .head()
+            // Not PREFETCH: navigation must not cancel it
+            .tag(RequestPriority::class.java, RequestPriority.USER_VISIBLE)
+            .build()
+
+        client.newCall(request).enqueue(object : Callback {
+            override fun onResponse(call: Call, response: Response) {
+                response.close()
+                Timber.d("Connection to ${request.url.host} pre-warmed (${response.protocol})")
+            }
+
+            override fun onFailure(call: Call, e: IOException) {
+                // Offline at launch; the first real request will connect
+                Timber.d("Connection pre-warm failed: ${e.message}")
+            }
+        })
+    }
+}
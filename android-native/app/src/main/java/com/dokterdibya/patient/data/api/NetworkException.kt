@@ -38,6 +38,14 @@ sealed class NetworkException(
         cause: Throwable? = null
     ) : NetworkException(message, cause)
 
+    /**
+     * Server failing repeatedly; requests are short-circuited for a while
+     */
+    class ServiceUnavailable(
+        message: String = "Server sedang tidak dapat dihubungi. Menampilkan data tersimpan.",
+        cause: Throwable? = null
+    ) : NetworkException(message, cause)
+
     /**
      * Unauthorized - token expired or invalid (401)
      */
@@ -85,6 +93,7 @@ sealed class NetworkException(
         fun from(throwable: Throwable): NetworkException {
             return when (throwable) {
                 is NetworkException -> throwable
+                is CircuitOpenException -> ServiceUnavailable(cause = throwable)
                 is SocketTimeoutException -> Timeout(cause = throwable)
                 is UnknownHostException -> NoConnection(cause = throwable)
                 is IOException -> {
@@ -161,6 +170,7 @@ fun Throwable.isRetryable(): Boolean {
     return when (this) {
         is NetworkException.Timeout,
         is NetworkException.NoConnection,
+        is NetworkException.ServiceUnavailable,
         is NetworkException.ServerError -> true
         else -> false
     }
@@ -0,0 +1,29 @@
+package com.dokterdibya.patient.data.api
+
+/**
+ * Scheduling class of a request, most urgent first
+ *
+ * Retrofit calls default to [USER_VISIBLE]; other requests through the shared
+ * clients (Coil images, downloads) default to [PREFETCH]. Override per endpoint
+ * with [Priority], or per request with `tag(RequestPriority::class.java, ...)`.
+ */
+enum class RequestPriority {
+    /** Blocks the first meaningful screen, e.g. the patient profile */
+    CRITICAL,
+
+    /** Content the user is looking at */
+    USER_VISIBLE,
+
+    /** Thumbnails and anything loaded ahead; cancelled on navigation */
+    PREFETCH,
+
+    /** Housekeeping that can wait for an idle connection */
+    BACKGROUND
+}
+
+/**
+ * Priority of an ApiService endpoint, read by [RequestScheduler]
+ */
+@Target(AnnotationTarget.FUNCTION)
+@Retention(AnnotationRetention.RUNTIME)
+annotation class Priority(val value: RequestPriority)
@@ -0,0 +1,224 @@
+package com.dokterdibya.patient.data.api
+
+import okhttp3.Call
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import okio.ForwardingSource
+import okio.buffer
+import retrofit2.Invocation
+import timber.log.Timber
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.PriorityQueue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.locks.ReentrantLock
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.concurrent.withLock
+
+/**
+ * Orders requests by [RequestPriority] with a concurrency cap per host
+ *
+ * OkHttp's dispatcher is FIFO, so on a slow link the profile request queues
+ * behind article thumbnails. This application interceptor holds each call
+ * until its host has a free slot and nothing more urgent is waiting. Lower
+ * priorities get fewer slots, so a critical call always has one left. A slot
+ * is held until the response body is closed, since that is when the
+ * connection is free again.
+ *
+ * The dispatcher's own limits are raised (see NetworkModule) so every call
+ * reaches this queue instead of waiting in the dispatcher's FIFO.
+ */
+@Singleton
+class RequestScheduler @Inject constructor() : Interceptor {
+
+    companion object {
+        const val MAX_REQUESTS_PER_HOST = 4
+        private const val WAIT_SLICE_MS = 100L
+    }
+
+    private class Waiter(val priority: RequestPriority, val sequence: Long) {
+        var granted = false
+    }
+
+    private class HostState {
+        var running = 0
+        val waiting = PriorityQueue(
+            11,
+            compareBy<Waiter>({ it.priority.ordinal }, { it.sequence })
+        )
+    }
+
+    private val lock = ReentrantLock()
+    private val changed = lock.newCondition()
+    private val hosts = HashMap<String, HostState>()
+    private var sequence = 0L
+
+    // Queued and running calls, for cancel()
+    private val calls = ConcurrentHashMap<Call, RequestPriority>()
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val call = chain.call()
+        val host = request.url.host
+        val priority = priorityOf(request)
+
+        calls[call] = priority
+        try {
+            acquire(call, host, priority)
+        } catch (e: IOException) {
+            calls.remove(call)
+            throw e
+        }
+
+        val done = AtomicBoolean()
+        val finish = {
+            if (done.compareAndSet(false, true)) {
+                calls.remove(call)
+                release(host)
+            }
+        }
+
+        val response = try {
+            chain.proceed(request)
+        } catch (e: Throwable) {
+            finish()
+            throw e
+        }
+
+        val body = response.body
+        if (body == null) {
+            finish()
+            return response
+        }
+        return response.newBuilder()
+            .body(ReleasingBody(body, finish))
+            .build()
+    }
+
+    /**
+     * Cancel every queued or running call at [priority], e.g. prefetches for
+     * a screen the user has left
+     */
+    fun cancel(priority: RequestPriority) {
+        var cancelled = 0
+        for ((call, callPriority) in calls) {
+            if (callPriority == priority) {
+                call.cancel()
+                cancelled++
+            }
+        }
+        if (cancelled > 0) {
+            Timber.d("Cancelled $cancelled ${priority.name} request(s)")
+            // Wake queued calls so they notice the cancellation
+            lock.withLock { changed.signalAll() }
+        }
+    }
+
+    private fun priorityOf(request: okhttp3.Request): RequestPriority {
+        request.tag(RequestPriority::class.java)?.let { return it }
+        val invocation = request.tag(Invocation::class.java) ?: return RequestPriority.PREFETCH
+        return invocation.method().getAnnotation(Priority::class.java)?.value
+            ?: RequestPriority.USER_VISIBLE
+    }
+
+    /**
+     * Concurrent requests on a host below which [priority] may start
+     */
+    private fun limitFor(priority: RequestPriority): Int {
+        return when (priority) {
+            RequestPriority.CRITICAL -> MAX_REQUESTS_PER_HOST + 1
+            RequestPriority.USER_VISIBLE -> MAX_REQUESTS_PER_HOST
+            RequestPriority.PREFETCH -> MAX_REQUESTS_PER_HOST - 1
+            RequestPriority.BACKGROUND -> 2
+        }
+    }
+
+    private fun acquire(call: Call, host: String, priority: RequestPriority) {
+        lock.withLock {
+            val state = hosts.getOrPut(host) { HostState() }
+            val waiter = Waiter(priority, sequence++)
+            state.waiting.add(waiter)
+            promote(state)
+
+            while (!waiter.granted) {
+                if (call.isCanceled()) {
+                    state.waiting.remove(waiter)
+                    throw IOException("Canceled")
+                }
+                try {
+                    changed.await(WAIT_SLICE_MS, TimeUnit.MILLISECONDS)
+                } catch (e: InterruptedException) {
+                    state.waiting.remove(waiter)
+                    Thread.currentThread().interrupt()
+                    throw InterruptedIOException("Interrupted while queued")
+                }
+            }
+        }
+    }
+
+    private fun release(host: String) {
+        lock.withLock {
+            val state = hosts[host] ?: return
+            state.running--
+            promote(state)
+            if (state.running == 0 && state.waiting.isEmpty()) {
+                hosts.remove(host)
+            }
+        }
+    }
+
+    /**
+     * Start waiters in priority order while the head of the queue fits. Limits
+     * shrink with priority, so if the head can't start nothing behind it can.
+     */
+    private fun promote(state: HostState) {
+        var promoted = false
+        while (true) {
+            val head = state.waiting.peek() ?: break
+            if (state.running >= limitFor(head.priority)) break
+            state.waiting.poll()
+            head.granted = true
+            state.running++
+            promoted = true
+        }
+        if (promoted) changed.signalAll()
+    }
+
+    /**
+     * Runs [onDone] once the body has been read to the end or closed
+     */
+    private class ReleasingBody(
+        private val delegate: ResponseBody,
+        private val onDone: () -> Unit
+    ) : ResponseBody() {
+
+        private val source: BufferedSource = object : ForwardingSource(delegate.source()) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                val read = super.read(sink, byteCount)
+                if (read == -1L) onDone()
+                return read
+            }
+
+            override fun close() {
+                try {
+                    super.close()
+                } finally {
+                    onDone()
+                }
+            }
+        }.buffer()
+
+        override fun contentType(): MediaType? = delegate.contentType()
+
+        override fun contentLength(): Long = delegate.contentLength()
+
+        override fun source(): BufferedSource = source
+    }
+}
@@ -0,0 +1,36 @@
+package com.dokterdibya.patient.data.api
+
+import okhttp3.Authenticator
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.Route
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Answers a 401 by refreshing the session and replaying the request once
+ *
+ * Concurrent 401s share one refresh through [SessionRefresher]; each then
+ * replays with the new token. Returning null hands the 401 to the caller.
+ */
+@Singleton
+class TokenAuthenticator @Inject constructor(
+    private val sessionRefresher: SessionRefresher
+) : Authenticator {
+
+    override fun authenticate(route: Route?, response: Response): Request? {
+        val request = response.request
+
+        // Already replayed once with a refreshed token; the server means it
+        if (response.priorResponse != null) return null
+
+        val sent = request.header("Authorization")
+            ?.removePrefix("Bearer ")
+            ?: return null
+
+        val token = sessionRefresher.refresh(staleToken = sent) ?: return null
+        return request.newBuilder()
+            .header("Authorization", "Bearer $token")
+            .build()
+    }
+}
@@ -3,32 +3,44 @@ package com.dokterdibya.patient.data.local
 import androidx.room.Database
 import androidx.room.RoomDatabase
 import androidx.room.migration.Migration
-import androidx.sqlite.db.SupportSQLiteDatabase
 
 /**
  * Room database for local caching
- * Provides offline-first capability for articles, notifications, and medications
+ * Provides offline-first capability for articles, notifications, medications and documents
  *
  * MIGRATION STRATEGY:
- * Since this database is used purely for caching (not primary data storage),
- * we use fallbackToDestructiveMigration() in DatabaseModule.
- * This means cache data will be cleared on schema changes, which is acceptable
- * because the data will be re-fetched from the server.
+ * Every schema change from version 2 onwards ships an incremental migration in
+ * Migrations.kt, so updates keep the cached data. Room exports each version's
+ * schema to app/schemas (see the ksp room.schemaLocation argument); commit the
+ * new JSON file together with the migration, and MigrationTest (androidTest)
+ * replays the whole chain against those files.
  *
- * For future schema changes that need to preserve data, add migrations below.
+ * DatabaseModule only falls back to a destructive rebuild from version 1,
+ * which has no exported schema, and on downgrade.
  */
 @Database(
     entities = [
         ArticleEntity::class,
+        ArticleRemoteKey::class,
+        ArticleBodyEntity::class,
         NotificationEntity::class,
         MedicationEntity::class,
         CacheMetadata::class,
         ProfileEntity::class,
         AppointmentEntity::class,
         VisitHistoryEntity::class,
-        AnnouncementEntity::class
+        AnnouncementEntity::class,
+        DocumentEntity::class,
+        OutboxEntity::class,
+        CacheAccessEntity::class,
+        ArticleFts::class,
+        ArticleBodyFts::class,
+        NotificationFts::class,
+        AnnouncementFts::class,
+        MedicationFts::class,
+        VisitHistoryFts::class
     ],
-    version = 2,
+    version = 9,
     exportSchema = true
 )
 abstract class AppDatabase : RoomDatabase() {
@@ -40,6 +52,10 @@ abstract class AppDatabase : RoomDatabase() {
     abstract fun appointmentDao(): AppointmentDao
     abstract fun visitHistoryDao(): VisitHistoryDao
     abstract fun announcementDao(): AnnouncementDao
+    abstract fun documentDao(): DocumentDao
+    abstract fun searchDao(): SearchDao
+    abstract fun outboxDao(): OutboxDao
+    abstract fun cacheBudgetDao(): CacheBudgetDao
 
     companion object {
         const val DATABASE_NAME = "dokterdibya_patient_db"
@@ -52,23 +68,30 @@ abstract class AppDatabase : RoomDatabase() {
         const val CACHE_EXPIRY_APPOINTMENTS = 2 * 60 * 60 * 1000L  // 2 hours
         const val CACHE_EXPIRY_VISIT_HISTORY = 24 * 60 * 60 * 1000L // 24 hours
         const val CACHE_EXPIRY_ANNOUNCEMENTS = 6 * 60 * 60 * 1000L  // 6 hours
+        const val CACHE_EXPIRY_DOCUMENTS = 6 * 60 * 60 * 1000L      // 6 hours
 
         // Cache keys
         const val CACHE_KEY_ARTICLES = "articles"
+        const val CACHE_KEY_ARTICLES_PAGED = "articles_paged"
         const val CACHE_KEY_NOTIFICATIONS = "notifications"
         const val CACHE_KEY_MEDICATIONS = "medications"
         const val CACHE_KEY_PROFILE = "profile"
         const val CACHE_KEY_APPOINTMENTS = "appointments"
         const val CACHE_KEY_VISIT_HISTORY = "visit_history"
         const val CACHE_KEY_ANNOUNCEMENTS = "announcements"
+        const val CACHE_KEY_DOCUMENTS = "documents"
 
         /**
          * List of all migrations for use in DatabaseModule
-         * Since we use fallbackToDestructiveMigration() for cache DB,
-         * migrations are optional but can be added for smoother upgrades.
          */
         val ALL_MIGRATIONS: Array<Migration> = arrayOf(
-            // Add migrations here as needed
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9
         )
     }
 }
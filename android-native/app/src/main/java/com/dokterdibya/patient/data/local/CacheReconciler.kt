@@ -0,0 +1,72 @@
+package com.dokterdibya.patient.data.local
+
+/**
+ * Diff-based cache refresh
+ *
+ * Compares a fresh server list against the rows already in a table and writes
+ * only the delta. DAOs call this from a @Transaction method so observers see a
+ * single invalidation and the table is never briefly empty.
+ */
+object CacheReconciler {
+
+    /**
+     * Rows written by one refresh
+     */
+    data class Stats(
+        val inserted: Int,
+        val updated: Int,
+        val deleted: Int,
+        val unchanged: Int
+    ) {
+        val rowsWritten: Int get() = inserted + updated + deleted
+
+        companion object {
+            val EMPTY = Stats(0, 0, 0, 0)
+        }
+    }
+
+    /**
+     * @param sameContent compares two rows ignoring bookkeeping columns such as cachedAt
+     */
+    suspend fun <E, K> reconcile(
+        existing: List<E>,
+        incoming: List<E>,
+        key: (E) -> K,
+        sameContent: (old: E, new: E) -> Boolean,
+        upsert: suspend (List<E>) -> Unit,
+        delete: suspend (List<K>) -> Unit
+    ): Stats {
+        val existingByKey = existing.associateBy(key)
+        val incomingKeys = HashSet<K>(incoming.size)
+
+        val inserted = mutableListOf<E>()
+        val updated = mutableListOf<E>()
+        for (row in incoming) {
+            val rowKey = key(row)
+            incomingKeys.add(rowKey)
+            val old = existingByKey[rowKey]
+            when {
+                old == null -> inserted.add(row)
+                !sameContent(old, row) -> updated.add(row)
+            }
+        }
+        val deletedKeys = existingByKey.keys.filter { it !in incomingKeys }
+
+        if (deletedKeys.isNotEmpty()) {
+            // SQLite caps bound parameters per statement, so delete in chunks
+            deletedKeys.chunked(MAX_BIND_ARGS).forEach { delete(it) }
+        }
+        if (inserted.isNotEmpty() || updated.isNotEmpty()) {
+            upsert(inserted + updated)
+        }
+
+        return Stats(
+            inserted = inserted.size,
+            updated = updated.size,
+            deleted = deletedKeys.size,
+            unchanged = incoming.size - inserted.size - updated.size
+        )
+    }
+
+    private const val MAX_BIND_ARGS = 900
+}
@@ -1,10 +1,14 @@
 package com.dokterdibya.patient.data.local
 
+import androidx.paging.PagingSource
 import androidx.room.*
 import kotlinx.coroutines.flow.Flow
 
 /**
  * Data Access Objects for Room database
+ *
+ * Tables behind an FTS index are written with @Upsert. REPLACE deletes the old
+ * row without firing Room's FTS delete trigger, which leaves its tokens behind.
  */
 
 @Dao
@@ -21,10 +25,10 @@ interface ArticleDao {
     @Query("SELECT * FROM articles WHERE category = :category ORDER BY createdAt DESC")
     fun getArticlesByCategory(category: String): Flow<List<ArticleEntity>>
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Upsert
     suspend fun insertAll(articles: List<ArticleEntity>)
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Upsert
     suspend fun insert(article: ArticleEntity)
 
     @Query("DELETE FROM articles")
@@ -32,6 +36,57 @@ interface ArticleDao {
 
     @Query("DELETE FROM articles WHERE cachedAt < :threshold")
     suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("SELECT * FROM article_bodies WHERE articleId = :id")
+    suspend fun getBody(id: Int): ArticleBodyEntity?
+
+    @Upsert
+    suspend fun insertBody(body: ArticleBodyEntity)
+
+    @Query("DELETE FROM article_bodies")
+    suspend fun deleteAllBodies()
+
+    /**
+     * Newest cached articles whose body has not been downloaded yet
+     */
+    @Query(
+        """SELECT id FROM articles
+        WHERE id NOT IN (SELECT articleId FROM article_bodies)
+        ORDER BY createdAt DESC LIMIT :limit"""
+    )
+    suspend fun getIdsWithoutBody(limit: Int): List<Int>
+
+    /**
+     * Paged Ruang Membaca list in server order; only rows loaded by the
+     * RemoteMediator have a position
+     */
+    @Query(
+        """SELECT articles.* FROM articles
+        INNER JOIN article_remote_keys ON article_remote_keys.articleId = articles.id
+        ORDER BY article_remote_keys.position ASC"""
+    )
+    fun pagingSource(): PagingSource<Int, ArticleEntity>
+
+    @Query("SELECT COALESCE(MAX(position) + 1, 0) FROM article_remote_keys")
+    suspend fun getNextRemoteOffset(): Int
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertRemoteKeys(keys: List<ArticleRemoteKey>)
+
+    @Query("DELETE FROM article_remote_keys")
+    suspend fun clearRemoteKeys()
+
+    /**
+     * Store one page from the server; a refresh restarts the positions
+     */
+    @Transaction
+    suspend fun insertPage(articles: List<ArticleEntity>, offset: Int, clearKeys: Boolean) {
+        if (clearKeys) {
+            clearRemoteKeys()
+        }
+        insertAll(articles)
+        insertRemoteKeys(articles.mapIndexed { index, article -> ArticleRemoteKey(article.id, offset + index) })
+    }
 }
 
 @Dao
@@ -45,17 +100,55 @@ interface NotificationDao {
     @Query("SELECT COUNT(*) FROM notifications WHERE isRead = 0")
     suspend fun getUnreadCount(): Int
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Upsert
     suspend fun insertAll(notifications: List<NotificationEntity>)
 
     @Query("UPDATE notifications SET isRead = 1 WHERE id = :id")
     suspend fun markAsRead(id: Int)
 
+    @Query("UPDATE notifications SET isRead = 1 WHERE id IN (:ids)")
+    suspend fun markAsReadByIds(ids: List<Int>)
+
     @Query("DELETE FROM notifications")
     suspend fun deleteAll()
 
     @Query("DELETE FROM notifications WHERE cachedAt < :threshold")
     suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("DELETE FROM notifications WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    /**
+     * Replace the table contents with [incoming], writing only changed rows
+     */
+    @Transaction
+    suspend fun reconcile(incoming: List<NotificationEntity>): CacheReconciler.Stats {
+        return CacheReconciler.reconcile(
+            existing = getAllNotificationsOnce(),
+            incoming = incoming,
+            key = { it.id },
+            sameContent = { old, new -> old.copy(cachedAt = new.cachedAt) == new },
+            upsert = { insertAll(it) },
+            delete = { deleteByIds(it) }
+        )
+    }
+
+    /**
+     * Merge a delta sync page: new notifications plus ids read since the last sync
+     */
+    @Transaction
+    suspend fun applyDelta(newNotifications: List<NotificationEntity>, readIds: List<Int>): CacheReconciler.Stats {
+        if (newNotifications.isNotEmpty()) {
+            insertAll(newNotifications)
+        }
+        readIds.chunked(900).forEach { markAsReadByIds(it) }
+        return CacheReconciler.Stats(
+            inserted = newNotifications.size,
+            updated = readIds.size,
+            deleted = 0,
+            unchanged = 0
+        )
+    }
 }
 
 @Dao
@@ -69,7 +162,7 @@ interface MedicationDao {
     @Query("SELECT * FROM medications WHERE isCurrent = 1 ORDER BY visitDate DESC")
     fun getCurrentMedications(): Flow<List<MedicationEntity>>
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Upsert
     suspend fun insertAll(medications: List<MedicationEntity>)
 
     @Query("DELETE FROM medications")
@@ -77,6 +170,24 @@ interface MedicationDao {
 
     @Query("DELETE FROM medications WHERE cachedAt < :threshold")
     suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("DELETE FROM medications WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    /**
+     * Replace the table contents with [incoming], writing only changed rows
+     */
+    @Transaction
+    suspend fun reconcile(incoming: List<MedicationEntity>): CacheReconciler.Stats {
+        return CacheReconciler.reconcile(
+            existing = getAllMedicationsOnce(),
+            incoming = incoming,
+            key = { it.id },
+            sameContent = { old, new -> old.copy(cachedAt = new.cachedAt) == new },
+            upsert = { insertAll(it) },
+            delete = { deleteByIds(it) }
+        )
+    }
 }
 
 @Dao
@@ -101,6 +212,30 @@ interface ProfileDao {
 
     @Query("DELETE FROM profiles")
     suspend fun deleteAll()
+
+    /**
+     * Keep exactly one cached profile, skipping the write when nothing changed
+     */
+    @Transaction
+    suspend fun replace(profile: ProfileEntity): CacheReconciler.Stats {
+        val existing = getProfile()
+        return when {
+            existing == null -> {
+                insert(profile)
+                CacheReconciler.Stats(1, 0, 0, 0)
+            }
+            existing.copy(cachedAt = profile.cachedAt) == profile -> CacheReconciler.Stats(0, 0, 0, 1)
+            existing.id != profile.id -> {
+                deleteAll()
+                insert(profile)
+                CacheReconciler.Stats(1, 0, 1, 0)
+            }
+            else -> {
+                insert(profile)
+                CacheReconciler.Stats(0, 1, 0, 0)
+            }
+        }
+    }
 }
 
 @Dao
@@ -122,6 +257,21 @@ interface AppointmentDao {
 
     @Query("DELETE FROM appointments WHERE cachedAt < :threshold")
     suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("DELETE FROM appointments WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    @Transaction
+    suspend fun reconcile(incoming: List<AppointmentEntity>): CacheReconciler.Stats {
+        return CacheReconciler.reconcile(
+            existing = getAllAppointmentsOnce(),
+            incoming = incoming,
+            key = { it.id },
+            sameContent = { old, new -> old.copy(cachedAt = new.cachedAt) == new },
+            upsert = { insertAll(it) },
+            delete = { deleteByIds(it) }
+        )
+    }
 }
 
 @Dao
@@ -132,7 +282,7 @@ interface VisitHistoryDao {
     @Query("SELECT * FROM visit_history ORDER BY billingDate DESC")
     suspend fun getAllVisitHistoryOnce(): List<VisitHistoryEntity>
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Upsert
     suspend fun insertAll(visits: List<VisitHistoryEntity>)
 
     @Query("DELETE FROM visit_history")
@@ -140,6 +290,24 @@ interface VisitHistoryDao {
 
     @Query("DELETE FROM visit_history WHERE cachedAt < :threshold")
     suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("DELETE FROM visit_history WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    /**
+     * Replace the table contents with [incoming], writing only changed rows
+     */
+    @Transaction
+    suspend fun reconcile(incoming: List<VisitHistoryEntity>): CacheReconciler.Stats {
+        return CacheReconciler.reconcile(
+            existing = getAllVisitHistoryOnce(),
+            incoming = incoming,
+            key = { it.id },
+            sameContent = { old, new -> old.copy(cachedAt = new.cachedAt) == new },
+            upsert = { insertAll(it) },
+            delete = { deleteByIds(it) }
+        )
+    }
 }
 
 @Dao
@@ -150,15 +318,324 @@ interface AnnouncementDao {
     @Query("SELECT * FROM announcements ORDER BY createdAt DESC")
     suspend fun getAllAnnouncementsOnce(): List<AnnouncementEntity>
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Upsert
     suspend fun insertAll(announcements: List<AnnouncementEntity>)
 
     @Query("UPDATE announcements SET likedByMe = :liked, likeCount = :count WHERE id = :id")
     suspend fun updateLike(id: Int, liked: Boolean, count: Int)
 
+    @Query("SELECT id FROM announcements")
+    suspend fun getAllIds(): List<Int>
+
+    @Query("DELETE FROM announcements WHERE id NOT IN (:ids)")
+    suspend fun deleteNotIn(ids: List<Int>)
+
     @Query("DELETE FROM announcements")
     suspend fun deleteAll()
 
     @Query("DELETE FROM announcements WHERE cachedAt < :threshold")
     suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("DELETE FROM announcements WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    /**
+     * Replace the table contents with [incoming], writing only changed rows
+     */
+    @Transaction
+    suspend fun reconcile(incoming: List<AnnouncementEntity>): CacheReconciler.Stats {
+        return CacheReconciler.reconcile(
+            existing = getAllAnnouncementsOnce(),
+            incoming = incoming,
+            key = { it.id },
+            sameContent = { old, new -> old.copy(cachedAt = new.cachedAt) == new },
+            upsert = { insertAll(it) },
+            delete = { deleteByIds(it) }
+        )
+    }
+
+    /**
+     * Merge a delta sync: upsert changed announcements and drop any that are no longer active
+     */
+    @Transaction
+    suspend fun applyDelta(changed: List<AnnouncementEntity>, activeIds: List<Int>): CacheReconciler.Stats {
+        val deleted = getAllIds().count { it !in activeIds }
+        if (activeIds.isEmpty()) deleteAll() else deleteNotIn(activeIds)
+        if (changed.isNotEmpty()) {
+            insertAll(changed)
+        }
+        return CacheReconciler.Stats(
+            inserted = 0,
+            updated = changed.size,
+            deleted = deleted,
+            unchanged = activeIds.size - changed.size
+        )
+    }
+}
+
+@Dao
+interface DocumentDao {
+    @Query("SELECT * FROM documents ORDER BY publishedAt DESC")
+    fun getAllDocuments(): Flow<List<DocumentEntity>>
+
+    @Query("SELECT * FROM documents ORDER BY publishedAt DESC")
+    suspend fun getAllDocumentsOnce(): List<DocumentEntity>
+
+    @Query("SELECT * FROM documents WHERE documentType IN (:types) ORDER BY publishedAt DESC")
+    fun getDocumentsByTypes(types: List<String>): Flow<List<DocumentEntity>>
+
+    @Query("SELECT * FROM documents WHERE documentType IN (:types) ORDER BY publishedAt DESC")
+    suspend fun getDocumentsByTypesOnce(types: List<String>): List<DocumentEntity>
+
+    @Query("SELECT COUNT(*) FROM documents WHERE isRead = 0")
+    fun getUnreadCount(): Flow<Int>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAll(documents: List<DocumentEntity>)
+
+    @Query("DELETE FROM documents")
+    suspend fun deleteAll()
+
+    @Query("DELETE FROM documents WHERE cachedAt < :threshold")
+    suspend fun deleteOlderThan(threshold: Long)
+
+    @Query("DELETE FROM documents WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    /**
+     * Replace the table contents with [incoming], writing only changed rows
+     * (documents missing from the server list were unpublished)
+     */
+    @Transaction
+    suspend fun reconcile(incoming: List<DocumentEntity>): CacheReconciler.Stats {
+        return CacheReconciler.reconcile(
+            existing = getAllDocumentsOnce(),
+            incoming = incoming,
+            key = { it.id },
+            sameContent = { old, new -> old.copy(cachedAt = new.cachedAt) == new },
+            upsert = { insertAll(it) },
+            delete = { deleteByIds(it) }
+        )
+    }
+}
+
+/**
+ * Size accounting and LRU eviction across cached tables
+ *
+ * Byte figures are estimates: the length of the stored text plus a fixed
+ * per-row overhead, which is enough to compare tables against a budget.
+ */
+@Dao
+interface CacheBudgetDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun recordAccess(entries: List<CacheAccessEntity>)
+
+    @Query(
+        """SELECT COUNT(*) AS rowCount, COALESCE(SUM(64 + LENGTH(a.title) + IFNULL(LENGTH(a.excerpt), 0)
+        + IFNULL(LENGTH(a.imageUrl), 0) + IFNULL(LENGTH(b.content), 0)), 0) AS bytes
+        FROM articles a LEFT JOIN article_bodies b ON b.articleId = a.id"""
+    )
+    suspend fun articleUsage(): TableUsage
+
+    @Query(
+        """SELECT COUNT(*) AS rowCount, COALESCE(SUM(64 + LENGTH(title) + LENGTH(message)), 0) AS bytes
+        FROM notifications"""
+    )
+    suspend fun notificationUsage(): TableUsage
+
+    @Query(
+        """SELECT COUNT(*) AS rowCount, COALESCE(SUM(64 + LENGTH(title) + LENGTH(message)
+        + IFNULL(LENGTH(formattedContent), 0) + IFNULL(LENGTH(imageUrl), 0)), 0) AS bytes
+        FROM announcements"""
+    )
+    suspend fun announcementUsage(): TableUsage
+
+    @Query(
+        """SELECT COUNT(*) AS rowCount, COALESCE(SUM(64 + IFNULL(LENGTH(billingNumber), 0)
+        + IFNULL(LENGTH(patientName), 0) + IFNULL(LENGTH(notes), 0)), 0) AS bytes
+        FROM visit_history"""
+    )
+    suspend fun visitHistoryUsage(): TableUsage
+
+    @Query(
+        """SELECT a.id AS id, COALESCE(x.lastAccessedAt, a.cachedAt) AS lastUsed,
+        64 + LENGTH(a.title) + IFNULL(LENGTH(a.excerpt), 0) + IFNULL(LENGTH(a.imageUrl), 0)
+        + IFNULL(LENGTH(b.content), 0) AS bytes
+        FROM articles a
+        LEFT JOIN article_bodies b ON b.articleId = a.id
+        LEFT JOIN cache_access x ON x.domain = 'articles' AND x.rowId = a.id
+        ORDER BY lastUsed ASC LIMIT :limit"""
+    )
+    suspend fun articleCandidates(limit: Int): List<EvictionCandidate>
+
+    @Query(
+        """SELECT n.id AS id, COALESCE(x.lastAccessedAt, n.cachedAt) AS lastUsed,
+        64 + LENGTH(n.title) + LENGTH(n.message) AS bytes
+        FROM notifications n
+        LEFT JOIN cache_access x ON x.domain = 'notifications' AND x.rowId = n.id
+        ORDER BY lastUsed ASC LIMIT :limit"""
+    )
+    suspend fun notificationCandidates(limit: Int): List<EvictionCandidate>
+
+    @Query(
+        """SELECT a.id AS id, COALESCE(x.lastAccessedAt, a.cachedAt) AS lastUsed,
+        64 + LENGTH(a.title) + LENGTH(a.message) + IFNULL(LENGTH(a.formattedContent), 0)
+        + IFNULL(LENGTH(a.imageUrl), 0) AS bytes
+        FROM announcements a
+        LEFT JOIN cache_access x ON x.domain = 'announcements' AND x.rowId = a.id
+        ORDER BY lastUsed ASC LIMIT :limit"""
+    )
+    suspend fun announcementCandidates(limit: Int): List<EvictionCandidate>
+
+    @Query(
+        """SELECT v.id AS id, COALESCE(x.lastAccessedAt, v.cachedAt) AS lastUsed,
+        64 + IFNULL(LENGTH(v.billingNumber), 0) + IFNULL(LENGTH(v.patientName), 0)
+        + IFNULL(LENGTH(v.notes), 0) AS bytes
+        FROM visit_history v
+        LEFT JOIN cache_access x ON x.domain = 'visit_history' AND x.rowId = v.id
+        ORDER BY lastUsed ASC LIMIT :limit"""
+    )
+    suspend fun visitHistoryCandidates(limit: Int): List<EvictionCandidate>
+
+    @Query("DELETE FROM articles WHERE id IN (:ids)")
+    suspend fun deleteArticles(ids: List<Int>)
+
+    @Query("DELETE FROM article_bodies WHERE articleId IN (:ids)")
+    suspend fun deleteArticleBodies(ids: List<Int>)
+
+    @Query("DELETE FROM article_remote_keys WHERE articleId IN (:ids)")
+    suspend fun deleteArticleRemoteKeys(ids: List<Int>)
+
+    @Query("DELETE FROM notifications WHERE id IN (:ids)")
+    suspend fun deleteNotifications(ids: List<Int>)
+
+    @Query("DELETE FROM announcements WHERE id IN (:ids)")
+    suspend fun deleteAnnouncements(ids: List<Int>)
+
+    @Query("DELETE FROM visit_history WHERE id IN (:ids)")
+    suspend fun deleteVisitHistory(ids: List<Int>)
+
+    @Query("DELETE FROM cache_access WHERE domain = :domain AND rowId IN (:ids)")
+    suspend fun deleteAccess(domain: String, ids: List<Int>)
+
+    @Query("DELETE FROM cache_access")
+    suspend fun deleteAllAccess()
+
+    @Transaction
+    suspend fun evictArticles(ids: List<Int>) {
+        deleteArticleBodies(ids)
+        deleteArticleRemoteKeys(ids)
+        deleteArticles(ids)
+        deleteAccess("articles", ids)
+    }
+
+    @Transaction
+    suspend fun evictNotifications(ids: List<Int>) {
+        deleteNotifications(ids)
+        deleteAccess("notifications", ids)
+    }
+
+    @Transaction
+    suspend fun evictAnnouncements(ids: List<Int>) {
+        deleteAnnouncements(ids)
+        deleteAccess("announcements", ids)
+    }
+
+    @Transaction
+    suspend fun evictVisitHistory(ids: List<Int>) {
+        deleteVisitHistory(ids)
+        deleteAccess("visit_history", ids)
+    }
+}
+
+@Dao
+interface OutboxDao {
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insert(entry: OutboxEntity): Long
+
+    @Update
+    suspend fun update(entry: OutboxEntity)
+
+    @Query("DELETE FROM outbox WHERE id = :id")
+    suspend fun delete(id: Long)
+
+    @Query("SELECT * FROM outbox WHERE status = 'pending' AND nextAttemptAt <= :now ORDER BY id ASC")
+    suspend fun getDue(now: Long): List<OutboxEntity>
+
+    @Query("SELECT MIN(nextAttemptAt) FROM outbox WHERE status = 'pending'")
+    suspend fun getNextAttemptAt(): Long?
+
+    @Query("SELECT COUNT(*) FROM outbox WHERE status = 'pending'")
+    fun observePendingCount(): Flow<Int>
+
+    @Query("SELECT * FROM outbox WHERE status != 'pending' ORDER BY id DESC")
+    fun observeRejected(): Flow<List<OutboxEntity>>
+
+    @Query("DELETE FROM outbox")
+    suspend fun deleteAll()
+}
+
+/**
+ * Queries over the FTS tables; snippets wrap each match in <b></b>
+ *
+ * FTS4 has no built-in rank, so every match is returned and SearchRepository
+ * ranks them before truncating. A LIMIT here would cut rows in rowid order.
+ */
+@Dao
+interface SearchDao {
+    @Query(
+        """SELECT a.id AS id, a.title AS title, a.createdAt AS date,
+        snippet(articles_fts, '<b>', '</b>', '…', -1, 16) AS snippet,
+        matchinfo(articles_fts, 'pcx') AS matchInfo
+        FROM articles_fts JOIN articles a ON a.id = articles_fts.rowid
+        WHERE articles_fts MATCH :query"""
+    )
+    suspend fun searchArticles(query: String): List<FtsHit>
+
+    @Query(
+        """SELECT a.id AS id, a.title AS title, a.createdAt AS date,
+        snippet(article_bodies_fts, '<b>', '</b>', '…', -1, 16) AS snippet,
+        matchinfo(article_bodies_fts, 'pcx') AS matchInfo
+        FROM article_bodies_fts
+        JOIN article_bodies b ON b.articleId = article_bodies_fts.rowid
+        JOIN articles a ON a.id = b.articleId
+        WHERE article_bodies_fts MATCH :query"""
+    )
+    suspend fun searchArticleBodies(query: String): List<FtsHit>
+
+    @Query(
+        """SELECT n.id AS id, n.title AS title, n.createdAt AS date,
+        snippet(notifications_fts, '<b>', '</b>', '…', -1, 16) AS snippet,
+        matchinfo(notifications_fts, 'pcx') AS matchInfo
+        FROM notifications_fts JOIN notifications n ON n.id = notifications_fts.rowid
+        WHERE notifications_fts MATCH :query"""
+    )
+    suspend fun searchNotifications(query: String): List<FtsHit>
+
+    @Query(
+        """SELECT a.id AS id, a.title AS title, a.createdAt AS date,
+        snippet(announcements_fts, '<b>', '</b>', '…', -1, 16) AS snippet,
+        matchinfo(announcements_fts, 'pcx') AS matchInfo
+        FROM announcements_fts JOIN announcements a ON a.id = announcements_fts.rowid
+        WHERE announcements_fts MATCH :query"""
+    )
+    suspend fun searchAnnouncements(query: String): List<FtsHit>
+
+    @Query(
+        """SELECT m.id AS id, NULL AS title, m.visitDate AS date,
+        snippet(medications_fts, '<b>', '</b>', '…', -1, 16) AS snippet,
+        matchinfo(medications_fts, 'pcx') AS matchInfo
+        FROM medications_fts JOIN medications m ON m.id = medications_fts.rowid
+        WHERE medications_fts MATCH :query"""
+    )
+    suspend fun searchMedications(query: String): List<FtsHit>
+
+    @Query(
+        """SELECT v.id AS id, v.billingNumber AS title, v.billingDate AS date,
+        snippet(visit_history_fts, '<b>', '</b>', '…', -1, 16) AS snippet,
+        matchinfo(visit_history_fts, 'pcx') AS matchInfo
+        FROM visit_history_fts JOIN visit_history v ON v.id = visit_history_fts.rowid
+        WHERE visit_history_fts MATCH :query"""
+    )
+    suspend fun searchVisitHistory(query: String): List<FtsHit>
 }
@@ -1,21 +1,30 @@
 package com.dokterdibya.patient.data.local
 
 import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+import androidx.room.Index
 import androidx.room.PrimaryKey
 import com.dokterdibya.patient.data.api.Article
 import com.dokterdibya.patient.data.api.Medication
 import com.dokterdibya.patient.data.api.PatientNotificationItem
+import com.dokterdibya.patient.data.model.Appointment
+import com.dokterdibya.patient.data.model.Patient
+import com.dokterdibya.patient.data.model.PatientDocument
 
 /**
  * Room entities for local caching
  */
 
+/**
+ * Article list row; the body lives in [ArticleBodyEntity] and is only
+ * fetched when an article is opened or prefetched
+ */
 @Entity(tableName = "articles")
 data class ArticleEntity(
     @PrimaryKey val id: Int,
     val title: String,
     val slug: String?,
-    val content: String?,
     val excerpt: String?,
     val category: String?,
     val imageUrl: String?,
@@ -24,7 +33,7 @@ data class ArticleEntity(
     val createdAt: String?,
     val cachedAt: Long = System.currentTimeMillis()
 ) {
-    fun toArticle() = Article(
+    fun toArticle(content: String? = null) = Article(
         id = id,
         title = title,
         slug = slug,
@@ -42,7 +51,6 @@ data class ArticleEntity(
             id = article.id,
             title = article.title,
             slug = article.slug,
-            content = article.content,
             excerpt = article.excerpt,
             category = article.category,
             imageUrl = article.imageUrl,
@@ -53,6 +61,23 @@ data class ArticleEntity(
     }
 }
 
+@Entity(tableName = "article_bodies")
+data class ArticleBodyEntity(
+    @PrimaryKey val articleId: Int,
+    val content: String,
+    val fetchedAt: Long = System.currentTimeMillis()
+)
+
+/**
+ * Server position of a paged article, so the Ruang Membaca list keeps the
+ * server's order and knows where to resume after process death
+ */
+@Entity(tableName = "article_remote_keys")
+data class ArticleRemoteKey(
+    @PrimaryKey val articleId: Int,
+    val position: Int
+)
+
 @Entity(tableName = "notifications")
 data class NotificationEntity(
     @PrimaryKey val id: Int,
@@ -124,7 +149,9 @@ data class MedicationEntity(
 @Entity(tableName = "cache_metadata")
 data class CacheMetadata(
     @PrimaryKey val key: String,
-    val lastUpdated: Long = System.currentTimeMillis()
+    val lastUpdated: Long = System.currentTimeMillis(),
+    // Server high-water mark for delta sync (format is owned by the syncing domain)
+    val syncCursor: String? = null
 )
 
 /**
@@ -146,7 +173,25 @@ data class ProfileEntity(
     val address: String?,
     val emergencyContact: String?,
     val cachedAt: Long = System.currentTimeMillis()
-)
+) {
+    companion object {
+        fun fromPatient(patient: Patient, id: String) = ProfileEntity(
+            id = id,
+            fullName = patient.name,
+            email = patient.email,
+            phone = patient.phone,
+            birthDate = patient.birthDate,
+            photoUrl = patient.photoUrl,
+            profilePicture = patient.profilePicture,
+            isPregnant = patient.isPregnant,
+            hpht = patient.pregnancyStartDate,
+            hpl = patient.expectedDueDate,
+            bloodType = null,
+            address = null,
+            emergencyContact = null
+        )
+    }
+}
 
 /**
  * Appointment entity for offline caching
@@ -163,7 +208,21 @@ data class AppointmentEntity(
     val notes: String?,
     val createdAt: String?,
     val cachedAt: Long = System.currentTimeMillis()
-)
+) {
+    companion object {
+        fun fromAppointment(appointment: Appointment) = AppointmentEntity(
+            id = appointment.id,
+            patientId = appointment.patientId?.toString(),
+            patientName = null,
+            appointmentDate = appointment.appointmentDate ?: "",
+            sessionLabel = appointment.sessionLabel,
+            queueNumber = appointment.queueNumber,
+            status = appointment.status ?: "",
+            notes = appointment.notes,
+            createdAt = appointment.createdAt
+        )
+    }
+}
 
 /**
  * Visit History entity for offline caching
@@ -230,3 +289,191 @@ data class AnnouncementEntity(
         )
     }
 }
+
+/**
+ * Patient document entity for offline caching
+ * Indexed by type so USG/lab screens query their partition directly
+ */
+@Entity(
+    tableName = "documents",
+    indices = [
+        Index("documentType"),
+        Index("visitDate"),
+        Index("isRead")
+    ]
+)
+data class DocumentEntity(
+    @PrimaryKey val id: Int,
+    val documentType: String,
+    val title: String?,
+    val description: String?,
+    val documentUrl: String?,
+    val filename: String?,
+    val fileType: String?,
+    val fileSize: Long?,
+    val publishedAt: String?,
+    val mrId: String?,
+    val createdAt: String?,
+    val locationName: String?,
+    val visitDate: String?,
+    val isRead: Int,
+    val cachedAt: Long = System.currentTimeMillis()
+) {
+    fun toDocument() = PatientDocument(
+        id = id,
+        documentType = documentType,
+        title = title,
+        description = description,
+        documentUrl = documentUrl,
+        filename = filename,
+        fileType = fileType,
+        fileSize = fileSize,
+        publishedAt = publishedAt,
+        mrId = mrId,
+        createdAt = createdAt,
+        locationName = locationName,
+        visitDate = visitDate,
+        isRead = isRead
+    )
+
+    companion object {
+        fun fromDocument(document: PatientDocument) = DocumentEntity(
+            id = document.id,
+            documentType = document.documentType,
+            title = document.title,
+            description = document.description,
+            documentUrl = document.documentUrl,
+            filename = document.filename,
+            fileType = document.fileType,
+            fileSize = document.fileSize,
+            publishedAt = document.publishedAt,
+            mrId = document.mrId,
+            createdAt = document.createdAt,
+            locationName = document.locationName,
+            visitDate = document.visitDate,
+            isRead = document.isRead
+        )
+    }
+}
+
+/**
+ * Last time a cached row was opened, for LRU eviction by the cache budget manager
+ *
+ * Kept out of the cached tables themselves so recording an access doesn't
+ * re-emit their Flows or rewrite their FTS index.
+ */
+@Entity(tableName = "cache_access", primaryKeys = ["domain", "rowId"])
+data class CacheAccessEntity(
+    val domain: String,
+    val rowId: Int,
+    val lastAccessedAt: Long = System.currentTimeMillis()
+)
+
+/**
+ * Row count and estimated size of one cached table
+ */
+data class TableUsage(
+    val rowCount: Int,
+    val bytes: Long
+)
+
+/**
+ * A cached row ranked for eviction; [lastUsed] falls back to cachedAt when the row was never opened
+ */
+data class EvictionCandidate(
+    val id: Int,
+    val lastUsed: Long,
+    val bytes: Long
+)
+
+/**
+ * Pending patient write, replayed by the outbox worker until the server accepts it
+ *
+ * [payload] is the request body as JSON; [idempotencyKey] is sent on every attempt
+ * so a retry after a lost response is not applied twice.
+ */
+@Entity(
+    tableName = "outbox",
+    indices = [Index(value = ["idempotencyKey"], unique = true), Index("status")]
+)
+data class OutboxEntity(
+    @PrimaryKey(autoGenerate = true) val id: Long = 0,
+    val operation: String,
+    val targetId: Int? = null,
+    val payload: String,
+    val idempotencyKey: String,
+    val status: String = STATUS_PENDING,
+    val attempts: Int = 0,
+    val nextAttemptAt: Long = 0L,
+    val lastError: String? = null,
+    val createdAt: Long = System.currentTimeMillis()
+) {
+    companion object {
+        const val STATUS_PENDING = "pending"
+        const val STATUS_CONFLICT = "conflict"
+        const val STATUS_FAILED = "failed"
+    }
+}
+
+/**
+ * Full-text search index
+ *
+ * Each FTS table is an external-content index over a cache table, so Room
+ * keeps it in sync with triggers on every insert, update and delete.
+ */
+@Fts4(contentEntity = ArticleEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "articles_fts")
+data class ArticleFts(
+    val title: String,
+    val excerpt: String?
+)
+
+@Fts4(contentEntity = ArticleBodyEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "article_bodies_fts")
+data class ArticleBodyFts(
+    val content: String
+)
+
+@Fts4(contentEntity = NotificationEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "notifications_fts")
+data class NotificationFts(
+    val title: String,
+    val message: String
+)
+
+@Fts4(contentEntity = AnnouncementEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "announcements_fts")
+data class AnnouncementFts(
+    val title: String,
+    val message: String
+)
+
+@Fts4(contentEntity = MedicationEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "medications_fts")
+data class MedicationFts(
+    val terapi: String?
+)
+
+@Fts4(contentEntity = VisitHistoryEntity::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "visit_history_fts")
+data class VisitHistoryFts(
+    val notes: String?
+)
+
+/**
+ * One FTS match; [matchInfo] is the raw `matchinfo(..., 'pcx')` blob used for ranking
+ */
+data class FtsHit(
+    val id: Int,
+    val title: String?,
+    val snippet: String?,
+    val date: String?,
+    val matchInfo: ByteArray
+) {
+    override fun equals(other: Any?): Boolean {
+        return other is FtsHit && other.id == id && other.title == title &&
+            other.snippet == snippet && other.date == date && other.matchInfo.contentEquals(matchInfo)
+    }
+
+    override fun hashCode(): Int = 31 * id + matchInfo.contentHashCode()
+}
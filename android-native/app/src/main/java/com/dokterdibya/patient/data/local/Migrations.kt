@@ -0,0 +1,158 @@
+package com.dokterdibya.patient.data.local
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Incremental schema migrations for [AppDatabase]
+ *
+ * Each step keeps the cached rows, so an app update starts with a warm cache
+ * instead of re-downloading everything. The SQL mirrors what Room generates for
+ * the entities; the exported schemas in app/schemas are the reference.
+ */
+
+/** Version 3: indexed documents table */
+val MIGRATION_2_3 = object : Migration(2, 3) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            """CREATE TABLE IF NOT EXISTS `documents` (
+                `id` INTEGER NOT NULL, `documentType` TEXT NOT NULL, `title` TEXT,
+                `description` TEXT, `documentUrl` TEXT, `filename` TEXT, `fileType` TEXT,
+                `fileSize` INTEGER, `publishedAt` TEXT, `mrId` TEXT, `createdAt` TEXT,
+                `locationName` TEXT, `visitDate` TEXT, `isRead` INTEGER NOT NULL,
+                `cachedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))"""
+        )
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_documents_documentType` ON `documents` (`documentType`)")
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_documents_visitDate` ON `documents` (`visitDate`)")
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_documents_isRead` ON `documents` (`isRead`)")
+    }
+}
+
+/** Version 4: delta-sync cursor */
+val MIGRATION_3_4 = object : Migration(3, 4) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        db.execSQL("ALTER TABLE `cache_metadata` ADD COLUMN `syncCursor` TEXT")
+    }
+}
+
+/** Version 5: server positions for the paged article list */
+val MIGRATION_4_5 = object : Migration(4, 5) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            """CREATE TABLE IF NOT EXISTS `article_remote_keys` (
+                `articleId` INTEGER NOT NULL, `position` INTEGER NOT NULL, PRIMARY KEY(`articleId`))"""
+        )
+    }
+}
+
+/** Version 6: article bodies move out of the list table */
+val MIGRATION_5_6 = object : Migration(5, 6) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            """CREATE TABLE IF NOT EXISTS `article_bodies` (
+                `articleId` INTEGER NOT NULL, `content` TEXT NOT NULL,
+                `fetchedAt` INTEGER NOT NULL, PRIMARY KEY(`articleId`))"""
+        )
+        // Keep bodies that were already cached with the list
+        db.execSQL(
+            """INSERT OR REPLACE INTO `article_bodies` (`articleId`, `content`, `fetchedAt`)
+                SELECT `id`, `content`, `cachedAt` FROM `articles`
+                WHERE `content` IS NOT NULL AND `content` != ''"""
+        )
+
+        // SQLite on API 26 has no DROP COLUMN, so rebuild the table without `content`
+        db.execSQL(
+            """CREATE TABLE IF NOT EXISTS `articles_new` (
+                `id` INTEGER NOT NULL, `title` TEXT NOT NULL, `slug` TEXT, `excerpt` TEXT,
+                `category` TEXT, `imageUrl` TEXT, `author` TEXT, `publishedAt` TEXT,
+                `createdAt` TEXT, `cachedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))"""
+        )
+        db.execSQL(
+            """INSERT INTO `articles_new` (`id`, `title`, `slug`, `excerpt`, `category`,
+                `imageUrl`, `author`, `publishedAt`, `createdAt`, `cachedAt`)
+                SELECT `id`, `title`, `slug`, `excerpt`, `category`, `imageUrl`, `author`,
+                `publishedAt`, `createdAt`, `cachedAt` FROM `articles`"""
+        )
+        db.execSQL("DROP TABLE `articles`")
+        db.execSQL("ALTER TABLE `articles_new` RENAME TO `articles`")
+    }
+}
+
+/** Version 7: full-text search index */
+val MIGRATION_6_7 = object : Migration(6, 7) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        createContentFts(db, "articles_fts", "articles", listOf("title" to true, "excerpt" to false))
+        createContentFts(db, "article_bodies_fts", "article_bodies", listOf("content" to true))
+        createContentFts(db, "notifications_fts", "notifications", listOf("title" to true, "message" to true))
+        createContentFts(db, "announcements_fts", "announcements", listOf("title" to true, "message" to true))
+        createContentFts(db, "medications_fts", "medications", listOf("terapi" to false))
+        createContentFts(db, "visit_history_fts", "visit_history", listOf("notes" to false))
+    }
+}
+
+/** Version 8: offline write outbox */
+val MIGRATION_7_8 = object : Migration(7, 8) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            """CREATE TABLE IF NOT EXISTS `outbox` (
+                `id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `operation` TEXT NOT NULL,
+                `targetId` INTEGER, `payload` TEXT NOT NULL, `idempotencyKey` TEXT NOT NULL,
+                `status` TEXT NOT NULL, `attempts` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL,
+                `lastError` TEXT, `createdAt` INTEGER NOT NULL)"""
+        )
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_outbox_idempotencyKey` ON `outbox` (`idempotencyKey`)")
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_status` ON `outbox` (`status`)")
+    }
+}
+
+/** Version 9: last-access times for cache budget eviction */
+val MIGRATION_8_9 = object : Migration(8, 9) {
+    override fun migrate(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            """CREATE TABLE IF NOT EXISTS `cache_access` (
+                `domain` TEXT NOT NULL, `rowId` INTEGER NOT NULL, `lastAccessedAt` INTEGER NOT NULL,
+                PRIMARY KEY(`domain`, `rowId`))"""
+        )
+    }
+}
+
+/**
+ * External-content FTS4 table plus the sync triggers Room creates for
+ * `@Fts4(contentEntity = ...)`, then a rebuild to index the existing rows
+ *
+ * @param columns column name to NOT NULL
+ */
+private fun createContentFts(
+    db: SupportSQLiteDatabase,
+    ftsTable: String,
+    contentTable: String,
+    columns: List<Pair<String, Boolean>>
+) {
+    val definitions = columns.joinToString(", ") { (name, notNull) ->
+        if (notNull) "`$name` TEXT NOT NULL" else "`$name` TEXT"
+    }
+    val names = columns.joinToString(", ") { "`${it.first}`" }
+    val newValues = columns.joinToString(", ") { "NEW.`${it.first}`" }
+    val prefix = "room_fts_content_sync_$ftsTable"
+
+    db.execSQL(
+        "CREATE VIRTUAL TABLE IF NOT EXISTS `$ftsTable` USING FTS4($definitions, tokenize=unicode61, content=`$contentTable`)"
+    )
+    db.execSQL(
+        "CREATE TRIGGER IF NOT EXISTS ${prefix}_BEFORE_UPDATE BEFORE UPDATE ON `$contentTable` " +
+            "BEGIN DELETE FROM `$ftsTable` WHERE `docid`=OLD.`rowid`; END"
+    )
+    db.execSQL(
+        "CREATE TRIGGER IF NOT EXISTS ${prefix}_BEFORE_DELETE BEFORE DELETE ON `$contentTable` " +
+            "BEGIN DELETE FROM `$ftsTable` WHERE `docid`=OLD.`rowid`; END"
+    )
+    db.execSQL(
+        "CREATE TRIGGER IF NOT EXISTS ${prefix}_AFTER_UPDATE AFTER UPDATE ON `$contentTable` " +
+            "BEGIN INSERT INTO `$ftsTable`(`docid`, $names) VALUES (NEW.`rowid`, $newValues); END"
+    )
+    db.execSQL(
+        "CREATE TRIGGER IF NOT EXISTS ${prefix}_AFTER_INSERT AFTER INSERT ON `$contentTable` " +
+            "BEGIN INSERT INTO `$ftsTable`(`docid`, $names) VALUES (NEW.`rowid`, $newValues); END"
+    )
+    db.execSQL("INSERT INTO `$ftsTable`(`$ftsTable`) VALUES('rebuild')")
+}
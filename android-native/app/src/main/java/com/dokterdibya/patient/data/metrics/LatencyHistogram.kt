@@ -0,0 +1,103 @@
+package com.dokterdibya.patient.data.metrics
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram
+ *
+ * Values below 2^[SUB_BUCKET_BITS] get one bucket each; above that every power
+ * of two is split into 2^([SUB_BUCKET_BITS] - 1) equal buckets, so any recorded
+ * value is off by at most ~6%. Recording is a handful of atomic increments and
+ * never allocates, so it is safe on OkHttp's threads.
+ */
+class LatencyHistogram {
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 5
+        private const val LINEAR_BUCKETS = 1 shl SUB_BUCKET_BITS
+        private const val HALF_BUCKETS = LINEAR_BUCKETS / 2
+        private const val MAX_BITS = 40 // ~12 days in microseconds
+        private const val MAX_VALUE = (1L shl MAX_BITS) - 1
+        private const val BUCKET_COUNT = LINEAR_BUCKETS + (MAX_BITS - SUB_BUCKET_BITS) * HALF_BUCKETS
+    }
+
+    data class Snapshot(
+        val count: Long,
+        val mean: Double,
+        val p50: Long,
+        val p90: Long,
+        val p99: Long,
+        val max: Long
+    )
+
+    private val counts = AtomicLongArray(BUCKET_COUNT)
+    private val total = AtomicLong()
+    private val sum = AtomicLong()
+    private val max = AtomicLong()
+
+    fun record(value: Long) {
+        val v = value.coerceIn(0L, MAX_VALUE)
+        counts.incrementAndGet(indexOf(v))
+        total.incrementAndGet()
+        sum.addAndGet(v)
+        max.accumulateAndGet(v, ::maxOf)
+    }
+
+    /**
+     * Approximate value at [percentile] (0-100); midpoint of the matching bucket
+     */
+    fun valueAt(percentile: Double): Long {
+        val count = total.get()
+        if (count == 0L) return 0L
+        val target = maxOf(1L, Math.ceil(percentile / 100.0 * count).toLong())
+        var seen = 0L
+        for (i in 0 until BUCKET_COUNT) {
+            seen += counts.get(i)
+            if (seen >= target) {
+                return minOf(lowerBound(i) + bucketWidth(i) / 2, max.get())
+            }
+        }
+        return max.get()
+    }
+
+    fun snapshot(): Snapshot {
+        val count = total.get()
+        return Snapshot(
+            count = count,
+            mean = if (count == 0L) 0.0 else sum.get().toDouble() / count,
+            p50 = valueAt(50.0),
+            p90 = valueAt(90.0),
+            p99 = valueAt(99.0),
+            max = max.get()
+        )
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) counts.set(i, 0L)
+        total.set(0L)
+        sum.set(0L)
+        max.set(0L)
+    }
+
+    private fun indexOf(value: Long): Int {
+        if (value < LINEAR_BUCKETS) return value.toInt()
+        val highestBit = 63 - java.lang.Long.numberOfLeadingZeros(value)
+        val shift = highestBit - SUB_BUCKET_BITS + 1
+        // Top SUB_BUCKET_BITS bits of the value, always in [HALF_BUCKETS, LINEAR_BUCKETS)
+        val subBucket = (value ushr shift).toInt()
+        return shift * HALF_BUCKETS + subBucket
+    }
+
+    private fun lowerBound(index: Int): Long {
+        if (index < LINEAR_BUCKETS) return index.toLong()
+        val shift = index / HALF_BUCKETS - 1
+        val subBucket = index % HALF_BUCKETS + HALF_BUCKETS
+        return subBucket.toLong() shl shift
+    }
+
+    private fun bucketWidth(index: Int): Long {
+        if (index < LINEAR_BUCKETS) return 1L
+        return 1L shl (index / HALF_BUCKETS - 1)
+    }
+}
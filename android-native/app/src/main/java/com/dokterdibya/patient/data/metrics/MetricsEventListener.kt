@@ -0,0 +1,131 @@
+package com.dokterdibya.patient.data.metrics
+
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Phase timings, bytes and cache outcome of one call
+ *
+ * OkHttp creates one listener per call, so the fields need no synchronization.
+ * Connect covers TCP and TLS; TLS is also recorded on its own. TTFB runs from
+ * sending the request headers to the first response byte.
+ */
+class MetricsEventListener(
+    private val stats: NetworkMetrics.RouteStats
+) : EventListener() {
+
+    @Singleton
+    class Factory @Inject constructor(
+        private val metrics: NetworkMetrics
+    ) : EventListener.Factory {
+        override fun create(call: Call): EventListener {
+            return MetricsEventListener(metrics.stats(metrics.routeOf(call.request())))
+        }
+    }
+
+    private var callStart = 0L
+    private var dnsStart = 0L
+    private var connectStart = 0L
+    private var secureConnectStart = 0L
+    private var requestStart = 0L
+    private var bodyStart = 0L
+
+    private fun now() = System.nanoTime()
+
+    private fun micros(start: Long) = (now() - start) / 1000
+
+    override fun callStart(call: Call) {
+        callStart = now()
+    }
+
+    override fun dnsStart(call: Call, domainName: String) {
+        dnsStart = now()
+    }
+
+    override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+        stats.dns.record(micros(dnsStart))
+    }
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+        connectStart = now()
+    }
+
+    override fun secureConnectStart(call: Call) {
+        secureConnectStart = now()
+    }
+
+    override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+        stats.tls.record(micros(secureConnectStart))
+    }
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+        stats.connect.record(micros(connectStart))
+    }
+
+    override fun requestHeadersStart(call: Call) {
+        // Retries and redirects send again; time the last attempt
+        requestStart = now()
+    }
+
+    override fun requestHeadersEnd(call: Call, request: Request) {
+        stats.bytesOut.add(request.headers.byteCount())
+    }
+
+    override fun requestBodyEnd(call: Call, byteCount: Long) {
+        stats.bytesOut.add(byteCount)
+    }
+
+    override fun responseHeadersStart(call: Call) {
+        if (requestStart != 0L) {
+            stats.ttfb.record(micros(requestStart))
+        }
+    }
+
+    override fun responseHeadersEnd(call: Call, response: Response) {
+        stats.bytesIn.add(response.headers.byteCount())
+    }
+
+    override fun responseBodyStart(call: Call) {
+        bodyStart = now()
+    }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+        stats.body.record(micros(bodyStart))
+        stats.bytesIn.add(byteCount)
+    }
+
+    override fun cacheHit(call: Call, response: Response) {
+        stats.cacheHits.increment()
+    }
+
+    override fun cacheMiss(call: Call) {
+        stats.cacheMisses.increment()
+    }
+
+    override fun cacheConditionalHit(call: Call, cachedResponse: Response) {
+        stats.conditionalHits.increment()
+    }
+
+    override fun callEnd(call: Call) {
+        finish()
+    }
+
+    override fun callFailed(call: Call, ioe: IOException) {
+        finish()
+    }
+
+    private fun finish() {
+        stats.calls.increment()
+        stats.total.record(micros(callStart))
+    }
+}
@@ -0,0 +1,43 @@
+package com.dokterdibya.patient.data.metrics
+
+import com.dokterdibya.patient.data.api.NetworkException
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.IOException
+import java.net.HttpURLConnection
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Counts failed calls per route by [NetworkException] class
+ *
+ * Runs as an application interceptor, so it sees the outcome the app sees:
+ * after OkHttp's retries, redirects and cache.
+ */
+@Singleton
+class MetricsInterceptor @Inject constructor(
+    private val metrics: NetworkMetrics
+) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val response = try {
+            chain.proceed(request)
+        } catch (e: IOException) {
+            metrics.recordError(metrics.routeOf(request), errorClass(NetworkException.from(e)))
+            throw e
+        }
+
+        if (!response.isSuccessful && response.code != HttpURLConnection.HTTP_NOT_MODIFIED) {
+            metrics.recordError(metrics.routeOf(request), errorClass(NetworkException.fromHttpCode(response.code)))
+        }
+        return response
+    }
+
+    private fun errorClass(exception: NetworkException): String {
+        return when (exception) {
+            is NetworkException.ServerError -> "ServerError(${exception.code})"
+            else -> exception.javaClass.simpleName
+        }
+    }
+}
@@ -64,13 +64,32 @@ data class AuthResponse(
     val token: String?,
     val user: Patient?,       // Backend returns 'user' not 'patient'
     val patient: Patient?,    // Keep for backward compatibility
-    val message: String?
+    val message: String?,
+    @SerializedName("refresh_token")
+    val refreshToken: String? = null
 ) {
     // Helper to get patient from either field
     val patientData: Patient?
         get() = user ?: patient
 }
 
+data class RefreshTokenRequest(
+    @SerializedName("refresh_token")
+    val refreshToken: String
+)
+
+data class RefreshTokenResponse(
+    val success: Boolean,
+    val message: String?,
+    val data: RefreshTokenData?
+)
+
+data class RefreshTokenData(
+    val token: String,
+    @SerializedName("refresh_token")
+    val refreshToken: String
+)
+
 data class PregnancyInfo(
     val weeks: Int,
     val days: Int,
@@ -0,0 +1,68 @@
+package com.dokterdibya.patient.data.repository
+
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.LoadType
+import androidx.paging.PagingState
+import androidx.paging.RemoteMediator
+import com.dokterdibya.patient.data.api.ApiCallExecutor
+import com.dokterdibya.patient.data.api.ApiService
+import com.dokterdibya.patient.data.local.AppDatabase
+import com.dokterdibya.patient.data.local.ArticleDao
+import com.dokterdibya.patient.data.local.ArticleEntity
+
+/**
+ * Fills the articles table page by page from `api/articles?limit&offset`
+ *
+ * The UI only ever reads Room through [ArticleDao.pagingSource]; this mediator
+ * is asked for more rows when the user scrolls past the end of what is cached.
+ */
+@OptIn(ExperimentalPagingApi::class)
+class ArticleRemoteMediator(
+    private val apiService: ApiService,
+    private val callExecutor: ApiCallExecutor,
+    private val articleDao: ArticleDao,
+    private val cacheEngine: CacheEngine
+) : RemoteMediator<Int, ArticleEntity>() {
+
+    override suspend fun initialize(): InitializeAction {
+        // Resume from Room (also offline) while the first page is still fresh
+        return if (cacheEngine.isCacheValid(AppDatabase.CACHE_KEY_ARTICLES_PAGED, AppDatabase.CACHE_EXPIRY_ARTICLES)) {
+            InitializeAction.SKIP_INITIAL_REFRESH
+        } else {
+            InitializeAction.LAUNCH_INITIAL_REFRESH
+        }
+    }
+
+    override suspend fun load(loadType: LoadType, state: PagingState<Int, ArticleEntity>): MediatorResult {
+        val offset = when (loadType) {
+            LoadType.REFRESH -> 0
+            // Server order is newest first, so nothing is ever prepended
+            LoadType.PREPEND -> return MediatorResult.Success(endOfPaginationReached = true)
+            LoadType.APPEND -> articleDao.getNextRemoteOffset()
+        }
+        val limit = if (loadType == LoadType.REFRESH) state.config.initialLoadSize else state.config.pageSize
+
+        return try {
+            val response = callExecutor.read { apiService.getArticles(category = null, limit = limit, offset = offset) }
+            val body = response.body()
+            if (!response.isSuccessful || body == null) {
+                return MediatorResult.Error(Exception("Failed to get articles"))
+            }
+            val articles = body.data ?: emptyList()
+            articleDao.insertPage(
+                articles = articles.map { ArticleEntity.fromArticle(it) },
+                offset = offset,
+                clearKeys = loadType == LoadType.REFRESH
+            )
+            if (loadType == LoadType.REFRESH) {
+                cacheEngine.markUpdated(AppDatabase.CACHE_KEY_ARTICLES_PAGED)
+            }
+            val total = body.total
+            MediatorResult.Success(
+                endOfPaginationReached = articles.size < limit || (total != null && offset + articles.size >= total)
+            )
+        } catch (e: Exception) {
+            MediatorResult.Error(e)
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.dokterdibya.patient.data.repository
+
+import android.content.Context
+import androidx.datastore.preferences.core.edit
+import androidx.datastore.preferences.core.longPreferencesKey
+import com.dokterdibya.patient.data.dataStore
+import com.dokterdibya.patient.data.local.AppDatabase
+import com.dokterdibya.patient.data.local.CacheAccessEntity
+import com.dokterdibya.patient.data.local.CacheBudgetDao
+import com.dokterdibya.patient.data.local.EvictionCandidate
+import com.dokterdibya.patient.data.local.TableUsage
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import timber.log.Timber
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the Room cache under a total size budget
+ *
+ * Rows of articles, notifications, announcements and visit history compete for
+ * one budget; when it is exceeded the least recently used rows across all four
+ * tables are evicted until usage drops to [LOW_WATERMARK] of the budget.
+ * Sync cursors and TTLs are left alone: evicted rows are the oldest ones and
+ * are not fetched back by delta syncs.
+ */
+@Singleton
+class CacheBudgetManager @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val cacheBudgetDao: CacheBudgetDao
+) {
+    companion object {
+        const val DEFAULT_BUDGET_BYTES = 20L * 1024 * 1024 // 20 MB
+        private const val LOW_WATERMARK = 0.8
+        private const val CANDIDATE_BATCH = 200
+
+        val EVICTABLE_DOMAINS = listOf(
+            AppDatabase.CACHE_KEY_ARTICLES,
+            AppDatabase.CACHE_KEY_NOTIFICATIONS,
+            AppDatabase.CACHE_KEY_ANNOUNCEMENTS,
+            AppDatabase.CACHE_KEY_VISIT_HISTORY
+        )
+
+        private val BUDGET_KEY = longPreferencesKey("cache_budget_bytes")
+    }
+
+    data class Stats(
+        val budgetBytes: Long,
+        val usage: Map<String, TableUsage>,
+        val lastEvicted: Map<String, Int> = emptyMap(),
+        val lastRunAt: Long? = null
+    ) {
+        val totalBytes: Long get() = usage.values.sumOf { it.bytes }
+        val totalRows: Int get() = usage.values.sumOf { it.rowCount }
+    }
+
+    private val mutex = Mutex()
+
+    private val _stats = MutableStateFlow<Stats?>(null)
+    val stats: StateFlow<Stats?> = _stats.asStateFlow()
+
+    suspend fun getBudgetBytes(): Long {
+        return context.dataStore.data.first()[BUDGET_KEY] ?: DEFAULT_BUDGET_BYTES
+    }
+
+    suspend fun setBudgetBytes(bytes: Long) {
+        context.dataStore.edit { prefs -> prefs[BUDGET_KEY] = bytes.coerceAtLeast(0L) }
+    }
+
+    /**
+     * Mark rows as used so they are evicted last
+     */
+    suspend fun recordAccess(domain: String, ids: List<Int>) {
+        if (ids.isEmpty()) return
+        val now = System.currentTimeMillis()
+        cacheBudgetDao.recordAccess(ids.map { CacheAccessEntity(domain, it, now) })
+    }
+
+    suspend fun clearAccessTimes() {
+        cacheBudgetDao.deleteAllAccess()
+    }
+
+    suspend fun refreshStats(): Stats {
+        val stats = Stats(
+            budgetBytes = getBudgetBytes(),
+            usage = usage(),
+            lastEvicted = _stats.value?.lastEvicted ?: emptyMap(),
+            lastRunAt = _stats.value?.lastRunAt
+        )
+        _stats.value = stats
+        return stats
+    }
+
+    /**
+     * Evict least recently used rows until the cache fits the budget again
+     *
+     * @return rows evicted per domain
+     */
+    suspend fun enforceBudget(): Map<String, Int> = mutex.withLock {
+        val budget = getBudgetBytes()
+        var total = usage().values.sumOf { it.bytes }
+        val evicted = mutableMapOf<String, Int>()
+
+        if (total > budget) {
+            val target = (budget * LOW_WATERMARK).toLong()
+            while (total > target) {
+                val candidates = EVICTABLE_DOMAINS
+                    .flatMap { domain -> candidates(domain).map { domain to it } }
+                    .sortedBy { (_, candidate) -> candidate.lastUsed }
+                if (candidates.isEmpty()) break
+
+                val batch = mutableListOf<Pair<String, EvictionCandidate>>()
+                for (candidate in candidates) {
+                    if (total <= target) break
+                    batch.add(candidate)
+                    total -= candidate.second.bytes
+                }
+                batch.groupBy({ it.first }, { it.second.id }).forEach { (domain, ids) ->
+                    // SQLite caps bound parameters per statement
+                    ids.chunked(900).forEach { evict(domain, it) }
+                    evicted[domain] = (evicted[domain] ?: 0) + ids.size
+                }
+            }
+            Timber.d("Cache budget: evicted %s, now ~%d of %d bytes", evicted, total, budget)
+        }
+
+        _stats.value = Stats(
+            budgetBytes = budget,
+            usage = usage(),
+            lastEvicted = evicted,
+            lastRunAt = System.currentTimeMillis()
+        )
+        evicted
+    }
+
+    private suspend fun usage(): Map<String, TableUsage> = mapOf(
+        AppDatabase.CACHE_KEY_ARTICLES to cacheBudgetDao.articleUsage(),
+        AppDatabase.CACHE_KEY_NOTIFICATIONS to cacheBudgetDao.notificationUsage(),
+        AppDatabase.CACHE_KEY_ANNOUNCEMENTS to cacheBudgetDao.announcementUsage(),
+        AppDatabase.CACHE_KEY_VISIT_HISTORY to cacheBudgetDao.visitHistoryUsage()
+    )
+
+    private suspend fun candidates(domain: String): List<EvictionCandidate> = when (domain) {
+        AppDatabase.CACHE_KEY_ARTICLES -> cacheBudgetDao.articleCandidates(CANDIDATE_BATCH)
+        AppDatabase.CACHE_KEY_NOTIFICATIONS -> cacheBudgetDao.notificationCandidates(CANDIDATE_BATCH)
+        AppDatabase.CACHE_KEY_ANNOUNCEMENTS -> cacheBudgetDao.announcementCandidates(CANDIDATE_BATCH)
+        AppDatabase.CACHE_KEY_VISIT_HISTORY -> cacheBudgetDao.visitHistoryCandidates(CANDIDATE_BATCH)
+        else -> emptyList()
+    }
+
+    private suspend fun evict(domain: String, ids: List<Int>) {
+        when (domain) {
+            AppDatabase.CACHE_KEY_ARTICLES -> cacheBudgetDao.evictArticles(ids)
+            AppDatabase.CACHE_KEY_NOTIFICATIONS -> cacheBudgetDao.evictNotifications(ids)
+            AppDatabase.CACHE_KEY_ANNOUNCEMENTS -> cacheBudgetDao.evictAnnouncements(ids)
+            AppDatabase.CACHE_KEY_VISIT_HISTORY -> cacheBudgetDao.evictVisitHistory(ids)
+        }
+    }
+}
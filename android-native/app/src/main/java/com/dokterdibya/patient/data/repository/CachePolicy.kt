@@ -0,0 +1,176 @@
+package com.dokterdibya.patient.data.repository
+
+import com.dokterdibya.patient.data.local.CacheMetadata
+import com.dokterdibya.patient.data.local.CacheMetadataDao
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * How a cached domain decides between Room and the network
+ */
+enum class CachePolicy {
+    /** Serve Room while within TTL, otherwise fetch (falling back to stale rows offline) */
+    CACHE_FIRST,
+
+    /** Serve Room immediately, revalidate in the background once past TTL */
+    STALE_WHILE_REVALIDATE,
+
+    /** Always fetch, serve Room only when the network call fails */
+    NETWORK_FIRST
+}
+
+/**
+ * Freshness of a cached domain as last seen by [CacheEngine]
+ */
+enum class CacheFreshness {
+    FRESH,
+    STALE,
+    REVALIDATING,
+    MISSING
+}
+
+/**
+ * Generic cache-policy engine on top of [CacheMetadata]
+ *
+ * Callers supply how to read rows from Room and how to fetch (and persist) them
+ * from the network; the engine decides which to use based on the policy and the
+ * age of `CacheMetadata.lastUpdated`, and publishes per-key freshness.
+ */
+@Singleton
+class CacheEngine @Inject constructor(
+    private val cacheMetadataDao: CacheMetadataDao
+) {
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+
+    // Keys with a background revalidation in flight, so repeated reads don't stack fetches
+    private val revalidating = ConcurrentHashMap.newKeySet<String>()
+
+    private val _freshness = MutableStateFlow<Map<String, CacheFreshness>>(emptyMap())
+    val freshness: StateFlow<Map<String, CacheFreshness>> = _freshness.asStateFlow()
+
+    suspend fun isCacheValid(key: String, expiryTime: Long): Boolean {
+        val metadata = cacheMetadataDao.get(key) ?: return false
+        return (System.currentTimeMillis() - metadata.lastUpdated) < expiryTime
+    }
+
+    suspend fun markUpdated(key: String) {
+        val now = System.currentTimeMillis()
+        val existing = cacheMetadataDao.get(key)
+        cacheMetadataDao.upsert(existing?.copy(lastUpdated = now) ?: CacheMetadata(key, now))
+        setFreshness(key, CacheFreshness.FRESH)
+    }
+
+    /**
+     * Delta-sync high-water mark stored alongside the TTL timestamp;
+     * cleared by [invalidate], which forces the next sync to be a full one
+     */
+    suspend fun getSyncCursor(key: String): String? {
+        return cacheMetadataDao.get(key)?.syncCursor
+    }
+
+    suspend fun saveSyncCursor(key: String, cursor: String?) {
+        val existing = cacheMetadataDao.get(key)
+        cacheMetadataDao.upsert(
+            existing?.copy(syncCursor = cursor) ?: CacheMetadata(key, lastUpdated = 0L, syncCursor = cursor)
+        )
+    }
+
+    suspend fun invalidate(key: String) {
+        cacheMetadataDao.delete(key)
+        setFreshness(key, CacheFreshness.MISSING)
+    }
+
+    /**
+     * Load a cached domain according to [policy]
+     *
+     * @param readCache returns cached rows, or null/empty when nothing is cached
+     * @param fetch performs the network call and writes the result to Room
+     */
+    suspend fun <T> load(
+        key: String,
+        ttl: Long,
+        policy: CachePolicy,
+        readCache: suspend () -> T?,
+        fetch: suspend () -> Result<T>
+    ): Result<T> {
+        return when (policy) {
+            CachePolicy.NETWORK_FIRST -> fetchOrFallback(key, readCache, fetch)
+
+            CachePolicy.CACHE_FIRST -> {
+                val cached = readCache().takeUnlessEmpty()
+                if (cached != null && isCacheValid(key, ttl)) {
+                    setFreshness(key, CacheFreshness.FRESH)
+                    Result.success(cached)
+                } else {
+                    fetchOrFallback(key, readCache, fetch)
+                }
+            }
+
+            CachePolicy.STALE_WHILE_REVALIDATE -> {
+                val cached = readCache().takeUnlessEmpty()
+                    ?: return fetchOrFallback(key, readCache, fetch)
+                if (isCacheValid(key, ttl)) {
+                    setFreshness(key, CacheFreshness.FRESH)
+                } else {
+                    revalidate(key, fetch)
+                }
+                Result.success(cached)
+            }
+        }
+    }
+
+    private suspend fun <T> fetchOrFallback(
+        key: String,
+        readCache: suspend () -> T?,
+        fetch: suspend () -> Result<T>
+    ): Result<T> {
+        val result = fetch()
+        if (result.isSuccess) {
+            markUpdated(key)
+            return result
+        }
+        val cached = readCache().takeUnlessEmpty()
+        return if (cached != null) {
+            setFreshness(key, CacheFreshness.STALE)
+            Result.success(cached)
+        } else {
+            setFreshness(key, CacheFreshness.MISSING)
+            result
+        }
+    }
+
+    private fun <T> revalidate(key: String, fetch: suspend () -> Result<T>) {
+        if (!revalidating.add(key)) return
+        setFreshness(key, CacheFreshness.REVALIDATING)
+        scope.launch {
+            try {
+                fetch()
+                    .onSuccess { markUpdated(key) }
+                    .onFailure { e ->
+                        Timber.w(e, "Revalidation failed for $key")
+                        setFreshness(key, CacheFreshness.STALE)
+                    }
+            } finally {
+                revalidating.remove(key)
+            }
+        }
+    }
+
+    private fun setFreshness(key: String, value: CacheFreshness) {
+        _freshness.update { it + (key to value) }
+    }
+
+    private fun <T> T?.takeUnlessEmpty(): T? {
+        return if (this is Collection<*> && this.isEmpty()) null else this
+    }
+}
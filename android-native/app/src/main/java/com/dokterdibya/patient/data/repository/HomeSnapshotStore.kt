@@ -0,0 +1,105 @@
+package com.dokterdibya.patient.data.repository
+
+import android.content.Context
+import android.util.AtomicFile
+import com.dokterdibya.patient.data.api.Announcement
+import com.dokterdibya.patient.data.api.Article
+import com.dokterdibya.patient.data.api.BabySize
+import com.dokterdibya.patient.data.api.Medication
+import com.google.gson.Gson
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.io.File
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Last rendered home screen, as stored on disk
+ *
+ * Only what the first frame needs; article bodies are left out.
+ */
+data class HomeSnapshot(
+    val version: Int = HomeSnapshotStore.VERSION,
+    val savedAt: Long = System.currentTimeMillis(),
+    val patientName: String? = null,
+    val isPregnant: Boolean = false,
+    val pregnancyWeeks: Int = 0,
+    val pregnancyDays: Int = 0,
+    val pregnancyProgress: Float = 0f,
+    val dueDate: String? = null,
+    val trimester: Int = 0,
+    val babySize: BabySize? = null,
+    val pregnancyTip: String? = null,
+    val hasGivenBirth: Boolean = false,
+    val announcements: List<Announcement> = emptyList(),
+    val medications: List<Medication> = emptyList(),
+    val articles: List<Article> = emptyList(),
+    val totalArticleCount: Int = 0,
+    val unreadNotificationCount: Int = 0
+)
+
+/**
+ * Small JSON file holding the last [HomeSnapshot]
+ *
+ * [read] is synchronous so HomeViewModel can build its initial state from it
+ * and the home screen paints real content on the first frame; the file is a
+ * few KB, well below what a main-thread read costs to notice.
+ */
+@Singleton
+class HomeSnapshotStore @Inject constructor(
+    @ApplicationContext context: Context
+) {
+    companion object {
+        const val VERSION = 1
+        private const val FILE_NAME = "home_snapshot.json"
+        private const val MAX_ANNOUNCEMENTS = 10
+        private const val MAX_ARTICLES = 3
+    }
+
+    private val gson = Gson()
+    private val file = AtomicFile(File(context.filesDir, FILE_NAME))
+
+    fun read(): HomeSnapshot? {
+        return try {
+            val snapshot = gson.fromJson(String(file.readFully(), Charsets.UTF_8), HomeSnapshot::class.java)
+            // Gson skips Kotlin defaults, so also reject files missing list fields
+            snapshot?.takeIf {
+                it.version == VERSION &&
+                    it.announcements != null && it.medications != null && it.articles != null
+            }
+        } catch (e: java.io.FileNotFoundException) {
+            null
+        } catch (e: Exception) {
+            Timber.w(e, "Discarding unreadable home snapshot")
+            file.delete()
+            null
+        }
+    }
+
+    suspend fun write(snapshot: HomeSnapshot) = withContext(Dispatchers.IO) {
+        val compact = snapshot.copy(
+            announcements = snapshot.announcements.take(MAX_ANNOUNCEMENTS)
+                .map { it.copy(formatted_content = null) },
+            articles = snapshot.articles.take(MAX_ARTICLES).map { it.copy(content = null) }
+        )
+        val stream = try {
+            file.startWrite()
+        } catch (e: Exception) {
+            Timber.w(e, "Failed to open home snapshot")
+            return@withContext
+        }
+        try {
+            stream.write(gson.toJson(compact).toByteArray(Charsets.UTF_8))
+            file.finishWrite(stream)
+        } catch (e: Exception) {
+            file.failWrite(stream)
+            Timber.w(e, "Failed to write home snapshot")
+        }
+    }
+
+    suspend fun clear() = withContext(Dispatchers.IO) {
+        file.delete()
+    }
+}
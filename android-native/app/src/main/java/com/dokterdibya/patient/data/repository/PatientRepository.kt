@@ -1,5 +1,6 @@
 package com.dokterdibya.patient.data.repository
 
+import com.dokterdibya.patient.data.api.ApiCallExecutor
 import com.dokterdibya.patient.data.api.ApiService
 import com.dokterdibya.patient.data.model.AuthResponse
 import com.dokterdibya.patient.data.model.BookingRequest
@@ -7,6 +8,7 @@ import com.dokterdibya.patient.data.model.CreateCycleRequest
 import com.dokterdibya.patient.data.model.IntercourseRequest
 import com.dokterdibya.patient.data.model.GoogleAuthRequest
 import com.dokterdibya.patient.data.model.EmailLoginRequest
+import com.dokterdibya.patient.data.model.RefreshTokenRequest
 import com.dokterdibya.patient.data.model.Patient
 import com.dokterdibya.patient.data.model.Appointment
 import com.dokterdibya.patient.data.model.SundayDate
@@ -32,16 +34,34 @@ import com.dokterdibya.patient.data.model.MyIntakeResponse
 import com.dokterdibya.patient.data.model.ExistingIntake
 import com.dokterdibya.patient.data.local.*
 import com.dokterdibya.patient.data.api.NetworkException
+import com.dokterdibya.patient.data.api.isNotModified
+import com.dokterdibya.patient.data.socket.PatientNotification
+import com.dokterdibya.patient.data.sync.Outbox
+import com.dokterdibya.patient.data.sync.OutboxOperation
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.map
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.withContext
+import okhttp3.Cache
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
 import retrofit2.Response
 import okhttp3.MultipartBody
 import okhttp3.RequestBody.Companion.toRequestBody
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
 class PatientRepository @Inject constructor(
     private val apiService: ApiService,
+    private val callExecutor: ApiCallExecutor,
     private val tokenRepository: TokenRepository,
     private val articleDao: ArticleDao,
     private val notificationDao: NotificationDao,
@@ -50,9 +70,26 @@ class PatientRepository @Inject constructor(
     private val profileDao: ProfileDao,
     private val appointmentDao: AppointmentDao,
     private val visitHistoryDao: VisitHistoryDao,
-    private val announcementDao: AnnouncementDao
+    private val announcementDao: AnnouncementDao,
+    private val documentDao: DocumentDao,
+    private val cacheEngine: CacheEngine,
+    private val requestCoalescer: RequestCoalescer,
+    private val outbox: Outbox,
+    private val cacheBudgetManager: CacheBudgetManager,
+    private val homeSnapshotStore: HomeSnapshotStore,
+    private val httpCache: Cache
 ) {
 
+    companion object {
+        val USG_DOCUMENT_TYPES = listOf("usg_2d", "usg_4d", "patient_usg", "usg_photo")
+        val LAB_DOCUMENT_TYPES = listOf("lab_result", "patient_lab")
+        const val ARTICLE_BODY_PREFETCH_COUNT = 5
+
+        // Returned by writes that were queued in the outbox while offline
+        const val OUTBOX_QUEUED_MESSAGE = "Tidak ada koneksi. Data akan dikirim otomatis saat online."
+        const val OUTBOX_QUEUED_ACTION = "queued"
+    }
+
     // Cache expiry times
     private val articlesCacheExpiry = 24 * 60 * 60 * 1000L      // 24 hours
     private val notificationsCacheExpiry = 60 * 60 * 1000L     // 1 hour
@@ -61,14 +98,42 @@ class PatientRepository @Inject constructor(
     private val appointmentsCacheExpiry = 2 * 60 * 60 * 1000L   // 2 hours
     private val visitHistoryCacheExpiry = 24 * 60 * 60 * 1000L  // 24 hours
     private val announcementsCacheExpiry = 6 * 60 * 60 * 1000L  // 6 hours
+    private val documentsCacheExpiry = 6 * 60 * 60 * 1000L      // 6 hours
 
-    private suspend fun isCacheValid(key: String, expiryTime: Long): Boolean {
-        val metadata = cacheMetadataDao.get(key) ?: return false
-        return (System.currentTimeMillis() - metadata.lastUpdated) < expiryTime
+    // Read policy per cached domain (forceRefresh switches any of them to NETWORK_FIRST)
+    private val articlesCachePolicy = CachePolicy.STALE_WHILE_REVALIDATE
+    private val notificationsCachePolicy = CachePolicy.STALE_WHILE_REVALIDATE
+    private val medicationsCachePolicy = CachePolicy.STALE_WHILE_REVALIDATE
+    private val announcementsCachePolicy = CachePolicy.STALE_WHILE_REVALIDATE
+
+    /**
+     * Freshness of each cached domain, keyed by AppDatabase.CACHE_KEY_*
+     */
+    val cacheFreshness: StateFlow<Map<String, CacheFreshness>> = cacheEngine.freshness
+
+    private val refreshStats = ConcurrentHashMap<String, CacheReconciler.Stats>()
+
+    /**
+     * How many duplicate network calls the request coalescer has absorbed
+     */
+    fun getCoalescingStats(): RequestCoalescer.Stats = requestCoalescer.stats()
+
+    /**
+     * Rows written by the most recent refresh of each cached table
+     */
+    fun getRefreshStats(): Map<String, CacheReconciler.Stats> = refreshStats.toMap()
+
+    private fun recordRefresh(key: String, stats: CacheReconciler.Stats) {
+        refreshStats[key] = stats
+        android.util.Log.d(
+            "PatientRepo",
+            "Refreshed $key: ${stats.rowsWritten} rows written " +
+                "(+${stats.inserted} ~${stats.updated} -${stats.deleted}, ${stats.unchanged} unchanged)"
+        )
     }
 
     private suspend fun updateCacheTimestamp(key: String) {
-        cacheMetadataDao.upsert(CacheMetadata(key, System.currentTimeMillis()))
+        cacheEngine.markUpdated(key)
     }
 
     /**
@@ -84,6 +149,18 @@ class PatientRepository @Inject constructor(
         }
     }
 
+    /**
+     * Failure for a response without usable data: the typed NetworkException for
+     * HTTP errors, [fallback] when the server answered 2xx without a body
+     */
+    private fun httpFailure(response: Response<*>, fallback: String): Result<Nothing> {
+        return if (!response.isSuccessful) {
+            Result.failure(NetworkException.fromHttpCode(response.code(), response.errorBody()?.string()))
+        } else {
+            Result.failure(Exception(fallback))
+        }
+    }
+
     /**
      * Wrap an API call with proper exception handling
      * Converts network exceptions to appropriate NetworkException types
@@ -102,11 +179,11 @@ class PatientRepository @Inject constructor(
 
     suspend fun emailLogin(email: String, password: String): Result<AuthResponse> {
         return try {
-            val response = apiService.emailLogin(EmailLoginRequest(email = email, password = password))
+            val response = callExecutor.write { apiService.emailLogin(EmailLoginRequest(email = email, password = password)) }
             if (response.isSuccessful && response.body() != null) {
                 val authResponse = response.body()!!
                 if (authResponse.success && authResponse.token != null) {
-                    tokenRepository.saveToken(authResponse.token)
+                    tokenRepository.saveTokens(authResponse.token, authResponse.refreshToken)
                     authResponse.patientData?.let { patient ->
                         tokenRepository.saveUserInfo(patient.name, patient.email ?: "")
                     }
@@ -128,11 +205,11 @@ class PatientRepository @Inject constructor(
 
     suspend fun googleLogin(authCode: String): Result<AuthResponse> {
         return try {
-            val response = apiService.googleAuth(GoogleAuthRequest(code = authCode))
+            val response = callExecutor.write { apiService.googleAuth(GoogleAuthRequest(code = authCode)) }
             if (response.isSuccessful && response.body() != null) {
                 val authResponse = response.body()!!
                 if (authResponse.success && authResponse.token != null) {
-                    tokenRepository.saveToken(authResponse.token)
+                    tokenRepository.saveTokens(authResponse.token, authResponse.refreshToken)
                     // Use patientData helper to get user from either 'user' or 'patient' field
                     authResponse.patientData?.let { patient ->
                         tokenRepository.saveUserInfo(patient.name, patient.email ?: "")
@@ -143,29 +220,31 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception(response.message() ?: "Login failed"))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun getProfile(): Result<Patient> {
         return try {
-            val response = apiService.getPatientProfile()
+            val response = callExecutor.read { apiService.getPatientProfile() }
             // Response uses 'user' field, not 'patient'
             if (response.isSuccessful && response.body()?.user != null) {
                 Result.success(response.body()!!.user!!)
             } else {
-                Result.failure(Exception("Failed to get profile"))
+                httpFailure(response, "Failed to get profile")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun completeProfile(fullname: String, phone: String, birthDate: String, registrationCode: String? = null): Result<Patient> {
         return try {
-            val response = apiService.completeProfile(
-                CompleteProfileRequest(fullname, phone, birthDate, registrationCode)
-            )
+            val response = callExecutor.write {
+                apiService.completeProfile(
+                    CompleteProfileRequest(fullname, phone, birthDate, registrationCode)
+                )
+            }
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
                 if (body.success && body.user != null) {
@@ -185,7 +264,7 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception(errorMsg))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -207,25 +286,27 @@ class PatientRepository @Inject constructor(
         registrationCode: String
     ): Result<Patient> {
         return try {
-            val response = apiService.completeProfileFull(
-                CompleteProfileFullRequest(
-                    fullname = fullname,
-                    phone = phone,
-                    birthDate = birthDate,
-                    age = age,
-                    nik = nik,
-                    emergencyContact = emergencyContact,
-                    address = address,
-                    maritalStatus = maritalStatus,
-                    husbandName = husbandName,
-                    husbandAge = husbandAge,
-                    husbandJob = husbandJob,
-                    occupation = occupation,
-                    education = education,
-                    insurance = insurance,
-                    registrationCode = registrationCode
+            val response = callExecutor.write {
+                apiService.completeProfileFull(
+                    CompleteProfileFullRequest(
+                        fullname = fullname,
+                        phone = phone,
+                        birthDate = birthDate,
+                        age = age,
+                        nik = nik,
+                        emergencyContact = emergencyContact,
+                        address = address,
+                        maritalStatus = maritalStatus,
+                        husbandName = husbandName,
+                        husbandAge = husbandAge,
+                        husbandJob = husbandJob,
+                        occupation = occupation,
+                        education = education,
+                        insurance = insurance,
+                        registrationCode = registrationCode
+                    )
                 )
-            )
+            }
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
                 if (body.success && body.user != null) {
@@ -244,12 +325,22 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception(errorMsg))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun logout() {
+        // Revoke the refresh token server-side; a failure only leaves it to expire
+        tokenRepository.getCachedRefreshToken()?.let { refreshToken ->
+            try {
+                callExecutor.write { apiService.logout(RefreshTokenRequest(refreshToken)) }
+            } catch (e: Exception) {
+                android.util.Log.d("PatientRepo", "Logout revoke failed: ${e.message}")
+            }
+        }
         tokenRepository.clearAll()
+        // Queued writes belong to the signed-out patient
+        outbox.clear()
         // Clear all cached data
         clearAllCache()
     }
@@ -258,20 +349,31 @@ class PatientRepository @Inject constructor(
      * Clear all cached data from Room database
      */
     suspend fun clearAllCache() {
+        // First, so a download still in flight cannot write back what is deleted below
+        requestCoalescer.clear()
         articleDao.deleteAll()
+        articleDao.clearRemoteKeys()
+        articleDao.deleteAllBodies()
         notificationDao.deleteAll()
         medicationDao.deleteAll()
         profileDao.deleteAll()
         appointmentDao.deleteAll()
         visitHistoryDao.deleteAll()
         announcementDao.deleteAll()
-        cacheMetadataDao.delete("articles")
-        cacheMetadataDao.delete("notifications")
-        cacheMetadataDao.delete("medications")
-        cacheMetadataDao.delete("profile")
-        cacheMetadataDao.delete("appointments")
-        cacheMetadataDao.delete("visit_history")
-        cacheMetadataDao.delete("announcements")
+        documentDao.deleteAll()
+        cacheBudgetManager.clearAccessTimes()
+        homeSnapshotStore.clear()
+        // Stored responses and their validators belong to the signed-out patient
+        withContext(Dispatchers.IO) { httpCache.evictAll() }
+        cacheEngine.invalidate("articles")
+        cacheEngine.invalidate(AppDatabase.CACHE_KEY_ARTICLES_PAGED)
+        cacheEngine.invalidate("notifications")
+        cacheEngine.invalidate("medications")
+        cacheEngine.invalidate("profile")
+        cacheEngine.invalidate("appointments")
+        cacheEngine.invalidate("visit_history")
+        cacheEngine.invalidate("announcements")
+        cacheEngine.invalidate("documents")
     }
 
     /**
@@ -279,13 +381,15 @@ class PatientRepository @Inject constructor(
      */
     suspend fun updateProfile(name: String, phone: String, birthDate: String): Result<Patient> {
         return try {
-            val response = apiService.updateProfile(
-                com.dokterdibya.patient.data.model.UpdateProfileRequest(
-                    fullName = name,
-                    phone = phone,
-                    birthDate = birthDate
+            val response = callExecutor.write {
+                apiService.updateProfile(
+                    com.dokterdibya.patient.data.model.UpdateProfileRequest(
+                        fullName = name,
+                        phone = phone,
+                        birthDate = birthDate
+                    )
                 )
-            )
+            }
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
                 if (body.success && body.user != null) {
@@ -305,7 +409,7 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception(errorMsg))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -317,8 +421,9 @@ class PatientRepository @Inject constructor(
      * On 409 (duplicate), returns response with shouldUpdate=true
      */
     suspend fun submitPatientIntake(request: PatientIntakeRequest): Result<PatientIntakeResponse> {
+        val idempotencyKey = outbox.newIdempotencyKey()
         return try {
-            val response = apiService.submitPatientIntake(request)
+            val response = callExecutor.write(idempotent = true) { apiService.submitPatientIntake(request, idempotencyKey) }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!)
             } else if (response.code() == 409) {
@@ -353,8 +458,12 @@ class PatientRepository @Inject constructor(
                 }
                 Result.failure(Exception(errorMsg))
             }
+        } catch (e: IOException) {
+            // Never reached the server; the outbox resolves a later 409 by updating
+            outbox.enqueue(OutboxOperation.SUBMIT_PATIENT_INTAKE, request, idempotencyKey)
+            Result.success(PatientIntakeResponse(success = true, status = OUTBOX_QUEUED_ACTION, message = OUTBOX_QUEUED_MESSAGE))
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -363,7 +472,7 @@ class PatientRepository @Inject constructor(
      */
     suspend fun getMyIntake(): Result<ExistingIntake?> {
         return try {
-            val response = apiService.getMyIntake()
+            val response = callExecutor.read { apiService.getMyIntake() }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.data)
             } else if (response.code() == 404) {
@@ -373,7 +482,7 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception("Gagal mengambil data formulir"))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -382,7 +491,7 @@ class PatientRepository @Inject constructor(
      */
     suspend fun updatePatientIntake(request: PatientIntakeRequest): Result<PatientIntakeResponse> {
         return try {
-            val response = apiService.updateMyIntake(request)
+            val response = callExecutor.write { apiService.updateMyIntake(request) }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!)
             } else {
@@ -396,7 +505,7 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception(errorMsg))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -404,40 +513,40 @@ class PatientRepository @Inject constructor(
 
     suspend fun getAppointments(): Result<List<Appointment>> {
         return try {
-            val response = apiService.getPatientAppointments()
+            val response = callExecutor.read { apiService.getPatientAppointments() }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.appointments)
             } else {
-                Result.failure(Exception("Failed to get appointments"))
+                httpFailure(response, "Failed to get appointments")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun getAvailableSundays(): Result<List<SundayDate>> {
         return try {
-            val response = apiService.getAvailableSundays()
+            val response = callExecutor.read { apiService.getAvailableSundays() }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.sundays)
             } else {
-                Result.failure(Exception("Failed to get available dates"))
+                httpFailure(response, "Failed to get available dates")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun getSlotsForDate(date: String): Result<SlotsForDateResponse> {
         return try {
-            val response = apiService.getAvailableSlots(date)
+            val response = callExecutor.read { apiService.getAvailableSlots(date) }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!)
             } else {
-                Result.failure(Exception("Failed to get available slots"))
+                httpFailure(response, "Failed to get available slots")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -448,16 +557,16 @@ class PatientRepository @Inject constructor(
         chiefComplaint: String,
         category: String = "obstetri"
     ): Result<String> {
+        val request = BookingRequest(
+            appointmentDate = date,
+            session = session,
+            slotNumber = slotNumber,
+            chiefComplaint = chiefComplaint,
+            consultationCategory = category
+        )
+        val idempotencyKey = outbox.newIdempotencyKey()
         return try {
-            val response = apiService.bookAppointment(
-                BookingRequest(
-                    appointmentDate = date,
-                    session = session,
-                    slotNumber = slotNumber,
-                    chiefComplaint = chiefComplaint,
-                    consultationCategory = category
-                )
-            )
+            val response = callExecutor.write(idempotent = true) { apiService.bookAppointment(request, idempotencyKey) }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.message ?: "Booking berhasil")
             } else {
@@ -469,14 +578,19 @@ class PatientRepository @Inject constructor(
                 }
                 Result.failure(Exception(errorMsg))
             }
+        } catch (e: IOException) {
+            outbox.enqueue(OutboxOperation.BOOK_APPOINTMENT, request, idempotencyKey)
+            Result.success(OUTBOX_QUEUED_MESSAGE)
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun cancelAppointment(appointmentId: Int, reason: String): Result<String> {
+        val request = CancelRequest(reason)
+        val idempotencyKey = outbox.newIdempotencyKey()
         return try {
-            val response = apiService.cancelAppointment(appointmentId, CancelRequest(reason))
+            val response = callExecutor.write(idempotent = true) { apiService.cancelAppointment(appointmentId, request, idempotencyKey) }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.message ?: "Janji temu berhasil dibatalkan")
             } else {
@@ -488,61 +602,94 @@ class PatientRepository @Inject constructor(
                 }
                 Result.failure(Exception(errorMsg))
             }
+        } catch (e: IOException) {
+            outbox.enqueue(OutboxOperation.CANCEL_APPOINTMENT, request, idempotencyKey, targetId = appointmentId)
+            Result.success(OUTBOX_QUEUED_MESSAGE)
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     // ==================== Medical Records ====================
 
     suspend fun getDocuments(type: String? = null): Result<List<PatientDocument>> {
-        return try {
-            val response = apiService.getDocuments(type)
-            if (response.isSuccessful && response.body() != null) {
-                Result.success(response.body()!!.documents)
-            } else {
-                Result.failure(Exception("Failed to get documents"))
+        if (type != null) {
+            return getDocumentsByTypes(listOf(type))
+        }
+        return cacheEngine.load(
+            key = AppDatabase.CACHE_KEY_DOCUMENTS,
+            ttl = documentsCacheExpiry,
+            policy = CachePolicy.NETWORK_FIRST,
+            readCache = { documentDao.getAllDocumentsOnce().map { it.toDocument() } },
+            fetch = { fetchDocuments() }
+        )
+    }
+
+    /**
+     * Refresh the documents table from the server; observers of the
+     * observe*Documents() flows pick up the change from Room
+     */
+    suspend fun refreshDocuments(): Result<List<PatientDocument>> = getDocuments()
+
+    private suspend fun fetchDocuments(): Result<List<PatientDocument>> {
+        // USG, lab and records screens all read the same list; share one download
+        return requestCoalescer.execute("documents:all") {
+            try {
+                val response = callExecutor.read { apiService.getDocuments(null) }
+                if (response.isSuccessful && response.body() != null) {
+                    val documents = response.body()!!.documents
+                    requestCoalescer.ifCurrent {
+                        documentDao.reconcile(documents.map { DocumentEntity.fromDocument(it) })
+                    }?.let { stats -> recordRefresh("documents", stats) }
+                    Result.success(documents)
+                } else {
+                    httpFailure(response, "Failed to get documents")
+                }
+            } catch (e: Exception) {
+                Result.failure(NetworkException.from(e))
             }
-        } catch (e: Exception) {
-            Result.failure(e)
         }
     }
 
+    private suspend fun getDocumentsByTypes(types: List<String>): Result<List<PatientDocument>> {
+        return getDocuments().map { documents ->
+            documents.filter { it.documentType in types }
+        }
+    }
+
+    fun observeDocuments(): Flow<List<PatientDocument>> {
+        return documentDao.getAllDocuments().map { list -> list.map { it.toDocument() } }
+    }
+
+    fun observeUsgDocuments(): Flow<List<PatientDocument>> {
+        return documentDao.getDocumentsByTypes(USG_DOCUMENT_TYPES).map { list -> list.map { it.toDocument() } }
+    }
+
+    fun observeLabDocuments(): Flow<List<PatientDocument>> {
+        return documentDao.getDocumentsByTypes(LAB_DOCUMENT_TYPES).map { list -> list.map { it.toDocument() } }
+    }
+
     suspend fun getDocumentContent(id: Int): Result<DocumentContent> {
         return try {
-            val response = apiService.getDocumentContent(id)
+            val response = callExecutor.read { apiService.getDocumentContent(id) }
             if (response.isSuccessful && response.body()?.document != null) {
                 Result.success(response.body()!!.document!!)
             } else {
                 Result.failure(Exception("Dokumen tidak ditemukan"))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     // Get USG documents (filter by usg types)
-    suspend fun getUsgDocuments(): Result<List<PatientDocument>> {
-        return try {
-            val response = apiService.getDocuments(null)
-            if (response.isSuccessful && response.body() != null) {
-                val usgDocs = response.body()!!.documents.filter {
-                    it.documentType in listOf("usg_2d", "usg_4d", "patient_usg", "usg_photo")
-                }
-                Result.success(usgDocs)
-            } else {
-                Result.failure(Exception("Failed to get USG documents"))
-            }
-        } catch (e: Exception) {
-            Result.failure(e)
-        }
-    }
+    suspend fun getUsgDocuments(): Result<List<PatientDocument>> = getDocumentsByTypes(USG_DOCUMENT_TYPES)
 
     // ==================== Fertility Calendar ====================
 
     suspend fun getFertilityCyclesData(): Result<FertilityCycleResponse> {
         return try {
-            val response = apiService.getFertilityCycles()
+            val response = callExecutor.read { apiService.getFertilityCycles() }
             android.util.Log.d("PatientRepo", "getFertilityCycles response: ${response.isSuccessful}, body: ${response.body()}")
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
@@ -550,7 +697,7 @@ class PatientRepository @Inject constructor(
                 Result.success(body)
             } else {
                 android.util.Log.e("PatientRepo", "Failed: ${response.errorBody()?.string()}")
-                Result.failure(Exception("Failed to get fertility cycles"))
+                httpFailure(response, "Failed to get fertility cycles")
             }
         } catch (e: Exception) {
             android.util.Log.e("PatientRepo", "Exception: ${e.message}", e)
@@ -560,20 +707,20 @@ class PatientRepository @Inject constructor(
 
     suspend fun getFertilityCycles(): Result<List<FertilityCycle>> {
         return try {
-            val response = apiService.getFertilityCycles()
+            val response = callExecutor.read { apiService.getFertilityCycles() }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.cycles ?: emptyList())
             } else {
-                Result.failure(Exception("Failed to get fertility cycles"))
+                httpFailure(response, "Failed to get fertility cycles")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun getFertilityPrediction(month: Int, year: Int): Result<FertilityPrediction> {
         return try {
-            val response = apiService.getFertilityPredictions(3)
+            val response = callExecutor.read { apiService.getFertilityPredictions(3) }
             if (response.isSuccessful && response.body() != null) {
                 val predictions = response.body()!!.predictions
                 if (!predictions.isNullOrEmpty()) {
@@ -582,23 +729,23 @@ class PatientRepository @Inject constructor(
                     Result.failure(Exception("No predictions available"))
                 }
             } else {
-                Result.failure(Exception("Failed to get fertility prediction"))
+                httpFailure(response, "Failed to get fertility prediction")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun getCalendarData(year: Int, month: Int): Result<CalendarDataResponse> {
         return try {
-            val response = apiService.getCalendarData(year, month)
+            val response = callExecutor.read { apiService.getCalendarData(year, month) }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!)
             } else {
-                Result.failure(Exception("Failed to get calendar data"))
+                httpFailure(response, "Failed to get calendar data")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -610,78 +757,114 @@ class PatientRepository @Inject constructor(
         symptoms: List<String>?,
         notes: String?
     ): Result<Boolean> {
+        val request = CreateCycleRequest(
+            periodStartDate = periodStartDate,
+            periodEndDate = periodEndDate,
+            flowIntensity = flowIntensity,
+            painIntensity = painIntensity,
+            symptoms = symptoms,
+            notes = notes
+        )
+        val idempotencyKey = outbox.newIdempotencyKey()
         return try {
-            val response = apiService.createFertilityCycle(
-                CreateCycleRequest(
-                    periodStartDate = periodStartDate,
-                    periodEndDate = periodEndDate,
-                    flowIntensity = flowIntensity,
-                    painIntensity = painIntensity,
-                    symptoms = symptoms,
-                    notes = notes
-                )
-            )
+            val response = callExecutor.write(idempotent = true) { apiService.createFertilityCycle(request, idempotencyKey) }
             if (response.isSuccessful && response.body()?.success == true) {
                 Result.success(true)
             } else {
                 Result.failure(Exception("Gagal menyimpan data siklus"))
             }
+        } catch (e: IOException) {
+            outbox.enqueue(OutboxOperation.CREATE_FERTILITY_CYCLE, request, idempotencyKey)
+            Result.success(true)
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun deleteFertilityCycle(id: Int): Result<Boolean> {
         return try {
-            val response = apiService.deleteFertilityCycle(id)
+            val response = callExecutor.write(idempotent = true) { apiService.deleteFertilityCycle(id) }
             if (response.isSuccessful && response.body()?.success == true) {
                 Result.success(true)
             } else {
                 Result.failure(Exception("Gagal menghapus data siklus"))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     suspend fun toggleIntercourse(date: String): Result<String> {
+        val request = IntercourseRequest(date)
+        val idempotencyKey = outbox.newIdempotencyKey()
         return try {
-            val response = apiService.toggleIntercourse(IntercourseRequest(date))
+            val response = callExecutor.write(idempotent = true) { apiService.toggleIntercourse(request, idempotencyKey) }
             if (response.isSuccessful && response.body()?.success == true) {
                 Result.success(response.body()?.action ?: "added")
             } else {
                 Result.failure(Exception("Gagal menyimpan data"))
             }
+        } catch (e: IOException) {
+            outbox.enqueue(OutboxOperation.TOGGLE_INTERCOURSE, request, idempotencyKey)
+            Result.success(OUTBOX_QUEUED_ACTION)
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     // ==================== Articles ====================
 
-    suspend fun getArticles(category: String? = null, limit: Int = 20, offset: Int = 0): Result<List<com.dokterdibya.patient.data.api.Article>> {
+    suspend fun getArticles(
+        category: String? = null,
+        limit: Int = 20,
+        offset: Int = 0,
+        forceRefresh: Boolean = false
+    ): Result<List<com.dokterdibya.patient.data.api.Article>> {
+        // Only the unfiltered first page is cached
+        if (category != null || offset != 0) {
+            return fetchArticles(category, limit, offset)
+        }
+        return cacheEngine.load(
+            key = AppDatabase.CACHE_KEY_ARTICLES,
+            ttl = articlesCacheExpiry,
+            policy = if (forceRefresh) CachePolicy.NETWORK_FIRST else articlesCachePolicy,
+            readCache = { articleDao.getAllArticlesOnce().take(limit).map { it.toArticle() } },
+            fetch = { fetchFirstArticlePage(limit) }
+        )
+    }
+
+    /**
+     * First page for the cache; a 304 means the rows in Room are still current
+     */
+    private suspend fun fetchFirstArticlePage(limit: Int): Result<List<com.dokterdibya.patient.data.api.Article>> {
         return try {
-            val response = apiService.getArticles(category, limit, offset)
+            val response = callExecutor.read { apiService.getArticles(null, limit, 0) }
             if (response.isSuccessful && response.body() != null) {
-                val articles = response.body()!!.data ?: emptyList()
-                // Cache articles (only first page when no category filter)
-                if (category == null && offset == 0) {
-                    articleDao.insertAll(articles.map { ArticleEntity.fromArticle(it) })
-                    updateCacheTimestamp("articles")
+                val cached = articleDao.getAllArticlesOnce().take(limit).map { it.toArticle() }
+                if (response.isNotModified() && cached.isNotEmpty()) {
+                    return Result.success(cached)
                 }
+                val articles = response.body()!!.data ?: emptyList()
+                articleDao.insertAll(articles.map { ArticleEntity.fromArticle(it) })
                 Result.success(articles)
             } else {
-                Result.failure(Exception("Failed to get articles"))
+                httpFailure(response, "Failed to get articles")
             }
         } catch (e: Exception) {
-            // Return cached data on network error (only for first page)
-            if (offset == 0) {
-                val cached = articleDao.getAllArticlesOnce()
-                if (cached.isNotEmpty()) {
-                    return Result.success(cached.map { it.toArticle() })
-                }
+            Result.failure(NetworkException.from(e))
+        }
+    }
+
+    private suspend fun fetchArticles(category: String?, limit: Int, offset: Int): Result<List<com.dokterdibya.patient.data.api.Article>> {
+        return try {
+            val response = callExecutor.read { apiService.getArticles(category, limit, offset) }
+            if (response.isSuccessful && response.body() != null) {
+                Result.success(response.body()!!.data ?: emptyList())
+            } else {
+                httpFailure(response, "Failed to get articles")
             }
-            Result.failure(e)
+        } catch (e: Exception) {
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -692,16 +875,110 @@ class PatientRepository @Inject constructor(
         return articleDao.getAllArticlesOnce().map { it.toArticle() }
     }
 
+    /**
+     * Observe cached articles; refreshArticles() only writes to Room
+     */
+    fun observeArticles(): Flow<List<com.dokterdibya.patient.data.api.Article>> {
+        return articleDao.getAllArticles().map { list -> list.map { it.toArticle() } }
+    }
+
+    suspend fun refreshArticles(forceRefresh: Boolean = false): Result<Unit> {
+        return getArticles(forceRefresh = forceRefresh).map { }
+    }
+
+    /**
+     * Ruang Membaca list backed by Room; pages are fetched by [ArticleRemoteMediator]
+     * as the user scrolls and survive process death
+     */
+    @OptIn(ExperimentalPagingApi::class)
+    fun getArticlesPaged(pageSize: Int): Flow<PagingData<com.dokterdibya.patient.data.api.Article>> {
+        return Pager(
+            config = PagingConfig(
+                pageSize = pageSize,
+                prefetchDistance = pageSize / 3,
+                initialLoadSize = pageSize * 2,
+                enablePlaceholders = true
+            ),
+            remoteMediator = ArticleRemoteMediator(apiService, callExecutor, articleDao, cacheEngine),
+            pagingSourceFactory = { articleDao.pagingSource() }
+        ).flow.map { pagingData -> pagingData.map { it.toArticle() } }
+    }
+
+    /**
+     * Article with body; a previously fetched or prefetched body is served from
+     * Room, otherwise it is downloaded once and stored in the body table.
+     * Opens served from Room are counted through the outbox, since the
+     * server only counts full fetches.
+     */
     suspend fun getArticleDetail(id: Int): Result<com.dokterdibya.patient.data.api.Article> {
-        return try {
-            val response = apiService.getArticleDetail(id)
-            if (response.isSuccessful && response.body()?.article != null) {
-                Result.success(response.body()!!.article!!)
-            } else {
-                Result.failure(Exception("Artikel tidak ditemukan"))
-            }
+        cacheBudgetManager.recordAccess(AppDatabase.CACHE_KEY_ARTICLES, listOf(id))
+        val summary = articleDao.getArticleById(id)
+        val body = articleDao.getBody(id)
+        if (summary != null && body != null &&
+            System.currentTimeMillis() - body.fetchedAt < articlesCacheExpiry
+        ) {
+            recordArticleView(id)
+            return Result.success(summary.toArticle(body.content))
+        }
+        val fetched = fetchArticleDetail(id, prefetch = false)
+        if (fetched.isFailure && summary != null && body != null) {
+            // Offline: fall back to an expired body if we have one
+            recordArticleView(id)
+            return Result.success(summary.toArticle(body.content))
+        }
+        return fetched
+    }
+
+    private suspend fun recordArticleView(id: Int) {
+        try {
+            outbox.enqueue(OutboxOperation.RECORD_ARTICLE_VIEW, emptyMap<String, String>(), outbox.newIdempotencyKey(), targetId = id)
         } catch (e: Exception) {
-            Result.failure(e)
+            // A lost view count must not keep the article from opening
+            android.util.Log.d("PatientRepo", "Article view not queued: ${e.message}")
+        }
+    }
+
+    /**
+     * Download bodies for the newest cached articles that don't have one yet,
+     * so opening them from Home or Ruang Membaca needs no network round trip
+     */
+    suspend fun prefetchArticleBodies(count: Int = ARTICLE_BODY_PREFETCH_COUNT) {
+        val ids = articleDao.getIdsWithoutBody(count)
+        if (ids.isEmpty()) return
+        var fetched = 0
+        for (id in ids) {
+            // Stop at the first failure; the next refresh will try again
+            if (fetchArticleDetail(id, prefetch = true).isFailure) break
+            fetched++
+        }
+        android.util.Log.d("PatientRepo", "Prefetched $fetched/${ids.size} article bodies")
+    }
+
+    private suspend fun fetchArticleDetail(id: Int, prefetch: Boolean): Result<com.dokterdibya.patient.data.api.Article> {
+        // Separate keys: an open that joined a prefetch=1 call would never be counted as a view
+        val key = if (prefetch) "article-prefetch:$id" else "article:$id"
+        return requestCoalescer.execute(key) {
+            try {
+                val response = callExecutor.read { apiService.getArticleDetail(id, prefetch = if (prefetch) 1 else null) }
+                val article = response.body()?.article
+                if (response.isSuccessful && article != null) {
+                    // Opened from a deep link before the list was cached; otherwise leave
+                    // the list row alone so the paged list isn't invalidated
+                    requestCoalescer.ifCurrent {
+                        if (articleDao.getArticleById(id) == null) {
+                            articleDao.insert(ArticleEntity.fromArticle(article))
+                        }
+                        if (!article.content.isNullOrEmpty()) {
+                            articleDao.insertBody(ArticleBodyEntity(article.id, article.content))
+                        }
+                    }
+                    Result.success(article)
+                } else {
+                    Result.failure(Exception("Artikel tidak ditemukan"))
+                }
+            } catch (e: Exception) {
+                Result.failure(NetworkException.from(e))
+            }
         }
     }
 
@@ -710,7 +987,7 @@ class PatientRepository @Inject constructor(
     suspend fun getPracticeSchedules(location: String): Result<List<com.dokterdibya.patient.data.api.PracticeSchedule>> {
         return try {
             android.util.Log.d("PatientRepo", "Getting practice schedules for location: $location")
-            val response = apiService.getPracticeSchedules(location)
+            val response = callExecutor.read { apiService.getPracticeSchedules(location) }
             android.util.Log.d("PatientRepo", "Practice schedules response: ${response.isSuccessful}, code: ${response.code()}")
             if (response.isSuccessful && response.body() != null) {
                 val schedules = response.body()!!.schedules
@@ -719,7 +996,7 @@ class PatientRepository @Inject constructor(
             } else {
                 val errorBody = response.errorBody()?.string()
                 android.util.Log.e("PatientRepo", "Failed to get schedules: $errorBody")
-                Result.failure(Exception("Failed to get practice schedules"))
+                httpFailure(response, "Failed to get practice schedules")
             }
         } catch (e: Exception) {
             android.util.Log.e("PatientRepo", "Exception getting schedules: ${e.message}", e)
@@ -731,12 +1008,11 @@ class PatientRepository @Inject constructor(
 
     suspend fun getVisitHistory(): Result<List<com.dokterdibya.patient.data.api.Billing>> {
         return try {
-            val response = apiService.getMyBillings()
+            val response = callExecutor.read { apiService.getMyBillings() }
             if (response.isSuccessful && response.body() != null) {
                 val visits = response.body()!!.data
                 // Cache visit history
-                visitHistoryDao.deleteAll()
-                visitHistoryDao.insertAll(visits.map { billing ->
+                val stats = visitHistoryDao.reconcile(visits.map { billing ->
                     VisitHistoryEntity(
                         id = billing.id,
                         billingNumber = billing.billing_number,
@@ -749,10 +1025,11 @@ class PatientRepository @Inject constructor(
                         notes = billing.notes
                     )
                 })
+                recordRefresh("visit_history", stats)
                 updateCacheTimestamp("visit_history")
                 Result.success(visits)
             } else {
-                Result.failure(Exception("Failed to get visit history"))
+                httpFailure(response, "Failed to get visit history")
             }
         } catch (e: Exception) {
             // Return cached data on network error
@@ -810,40 +1087,78 @@ class PatientRepository @Inject constructor(
 
     suspend fun getVisitDetails(billingId: Int): Result<com.dokterdibya.patient.data.api.BillingDetail> {
         return try {
-            val response = apiService.getBillingDetails(billingId)
+            val response = callExecutor.read { apiService.getBillingDetails(billingId) }
             if (response.isSuccessful && response.body()?.data != null) {
                 Result.success(response.body()!!.data!!)
             } else {
-                Result.failure(Exception("Failed to get visit details"))
+                httpFailure(response, "Failed to get visit details")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     // ==================== Announcements ====================
 
-    suspend fun getActiveAnnouncements(patientId: String? = null): Result<List<Announcement>> {
+    suspend fun getActiveAnnouncements(patientId: String? = null, forceRefresh: Boolean = false): Result<List<Announcement>> {
+        return cacheEngine.load(
+            key = AppDatabase.CACHE_KEY_ANNOUNCEMENTS,
+            ttl = announcementsCacheExpiry,
+            policy = if (forceRefresh) CachePolicy.NETWORK_FIRST else announcementsCachePolicy,
+            readCache = { getCachedAnnouncements() },
+            fetch = { fetchActiveAnnouncements(patientId) }
+        )
+    }
+
+    /**
+     * Full download on first sync; afterwards only announcements updated since
+     * the stored cursor, with active_ids used to drop deactivated ones
+     */
+    private suspend fun fetchActiveAnnouncements(patientId: String?): Result<List<Announcement>> {
         return try {
-            val response = apiService.getActiveAnnouncements(patientId)
+            val cursor = cacheEngine.getSyncCursor(AppDatabase.CACHE_KEY_ANNOUNCEMENTS)
+            val response = callExecutor.read { apiService.getActiveAnnouncements(patientId, since = cursor) }
             if (response.isSuccessful && response.body() != null) {
-                val announcements = response.body()!!.data
-                // Cache announcements
-                announcementDao.deleteAll()
-                announcementDao.insertAll(announcements.map { AnnouncementEntity.fromAnnouncement(it) })
-                updateCacheTimestamp("announcements")
-                Result.success(announcements)
+                if (response.isNotModified()) {
+                    val cached = getCachedAnnouncements()
+                    if (cached.isNotEmpty()) {
+                        recordRefresh("announcements", CacheReconciler.Stats(0, 0, 0, cached.size))
+                        return Result.success(cached)
+                    }
+                }
+                val body = response.body()!!
+                val activeIds = body.active_ids
+                if (body.delta && activeIds != null) {
+                    // An older announcement can move into the active set without changing;
+                    // if we don't have it locally, fall back to a full download
+                    val known = announcementDao.getAllIds().toSet() + body.data.map { it.id }
+                    if (!known.containsAll(activeIds)) {
+                        cacheEngine.saveSyncCursor(AppDatabase.CACHE_KEY_ANNOUNCEMENTS, null)
+                        return fetchActiveAnnouncements(patientId)
+                    }
+                    val stats = announcementDao.applyDelta(
+                        body.data.map { AnnouncementEntity.fromAnnouncement(it) },
+                        activeIds
+                    )
+                    recordRefresh("announcements", stats)
+                    // Keeping the cursor when nothing changed keeps the URL stable,
+                    // so the next sync can be answered with a 304
+                    if (body.data.isNotEmpty()) {
+                        cacheEngine.saveSyncCursor(AppDatabase.CACHE_KEY_ANNOUNCEMENTS, body.sync_cursor)
+                    }
+                    Result.success(getCachedAnnouncements())
+                } else {
+                    // Cache announcements
+                    val stats = announcementDao.reconcile(body.data.map { AnnouncementEntity.fromAnnouncement(it) })
+                    recordRefresh("announcements", stats)
+                    cacheEngine.saveSyncCursor(AppDatabase.CACHE_KEY_ANNOUNCEMENTS, body.sync_cursor)
+                    Result.success(body.data)
+                }
             } else {
-                Result.failure(Exception("Failed to get announcements"))
+                httpFailure(response, "Failed to get announcements")
             }
         } catch (e: Exception) {
-            // Return cached data on network error
-            val cached = announcementDao.getAllAnnouncementsOnce()
-            if (cached.isNotEmpty()) {
-                Result.success(cached.map { it.toAnnouncement() })
-            } else {
-                Result.failure(e)
-            }
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -854,43 +1169,76 @@ class PatientRepository @Inject constructor(
         return announcementDao.getAllAnnouncementsOnce().map { it.toAnnouncement() }
     }
 
+    /**
+     * Observe cached announcements; refreshAnnouncements() and like toggles only write to Room
+     */
+    fun observeAnnouncements(): Flow<List<Announcement>> {
+        return announcementDao.getAllAnnouncements().map { list -> list.map { it.toAnnouncement() } }
+    }
+
+    suspend fun refreshAnnouncements(patientId: String? = null, forceRefresh: Boolean = false): Result<Unit> {
+        return getActiveAnnouncements(patientId, forceRefresh).map { }
+    }
+
     suspend fun toggleAnnouncementLike(announcementId: Int, patientId: String): Result<Pair<Boolean, Int>> {
+        cacheBudgetManager.recordAccess(AppDatabase.CACHE_KEY_ANNOUNCEMENTS, listOf(announcementId))
+        val request = LikeRequest(patientId)
+        val idempotencyKey = outbox.newIdempotencyKey()
         return try {
-            val response = apiService.toggleAnnouncementLike(announcementId, LikeRequest(patientId))
+            val response = callExecutor.write(idempotent = true) { apiService.toggleAnnouncementLike(announcementId, request, idempotencyKey) }
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
+                announcementDao.updateLike(announcementId, body.liked, body.like_count)
                 Result.success(Pair(body.liked, body.like_count))
             } else {
-                Result.failure(Exception("Failed to toggle like"))
+                httpFailure(response, "Failed to toggle like")
             }
+        } catch (e: IOException) {
+            // Flip the cached like now; the outbox settles the count once it is sent
+            val cached = announcementDao.getAllAnnouncementsOnce().firstOrNull { it.id == announcementId }
+            val liked = !(cached?.likedByMe ?: false)
+            val count = ((cached?.likeCount ?: 0) + if (liked) 1 else -1).coerceAtLeast(0)
+            announcementDao.updateLike(announcementId, liked, count)
+            outbox.enqueue(OutboxOperation.TOGGLE_ANNOUNCEMENT_LIKE, request, idempotencyKey, targetId = announcementId)
+            Result.success(Pair(liked, count))
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     // ==================== Medications ====================
 
-    suspend fun getMedications(): Result<List<Medication>> {
+    suspend fun getMedications(forceRefresh: Boolean = false): Result<List<Medication>> {
+        return cacheEngine.load(
+            key = AppDatabase.CACHE_KEY_MEDICATIONS,
+            ttl = medicationsCacheExpiry,
+            policy = if (forceRefresh) CachePolicy.NETWORK_FIRST else medicationsCachePolicy,
+            readCache = { getCachedMedications() },
+            fetch = { fetchMedications() }
+        )
+    }
+
+    private suspend fun fetchMedications(): Result<List<Medication>> {
         return try {
-            val response = apiService.getMedications()
+            val response = callExecutor.read { apiService.getMedications() }
             if (response.isSuccessful && response.body() != null) {
+                if (response.isNotModified()) {
+                    val cached = getCachedMedications()
+                    if (cached.isNotEmpty()) {
+                        recordRefresh("medications", CacheReconciler.Stats(0, 0, 0, cached.size))
+                        return Result.success(cached)
+                    }
+                }
                 val medications = response.body()!!.data
                 // Cache medications
-                medicationDao.deleteAll()
-                medicationDao.insertAll(medications.map { MedicationEntity.fromMedication(it) })
-                updateCacheTimestamp("medications")
+                val stats = medicationDao.reconcile(medications.map { MedicationEntity.fromMedication(it) })
+                recordRefresh("medications", stats)
                 Result.success(medications)
             } else {
-                Result.failure(Exception("Failed to get medications"))
+                httpFailure(response, "Failed to get medications")
             }
         } catch (e: Exception) {
-            // Return cached data on network error
-            val cached = medicationDao.getAllMedicationsOnce()
-            if (cached.isNotEmpty()) {
-                Result.success(cached.map { it.toMedication() })
-            } else {
-                Result.failure(e)
-            }
+            Result.failure(NetworkException.from(e))
         }
     }
 
@@ -901,44 +1249,41 @@ class PatientRepository @Inject constructor(
         return medicationDao.getAllMedicationsOnce().map { it.toMedication() }
     }
 
+    /**
+     * Observe cached medications; refreshMedications() only writes to Room
+     */
+    fun observeMedications(): Flow<List<Medication>> {
+        return medicationDao.getAllMedications().map { list -> list.map { it.toMedication() } }
+    }
+
+    suspend fun refreshMedications(forceRefresh: Boolean = false): Result<Unit> {
+        return getMedications(forceRefresh).map { }
+    }
+
     // ==================== Pregnancy Data ====================
 
     suspend fun getPregnancyData(): Result<PregnancyData> {
         return try {
-            val response = apiService.getPregnancyData()
+            val response = callExecutor.read { apiService.getPregnancyData() }
             if (response.isSuccessful && response.body()?.data != null) {
                 Result.success(response.body()!!.data!!)
             } else {
-                Result.failure(Exception("Failed to get pregnancy data"))
+                httpFailure(response, "Failed to get pregnancy data")
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
         }
     }
 
     // ==================== Lab Results ====================
 
-    suspend fun getLabDocuments(): Result<List<PatientDocument>> {
-        return try {
-            val response = apiService.getDocuments(null)
-            if (response.isSuccessful && response.body() != null) {
-                val labDocs = response.body()!!.documents.filter {
-                    it.documentType in listOf("lab_result", "patient_lab")
-                }
-                Result.success(labDocs)
-            } else {
-                Result.failure(Exception("Failed to get lab documents"))
-            }
-        } catch (e: Exception) {
-            Result.failure(e)
-        }
-    }
+    suspend fun getLabDocuments(): Result<List<PatientDocument>> = getDocumentsByTypes(LAB_DOCUMENT_TYPES)
 
     // ==================== Notifications ====================
 
     suspend fun getUnreadNotificationCount(): Result<Int> {
         return try {
-            val response = apiService.getUnreadNotificationCount()
+            val response = callExecutor.read { apiService.getUnreadNotificationCount() }
             if (response.isSuccessful && response.body() != null) {
                 Result.success(response.body()!!.count)
             } else {
@@ -949,28 +1294,78 @@ class PatientRepository @Inject constructor(
         }
     }
 
-    suspend fun getNotifications(): Result<List<com.dokterdibya.patient.data.api.PatientNotificationItem>> {
+    suspend fun getNotifications(forceRefresh: Boolean = false): Result<List<com.dokterdibya.patient.data.api.PatientNotificationItem>> {
+        return cacheEngine.load(
+            key = AppDatabase.CACHE_KEY_NOTIFICATIONS,
+            ttl = notificationsCacheExpiry,
+            policy = if (forceRefresh) CachePolicy.NETWORK_FIRST else notificationsCachePolicy,
+            readCache = { getCachedNotifications() },
+            fetch = { fetchNotifications() }
+        )
+    }
+
+    /**
+     * Full download on first sync; afterwards only notifications created after
+     * the stored high-water id, plus ids read since the stored timestamp
+     */
+    private suspend fun fetchNotifications(): Result<List<com.dokterdibya.patient.data.api.PatientNotificationItem>> {
+        val cursor = cacheEngine.getSyncCursor(AppDatabase.CACHE_KEY_NOTIFICATIONS)
+            ?.split('|', limit = 2)
+            ?.takeIf { it.size == 2 }
+            ?.let { (maxId, syncedAt) -> maxId.toIntOrNull()?.let { it to syncedAt } }
         return try {
-            val response = apiService.getNotifications()
-            if (response.isSuccessful && response.body() != null) {
-                val notifications = response.body()!!.notifications
-                // Cache notifications
-                notificationDao.deleteAll()
-                notificationDao.insertAll(notifications.map { NotificationEntity.fromNotification(it) })
-                updateCacheTimestamp("notifications")
-                Result.success(notifications)
-            } else {
-                Result.success(emptyList())
-            }
+            if (cursor == null) fetchAllNotifications() else syncNotificationsSince(cursor.first, cursor.second)
         } catch (e: Exception) {
-            // Return cached data on network error
-            val cached = notificationDao.getAllNotificationsOnce()
-            if (cached.isNotEmpty()) {
-                Result.success(cached.map { it.toNotification() })
-            } else {
-                Result.failure(e)
-            }
+            Result.failure(NetworkException.from(e))
+        }
+    }
+
+    private suspend fun fetchAllNotifications(): Result<List<com.dokterdibya.patient.data.api.PatientNotificationItem>> {
+        val response = callExecutor.read { apiService.getNotifications() }
+        if (!response.isSuccessful || response.body() == null) {
+            return httpFailure(response, "Failed to get notifications")
         }
+        val body = response.body()!!
+        // Cache notifications
+        val stats = notificationDao.reconcile(body.notifications.map { NotificationEntity.fromNotification(it) })
+        recordRefresh("notifications", stats)
+        saveNotificationCursor(body.sync_cursor)
+        return Result.success(body.notifications)
+    }
+
+    private suspend fun syncNotificationsSince(
+        maxId: Int,
+        syncedAt: String
+    ): Result<List<com.dokterdibya.patient.data.api.PatientNotificationItem>> {
+        var sinceId = maxId
+        var since = syncedAt
+        var inserted = 0
+        var read = 0
+        do {
+            val response = callExecutor.read { apiService.getNotifications(sinceId = sinceId, since = since) }
+            if (!response.isSuccessful || response.body() == null) {
+                return httpFailure(response, "Failed to get notifications")
+            }
+            val body = response.body()!!
+            val stats = notificationDao.applyDelta(
+                body.notifications.map { NotificationEntity.fromNotification(it) },
+                body.read_ids.orEmpty()
+            )
+            inserted += stats.inserted
+            read += stats.updated
+            body.sync_cursor?.let {
+                sinceId = it.max_id
+                since = it.synced_at
+            }
+            saveNotificationCursor(body.sync_cursor)
+        } while (body.has_more && body.sync_cursor != null)
+        recordRefresh("notifications", CacheReconciler.Stats(inserted, read, 0, 0))
+        return Result.success(getCachedNotifications())
+    }
+
+    private suspend fun saveNotificationCursor(cursor: com.dokterdibya.patient.data.api.NotificationSyncCursor?) {
+        cursor ?: return
+        cacheEngine.saveSyncCursor(AppDatabase.CACHE_KEY_NOTIFICATIONS, "${cursor.max_id}|${cursor.synced_at}")
     }
 
     /**
@@ -980,6 +1375,38 @@ class PatientRepository @Inject constructor(
         return notificationDao.getAllNotificationsOnce().map { it.toNotification() }
     }
 
+    /**
+     * Observe cached notifications; refreshNotifications() only writes to Room
+     */
+    fun observeNotifications(): Flow<List<com.dokterdibya.patient.data.api.PatientNotificationItem>> {
+        return notificationDao.getAllNotifications().map { list -> list.map { it.toNotification() } }
+    }
+
+    suspend fun refreshNotifications(forceRefresh: Boolean = false): Result<Unit> {
+        return getNotifications(forceRefresh).map { }
+    }
+
+    /**
+     * Insert a notification pushed over the socket into the cache
+     */
+    suspend fun cacheIncomingNotification(notification: PatientNotification) {
+        notificationDao.insertAll(
+            listOf(
+                NotificationEntity(
+                    id = notification.id,
+                    patientId = notification.patientId,
+                    type = notification.type,
+                    title = notification.title,
+                    message = notification.message,
+                    icon = notification.icon,
+                    iconColor = notification.iconColor,
+                    isRead = 0,
+                    createdAt = notification.createdAt
+                )
+            )
+        )
+    }
+
     // ==================== Profile Photo ====================
 
     suspend fun uploadProfilePhoto(imageBytes: ByteArray, fileName: String): Result<String> {
@@ -987,7 +1414,7 @@ class PatientRepository @Inject constructor(
             // Server expects specific MIME type (jpeg/png/webp), not image/*
             val requestBody = imageBytes.toRequestBody("image/jpeg".toMediaTypeOrNull())
             val part = MultipartBody.Part.createFormData("photo", fileName, requestBody)
-            val response = apiService.uploadProfilePhoto(part)
+            val response = callExecutor.write { apiService.uploadProfilePhoto(part) }
             if (response.isSuccessful && response.body()?.success == true) {
                 val photoUrl = response.body()?.photo_url ?: ""
                 Result.success(photoUrl)
@@ -995,7 +1422,44 @@ class PatientRepository @Inject constructor(
                 Result.failure(Exception(response.body()?.message ?: "Upload gagal"))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            Result.failure(NetworkException.from(e))
+        }
+    }
+
+    // ==================== Background Sync ====================
+
+    /**
+     * Fetch one cached domain (AppDatabase.CACHE_KEY_*) straight into Room for
+     * PeriodicSyncWorker. Unlike the get* methods a network failure is reported
+     * instead of being answered from the cache.
+     */
+    suspend fun syncDomain(key: String): Result<Unit> {
+        val result: Result<*> = when (key) {
+            AppDatabase.CACHE_KEY_PROFILE -> syncProfile()
+            AppDatabase.CACHE_KEY_APPOINTMENTS -> syncAppointments()
+            AppDatabase.CACHE_KEY_MEDICATIONS -> fetchMedications()
+            AppDatabase.CACHE_KEY_ANNOUNCEMENTS -> fetchActiveAnnouncements(profileDao.getProfile()?.id)
+            AppDatabase.CACHE_KEY_NOTIFICATIONS -> fetchNotifications()
+            AppDatabase.CACHE_KEY_DOCUMENTS -> fetchDocuments()
+            else -> Result.failure(IllegalArgumentException("Unknown sync domain: $key"))
+        }
+        if (result.isSuccess) {
+            updateCacheTimestamp(key)
+        }
+        return result.map { }
+    }
+
+    private suspend fun syncProfile(): Result<Unit> {
+        return getProfile().mapCatching { patient ->
+            val id = patient.id ?: throw IllegalStateException("Profile without id")
+            recordRefresh(AppDatabase.CACHE_KEY_PROFILE, profileDao.replace(ProfileEntity.fromPatient(patient, id)))
+        }
+    }
+
+    private suspend fun syncAppointments(): Result<Unit> {
+        return getAppointments().mapCatching { appointments ->
+            val stats = appointmentDao.reconcile(appointments.map { AppointmentEntity.fromAppointment(it) })
+            recordRefresh(AppDatabase.CACHE_KEY_APPOINTMENTS, stats)
         }
     }
 
@@ -1007,7 +1471,7 @@ class PatientRepository @Inject constructor(
     suspend fun isRegistrationCodeRequired(): Result<Boolean> {
         return try {
             android.util.Log.d("PatientRepo", "Checking if registration code is required...")
-            val response = apiService.getRegistrationCodeSettings()
+            val response = callExecutor.read { apiService.getRegistrationCodeSettings() }
             android.util.Log.d("PatientRepo", "Settings response: ${response.isSuccessful}, body: ${response.body()}")
             if (response.isSuccessful && response.body() != null) {
                 val required = response.body()!!.registrationCodeRequired
@@ -1031,7 +1495,7 @@ class PatientRepository @Inject constructor(
      */
     suspend fun validateRegistrationCode(code: String): Result<Boolean> {
         return try {
-            val response = apiService.validateRegistrationCode(ValidateCodeRequest(code))
+            val response = callExecutor.write { apiService.validateRegistrationCode(ValidateCodeRequest(code)) }
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
                 if (body.success) {
@@ -0,0 +1,155 @@
+package com.dokterdibya.patient.data.repository
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.CoroutineContext
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Single-flight deduplication for repository reads
+ *
+ * Concurrent callers with the same key share one in-flight [Deferred], and a
+ * successful result is memoised for a short window so screens opened within
+ * seconds of each other don't download the same list again.
+ *
+ * [clear] starts a new generation: calls still in flight are cancelled, their
+ * results are dropped, and their Room writes, if made through [ifCurrent],
+ * are skipped. A download started before logout cannot write the previous
+ * patient's data back.
+ */
+@Singleton
+class RequestCoalescer @Inject constructor() {
+
+    companion object {
+        const val DEFAULT_MEMO_TTL = 10 * 1000L // 10 seconds
+    }
+
+    data class Stats(
+        val networkCalls: Int,
+        val coalescedCalls: Int,
+        val memoHits: Int
+    ) {
+        val savedCalls: Int get() = coalescedCalls + memoHits
+    }
+
+    private data class Memo(val result: Result<*>, val storedAt: Long)
+
+    // Generation a shared call was started in, for ifCurrent
+    private class Generation(val value: Long) : AbstractCoroutineContextElement(Key) {
+        companion object Key : CoroutineContext.Key<Generation>
+    }
+
+    // Runs the shared call so one caller being cancelled doesn't cancel the others
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    private val mutex = Mutex()
+    private val inFlight = HashMap<String, Deferred<Result<*>>>()
+    private val memo = HashMap<String, Memo>()
+
+    // Held while a guarded write runs and while clear() moves to a new generation
+    private val writeLock = Mutex()
+    @Volatile
+    private var generation = 0L
+
+    private val networkCalls = AtomicInteger()
+    private val coalescedCalls = AtomicInteger()
+    private val memoHits = AtomicInteger()
+
+    @Suppress("UNCHECKED_CAST")
+    suspend fun <T> execute(
+        key: String,
+        memoTtl: Long = DEFAULT_MEMO_TTL,
+        block: suspend () -> Result<T>
+    ): Result<T> {
+        val deferred = mutex.withLock {
+            memo[key]?.let { cached ->
+                if (System.currentTimeMillis() - cached.storedAt < memoTtl) {
+                    memoHits.incrementAndGet()
+                    return cached.result as Result<T>
+                }
+                memo.remove(key)
+            }
+
+            inFlight[key]?.let { existing ->
+                coalescedCalls.incrementAndGet()
+                existing
+            } ?: run {
+                val started = generation
+                scope.async(Generation(started)) {
+                    networkCalls.incrementAndGet()
+                    val result: Result<*> = try {
+                        block()
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        Result.failure<T>(e)
+                    }
+                    mutex.withLock {
+                        // After a clear() the entry and memo belong to the new generation
+                        if (started == generation) {
+                            inFlight.remove(key)
+                            if (result.isSuccess) {
+                                memo[key] = Memo(result, System.currentTimeMillis())
+                            }
+                        }
+                    }
+                    if (started == generation) result else Result.failure<T>(CancellationException("Cleared"))
+                }.also { inFlight[key] = it }
+            }
+        }
+        return try {
+            deferred.await() as Result<T>
+        } catch (e: CancellationException) {
+            // Rethrow if this caller was cancelled; otherwise the shared call was cleared
+            currentCoroutineContext().ensureActive()
+            Result.failure(e)
+        }
+    }
+
+    /**
+     * Run [write] unless [clear] was called since the enclosing shared call
+     * started; null when skipped. Outside [execute] it always runs.
+     */
+    suspend fun <R> ifCurrent(write: suspend () -> R): R? {
+        val started = currentCoroutineContext()[Generation]?.value ?: return write()
+        return writeLock.withLock {
+            if (started == generation) write() else null
+        }
+    }
+
+    /**
+     * Drop the memoised result for [key], e.g. after a write that changes it
+     */
+    suspend fun invalidate(key: String) {
+        mutex.withLock { memo.remove(key) }
+    }
+
+    /**
+     * Forget everything, e.g. at logout. Waits for a guarded write in progress,
+     * so once this returns no earlier call can write again.
+     */
+    suspend fun clear() {
+        writeLock.withLock { generation++ }
+        mutex.withLock {
+            inFlight.values.forEach { it.cancel() }
+            inFlight.clear()
+            memo.clear()
+        }
+    }
+
+    fun stats(): Stats = Stats(
+        networkCalls = networkCalls.get(),
+        coalescedCalls = coalescedCalls.get(),
+        memoHits = memoHits.get()
+    )
+}
@@ -0,0 +1,137 @@
+package com.dokterdibya.patient.data.repository
+
+import com.dokterdibya.patient.data.local.FtsHit
+import com.dokterdibya.patient.data.local.SearchDao
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import javax.inject.Inject
+import javax.inject.Singleton
+
+enum class SearchResultType {
+    ARTICLE,
+    NOTIFICATION,
+    ANNOUNCEMENT,
+    MEDICATION,
+    VISIT
+}
+
+/**
+ * One ranked search result; [snippet] marks matched terms with
+ * [SearchRepository.HIGHLIGHT_START] / [SearchRepository.HIGHLIGHT_END]
+ */
+data class SearchResult(
+    val type: SearchResultType,
+    val id: Int,
+    val title: String,
+    val snippet: String,
+    val date: String?,
+    val score: Double
+)
+
+/**
+ * Offline full-text search over cached patient data
+ *
+ * Reads only the FTS4 tables that Room keeps in sync with the cache, so a
+ * search never touches the network.
+ */
+@Singleton
+class SearchRepository @Inject constructor(
+    private val searchDao: SearchDao
+) {
+    companion object {
+        const val HIGHLIGHT_START = "<b>"
+        const val HIGHLIGHT_END = "</b>"
+
+        private const val MIN_TOKEN_LENGTH = 2
+
+        // Per-column weights, in FTS column order
+        private val TITLE_AND_TEXT_WEIGHTS = doubleArrayOf(3.0, 1.0)
+        private val SINGLE_COLUMN_WEIGHTS = doubleArrayOf(1.0)
+    }
+
+    /**
+     * Search all cached domains; results are ranked across types
+     *
+     * Every match is scored before [limit] applies, so the best hits are never
+     * dropped by a per-table cap. The cache budget keeps the match sets small.
+     */
+    suspend fun search(query: String, limit: Int = 30): List<SearchResult> {
+        val match = toMatchExpression(query) ?: return emptyList()
+
+        return coroutineScope {
+            val articles = async { searchDao.searchArticles(match) }
+            val bodies = async { searchDao.searchArticleBodies(match) }
+            val notifications = async { searchDao.searchNotifications(match) }
+            val announcements = async { searchDao.searchAnnouncements(match) }
+            val medications = async { searchDao.searchMedications(match) }
+            val visits = async { searchDao.searchVisitHistory(match) }
+
+            // An article can match on its list row and its body; keep the better hit
+            val articleResults = (
+                articles.await().map { it.toResult(SearchResultType.ARTICLE, TITLE_AND_TEXT_WEIGHTS, "Artikel") } +
+                    bodies.await().map { it.toResult(SearchResultType.ARTICLE, SINGLE_COLUMN_WEIGHTS, "Artikel") }
+                )
+                .groupBy { it.id }
+                .map { (_, hits) -> hits.maxBy { it.score } }
+
+            (
+                articleResults +
+                    notifications.await().map { it.toResult(SearchResultType.NOTIFICATION, TITLE_AND_TEXT_WEIGHTS, "Notifikasi") } +
+                    announcements.await().map { it.toResult(SearchResultType.ANNOUNCEMENT, TITLE_AND_TEXT_WEIGHTS, "Pengumuman") } +
+                    medications.await().map { it.toResult(SearchResultType.MEDICATION, SINGLE_COLUMN_WEIGHTS, "Terapi") } +
+                    visits.await().map { it.toResult(SearchResultType.VISIT, SINGLE_COLUMN_WEIGHTS, "Kunjungan") }
+                )
+                .sortedByDescending { it.score }
+                .take(limit)
+        }
+    }
+
+    /**
+     * Turn free text into an FTS4 MATCH expression: every word must match as a
+     * prefix. Words are lowercased so they can't be read as AND/OR/NOT operators.
+     */
+    private fun toMatchExpression(query: String): String? {
+        val tokens = query.lowercase()
+            .split(Regex("[^\\p{L}\\p{N}]+"))
+            .filter { it.length >= MIN_TOKEN_LENGTH }
+        if (tokens.isEmpty()) return null
+        return tokens.joinToString(" ") { "$it*" }
+    }
+
+    private fun FtsHit.toResult(type: SearchResultType, weights: DoubleArray, fallbackTitle: String): SearchResult {
+        return SearchResult(
+            type = type,
+            id = id,
+            title = title ?: fallbackTitle,
+            snippet = snippet.orEmpty(),
+            date = date,
+            score = rank(matchInfo, weights)
+        )
+    }
+
+    /**
+     * Weighted term-frequency rank from `matchinfo(..., 'pcx')`, as in the
+     * SQLite FTS4 documentation: for each phrase and column, hits in this row
+     * divided by hits in all rows, times the column weight
+     */
+    private fun rank(matchInfo: ByteArray, weights: DoubleArray): Double {
+        val ints = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer()
+        if (ints.limit() < 2) return 0.0
+        val phraseCount = ints.get(0)
+        val columnCount = ints.get(1)
+        var score = 0.0
+        for (phrase in 0 until phraseCount) {
+            for (column in 0 until columnCount) {
+                val base = 2 + 3 * (phrase * columnCount + column)
+                val hitsInRow = ints.get(base)
+                val hitsInAllRows = ints.get(base + 1)
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    score += weights.getOrElse(column) { 1.0 } * hitsInRow / hitsInAllRows
+                }
+            }
+        }
+        return score
+    }
+}
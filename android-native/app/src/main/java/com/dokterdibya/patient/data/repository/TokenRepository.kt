@@ -11,6 +11,7 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 import javax.inject.Inject
@@ -24,6 +25,7 @@ class TokenRepository @Inject constructor(
 ) {
     companion object {
         private val TOKEN_KEY = stringPreferencesKey("jwt_token")
+        private val REFRESH_TOKEN_KEY = stringPreferencesKey("refresh_token")
         private val USER_EMAIL_KEY = stringPreferencesKey("user_email")
         private val USER_NAME_KEY = stringPreferencesKey("user_name")
         private val REGISTRATION_CODE_KEY = stringPreferencesKey("registration_code")
@@ -33,14 +35,19 @@ class TokenRepository @Inject constructor(
     @Volatile
     private var cachedToken: String? = null
 
+    @Volatile
+    private var cachedRefreshToken: String? = null
+
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
 
     init {
-        // Initialize cached token from DataStore
+        // Initialize cached tokens from DataStore once. Every write below
+        // updates the cache itself; re-reading later emissions could put back
+        // a refresh token that was already rotated.
         scope.launch {
-            context.dataStore.data.collect { preferences ->
-                cachedToken = preferences[TOKEN_KEY]
-            }
+            val preferences = context.dataStore.data.first()
+            if (cachedToken == null) cachedToken = preferences[TOKEN_KEY]
+            if (cachedRefreshToken == null) cachedRefreshToken = preferences[REFRESH_TOKEN_KEY]
         }
     }
 
@@ -50,6 +57,11 @@ class TokenRepository @Inject constructor(
      */
     fun getCachedToken(): String? = cachedToken
 
+    /**
+     * Get cached refresh token synchronously (for use in SessionRefresher)
+     */
+    fun getCachedRefreshToken(): String? = cachedRefreshToken
+
     fun getToken(): Flow<String?> {
         return context.dataStore.data.map { preferences ->
             preferences[TOKEN_KEY]
@@ -63,6 +75,53 @@ class TokenRepository @Inject constructor(
         }
     }
 
+    /**
+     * Save the token pair returned by login. Sessions from before refresh
+     * tokens existed keep working until their access token expires.
+     */
+    suspend fun saveTokens(token: String, refreshToken: String?) {
+        cachedToken = token
+        cachedRefreshToken = refreshToken
+        context.dataStore.edit { preferences ->
+            preferences[TOKEN_KEY] = token
+            if (refreshToken != null) {
+                preferences[REFRESH_TOKEN_KEY] = refreshToken
+            } else {
+                preferences.remove(REFRESH_TOKEN_KEY)
+            }
+        }
+    }
+
+    /**
+     * Store a rotated token pair from an OkHttp thread. The cache is updated
+     * before returning so the replayed request sees it; DataStore is written
+     * in the background.
+     */
+    fun updateTokens(token: String, refreshToken: String) {
+        cachedToken = token
+        cachedRefreshToken = refreshToken
+        scope.launch {
+            context.dataStore.edit { preferences ->
+                preferences[TOKEN_KEY] = token
+                preferences[REFRESH_TOKEN_KEY] = refreshToken
+            }
+        }
+    }
+
+    /**
+     * Drop the session after the server rejected the refresh token
+     */
+    fun invalidateSession() {
+        cachedToken = null
+        cachedRefreshToken = null
+        scope.launch {
+            context.dataStore.edit { preferences ->
+                preferences.remove(TOKEN_KEY)
+                preferences.remove(REFRESH_TOKEN_KEY)
+            }
+        }
+    }
+
     suspend fun saveUserInfo(name: String, email: String) {
         context.dataStore.edit { preferences ->
             preferences[USER_NAME_KEY] = name
@@ -84,6 +143,7 @@ class TokenRepository @Inject constructor(
 
     suspend fun clearAll() {
         cachedToken = null // Clear cache immediately
+        cachedRefreshToken = null
         context.dataStore.edit { preferences ->
             preferences.clear()
         }
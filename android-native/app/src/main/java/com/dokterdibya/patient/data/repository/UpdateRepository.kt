@@ -2,6 +2,7 @@ package com.dokterdibya.patient.data.repository
 
 import android.content.Context
 import android.content.pm.PackageManager
+import com.dokterdibya.patient.data.api.ApiCallExecutor
 import com.dokterdibya.patient.data.api.ApiService
 import com.dokterdibya.patient.data.model.AppVersion
 import dagger.hilt.android.qualifiers.ApplicationContext
@@ -11,6 +12,7 @@ import javax.inject.Singleton
 @Singleton
 class UpdateRepository @Inject constructor(
     private val apiService: ApiService,
+    private val callExecutor: ApiCallExecutor,
     @ApplicationContext private val context: Context
 ) {
     fun getCurrentVersionCode(): Int {
@@ -38,7 +40,7 @@ class UpdateRepository @Inject constructor(
 
     suspend fun checkForUpdate(): Result<AppVersion?> {
         return try {
-            val response = apiService.checkAppVersion()
+            val response = callExecutor.read { apiService.checkAppVersion() }
             if (response.isSuccessful && response.body()?.version != null) {
                 val latestVersion = response.body()!!.version!!
                 val currentVersionCode = getCurrentVersionCode()
@@ -4,6 +4,7 @@ import android.content.Context
 import android.util.Log
 import androidx.datastore.preferences.core.edit
 import androidx.datastore.preferences.core.stringPreferencesKey
+import com.dokterdibya.patient.data.api.ApiCallExecutor
 import com.dokterdibya.patient.data.api.ApiService
 import com.dokterdibya.patient.data.dataStore
 import com.google.firebase.messaging.FirebaseMessaging
@@ -16,7 +17,8 @@ import javax.inject.Singleton
 @Singleton
 class FCMTokenManager @Inject constructor(
     @ApplicationContext private val context: Context,
-    private val apiService: ApiService
+    private val apiService: ApiService,
+    private val callExecutor: ApiCallExecutor
 ) {
     companion object {
         private const val TAG = "FCMTokenManager"
@@ -49,7 +51,7 @@ class FCMTokenManager @Inject constructor(
     suspend fun sendTokenToServer(token: String) {
         try {
             Log.d(TAG, "Sending FCM token to server...")
-            val response = apiService.registerFcmToken(mapOf("fcm_token" to token))
+            val response = callExecutor.write(idempotent = true) { apiService.registerFcmToken(mapOf("fcm_token" to token)) }
 
             if (response.isSuccessful) {
                 Log.d(TAG, "FCM token registered successfully")
@@ -73,7 +75,7 @@ class FCMTokenManager @Inject constructor(
             // Unregister from server
             val token = getSavedToken()
             if (token != null) {
-                apiService.unregisterFcmToken(mapOf("fcm_token" to token))
+                callExecutor.write(idempotent = true) { apiService.unregisterFcmToken(mapOf("fcm_token" to token)) }
             }
 
             // Clear local storage
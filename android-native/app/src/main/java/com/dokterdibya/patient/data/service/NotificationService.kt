@@ -8,6 +8,7 @@ import android.util.Log
 import androidx.core.app.NotificationCompat
 import com.dokterdibya.patient.DokterDibyaApp
 import com.dokterdibya.patient.R
+import com.dokterdibya.patient.data.repository.PatientRepository
 import com.dokterdibya.patient.data.socket.SocketManager
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.CoroutineScope
@@ -44,6 +45,9 @@ class NotificationService : Service() {
     @Inject
     lateinit var notificationHelper: NotificationHelper
 
+    @Inject
+    lateinit var patientRepository: PatientRepository
+
     private val serviceScope = CoroutineScope(SupervisorJob() + Dispatchers.Main)
     private var isStarted = false
 
@@ -96,6 +100,8 @@ class NotificationService : Service() {
             .onEach { notification ->
                 Log.d(TAG, "Received notification: ${notification.title}")
                 notificationHelper.showPatientNotification(notification)
+                // Write to Room so open screens observing the cache update in place
+                patientRepository.cacheIncomingNotification(notification)
             }
             .launchIn(serviceScope)
 
@@ -0,0 +1,53 @@
+package com.dokterdibya.patient.data.sync
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import com.dokterdibya.patient.data.repository.CacheBudgetManager
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
+
+/**
+ * Daily cache housekeeping, run only while the device is idle and not low on battery
+ */
+@HiltWorker
+class CacheMaintenanceWorker @AssistedInject constructor(
+    @Assisted context: Context,
+    @Assisted params: WorkerParameters,
+    private val cacheBudgetManager: CacheBudgetManager
+) : CoroutineWorker(context, params) {
+
+    companion object {
+        private const val WORK_NAME = "cache_maintenance"
+
+        fun schedule(context: Context) {
+            val request = PeriodicWorkRequestBuilder<CacheMaintenanceWorker>(1, TimeUnit.DAYS)
+                .setConstraints(
+                    Constraints.Builder()
+                        .setRequiresDeviceIdle(true)
+                        .setRequiresBatteryNotLow(true)
+                        .build()
+                )
+                .build()
+            WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request)
+        }
+    }
+
+    override suspend fun doWork(): Result {
+        return try {
+            cacheBudgetManager.enforceBudget()
+            Result.success()
+        } catch (e: Exception) {
+            Timber.e(e, "Cache maintenance failed")
+            Result.retry()
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.dokterdibya.patient.data.sync
+
+import android.content.Context
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import com.dokterdibya.patient.data.api.ApiService
+import com.dokterdibya.patient.data.api.CancelRequest
+import com.dokterdibya.patient.data.api.LikeRequest
+import com.dokterdibya.patient.data.local.AnnouncementDao
+import com.dokterdibya.patient.data.local.OutboxDao
+import com.dokterdibya.patient.data.local.OutboxEntity
+import com.dokterdibya.patient.data.model.BookingRequest
+import com.dokterdibya.patient.data.model.CreateCycleRequest
+import com.dokterdibya.patient.data.model.IntercourseRequest
+import com.dokterdibya.patient.data.model.PatientIntakeRequest
+import com.google.gson.Gson
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.flow.Flow
+import retrofit2.Response
+import timber.log.Timber
+import java.io.IOException
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.math.min
+import kotlin.random.Random
+
+/**
+ * Patient writes that can be queued while offline
+ */
+enum class OutboxOperation {
+    BOOK_APPOINTMENT,
+    CANCEL_APPOINTMENT,
+    TOGGLE_INTERCOURSE,
+    CREATE_FERTILITY_CYCLE,
+    TOGGLE_ANNOUNCEMENT_LIKE,
+    SUBMIT_PATIENT_INTAKE,
+    RECORD_ARTICLE_VIEW
+}
+
+/**
+ * Durable queue for patient writes
+ *
+ * PatientRepository tries each write online first with a fresh idempotency key;
+ * if the request never reached the server it is stored here with the same key and
+ * replayed by [OutboxWorker] once a network is available. The backend replays the
+ * original response for a repeated key, so a write is never applied twice.
+ */
+@Singleton
+class Outbox @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val outboxDao: OutboxDao,
+    private val apiService: ApiService,
+    private val announcementDao: AnnouncementDao
+) {
+    companion object {
+        private const val WORK_NAME = "outbox_drain"
+        private const val BASE_BACKOFF_MS = 30 * 1000L          // 30 seconds
+        private const val MAX_BACKOFF_MS = 60 * 60 * 1000L      // 1 hour
+        private const val MAX_ATTEMPTS = 12
+    }
+
+    private val gson = Gson()
+
+    val pendingCount: Flow<Int> = outboxDao.observePendingCount()
+
+    /**
+     * Writes the server rejected (409 conflict or other 4xx) for the UI to surface
+     */
+    val rejected: Flow<List<OutboxEntity>> = outboxDao.observeRejected()
+
+    fun newIdempotencyKey(): String = UUID.randomUUID().toString()
+
+    suspend fun enqueue(
+        operation: OutboxOperation,
+        payload: Any,
+        idempotencyKey: String,
+        targetId: Int? = null
+    ) {
+        outboxDao.insert(
+            OutboxEntity(
+                operation = operation.name,
+                targetId = targetId,
+                payload = gson.toJson(payload),
+                idempotencyKey = idempotencyKey
+            )
+        )
+        Timber.d("Queued %s for replay (%s)", operation, idempotencyKey)
+        schedule(0L, ExistingWorkPolicy.KEEP)
+    }
+
+    suspend fun dismiss(entryId: Long) {
+        outboxDao.delete(entryId)
+    }
+
+    suspend fun clear() {
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME)
+        outboxDao.deleteAll()
+    }
+
+    /**
+     * Send every due entry once; returns true when entries are still waiting for a retry
+     */
+    suspend fun drain(): Boolean {
+        for (entry in outboxDao.getDue(System.currentTimeMillis())) {
+            val response = try {
+                send(entry)
+            } catch (e: IOException) {
+                // Network dropped again; keep the rest for the next run
+                scheduleRetry(entry, e.message)
+                break
+            } catch (e: Exception) {
+                scheduleRetry(entry, e.message)
+                continue
+            }
+
+            when {
+                response.isSuccessful -> outboxDao.delete(entry.id)
+                response.code() == 409 -> resolveConflict(entry, response)
+                response.code() == 408 || response.code() == 429 || response.code() >= 500 ->
+                    scheduleRetry(entry, "HTTP ${response.code()}")
+                // A view of an article removed since is nothing the patient needs to see
+                entry.operation == OutboxOperation.RECORD_ARTICLE_VIEW.name -> outboxDao.delete(entry.id)
+                else -> reject(entry, OutboxEntity.STATUS_FAILED, errorMessage(response))
+            }
+        }
+
+        val next = outboxDao.getNextAttemptAt() ?: return false
+        // Called from inside the worker, so append: the follow-up starts after this run ends
+        schedule((next - System.currentTimeMillis()).coerceAtLeast(0L), ExistingWorkPolicy.APPEND_OR_REPLACE)
+        return true
+    }
+
+    private suspend fun send(entry: OutboxEntity): Response<*> {
+        val key = entry.idempotencyKey
+        return when (OutboxOperation.valueOf(entry.operation)) {
+            OutboxOperation.BOOK_APPOINTMENT ->
+                apiService.bookAppointment(gson.fromJson(entry.payload, BookingRequest::class.java), key)
+            OutboxOperation.CANCEL_APPOINTMENT ->
+                apiService.cancelAppointment(entry.targetId!!, gson.fromJson(entry.payload, CancelRequest::class.java), key)
+            OutboxOperation.TOGGLE_INTERCOURSE ->
+                apiService.toggleIntercourse(gson.fromJson(entry.payload, IntercourseRequest::class.java), key)
+            OutboxOperation.CREATE_FERTILITY_CYCLE ->
+                apiService.createFertilityCycle(gson.fromJson(entry.payload, CreateCycleRequest::class.java), key)
+            OutboxOperation.TOGGLE_ANNOUNCEMENT_LIKE ->
+                apiService.toggleAnnouncementLike(entry.targetId!!, gson.fromJson(entry.payload, LikeRequest::class.java), key)
+                    .also { response ->
+                        // Settle the optimistic like with the server's count
+                        response.body()?.let { announcementDao.updateLike(entry.targetId, it.liked, it.like_count) }
+                    }
+            OutboxOperation.SUBMIT_PATIENT_INTAKE ->
+                apiService.submitPatientIntake(gson.fromJson(entry.payload, PatientIntakeRequest::class.java), key)
+            OutboxOperation.RECORD_ARTICLE_VIEW ->
+                apiService.recordArticleView(entry.targetId!!)
+        }
+    }
+
+    /**
+     * 409 handling; mirrors PatientRepository.submitPatientIntake, where a
+     * duplicate intake is turned into an update of the existing one
+     */
+    private suspend fun resolveConflict(entry: OutboxEntity, response: Response<*>) {
+        val json = try {
+            org.json.JSONObject(response.errorBody()?.string() ?: "{}")
+        } catch (e: Exception) {
+            org.json.JSONObject()
+        }
+        val code = json.optString("code")
+
+        when {
+            // The first attempt is still being processed server-side
+            code == "IDEMPOTENCY_IN_PROGRESS" -> scheduleRetry(entry, code)
+
+            entry.operation == OutboxOperation.SUBMIT_PATIENT_INTAKE.name && json.optBoolean("shouldUpdate", true) -> {
+                val request = gson.fromJson(entry.payload, PatientIntakeRequest::class.java)
+                val update = try {
+                    apiService.updateMyIntake(request)
+                } catch (e: IOException) {
+                    scheduleRetry(entry, e.message)
+                    return
+                }
+                if (update.isSuccessful) {
+                    outboxDao.delete(entry.id)
+                } else {
+                    reject(entry, OutboxEntity.STATUS_CONFLICT, errorMessage(update))
+                }
+            }
+
+            else -> reject(
+                entry,
+                OutboxEntity.STATUS_CONFLICT,
+                json.optString("message").ifEmpty { "Data sudah berubah di server" }
+            )
+        }
+    }
+
+    private suspend fun reject(entry: OutboxEntity, status: String, message: String?) {
+        Timber.w("Outbox %s rejected: %s", entry.operation, message)
+        outboxDao.update(entry.copy(status = status, lastError = message))
+        if (entry.operation == OutboxOperation.TOGGLE_ANNOUNCEMENT_LIKE.name && entry.targetId != null) {
+            // Undo the optimistic like; the next announcements refresh restores the server count
+            announcementDao.getAllAnnouncementsOnce().firstOrNull { it.id == entry.targetId }?.let {
+                val count = if (it.likedByMe) it.likeCount - 1 else it.likeCount + 1
+                announcementDao.updateLike(it.id, !it.likedByMe, count.coerceAtLeast(0))
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with full jitter, so devices that reconnect together
+     * don't retry in lockstep
+     */
+    private suspend fun scheduleRetry(entry: OutboxEntity, error: String?) {
+        val attempts = entry.attempts + 1
+        if (attempts >= MAX_ATTEMPTS) {
+            reject(entry, OutboxEntity.STATUS_FAILED, error)
+            return
+        }
+        val ceiling = min(MAX_BACKOFF_MS, BASE_BACKOFF_MS shl min(attempts - 1, 20))
+        val delay = Random.nextLong(BASE_BACKOFF_MS, ceiling + 1)
+        outboxDao.update(
+            entry.copy(
+                attempts = attempts,
+                nextAttemptAt = System.currentTimeMillis() + delay,
+                lastError = error
+            )
+        )
+    }
+
+    private fun schedule(delayMs: Long, policy: ExistingWorkPolicy) {
+        val request = OneTimeWorkRequestBuilder<OutboxWorker>()
+            .setConstraints(
+                Constraints.Builder()
+                    .setRequiredNetworkType(NetworkType.CONNECTED)
+                    .build()
+            )
+            .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BASE_BACKOFF_MS, TimeUnit.MILLISECONDS)
+            .build()
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, policy, request)
+    }
+
+    private fun errorMessage(response: Response<*>): String? {
+        return try {
+            org.json.JSONObject(response.errorBody()?.string() ?: "{}").optString("message").ifEmpty { null }
+        } catch (e: Exception) {
+            null
+        } ?: "HTTP ${response.code()}"
+    }
+}
@@ -0,0 +1,31 @@
+package com.dokterdibya.patient.data.sync
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import timber.log.Timber
+
+/**
+ * Drains the [Outbox]; only runs while a network is available
+ */
+@HiltWorker
+class OutboxWorker @AssistedInject constructor(
+    @Assisted context: Context,
+    @Assisted params: WorkerParameters,
+    private val outbox: Outbox
+) : CoroutineWorker(context, params) {
+
+    override suspend fun doWork(): Result {
+        return try {
+            // Entries still waiting for their backoff are rescheduled by drain()
+            outbox.drain()
+            Result.success()
+        } catch (e: Exception) {
+            Timber.e(e, "Outbox drain failed")
+            Result.retry()
+        }
+    }
+}
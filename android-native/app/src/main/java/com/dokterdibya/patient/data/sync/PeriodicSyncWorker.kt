@@ -0,0 +1,151 @@
+package com.dokterdibya.patient.data.sync
+
+import android.content.Context
+import android.net.TrafficStats
+import android.os.Process
+import android.os.SystemClock
+import androidx.hilt.work.HiltWorker
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import com.dokterdibya.patient.data.local.AppDatabase
+import com.dokterdibya.patient.data.local.CacheReconciler
+import com.dokterdibya.patient.data.repository.CacheEngine
+import com.dokterdibya.patient.data.repository.PatientRepository
+import com.dokterdibya.patient.data.repository.TokenRepository
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import kotlinx.coroutines.flow.first
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
+
+/**
+ * Refreshes the Room cache in the background, so the app opens with recent
+ * data even when it is offline at that moment
+ *
+ * Runs hourly on an unmetered network while charging. Each run only syncs the
+ * domains whose cache is older than their AppDatabase.CACHE_EXPIRY_* value, so
+ * every domain keeps its own cadence.
+ */
+@HiltWorker
+class PeriodicSyncWorker @AssistedInject constructor(
+    @Assisted context: Context,
+    @Assisted params: WorkerParameters,
+    private val patientRepository: PatientRepository,
+    private val tokenRepository: TokenRepository,
+    private val cacheEngine: CacheEngine
+) : CoroutineWorker(context, params) {
+
+    companion object {
+        private const val WORK_NAME = "periodic_sync"
+
+        // Profile first: announcements are fetched with the cached patient id
+        val DOMAINS = listOf(
+            AppDatabase.CACHE_KEY_PROFILE to AppDatabase.CACHE_EXPIRY_PROFILE,
+            AppDatabase.CACHE_KEY_APPOINTMENTS to AppDatabase.CACHE_EXPIRY_APPOINTMENTS,
+            AppDatabase.CACHE_KEY_MEDICATIONS to AppDatabase.CACHE_EXPIRY_MEDICATIONS,
+            AppDatabase.CACHE_KEY_ANNOUNCEMENTS to AppDatabase.CACHE_EXPIRY_ANNOUNCEMENTS,
+            AppDatabase.CACHE_KEY_NOTIFICATIONS to AppDatabase.CACHE_EXPIRY_NOTIFICATIONS,
+            AppDatabase.CACHE_KEY_DOCUMENTS to AppDatabase.CACHE_EXPIRY_DOCUMENTS
+        )
+
+        // The shortest cadence; WorkManager won't run periodic work more often than 15 minutes anyway
+        private val INTERVAL_MS = DOMAINS.minOf { it.second }
+
+        fun schedule(context: Context) {
+            val request = PeriodicWorkRequestBuilder<PeriodicSyncWorker>(INTERVAL_MS, TimeUnit.MILLISECONDS)
+                .setConstraints(
+                    Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.UNMETERED)
+                        .setRequiresCharging(true)
+                        .build()
+                )
+                .build()
+            WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request)
+        }
+    }
+
+    /**
+     * What one run did, for the log
+     */
+    data class SyncReport(
+        val synced: Map<String, CacheReconciler.Stats>,
+        val failed: List<String>,
+        val skipped: List<String>,
+        val bytes: Long?,
+        val durationMs: Long
+    ) {
+        val rowsChanged: Int get() = synced.values.sumOf { it.rowsWritten }
+    }
+
+    override suspend fun doWork(): Result {
+        // Signed out: nothing to sync until the next login
+        if (tokenRepository.getToken().first() == null) {
+            return Result.success()
+        }
+
+        val startedAt = SystemClock.elapsedRealtime()
+        val bytesBefore = trafficBytes()
+        val synced = linkedMapOf<String, CacheReconciler.Stats>()
+        val failed = mutableListOf<String>()
+        val skipped = mutableListOf<String>()
+
+        for ((key, ttl) in DOMAINS) {
+            if (cacheEngine.isCacheValid(key, ttl)) {
+                skipped.add(key)
+                continue
+            }
+            patientRepository.syncDomain(key)
+                .onSuccess {
+                    synced[key] = patientRepository.getRefreshStats()[key] ?: CacheReconciler.Stats.EMPTY
+                }
+                .onFailure { e ->
+                    Timber.w(e, "Background sync failed for %s", key)
+                    failed.add(key)
+                }
+        }
+
+        val bytesAfter = trafficBytes()
+        val report = SyncReport(
+            synced = synced,
+            failed = failed,
+            skipped = skipped,
+            bytes = if (bytesBefore != null && bytesAfter != null) bytesAfter - bytesBefore else null,
+            durationMs = SystemClock.elapsedRealtime() - startedAt
+        )
+        log(report)
+
+        // Everything failed: most likely the network dropped, so let WorkManager back off
+        return if (synced.isEmpty() && failed.isNotEmpty()) Result.retry() else Result.success()
+    }
+
+    /**
+     * Bytes sent and received by this app so far, or null where the device doesn't count them
+     */
+    private fun trafficBytes(): Long? {
+        val uid = Process.myUid()
+        val rx = TrafficStats.getUidRxBytes(uid)
+        val tx = TrafficStats.getUidTxBytes(uid)
+        return if (rx == TrafficStats.UNSUPPORTED.toLong() || tx == TrafficStats.UNSUPPORTED.toLong()) null else rx + tx
+    }
+
+    private fun log(report: SyncReport) {
+        val domains = report.synced.entries.joinToString { (key, stats) ->
+            "$key +${stats.inserted} ~${stats.updated} -${stats.deleted}"
+        }
+        Timber.i(
+            "Background sync: %d rows changed, %s bytes, %d ms [%s] failed=%s skipped=%s",
+            report.rowsChanged,
+            report.bytes?.toString() ?: "?",
+            report.durationMs,
+            domains,
+            report.failed,
+            report.skipped
+        )
+    }
+}
@@ -24,9 +24,10 @@ object DatabaseModule {
         )
             // Add all defined migrations
             .addMigrations(*AppDatabase.ALL_MIGRATIONS)
-            // For cache database, use destructive migration as fallback
-            // This is safe because cache data can always be re-fetched from server
-            .fallbackToDestructiveMigration()
+            // Version 1 predates the exported schemas; it and downgrades are rebuilt,
+            // which is safe because cache data can always be re-fetched from server
+            .fallbackToDestructiveMigrationFrom(1)
+            .fallbackToDestructiveMigrationOnDowngrade()
             .build()
     }
 
@@ -69,4 +70,24 @@ object DatabaseModule {
     fun provideAnnouncementDao(database: AppDatabase): AnnouncementDao {
         return database.announcementDao()
     }
+
+    @Provides
+    fun provideDocumentDao(database: AppDatabase): DocumentDao {
+        return database.documentDao()
+    }
+
+    @Provides
+    fun provideSearchDao(database: AppDatabase): SearchDao {
+        return database.searchDao()
+    }
+
+    @Provides
+    fun provideOutboxDao(database: AppDatabase): OutboxDao {
+        return database.outboxDao()
+    }
+
+    @Provides
+    fun provideCacheBudgetDao(database: AppDatabase): CacheBudgetDao {
+        return database.cacheBudgetDao()
+    }
 }
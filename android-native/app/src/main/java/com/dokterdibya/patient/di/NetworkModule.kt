@@ -4,18 +4,26 @@ import android.content.Context
 import android.content.pm.ApplicationInfo
 import com.dokterdibya.patient.data.api.ApiService
 import com.dokterdibya.patient.data.api.AuthInterceptor
+import com.dokterdibya.patient.data.api.ConditionalCacheInterceptor
+import com.dokterdibya.patient.data.api.RequestScheduler
+import com.dokterdibya.patient.data.api.TokenAuthenticator
+import com.dokterdibya.patient.data.metrics.MetricsEventListener
+import com.dokterdibya.patient.data.metrics.MetricsInterceptor
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
 import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
 import okhttp3.Cache
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
 import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
 import java.io.File
 import java.util.concurrent.TimeUnit
+import javax.inject.Named
 import javax.inject.Singleton
 
 @Module
@@ -24,12 +32,38 @@ object NetworkModule {
 
     private const val CACHE_SIZE = 10L * 1024 * 1024 // 10 MB
 
+    /** Client without auth or HTTP cache; Coil uses it directly */
+    const val BASE_CLIENT = "base"
+
+    /** Client for the token refresh call; see provideAuthOkHttpClient */
+    const val AUTH_CLIENT = "auth"
+
     @Provides
     @Singleton
     fun provideCache(@ApplicationContext context: Context): Cache {
         return Cache(File(context.cacheDir, "http_cache"), CACHE_SIZE)
     }
 
+    @Provides
+    @Singleton
+    fun provideConnectionPool(): ConnectionPool {
+        // One HTTP/2 connection carries the whole home screen; keep it warm between screens
+        return ConnectionPool(5, 5, TimeUnit.MINUTES)
+    }
+
+    /**
+     * Limits are high on purpose: RequestScheduler does the per-host queueing
+     * by priority.
+     */
+    @Provides
+    @Singleton
+    fun provideDispatcher(): Dispatcher {
+        return Dispatcher().apply {
+            maxRequests = 64
+            maxRequestsPerHost = 64
+        }
+    }
+
     @Provides
     @Singleton
     fun provideLoggingInterceptor(@ApplicationContext context: Context): HttpLoggingInterceptor {
@@ -46,22 +80,67 @@ object NetworkModule {
         }
     }
 
+    /**
+     * Connection pool, dispatcher, scheduler and metrics shared by every client
+     * in the app. Clients derived with newBuilder() keep these, so API calls
+     * and image loads to dokterdibya.com multiplex over the same HTTP/2
+     * connection and reuse its TLS session.
+     */
+    @Provides
+    @Singleton
+    @Named(BASE_CLIENT)
+    fun provideBaseOkHttpClient(
+        connectionPool: ConnectionPool,
+        dispatcher: Dispatcher,
+        requestScheduler: RequestScheduler,
+        metricsInterceptor: MetricsInterceptor,
+        metricsEventListenerFactory: MetricsEventListener.Factory
+    ): OkHttpClient {
+        return OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .eventListenerFactory(metricsEventListenerFactory)
+            .addInterceptor(metricsInterceptor)
+            .addInterceptor(requestScheduler)
+            // Shorter timeouts for mobile networks with retry logic
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .readTimeout(20, TimeUnit.SECONDS)
+            .writeTimeout(20, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(true)
+            .build()
+    }
+
+    /**
+     * Base client minus the scheduler. A refresh runs while other calls hold
+     * scheduler slots waiting for its result, so it must not queue behind them.
+     */
+    @Provides
+    @Singleton
+    @Named(AUTH_CLIENT)
+    fun provideAuthOkHttpClient(
+        @Named(BASE_CLIENT) baseClient: OkHttpClient
+    ): OkHttpClient {
+        return baseClient.newBuilder()
+            .apply { interceptors().removeAll { it is RequestScheduler } }
+            .build()
+    }
+
     @Provides
     @Singleton
     fun provideOkHttpClient(
+        @Named(BASE_CLIENT) baseClient: OkHttpClient,
         authInterceptor: AuthInterceptor,
+        tokenAuthenticator: TokenAuthenticator,
         loggingInterceptor: HttpLoggingInterceptor,
+        conditionalCacheInterceptor: ConditionalCacheInterceptor,
         cache: Cache
     ): OkHttpClient {
-        return OkHttpClient.Builder()
+        return baseClient.newBuilder()
             .cache(cache)
             .addInterceptor(authInterceptor)
             .addInterceptor(loggingInterceptor)
-            // Shorter timeouts for mobile networks with retry logic
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .readTimeout(20, TimeUnit.SECONDS)
-            .writeTimeout(20, TimeUnit.SECONDS)
-            .retryOnConnectionFailure(true)
+            .authenticator(tokenAuthenticator)
+            .addNetworkInterceptor(conditionalCacheInterceptor)
             .build()
     }
 
@@ -33,6 +33,7 @@ import com.dokterdibya.patient.ui.screens.completeprofile.CompleteProfileScreen
 import com.dokterdibya.patient.ui.screens.webview.WebViewScreen
 import com.dokterdibya.patient.ui.screens.journeybook.JourneyBookScreen
 import com.dokterdibya.patient.ui.screens.intake.PatientIntakeScreen
+import com.dokterdibya.patient.ui.screens.debug.NetworkMetricsScreen
 import java.net.URLDecoder
 import java.net.URLEncoder
 import java.nio.charset.StandardCharsets
@@ -63,6 +64,7 @@ sealed class Screen(val route: String) {
     object Notifications : Screen("notifications")
     object JourneyBook : Screen("journey_book")
     object PatientIntake : Screen("patient_intake")
+    object NetworkMetrics : Screen("network_metrics")
     object WebView : Screen("webview/{url}/{title}") {
         fun createRoute(url: String, title: String): String {
             val encodedUrl = URLEncoder.encode(url, StandardCharsets.UTF_8.toString())
@@ -261,10 +263,19 @@ fun NavGraph(
                     navController.navigate(Screen.Login.route) {
                         popUpTo(Screen.Home.route) { inclusive = true }
                     }
+                },
+                onOpenNetworkMetrics = {
+                    navController.navigate(Screen.NetworkMetrics.route)
                 }
             )
         }
 
+        composable(Screen.NetworkMetrics.route) {
+            NetworkMetricsScreen(
+                onBack = { navController.popBackStack() }
+            )
+        }
+
         composable(Screen.Articles.route) {
             ArticlesScreen(
                 onBack = { navController.popBackStack() },
@@ -3,8 +3,6 @@ package com.dokterdibya.patient.ui.screens.articles
 import androidx.compose.foundation.clickable
 import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
-import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.foundation.shape.RoundedCornerShape
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.automirrored.filled.ArrowBack
@@ -22,6 +20,9 @@ import androidx.compose.ui.text.style.TextOverflow
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
+import androidx.paging.LoadState
+import androidx.paging.compose.collectAsLazyPagingItems
+import androidx.paging.compose.itemKey
 import coil.compose.AsyncImage
 import androidx.compose.ui.graphics.Color
 import com.dokterdibya.patient.ui.components.ThemedBackground
@@ -35,25 +36,9 @@ fun ArticlesScreen(
     onNavigateToArticle: (Int) -> Unit = {},
     viewModel: ArticlesViewModel = hiltViewModel()
 ) {
-    val uiState by viewModel.uiState.collectAsState()
-    val listState = rememberLazyListState()
-
-    // Detect when to load more (infinite scroll)
-    val shouldLoadMore = remember {
-        derivedStateOf {
-            val lastVisibleItem = listState.layoutInfo.visibleItemsInfo.lastOrNull()
-                ?: return@derivedStateOf false
-            // Load more when user is 3 items from the end
-            lastVisibleItem.index >= uiState.articles.size - 3
-        }
-    }
-
-    // Load more when reaching bottom
-    LaunchedEffect(shouldLoadMore.value) {
-        if (shouldLoadMore.value && uiState.hasMorePages && !uiState.isLoadingMore) {
-            viewModel.loadMoreArticles()
-        }
-    }
+    val articles = viewModel.articles.collectAsLazyPagingItems()
+    val refreshState = articles.loadState.refresh
+    val appendState = articles.loadState.append
 
     ThemedBackground {
     Scaffold(
@@ -84,14 +69,14 @@ fun ArticlesScreen(
                 .fillMaxSize()
                 .padding(paddingValues)
         ) {
-            if (uiState.isLoading) {
+            if (refreshState is LoadState.Loading && articles.itemCount == 0) {
                 Box(
                     modifier = Modifier.fillMaxSize(),
                     contentAlignment = Alignment.Center
                 ) {
                     CircularProgressIndicator(color = Accent)
                 }
-            } else if (uiState.error != null && uiState.articles.isEmpty()) {
+            } else if (refreshState is LoadState.Error && articles.itemCount == 0) {
                 Box(
                     modifier = Modifier.fillMaxSize(),
                     contentAlignment = Alignment.Center
@@ -105,19 +90,19 @@ fun ArticlesScreen(
                         )
                         Spacer(modifier = Modifier.height(8.dp))
                         Text(
-                            uiState.error ?: "Gagal memuat artikel",
+                            refreshState.error.message ?: "Gagal memuat artikel",
                             color = TextSecondaryDark
                         )
                         Spacer(modifier = Modifier.height(16.dp))
                         Button(
-                            onClick = { viewModel.loadArticles() },
+                            onClick = { articles.retry() },
                             colors = ButtonDefaults.buttonColors(containerColor = Accent)
                         ) {
                             Text("Coba Lagi")
                         }
                     }
                 }
-            } else if (uiState.articles.isEmpty()) {
+            } else if (articles.itemCount == 0) {
                 Box(
                     modifier = Modifier.fillMaxSize(),
                     contentAlignment = Alignment.Center
@@ -139,27 +124,42 @@ fun ArticlesScreen(
                 }
             } else {
                 LazyColumn(
-                    state = listState,
                     modifier = Modifier.fillMaxSize(),
                     contentPadding = PaddingValues(16.dp),
                     verticalArrangement = Arrangement.spacedBy(12.dp)
                 ) {
-                    items(uiState.articles, key = { it.id }) { article ->
-                        ArticleCard(
-                            title = article.title,
-                            excerpt = article.excerpt ?: "",
-                            category = article.category ?: "Kesehatan",
-                            imageUrl = article.imageUrl,
-                            date = article.publishedAt ?: "",
-                            onClick = {
-                                // Navigate to native article detail screen
-                                onNavigateToArticle(article.id)
-                            }
-                        )
+                    // Items are loaded lazily from Room; prefetching is driven by Paging
+                    items(
+                        count = articles.itemCount,
+                        key = articles.itemKey { it.id }
+                    ) { index ->
+                        val article = articles[index]
+                        if (article != null) {
+                            ArticleCard(
+                                title = article.title,
+                                excerpt = article.excerpt ?: "",
+                                category = article.category ?: "Kesehatan",
+                                imageUrl = article.imageUrl,
+                                date = article.publishedAt ?: "",
+                                onClick = {
+                                    // Navigate to native article detail screen
+                                    onNavigateToArticle(article.id)
+                                }
+                            )
+                        } else {
+                            // Placeholder while the page is loading
+                            Card(
+                                modifier = Modifier
+                                    .fillMaxWidth()
+                                    .height(104.dp),
+                                shape = RoundedCornerShape(12.dp),
+                                colors = CardDefaults.cardColors(containerColor = CardDark)
+                            ) {}
+                        }
                     }
 
                     // Loading indicator at bottom for pagination
-                    if (uiState.isLoadingMore) {
+                    if (appendState is LoadState.Loading) {
                         item {
                             Box(
                                 modifier = Modifier
@@ -176,8 +176,20 @@ fun ArticlesScreen(
                         }
                     }
 
+                    // Offline or failed page: keep what is cached and offer a retry
+                    if (appendState is LoadState.Error) {
+                        item {
+                            TextButton(
+                                onClick = { articles.retry() },
+                                modifier = Modifier.fillMaxWidth()
+                            ) {
+                                Text("Gagal memuat, coba lagi", color = Accent, fontSize = 12.sp)
+                            }
+                        }
+                    }
+
                     // End of list indicator
-                    if (!uiState.hasMorePages && uiState.articles.isNotEmpty()) {
+                    if (appendState.endOfPaginationReached) {
                         item {
                             Text(
                                 "Tidak ada artikel lagi",
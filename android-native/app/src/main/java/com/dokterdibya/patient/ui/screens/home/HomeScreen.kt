@@ -40,7 +40,11 @@ import com.dokterdibya.patient.ui.components.SlideMenu
 import com.dokterdibya.patient.ui.screens.home.components.cards.*
 import com.dokterdibya.patient.ui.screens.home.components.sections.*
 import com.dokterdibya.patient.ui.theme.*
+import com.dokterdibya.patient.viewmodel.AnnouncementsSectionState
+import com.dokterdibya.patient.viewmodel.ArticlesSectionState
 import com.dokterdibya.patient.viewmodel.HomeViewModel
+import com.dokterdibya.patient.viewmodel.MedicationsSectionState
+import com.dokterdibya.patient.viewmodel.PregnancySectionState
 import dev.chrisbanes.haze.HazeState
 import dev.chrisbanes.haze.haze
 import dev.chrisbanes.haze.hazeChild
@@ -68,7 +72,13 @@ fun HomeScreen(
     onLogout: () -> Unit,
     viewModel: HomeViewModel = hiltViewModel()
 ) {
-    val uiState by viewModel.uiState.collectAsState()
+    // One flow per section, so e.g. a new unread count doesn't recompose the announcements
+    val header by viewModel.header.collectAsState()
+    val pregnancy by viewModel.pregnancy.collectAsState()
+    val announcements by viewModel.announcements.collectAsState()
+    val medications by viewModel.medications.collectAsState()
+    val articles by viewModel.articles.collectAsState()
+    val onLike = remember(viewModel) { { id: Int -> viewModel.toggleLike(id) } }
     var isMenuOpen by remember { mutableStateOf(false) }
     val context = LocalContext.current
     val lifecycleOwner = LocalLifecycleOwner.current
@@ -155,9 +165,9 @@ fun HomeScreen(
         // Sticky Top Navigation Bar with real blur effect
         TopNavigationBar(
             hazeState = hazeState,
-            patient = uiState.patient,
-            patientName = uiState.patientName,
-            unreadNotificationCount = uiState.unreadNotificationCount,
+            patient = header.patient,
+            patientName = header.patientName,
+            unreadNotificationCount = header.unreadNotificationCount,
             onNavigateToNotifications = onNavigateToNotifications,
             onNavigateToProfile = onNavigateToProfile
         )
@@ -171,7 +181,7 @@ fun HomeScreen(
                 .padding(top = 64.dp, start = 16.dp, end = 16.dp, bottom = 16.dp)
         ) {
             // Welcome Card (website-style glassmorphism)
-            WelcomeCard(patientName = uiState.patientName)
+            WelcomeCard(patientName = header.patientName)
 
             Spacer(modifier = Modifier.height(16.dp))
 
@@ -185,34 +195,11 @@ fun HomeScreen(
 
             Spacer(modifier = Modifier.height(16.dp))
 
-            // Birth Congratulations Card (if has given birth)
-            if (uiState.hasGivenBirth && uiState.birthInfo != null) {
-                BirthCongratulationsCard(birthInfo = uiState.birthInfo!!)
-                Spacer(modifier = Modifier.height(16.dp))
-            }
-
-            // Pregnancy Card (if pregnant and not given birth)
-            if (uiState.isPregnant && !uiState.hasGivenBirth) {
-                PregnancyCard(
-                    weeks = uiState.pregnancyWeeks,
-                    days = uiState.pregnancyDays,
-                    progress = uiState.pregnancyProgress,
-                    dueDate = uiState.dueDate,
-                    trimester = uiState.trimester,
-                    babySize = uiState.babySize,
-                    tip = uiState.pregnancyTip
-                )
-                Spacer(modifier = Modifier.height(16.dp))
-            }
+            // Birth Congratulations or Pregnancy Card
+            PregnancySlot(state = pregnancy)
 
             // Announcements Section
-            if (uiState.announcements.isNotEmpty()) {
-                AnnouncementsSection(
-                    announcements = uiState.announcements,
-                    onLike = { viewModel.toggleLike(it) }
-                )
-                Spacer(modifier = Modifier.height(16.dp))
-            }
+            AnnouncementsSlot(state = announcements, onLike = onLike)
 
             // Journey Book Card (shown for all users like website)
             JourneyBookCard(
@@ -240,27 +227,15 @@ fun HomeScreen(
             )
 
             // Medications Section (if any)
-            if (uiState.hasMedications) {
-                Spacer(modifier = Modifier.height(16.dp))
-                MedicationsSection(
-                    medications = uiState.medications,
-                    onViewAll = onNavigateToMedications
-                )
-            }
+            MedicationsSlot(state = medications, onViewAll = onNavigateToMedications)
 
             // Ruang Membaca Section (Articles)
-            if (uiState.articles.isNotEmpty()) {
-                Spacer(modifier = Modifier.height(16.dp))
-                RuangMembacaSection(
-                    articles = uiState.articles,
-                    totalArticleCount = uiState.totalArticleCount,
-                    onArticleClick = { article ->
-                        // Open article in app using ArticleDetailScreen
-                        onNavigateToArticleDetail(article.id)
-                    },
-                    onViewAll = onNavigateToArticles
-                )
-            }
+            ArticlesSlot(
+                state = articles,
+                // Open article in app using ArticleDetailScreen
+                onArticleClick = onNavigateToArticleDetail,
+                onViewAll = onNavigateToArticles
+            )
 
             Spacer(modifier = Modifier.height(100.dp))
         }
@@ -305,6 +280,69 @@ fun HomeScreen(
     }
 }
 
+// Section slots take @Immutable section states, so they skip recomposition
+// while their own section is unchanged
+
+@Composable
+private fun PregnancySlot(state: PregnancySectionState) {
+    if (state.hasGivenBirth && state.birthInfo != null) {
+        BirthCongratulationsCard(birthInfo = state.birthInfo)
+        Spacer(modifier = Modifier.height(16.dp))
+    }
+
+    if (state.isPregnant && !state.hasGivenBirth) {
+        PregnancyCard(
+            weeks = state.weeks,
+            days = state.days,
+            progress = state.progress,
+            dueDate = state.dueDate,
+            trimester = state.trimester,
+            babySize = state.babySize,
+            tip = state.tip
+        )
+        Spacer(modifier = Modifier.height(16.dp))
+    }
+}
+
+@Composable
+private fun AnnouncementsSlot(state: AnnouncementsSectionState, onLike: (Int) -> Unit) {
+    if (state.announcements.isNotEmpty()) {
+        AnnouncementsSection(
+            announcements = state.announcements,
+            onLike = onLike
+        )
+        Spacer(modifier = Modifier.height(16.dp))
+    }
+}
+
+@Composable
+private fun MedicationsSlot(state: MedicationsSectionState, onViewAll: () -> Unit) {
+    if (state.medications.isNotEmpty()) {
+        Spacer(modifier = Modifier.height(16.dp))
+        MedicationsSection(
+            medications = state.medications,
+            onViewAll = onViewAll
+        )
+    }
+}
+
+@Composable
+private fun ArticlesSlot(
+    state: ArticlesSectionState,
+    onArticleClick: (Int) -> Unit,
+    onViewAll: () -> Unit
+) {
+    if (state.articles.isNotEmpty()) {
+        Spacer(modifier = Modifier.height(16.dp))
+        RuangMembacaSection(
+            articles = state.articles,
+            totalArticleCount = state.totalArticleCount,
+            onArticleClick = { article -> onArticleClick(article.id) },
+            onViewAll = onViewAll
+        )
+    }
+}
+
 @Composable
 private fun TopNavigationBar(
     hazeState: HazeState,
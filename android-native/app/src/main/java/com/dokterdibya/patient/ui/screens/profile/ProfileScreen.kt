@@ -1,5 +1,6 @@
 package com.dokterdibya.patient.ui.screens.profile
 
+import android.content.pm.ApplicationInfo
 import android.net.Uri
 import androidx.activity.compose.rememberLauncherForActivityResult
 import androidx.activity.result.contract.ActivityResultContracts
@@ -36,6 +37,7 @@ import com.dokterdibya.patient.viewmodel.ProfileViewModel
 fun ProfileScreen(
     onBack: () -> Unit,
     onLogout: () -> Unit,
+    onOpenNetworkMetrics: () -> Unit = {},
     viewModel: ProfileViewModel = hiltViewModel()
 ) {
     val uiState by viewModel.uiState.collectAsState()
@@ -680,6 +682,21 @@ fun ProfileScreen(
 
                 Spacer(modifier = Modifier.height(32.dp))
 
+                // Network metrics, debug builds only
+                val isDebug = (context.applicationInfo.flags and ApplicationInfo.FLAG_DEBUGGABLE) != 0
+                if (isDebug) {
+                    OutlinedButton(
+                        onClick = onOpenNetworkMetrics,
+                        modifier = Modifier.fillMaxWidth(),
+                        shape = RoundedCornerShape(12.dp)
+                    ) {
+                        Icon(Icons.Default.NetworkCheck, contentDescription = null)
+                        Spacer(modifier = Modifier.width(8.dp))
+                        Text("Network Metrics")
+                    }
+                    Spacer(modifier = Modifier.height(12.dp))
+                }
+
                 // Logout button
                 Button(
                     onClick = {
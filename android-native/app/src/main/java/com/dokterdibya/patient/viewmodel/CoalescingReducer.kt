@@ -0,0 +1,66 @@
+package com.dokterdibya.patient.viewmodel
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+
+/**
+ * Applies actions to a state right away but publishes at most one new state
+ * per [windowMs]
+ *
+ * Partial results that land in the same window (e.g. several parallel API
+ * calls finishing together) reach the UI as a single emission. The default
+ * window is one frame at 60 Hz; Compose's frame clock isn't available to a
+ * ViewModel, so the window stands in for it.
+ */
+class CoalescingReducer<S, A>(
+    initial: S,
+    private val scope: CoroutineScope,
+    private val windowMs: Long = FRAME_MS,
+    private val reduce: (S, A) -> S
+) {
+    companion object {
+        const val FRAME_MS = 16L
+    }
+
+    private val lock = Any()
+    private var pending: S = initial
+    private var flushScheduled = false
+
+    private val _state = MutableStateFlow(initial)
+    val state: StateFlow<S> = _state.asStateFlow()
+
+    /**
+     * Latest reduced state, including actions not yet published
+     */
+    val current: S
+        get() = synchronized(lock) { pending }
+
+    fun dispatch(action: A) {
+        val schedule = synchronized(lock) {
+            pending = reduce(pending, action)
+            val alreadyScheduled = flushScheduled
+            flushScheduled = true
+            !alreadyScheduled
+        }
+        if (schedule) {
+            scope.launch {
+                delay(windowMs)
+                flush()
+            }
+        }
+    }
+
+    /**
+     * Publish pending actions now instead of at the end of the window
+     */
+    fun flush() {
+        synchronized(lock) {
+            flushScheduled = false
+            _state.value = pending
+        }
+    }
+}
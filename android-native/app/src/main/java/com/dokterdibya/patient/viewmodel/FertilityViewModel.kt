@@ -346,10 +346,10 @@ class FertilityViewModel @Inject constructor(
         viewModelScope.launch {
             repository.toggleIntercourse(dateStr)
                 .onSuccess { action ->
-                    val message = if (action == "added") {
-                        "Hubungan intim dicatat"
-                    } else {
-                        "Catatan hubungan intim dihapus"
+                    val message = when (action) {
+                        "added" -> "Hubungan intim dicatat"
+                        PatientRepository.OUTBOX_QUEUED_ACTION -> PatientRepository.OUTBOX_QUEUED_MESSAGE
+                        else -> "Catatan hubungan intim dihapus"
                     }
                     _uiState.value = _uiState.value.copy(successMessage = message)
                     loadCalendarData()
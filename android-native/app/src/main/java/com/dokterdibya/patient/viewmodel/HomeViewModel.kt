@@ -1,18 +1,23 @@
 package com.dokterdibya.patient.viewmodel
 
+import androidx.compose.runtime.Immutable
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.dokterdibya.patient.data.api.Announcement
 import com.dokterdibya.patient.data.api.Article
 import com.dokterdibya.patient.data.api.BabySize
 import com.dokterdibya.patient.data.api.Medication
+import com.dokterdibya.patient.data.api.PregnancyData
 import com.dokterdibya.patient.data.model.Patient
+import com.dokterdibya.patient.data.repository.HomeSnapshot
+import com.dokterdibya.patient.data.repository.HomeSnapshotStore
 import com.dokterdibya.patient.data.repository.PatientRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.async
-import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.StateFlow
-import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
 import java.time.LocalDate
@@ -54,17 +59,123 @@ data class HomeUiState(
     // Notifications
     val unreadNotificationCount: Int = 0,
     // Articles for Ruang Membaca
+    val articles: List<Article> = emptyList(),
+    val totalArticleCount: Int = 0,
+    // True while showing the on-disk snapshot, until the first load reconciles it
+    val isFromSnapshot: Boolean = false,
+    // Empty Room emissions held back while isFromSnapshot; LoadFinished applies them
+    // for each section whose refresh succeeded
+    val heldAnnouncements: List<Announcement>? = null,
+    val heldMedications: List<Medication>? = null,
+    val heldArticles: List<Article>? = null
+)
+
+// Per-section slices of HomeUiState; each card only recomposes when its own slice changes
+@Immutable
+data class HomeHeaderState(
+    val patient: Patient? = null,
+    val patientName: String? = null,
+    val unreadNotificationCount: Int = 0,
+    val isLoading: Boolean = false,
+    val error: String? = null
+)
+
+@Immutable
+data class PregnancySectionState(
+    val isPregnant: Boolean = false,
+    val weeks: Int = 0,
+    val days: Int = 0,
+    val progress: Float = 0f,
+    val dueDate: String? = null,
+    val trimester: Int = 0,
+    val babySize: BabySize? = null,
+    val tip: String? = null,
+    val hasGivenBirth: Boolean = false,
+    val birthInfo: BirthInfo? = null
+)
+
+@Immutable
+data class AnnouncementsSectionState(val announcements: List<Announcement> = emptyList())
+
+@Immutable
+data class MedicationsSectionState(val medications: List<Medication> = emptyList())
+
+@Immutable
+data class ArticlesSectionState(
     val articles: List<Article> = emptyList(),
     val totalArticleCount: Int = 0
 )
 
+/**
+ * Partial results applied to [HomeUiState] by the home reducer
+ */
+sealed class HomeAction {
+    object LoadStarted : HomeAction()
+    data class LoadFinished(
+        val announcementsSynced: Boolean,
+        val medicationsSynced: Boolean,
+        val articlesSynced: Boolean
+    ) : HomeAction()
+    data class ProfileLoaded(val patient: Patient) : HomeAction()
+    data class ProfileFailed(val message: String?) : HomeAction()
+    data class UsgCountLoaded(val count: Int) : HomeAction()
+    data class PregnancyLoaded(val data: PregnancyData) : HomeAction()
+    data class UnreadCountLoaded(val count: Int) : HomeAction()
+    data class AnnouncementsChanged(val announcements: List<Announcement>) : HomeAction()
+    data class MedicationsChanged(val medications: List<Medication>) : HomeAction()
+    data class ArticlesChanged(val articles: List<Article>) : HomeAction()
+}
+
 @HiltViewModel
 class HomeViewModel @Inject constructor(
-    private val patientRepository: PatientRepository
+    private val patientRepository: PatientRepository,
+    private val homeSnapshotStore: HomeSnapshotStore
 ) : ViewModel() {
 
-    private val _uiState = MutableStateFlow(HomeUiState())
-    val uiState: StateFlow<HomeUiState> = _uiState.asStateFlow()
+    // Start from the last rendered home screen so the first frame has content
+    private val reducer = CoalescingReducer<HomeUiState, HomeAction>(
+        initial = homeSnapshotStore.read()?.toUiState() ?: HomeUiState(),
+        scope = viewModelScope,
+        reduce = ::reduce
+    )
+    val uiState: StateFlow<HomeUiState> = reducer.state
+
+    val header: StateFlow<HomeHeaderState> = section { state ->
+        HomeHeaderState(
+            patient = state.patient,
+            patientName = state.patientName,
+            unreadNotificationCount = state.unreadNotificationCount,
+            isLoading = state.isLoading,
+            error = state.error
+        )
+    }
+
+    val pregnancy: StateFlow<PregnancySectionState> = section { state ->
+        PregnancySectionState(
+            isPregnant = state.isPregnant,
+            weeks = state.pregnancyWeeks,
+            days = state.pregnancyDays,
+            progress = state.pregnancyProgress,
+            dueDate = state.dueDate,
+            trimester = state.trimester,
+            babySize = state.babySize,
+            tip = state.pregnancyTip,
+            hasGivenBirth = state.hasGivenBirth,
+            birthInfo = state.birthInfo
+        )
+    }
+
+    val announcements: StateFlow<AnnouncementsSectionState> = section { state ->
+        AnnouncementsSectionState(state.announcements)
+    }
+
+    val medications: StateFlow<MedicationsSectionState> = section { state ->
+        MedicationsSectionState(state.medications)
+    }
+
+    val articles: StateFlow<ArticlesSectionState> = section { state ->
+        ArticlesSectionState(state.articles, state.totalArticleCount)
+    }
 
     private var patientId: String? = null
 
@@ -73,58 +184,76 @@ class HomeViewModel @Inject constructor(
     private val refreshDebounceMs: Long = 5000 // 5 seconds minimum between refreshes
 
     init {
+        observeCachedSections()
         loadAllData()
     }
 
     /**
-     * Load all home screen data in parallel for better performance
+     * Slice of the state that only emits when the slice itself changes
      */
-    private fun loadAllData() {
-        viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true)
+    private fun <T> section(select: (HomeUiState) -> T): StateFlow<T> {
+        return uiState.map(select)
+            .stateIn(viewModelScope, SharingStarted.Eagerly, select(uiState.value))
+    }
 
-            // Launch all API calls in parallel
-            val profileDeferred = async { patientRepository.getProfile() }
-            val usgDeferred = async { patientRepository.getUsgDocuments() }
-            val pregnancyDeferred = async { patientRepository.getPregnancyData() }
-            val medicationsDeferred = async { patientRepository.getMedications() }
-            val notificationsDeferred = async { patientRepository.getUnreadNotificationCount() }
-            val articlesDeferred = async { patientRepository.getArticles() }
+    /**
+     * Announcements, medications and articles are observed from Room;
+     * loadAllData() only refreshes them, so socket events or background
+     * syncs that touch the cache update the screen without a re-fetch.
+     */
+    private fun observeCachedSections() {
+        viewModelScope.launch {
+            patientRepository.observeAnnouncements().collect {
+                reducer.dispatch(HomeAction.AnnouncementsChanged(it))
+            }
+        }
+        viewModelScope.launch {
+            patientRepository.observeMedications().collect {
+                reducer.dispatch(HomeAction.MedicationsChanged(it))
+            }
+        }
+        viewModelScope.launch {
+            patientRepository.observeArticles().collect {
+                reducer.dispatch(HomeAction.ArticlesChanged(it))
+            }
+        }
+    }
 
-            // Process profile result first (needed for announcements)
-            val profileResult = profileDeferred.await()
-            profileResult.fold(
-                onSuccess = { patient ->
-                    patientId = patient.id
-                    val pregnancyInfo = calculatePregnancyInfo(patient)
-                    _uiState.value = _uiState.value.copy(
-                        patient = patient,
-                        patientName = patient.name,
-                        isPregnant = patient.isPregnant,
-                        pregnancyWeeks = pregnancyInfo.weeks,
-                        pregnancyDays = pregnancyInfo.days,
-                        pregnancyProgress = pregnancyInfo.progress,
-                        dueDate = formatDate(patient.expectedDueDate)
-                    )
-                },
-                onFailure = { error ->
-                    _uiState.value = _uiState.value.copy(error = error.message)
-                }
-            )
+    private fun reduce(state: HomeUiState, action: HomeAction): HomeUiState {
+        return when (action) {
+            HomeAction.LoadStarted -> state.copy(isLoading = true)
 
-            // Load announcements after we have patient ID
-            val announcementsDeferred = async { patientRepository.getActiveAnnouncements(patientId) }
+            is HomeAction.LoadFinished -> {
+                // A section the server confirmed empty replaces the snapshot's copy
+                var next = state.copy(isLoading = false, isFromSnapshot = false)
+                state.heldAnnouncements?.takeIf { action.announcementsSynced }?.let { next = next.withAnnouncements(it) }
+                state.heldMedications?.takeIf { action.medicationsSynced }?.let { next = next.withMedications(it) }
+                state.heldArticles?.takeIf { action.articlesSynced }?.let { next = next.withArticles(it) }
+                next.copy(heldAnnouncements = null, heldMedications = null, heldArticles = null)
+            }
 
-            // Process other results
-            usgDeferred.await().onSuccess { usgDocs ->
-                _uiState.value = _uiState.value.copy(usgCount = usgDocs.size)
+            is HomeAction.ProfileLoaded -> {
+                val patient = action.patient
+                val pregnancyInfo = calculatePregnancyInfo(patient)
+                state.copy(
+                    patient = patient,
+                    patientName = patient.name,
+                    isPregnant = patient.isPregnant,
+                    pregnancyWeeks = pregnancyInfo.weeks,
+                    pregnancyDays = pregnancyInfo.days,
+                    pregnancyProgress = pregnancyInfo.progress,
+                    dueDate = formatDate(patient.expectedDueDate)
+                )
             }
 
-            pregnancyDeferred.await().fold(
-                onSuccess = { data ->
-                    timber.log.Timber.d("BIRTH_DEBUG: has_given_birth=${data.has_given_birth}, baby_name=${data.baby_name}")
-                    if (data.has_given_birth) {
-                    _uiState.value = _uiState.value.copy(
+            is HomeAction.ProfileFailed -> state.copy(error = action.message)
+
+            is HomeAction.UsgCountLoaded -> state.copy(usgCount = action.count)
+
+            is HomeAction.PregnancyLoaded -> {
+                val data = action.data
+                if (data.has_given_birth) {
+                    state.copy(
                         hasGivenBirth = true,
                         isPregnant = false,
                         birthInfo = BirthInfo(
@@ -138,7 +267,7 @@ class HomeViewModel @Inject constructor(
                         )
                     )
                 } else if (data.is_pregnant) {
-                    _uiState.value = _uiState.value.copy(
+                    state.copy(
                         isPregnant = true,
                         pregnancyWeeks = data.weeks,
                         pregnancyDays = data.days,
@@ -148,56 +277,125 @@ class HomeViewModel @Inject constructor(
                         babySize = data.baby_size,
                         pregnancyTip = data.tip
                     )
+                } else {
+                    state
                 }
+            }
+
+            is HomeAction.UnreadCountLoaded -> state.copy(unreadNotificationCount = action.count)
+
+            // An empty Room section (e.g. evicted rows) shouldn't blank out what the
+            // snapshot painted before the refresh in loadAllData() has answered; it is
+            // held until LoadFinished instead of dropped
+            is HomeAction.AnnouncementsChanged ->
+                if (action.announcements.isEmpty() && state.isFromSnapshot) state.copy(heldAnnouncements = action.announcements)
+                else state.withAnnouncements(action.announcements)
+
+            is HomeAction.MedicationsChanged ->
+                if (action.medications.isEmpty() && state.isFromSnapshot) state.copy(heldMedications = action.medications)
+                else state.withMedications(action.medications)
+
+            is HomeAction.ArticlesChanged ->
+                if (action.articles.isEmpty() && state.isFromSnapshot) state.copy(heldArticles = action.articles)
+                else state.withArticles(action.articles)
+        }
+    }
+
+    private fun HomeUiState.withAnnouncements(announcements: List<Announcement>) = copy(
+        announcements = announcements,
+        heldAnnouncements = null
+    )
+
+    private fun HomeUiState.withMedications(medications: List<Medication>) = copy(
+        medications = medications,
+        hasMedications = medications.isNotEmpty(),
+        heldMedications = null
+    )
+
+    private fun HomeUiState.withArticles(articles: List<Article>) = copy(
+        articles = articles.take(3),
+        totalArticleCount = articles.size,
+        heldArticles = null
+    )
+
+    /**
+     * Load all home screen data in parallel for better performance.
+     * Results are dispatched as they arrive; the reducer merges those that
+     * land in the same frame into one UI update.
+     */
+    private fun loadAllData() {
+        viewModelScope.launch {
+            reducer.dispatch(HomeAction.LoadStarted)
+
+            // Launch all API calls in parallel
+            val profileDeferred = async { patientRepository.getProfile() }
+            val usgDeferred = async { patientRepository.getUsgDocuments() }
+            val pregnancyDeferred = async { patientRepository.getPregnancyData() }
+            val medicationsDeferred = async { patientRepository.refreshMedications() }
+            val notificationsDeferred = async { patientRepository.getUnreadNotificationCount() }
+            val articlesDeferred = async { patientRepository.refreshArticles() }
+
+            // Process profile result first (needed for announcements)
+            val profileResult = profileDeferred.await()
+            profileResult.fold(
+                onSuccess = { patient ->
+                    patientId = patient.id
+                    reducer.dispatch(HomeAction.ProfileLoaded(patient))
                 },
                 onFailure = { error ->
-                    timber.log.Timber.e("BIRTH_DEBUG: Failed to get pregnancy data: ${error.message}")
+                    reducer.dispatch(HomeAction.ProfileFailed(error.message))
                 }
             )
 
-            medicationsDeferred.await().onSuccess { medications ->
-                _uiState.value = _uiState.value.copy(
-                    medications = medications,
-                    hasMedications = medications.isNotEmpty()
-                )
+            // Load announcements after we have patient ID
+            val announcementsDeferred = async { patientRepository.refreshAnnouncements(patientId) }
+
+            // Process other results
+            usgDeferred.await().onSuccess { usgDocs ->
+                reducer.dispatch(HomeAction.UsgCountLoaded(usgDocs.size))
             }
 
+            pregnancyDeferred.await().fold(
+                onSuccess = { data ->
+                    timber.log.Timber.d("BIRTH_DEBUG: has_given_birth=${data.has_given_birth}, baby_name=${data.baby_name}")
+                    reducer.dispatch(HomeAction.PregnancyLoaded(data))
+                },
+                onFailure = { error ->
+                    timber.log.Timber.e("BIRTH_DEBUG: Failed to get pregnancy data: ${error.message}")
+                }
+            )
+
             notificationsDeferred.await().onSuccess { count ->
-                _uiState.value = _uiState.value.copy(unreadNotificationCount = count)
+                reducer.dispatch(HomeAction.UnreadCountLoaded(count))
             }
 
-            articlesDeferred.await().onSuccess { articles ->
-                _uiState.value = _uiState.value.copy(
-                    articles = articles.take(3),
-                    totalArticleCount = articles.size
+            // Cached sections arrive through observeCachedSections()
+            val medicationsResult = medicationsDeferred.await()
+            val articlesResult = articlesDeferred.await()
+            val announcementsResult = announcementsDeferred.await()
+
+            reducer.dispatch(
+                HomeAction.LoadFinished(
+                    announcementsSynced = announcementsResult.isSuccess,
+                    medicationsSynced = medicationsResult.isSuccess,
+                    articlesSynced = articlesResult.isSuccess
                 )
-            }
+            )
 
-            announcementsDeferred.await().onSuccess { announcements ->
-                _uiState.value = _uiState.value.copy(announcements = announcements)
+            if (profileResult.isSuccess) {
+                homeSnapshotStore.write(reducer.current.toSnapshot())
             }
 
-            _uiState.value = _uiState.value.copy(isLoading = false)
+            // Warm article bodies after the home screen is populated
+            patientRepository.prefetchArticleBodies()
         }
     }
 
     fun toggleLike(announcementId: Int) {
         val pId = patientId ?: return
         viewModelScope.launch {
-            patientRepository.toggleAnnouncementLike(announcementId, pId).fold(
-                onSuccess = { (liked, likeCount) ->
-                    // Update the announcement in the list
-                    val updatedAnnouncements = _uiState.value.announcements.map { announcement ->
-                        if (announcement.id == announcementId) {
-                            announcement.copy(liked_by_me = liked, like_count = likeCount)
-                        } else {
-                            announcement
-                        }
-                    }
-                    _uiState.value = _uiState.value.copy(announcements = updatedAnnouncements)
-                },
-                onFailure = { /* Ignore */ }
-            )
+            // The repository writes the new like state to Room, which updates the list
+            patientRepository.toggleAnnouncementLike(announcementId, pId)
         }
     }
 
@@ -243,6 +441,44 @@ class HomeViewModel @Inject constructor(
         loadAllData()
     }
 
+    private fun HomeSnapshot.toUiState() = HomeUiState(
+        patientName = patientName,
+        isPregnant = isPregnant,
+        pregnancyWeeks = pregnancyWeeks,
+        pregnancyDays = pregnancyDays,
+        pregnancyProgress = pregnancyProgress,
+        dueDate = dueDate,
+        trimester = trimester,
+        babySize = babySize,
+        pregnancyTip = pregnancyTip,
+        hasGivenBirth = hasGivenBirth,
+        announcements = announcements,
+        medications = medications,
+        hasMedications = medications.isNotEmpty(),
+        articles = articles,
+        totalArticleCount = totalArticleCount,
+        unreadNotificationCount = unreadNotificationCount,
+        isFromSnapshot = true
+    )
+
+    private fun HomeUiState.toSnapshot() = HomeSnapshot(
+        patientName = patientName,
+        isPregnant = isPregnant,
+        pregnancyWeeks = pregnancyWeeks,
+        pregnancyDays = pregnancyDays,
+        pregnancyProgress = pregnancyProgress,
+        dueDate = dueDate,
+        trimester = trimester,
+        babySize = babySize,
+        pregnancyTip = pregnancyTip,
+        hasGivenBirth = hasGivenBirth,
+        announcements = announcements,
+        medications = medications,
+        articles = articles,
+        totalArticleCount = totalArticleCount,
+        unreadNotificationCount = unreadNotificationCount
+    )
+
     private data class PregnancyInfo(
         val weeks: Int,
         val days: Int,
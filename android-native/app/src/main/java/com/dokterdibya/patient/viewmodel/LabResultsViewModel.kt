@@ -2,6 +2,7 @@ package com.dokterdibya.patient.viewmodel
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.dokterdibya.patient.data.model.PatientDocument
 import com.dokterdibya.patient.data.repository.PatientRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -38,79 +39,69 @@ class LabResultsViewModel @Inject constructor(
     private val baseUrl = "https://dokterdibya.com"
 
     init {
+        observeLabResults()
         loadLabResults()
     }
 
+    /**
+     * Lab results are read from the indexed documents table;
+     * refresh()/loadLabResults() only refresh that table from the server
+     */
+    private fun observeLabResults() {
+        viewModelScope.launch {
+            repository.observeLabDocuments().collect { documents ->
+                _uiState.value = _uiState.value.copy(
+                    isLoading = _uiState.value.isLoading && documents.isEmpty(),
+                    results = documents.map { doc -> doc.toLabResultInfo() }
+                )
+            }
+        }
+    }
+
     fun refresh() {
         viewModelScope.launch {
             _uiState.value = _uiState.value.copy(isRefreshing = true)
-            repository.getLabDocuments()
-                .onSuccess { documents ->
-                    val labInfos = documents.map { doc ->
-                        val fullImageUrl = doc.documentUrl?.let { url ->
-                            if (url.startsWith("/")) "$baseUrl$url" else url
-                        }
-                        val fullDocUrl = doc.documentUrl?.let { url ->
-                            if (url.startsWith("/")) "$baseUrl$url" else url
-                        }
-                        LabResultInfo(
-                            id = doc.id,
-                            title = doc.title ?: "Hasil Lab",
-                            imageUrl = fullImageUrl,
-                            documentUrl = fullDocUrl,
-                            date = formatDate(doc.publishedAt ?: doc.createdAt),
-                            isNew = doc.isRead == 0
-                        )
-                    }
-                    _uiState.value = _uiState.value.copy(
-                        isRefreshing = false,
-                        results = labInfos
-                    )
-                }
-                .onFailure {
-                    _uiState.value = _uiState.value.copy(isRefreshing = false)
-                }
+            repository.refreshDocuments()
+            _uiState.value = _uiState.value.copy(isRefreshing = false)
         }
     }
 
     fun loadLabResults() {
         viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true, error = null)
-
-            repository.getLabDocuments()
-                .onSuccess { documents ->
-                    val labInfos = documents.map { doc ->
-                        // Prepend base URL if it's a relative path
-                        val fullImageUrl = doc.documentUrl?.let { url ->
-                            if (url.startsWith("/")) "$baseUrl$url" else url
-                        }
-                        val fullDocUrl = doc.documentUrl?.let { url ->
-                            if (url.startsWith("/")) "$baseUrl$url" else url
-                        }
-
-                        LabResultInfo(
-                            id = doc.id,
-                            title = doc.title ?: "Hasil Lab",
-                            imageUrl = fullImageUrl,
-                            documentUrl = fullDocUrl,
-                            date = formatDate(doc.publishedAt ?: doc.createdAt),
-                            isNew = doc.isRead == 0
-                        )
-                    }
-                    _uiState.value = _uiState.value.copy(
-                        isLoading = false,
-                        results = labInfos
-                    )
+            _uiState.value = _uiState.value.copy(
+                isLoading = _uiState.value.results.isEmpty(),
+                error = null
+            )
+
+            repository.refreshDocuments()
+                .onSuccess {
+                    _uiState.value = _uiState.value.copy(isLoading = false)
                 }
                 .onFailure { e ->
                     _uiState.value = _uiState.value.copy(
                         isLoading = false,
-                        error = e.message
+                        error = if (_uiState.value.results.isEmpty()) e.message else null
                     )
                 }
         }
     }
 
+    private fun PatientDocument.toLabResultInfo(): LabResultInfo {
+        // Prepend base URL if it's a relative path
+        val fullUrl = documentUrl?.let { url ->
+            if (url.startsWith("/")) "$baseUrl$url" else url
+        }
+
+        return LabResultInfo(
+            id = id,
+            title = title ?: "Hasil Lab",
+            imageUrl = fullUrl,
+            documentUrl = fullUrl,
+            date = formatDate(publishedAt ?: createdAt),
+            isNew = isRead == 0
+        )
+    }
+
     private fun formatDate(dateStr: String?): String {
         if (dateStr.isNullOrEmpty()) return "-"
         return try {
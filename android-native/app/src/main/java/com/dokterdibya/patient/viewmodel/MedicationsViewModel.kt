@@ -28,29 +28,41 @@ class MedicationsViewModel @Inject constructor(
     val uiState: StateFlow<MedicationsUiState> = _uiState.asStateFlow()
 
     init {
+        observeMedications()
         loadMedications()
     }
 
-    fun loadMedications() {
+    /**
+     * Medications are observed from Room; loadMedications() only refreshes the cache
+     */
+    private fun observeMedications() {
         viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true, error = null)
+            repository.observeMedications().collect { medications ->
+                _uiState.value = _uiState.value.copy(
+                    isLoading = _uiState.value.isLoading && medications.isEmpty(),
+                    medications = medications,
+                    currentMedications = medications.filter { it.is_current == 1 },
+                    pastMedications = medications.filter { it.is_current == 0 }
+                )
+            }
+        }
+    }
 
-            repository.getMedications()
-                .onSuccess { medications ->
-                    val current = medications.filter { it.is_current == 1 }
-                    val past = medications.filter { it.is_current == 0 }
+    fun loadMedications() {
+        viewModelScope.launch {
+            _uiState.value = _uiState.value.copy(
+                isLoading = _uiState.value.medications.isEmpty(),
+                error = null
+            )
 
-                    _uiState.value = _uiState.value.copy(
-                        isLoading = false,
-                        medications = medications,
-                        currentMedications = current,
-                        pastMedications = past
-                    )
+            repository.refreshMedications()
+                .onSuccess {
+                    _uiState.value = _uiState.value.copy(isLoading = false)
                 }
                 .onFailure { e ->
                     _uiState.value = _uiState.value.copy(
                         isLoading = false,
-                        error = e.message
+                        error = if (_uiState.value.medications.isEmpty()) e.message else null
                     )
                 }
         }
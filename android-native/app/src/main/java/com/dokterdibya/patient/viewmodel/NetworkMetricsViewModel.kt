@@ -0,0 +1,37 @@
+package com.dokterdibya.patient.viewmodel
+
+import androidx.lifecycle.ViewModel
+import com.dokterdibya.patient.data.metrics.NetworkMetrics
+import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import javax.inject.Inject
+
+data class NetworkMetricsUiState(
+    val routes: List<NetworkMetrics.RouteSnapshot> = emptyList()
+)
+
+@HiltViewModel
+class NetworkMetricsViewModel @Inject constructor(
+    private val metrics: NetworkMetrics
+) : ViewModel() {
+
+    private val _uiState = MutableStateFlow(NetworkMetricsUiState())
+    val uiState: StateFlow<NetworkMetricsUiState> = _uiState.asStateFlow()
+
+    init {
+        refresh()
+    }
+
+    fun refresh() {
+        _uiState.value = NetworkMetricsUiState(routes = metrics.snapshot())
+    }
+
+    fun reset() {
+        metrics.reset()
+        refresh()
+    }
+
+    fun exportJson(): String = metrics.exportJson()
+}
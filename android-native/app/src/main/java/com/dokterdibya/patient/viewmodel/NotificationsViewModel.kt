@@ -34,39 +34,54 @@ class NotificationsViewModel @Inject constructor(
     val uiState: StateFlow<NotificationsUiState> = _uiState.asStateFlow()
 
     init {
+        observeNotifications()
         loadNotifications()
     }
 
-    private fun loadNotifications() {
+    /**
+     * Notifications are observed from Room; refreshes only write to the cache
+     */
+    private fun observeNotifications() {
         viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true)
+            repository.observeNotifications().collect { notifications ->
+                _uiState.value = _uiState.value.copy(
+                    isLoading = _uiState.value.isLoading && notifications.isEmpty(),
+                    notifications = notifications.map { n ->
+                        NotificationItem(
+                            id = n.id,
+                            type = n.type,
+                            title = n.title,
+                            message = n.message,
+                            isRead = n.is_read == 1,
+                            createdAt = n.created_at
+                        )
+                    }
+                )
+            }
+        }
+    }
 
-            repository.getNotifications()
-                .onSuccess { notifications ->
-                    _uiState.value = NotificationsUiState(
-                        isLoading = false,
-                        notifications = notifications.map { n ->
-                            NotificationItem(
-                                id = n.id,
-                                type = n.type,
-                                title = n.title,
-                                message = n.message,
-                                isRead = n.is_read == 1,
-                                createdAt = n.created_at
-                            )
-                        }
-                    )
+    private fun loadNotifications(forceRefresh: Boolean = false) {
+        viewModelScope.launch {
+            _uiState.value = _uiState.value.copy(
+                isLoading = _uiState.value.notifications.isEmpty(),
+                error = null
+            )
+
+            repository.refreshNotifications(forceRefresh = forceRefresh)
+                .onSuccess {
+                    _uiState.value = _uiState.value.copy(isLoading = false)
                 }
                 .onFailure { e ->
                     _uiState.value = _uiState.value.copy(
                         isLoading = false,
-                        error = e.message
+                        error = if (_uiState.value.notifications.isEmpty()) e.message else null
                     )
                 }
         }
     }
 
     fun refresh() {
-        loadNotifications()
+        loadNotifications(forceRefresh = true)
     }
 }
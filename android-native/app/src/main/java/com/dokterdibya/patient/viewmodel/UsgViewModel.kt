@@ -2,6 +2,7 @@ package com.dokterdibya.patient.viewmodel
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.dokterdibya.patient.data.model.PatientDocument
 import com.dokterdibya.patient.data.repository.PatientRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -33,46 +34,63 @@ class UsgViewModel @Inject constructor(
     private val _uiState = MutableStateFlow(UsgUiState())
     val uiState: StateFlow<UsgUiState> = _uiState.asStateFlow()
 
+    private val baseUrl = "https://dokterdibya.com"
+
     init {
+        observeUsgResults()
         loadUsgResults()
     }
 
-    private val baseUrl = "https://dokterdibya.com"
+    /**
+     * USG results are read from the indexed documents table;
+     * loadUsgResults() only refreshes that table from the server
+     */
+    private fun observeUsgResults() {
+        viewModelScope.launch {
+            repository.observeUsgDocuments().collect { documents ->
+                _uiState.value = _uiState.value.copy(
+                    isLoading = _uiState.value.isLoading && documents.isEmpty(),
+                    results = documents.map { doc -> doc.toUsgInfo() }
+                )
+            }
+        }
+    }
 
     fun loadUsgResults() {
         viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true, error = null)
-
-            repository.getUsgDocuments()
-                .onSuccess { documents ->
-                    val usgInfos = documents.map { doc ->
-                        // Prepend base URL if it's a relative path
-                        val fullUrl = doc.documentUrl?.let { url ->
-                            if (url.startsWith("/")) "$baseUrl$url" else url
-                        } ?: ""
+            _uiState.value = _uiState.value.copy(
+                isLoading = _uiState.value.results.isEmpty(),
+                error = null
+            )
 
-                        UsgInfo(
-                            id = doc.id,
-                            imageUrl = fullUrl,
-                            date = formatDate(doc.publishedAt ?: doc.createdAt),
-                            gestationalAge = doc.description,
-                            notes = doc.title
-                        )
-                    }
-                    _uiState.value = _uiState.value.copy(
-                        isLoading = false,
-                        results = usgInfos
-                    )
+            repository.refreshDocuments()
+                .onSuccess {
+                    _uiState.value = _uiState.value.copy(isLoading = false)
                 }
                 .onFailure { e ->
                     _uiState.value = _uiState.value.copy(
                         isLoading = false,
-                        error = e.message
+                        error = if (_uiState.value.results.isEmpty()) e.message else null
                     )
                 }
         }
     }
 
+    private fun PatientDocument.toUsgInfo(): UsgInfo {
+        // Prepend base URL if it's a relative path
+        val fullUrl = documentUrl?.let { url ->
+            if (url.startsWith("/")) "$baseUrl$url" else url
+        } ?: ""
+
+        return UsgInfo(
+            id = id,
+            imageUrl = fullUrl,
+            date = formatDate(publishedAt ?: createdAt),
+            gestationalAge = description,
+            notes = title
+        )
+    }
+
     private fun formatDate(dateStr: String?): String {
         if (dateStr.isNullOrEmpty()) return "-"
         return try {
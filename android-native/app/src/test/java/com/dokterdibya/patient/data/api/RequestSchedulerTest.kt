@@ -0,0 +1,173 @@
+package com.dokterdibya.patient.data.api
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+class RequestSchedulerTest {
+
+    private lateinit var server: MockWebServer
+    private lateinit var scheduler: RequestScheduler
+    private lateinit var client: OkHttpClient
+    private lateinit var executor: ExecutorService
+
+    // Paths in the order the scheduler let them through to the network
+    private val started = Collections.synchronizedList(mutableListOf<String>())
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        scheduler = RequestScheduler()
+        client = OkHttpClient.Builder()
+            .addInterceptor(scheduler)
+            .addInterceptor { chain ->
+                started.add(chain.request().url.encodedPath)
+                chain.proceed(chain.request())
+            }
+            // A leaked slot fails the test instead of hanging it
+            .callTimeout(5, TimeUnit.SECONDS)
+            .build()
+        executor = Executors.newCachedThreadPool()
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        server.shutdown()
+    }
+
+    @Test
+    fun queuedCallsStartInPriorityOrderUnderTheHostCap() {
+        val held = holdAllSlots()
+
+        // Queued least urgent first, so FIFO would get the order backwards
+        val background = enqueue("/background", RequestPriority.BACKGROUND)
+        val prefetch = enqueue("/prefetch", RequestPriority.PREFETCH)
+        val visible = enqueue("/visible", RequestPriority.USER_VISIBLE)
+        assertEquals(RequestScheduler.MAX_REQUESTS_PER_HOST, started.size)
+
+        // Free one slot at a time: each lower priority needs one more free slot
+        held[0].close()
+        visible.get(5, TimeUnit.SECONDS)
+        assertFalse(prefetch.isDone)
+
+        held[1].close()
+        prefetch.get(5, TimeUnit.SECONDS)
+        assertFalse(background.isDone)
+
+        held[2].close()
+        background.get(5, TimeUnit.SECONDS)
+        held[3].close()
+
+        assertEquals(
+            listOf("/visible", "/prefetch", "/background"),
+            started.drop(RequestScheduler.MAX_REQUESTS_PER_HOST)
+        )
+    }
+
+    @Test
+    fun criticalCallStartsWhileTheHostIsFull() {
+        val held = holdAllSlots()
+
+        execute("/critical", RequestPriority.CRITICAL).close()
+
+        assertEquals("/critical", started.last())
+        held.forEach { it.close() }
+    }
+
+    @Test
+    fun cancelPrefetchFreesQueuedWaiters() {
+        val held = holdAllSlots()
+        val first = enqueue("/prefetch-1", RequestPriority.PREFETCH)
+        val second = enqueue("/prefetch-2", RequestPriority.PREFETCH)
+
+        scheduler.cancel(RequestPriority.PREFETCH)
+
+        listOf(first, second).forEach { waiter ->
+            val error = runCatching { waiter.get(2, TimeUnit.SECONDS) }.exceptionOrNull()
+            assertTrue(error is ExecutionException && error.cause is IOException)
+        }
+        assertEquals(RequestScheduler.MAX_REQUESTS_PER_HOST, server.requestCount)
+
+        // Cancelled waiters left the queue, so the next prefetch is not stuck behind them
+        held.forEach { it.close() }
+        execute("/prefetch-3", RequestPriority.PREFETCH).close()
+        assertEquals("/prefetch-3", started.last())
+    }
+
+    @Test
+    fun slotIsReleasedWhenBodyIsClosedUnread() {
+        repeat(RequestScheduler.MAX_REQUESTS_PER_HOST) { index ->
+            // Reading this body to the end would take about a minute
+            val slow = MockResponse()
+                .setBody(Buffer().write(ByteArray(64 * 1024)))
+                .throttleBody(1024, 1, TimeUnit.SECONDS)
+            execute("/slow-$index", RequestPriority.USER_VISIBLE, slow).close()
+        }
+
+        // Every slot is free again well before the throttled bodies could finish
+        val next = enqueue("/next", RequestPriority.PREFETCH)
+        next.get(2, TimeUnit.SECONDS)
+        assertEquals("/next", started.last())
+    }
+
+    /**
+     * Fill every USER_VISIBLE slot on the host with responses whose bodies
+     * stay open until the caller closes them
+     */
+    private fun holdAllSlots(): List<Response> {
+        return (0 until RequestScheduler.MAX_REQUESTS_PER_HOST).map { index ->
+            execute("/held-$index", RequestPriority.USER_VISIBLE)
+        }
+    }
+
+    private fun execute(
+        path: String,
+        priority: RequestPriority,
+        response: MockResponse = MockResponse().setBody("ok")
+    ): Response {
+        server.enqueue(response)
+        return client.newCall(request(path, priority)).execute()
+    }
+
+    /**
+     * Run a call on another thread and read its body, which frees its slot.
+     * Waits a moment so the call is queued before the next one.
+     */
+    private fun enqueue(path: String, priority: RequestPriority): Future<String> {
+        server.enqueue(MockResponse().setBody("ok"))
+        val future = executor.submit<String> {
+            client.newCall(request(path, priority)).execute().use { it.body!!.string() }
+        }
+        Thread.sleep(QUEUE_SETTLE_MS)
+        return future
+    }
+
+    private fun request(path: String, priority: RequestPriority): Request {
+        return Request.Builder()
+            .url(server.url(path))
+            .tag(RequestPriority::class.java, priority)
+            .build()
+    }
+
+    companion object {
+        private const val QUEUE_SETTLE_MS = 150L
+    }
+}
@@ -0,0 +1,182 @@
+package com.dokterdibya.patient.data.api
+
+import com.dokterdibya.patient.data.repository.TokenRepository
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.Base64
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * SessionRefresher and TokenAuthenticator against MockWebServer
+ *
+ * Both clients send every request to the mock server, whatever the host in
+ * ApiService.BASE_URL. TokenRepository is replaced by an in-memory session.
+ */
+class SessionRefresherTest {
+
+    private lateinit var server: MockWebServer
+    private lateinit var refresher: SessionRefresher
+    private lateinit var apiClient: OkHttpClient
+
+    @Volatile
+    private var accessToken: String? = STALE_TOKEN
+
+    @Volatile
+    private var refreshToken: String? = "refresh-1"
+
+    private val tokenRepository = mockk<TokenRepository> {
+        every { getCachedToken() } answers { accessToken }
+        every { getCachedRefreshToken() } answers { refreshToken }
+        every { updateTokens(any(), any()) } answers {
+            accessToken = firstArg()
+            refreshToken = secondArg()
+        }
+        every { invalidateSession() } answers {
+            accessToken = null
+            refreshToken = null
+        }
+    }
+
+    private val refreshCalls = AtomicInteger()
+
+    @Volatile
+    private var refreshResponse: () -> MockResponse = {
+        MockResponse().setBody(
+            """{"success":true,"message":"Sesi diperbarui",""" +
+                """"data":{"token":"$FRESH_TOKEN","refresh_token":"refresh-2"}}"""
+        )
+    }
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (request.path == "/" + SessionRefresher.REFRESH_PATH) {
+                    refreshCalls.incrementAndGet()
+                    // Slow enough for the other 401s to queue behind this exchange
+                    Thread.sleep(200)
+                    return refreshResponse()
+                }
+                return if (request.getHeader("Authorization") == "Bearer $FRESH_TOKEN") {
+                    MockResponse().setBody("""{"success":true}""")
+                } else {
+                    MockResponse().setResponseCode(401)
+                }
+            }
+        }
+        server.start()
+
+        val authClient = OkHttpClient.Builder()
+            .addInterceptor { chain ->
+                val url = server.url(chain.request().url.encodedPath)
+                chain.proceed(chain.request().newBuilder().url(url).build())
+            }
+            .build()
+        refresher = SessionRefresher(tokenRepository, authClient)
+        apiClient = authClient.newBuilder()
+            .authenticator(TokenAuthenticator(refresher))
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun concurrent401sShareOneRefresh() {
+        val callers = 6
+        val executor = Executors.newFixedThreadPool(callers)
+        val start = CountDownLatch(1)
+        val results = (1..callers).map {
+            executor.submit<Int> {
+                start.await()
+                apiClient.newCall(profileRequest(STALE_TOKEN)).execute().use { it.code }
+            }
+        }
+        start.countDown()
+
+        val codes = results.map { it.get(10, TimeUnit.SECONDS) }
+        executor.shutdown()
+
+        assertEquals(List(callers) { 200 }, codes)
+        assertEquals(1, refreshCalls.get())
+        assertEquals(FRESH_TOKEN, accessToken)
+        assertEquals("refresh-2", refreshToken)
+    }
+
+    @Test
+    fun rejectedRefreshTokenEndsTheSession() {
+        // The server revoked the family, e.g. because this refresh token was reused
+        refreshResponse = { MockResponse().setResponseCode(401) }
+
+        val code = apiClient.newCall(profileRequest(STALE_TOKEN)).execute().use { it.code }
+
+        assertEquals(401, code)
+        verify(exactly = 1) { tokenRepository.invalidateSession() }
+        assertNull(accessToken)
+        assertNull(refreshToken)
+
+        // Without a refresh token, later 401s go straight to the caller
+        apiClient.newCall(profileRequest(STALE_TOKEN)).execute().close()
+        assertEquals(1, refreshCalls.get())
+    }
+
+    @Test
+    fun serverErrorKeepsTheSession() {
+        refreshResponse = { MockResponse().setResponseCode(503) }
+
+        val code = apiClient.newCall(profileRequest(STALE_TOKEN)).execute().use { it.code }
+
+        assertEquals(401, code)
+        verify(exactly = 0) { tokenRepository.invalidateSession() }
+        assertEquals("refresh-1", refreshToken)
+    }
+
+    @Test
+    fun isExpiringReadsTheJwtLifetime() {
+        val now = System.currentTimeMillis() / 1000
+        val day = 24 * 60 * 60L
+
+        assertFalse(refresher.isExpiring(jwt(iat = now - day, exp = now + 6 * day)))
+        assertTrue(refresher.isExpiring(jwt(iat = now - 6 * day, exp = now + day / 2)))
+        assertFalse(refresher.isExpiring("not-a-jwt"))
+    }
+
+    private fun profileRequest(token: String): Request {
+        return Request.Builder()
+            .url(server.url("/api/patients/profile"))
+            .header("Authorization", "Bearer $token")
+            .build()
+    }
+
+    private fun jwt(iat: Long, exp: Long): String {
+        val encoder = Base64.getUrlEncoder().withoutPadding()
+        val header = encoder.encodeToString("""{"alg":"HS256","typ":"JWT"}""".toByteArray())
+        val payload = encoder.encodeToString("""{"id":"P0001","iat":$iat,"exp":$exp}""".toByteArray())
+        return "$header.$payload.signature"
+    }
+
+    companion object {
+        private const val STALE_TOKEN = "stale-token"
+        private const val FRESH_TOKEN = "fresh-token"
+    }
+}
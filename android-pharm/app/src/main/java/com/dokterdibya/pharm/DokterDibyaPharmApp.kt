@@ -1,7 +1,19 @@
 package com.dokterdibya.pharm
 
 import android.app.Application
+import com.dokterdibya.pharm.data.repository.SessionStore
 import dagger.hilt.android.HiltAndroidApp
+import javax.inject.Inject
 
 @HiltAndroidApp
-class DokterDibyaPharmApp : Application()
+class DokterDibyaPharmApp : Application() {
+
+    @Inject
+    lateinit var sessionStore: SessionStore
+
+    override fun onCreate() {
+        super.onCreate()
+        // Read the stored session while the first screen is composed
+        sessionStore.hydrate()
+    }
+}
@@ -1,6 +1,7 @@
 package com.dokterdibya.pharm.data.api
 
 import com.dokterdibya.pharm.data.model.*
+import okhttp3.ResponseBody
 import retrofit2.Response
 import retrofit2.http.*
 
@@ -15,10 +16,13 @@ interface ApiService {
     @POST("api/auth/login")
     suspend fun login(@Body credentials: LoginRequest): Response<LoginResponse>
 
+    @POST("api/auth/logout")
+    suspend fun logout(@Body request: RefreshTokenRequest): Response<ApiResponse>
+
     // ==================== Obat (Medications) ====================
 
     @GET("api/obat-sales/obat-list")
-    suspend fun getObatList(): Response<ObatListResponse>
+    suspend fun getObatList(@Query("since") since: Long? = null): Response<ObatListResponse>
 
     // ==================== Obat Sales ====================
 
@@ -51,11 +55,14 @@ interface ApiService {
     @POST("api/obat-sales/{id}/mark-paid")
     suspend fun markPaid(@Path("id") id: Int): Response<SaleResponse>
 
-    @POST("api/obat-sales/{id}/invoice-base64")
-    suspend fun getInvoiceBase64(@Path("id") id: Int): Response<InvoiceBase64Response>
+    // Raw PDF, read from the socket straight into a file
+    @Streaming
+    @POST("api/obat-sales/{id}/invoice-pdf")
+    suspend fun downloadInvoicePdf(@Path("id") id: Int): Response<ResponseBody>
 
-    @POST("api/obat-sales/{id}/etiket-base64")
-    suspend fun getEtiketBase64(@Path("id") id: Int): Response<InvoiceBase64Response>
+    @Streaming
+    @POST("api/obat-sales/{id}/etiket-pdf")
+    suspend fun downloadEtiketPdf(@Path("id") id: Int): Response<ResponseBody>
 
     @DELETE("api/obat-sales/{id}")
     suspend fun deleteSale(@Path("id") id: Int): Response<ApiResponse>
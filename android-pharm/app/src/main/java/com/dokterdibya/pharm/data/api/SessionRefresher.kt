@@ -0,0 +1,133 @@
+package com.dokterdibya.pharm.data.api
+
+import com.dokterdibya.pharm.data.model.RefreshTokenRequest
+import com.dokterdibya.pharm.data.model.RefreshTokenResponse
+import com.dokterdibya.pharm.data.repository.Session
+import com.dokterdibya.pharm.data.repository.SessionStore
+import com.dokterdibya.pharm.di.NetworkModule
+import com.google.gson.Gson
+import com.google.gson.JsonObject
+import com.google.gson.JsonSyntaxException
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import java.io.IOException
+import java.util.Base64
+import javax.inject.Inject
+import javax.inject.Named
+import javax.inject.Singleton
+
+/**
+ * Exchanges the refresh token for a new token pair, one exchange at a time
+ *
+ * Called from OkHttp threads by [AuthInterceptor] (token close to expiry) and
+ * [TokenAuthenticator] (401). When several calls find the same stale token,
+ * the first one refreshes and the rest wait on the lock, then reuse its
+ * result. The server revokes the whole session if a rotated refresh token is
+ * presented again, so only one exchange may ever be in flight.
+ */
+@Singleton
+class SessionRefresher @Inject constructor(
+    private val sessionStore: SessionStore,
+    @Named(NetworkModule.AUTH_CLIENT) private val client: OkHttpClient
+) {
+
+    companion object {
+        private const val TAG = "SessionRefresher"
+        const val REFRESH_PATH = "api/auth/refresh"
+
+        // Refresh once less than this fraction of the token's lifetime is left
+        private const val REFRESH_AHEAD_FRACTION = 5
+        private val JSON = "application/json; charset=utf-8".toMediaType()
+    }
+
+    private val gson = Gson()
+    private val lock = Any()
+
+    /**
+     * Returns a token newer than [staleToken], refreshing if no other call
+     * has yet. Null when there is no session to refresh or the exchange failed.
+     */
+    fun refresh(staleToken: String?): String? {
+        synchronized(lock) {
+            val current = sessionStore.current() ?: return null
+            if (current.token != staleToken) {
+                return current.token
+            }
+            val refreshToken = current.refreshToken ?: return null
+            return exchange(refreshToken)
+        }
+    }
+
+    /**
+     * Whether [token] is close enough to its exp claim to refresh before
+     * sending. Unreadable tokens are left for the server to judge.
+     */
+    fun isExpiring(token: String): Boolean {
+        val claims = decodeClaims(token) ?: return false
+        val exp = claims.longOrZero("exp")
+        val iat = claims.longOrZero("iat")
+        if (exp <= 0L || iat <= 0L || exp <= iat) return false
+
+        val now = System.currentTimeMillis() / 1000
+        return exp - now < (exp - iat) / REFRESH_AHEAD_FRACTION
+    }
+
+    private fun exchange(refreshToken: String): String? {
+        val body = gson.toJson(RefreshTokenRequest(refreshToken)).toRequestBody(JSON)
+        val request = Request.Builder()
+            .url(ApiService.BASE_URL + REFRESH_PATH)
+            .post(body)
+            .build()
+
+        return try {
+            client.newCall(request).execute().use { response ->
+                val parsed = response.body?.string()?.let {
+                    gson.fromJson(it, RefreshTokenResponse::class.java)
+                }
+                val data = parsed?.data
+                when {
+                    response.isSuccessful && data != null -> {
+                        sessionStore.updateAsync(Session(data.token, data.refreshToken))
+                        android.util.Log.d(TAG, "Session refreshed")
+                        data.token
+                    }
+                    response.code == 401 -> {
+                        // Refresh token expired, revoked or reused: log in again
+                        android.util.Log.w(TAG, "Refresh token rejected, ending session")
+                        sessionStore.clearAsync()
+                        null
+                    }
+                    else -> {
+                        android.util.Log.w(TAG, "Session refresh failed: HTTP ${response.code}")
+                        null
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            // Offline: keep the session, the next request tries again
+            android.util.Log.d(TAG, "Session refresh failed: ${e.message}")
+            null
+        } catch (e: JsonSyntaxException) {
+            android.util.Log.e(TAG, "Unexpected refresh response: ${e.message}")
+            null
+        }
+    }
+
+    private fun decodeClaims(token: String): JsonObject? {
+        val payload = token.split('.').getOrNull(1) ?: return null
+        return try {
+            // java.util.Base64 is available from minSdk 26
+            val json = Base64.getUrlDecoder().decode(payload)
+            gson.fromJson(String(json, Charsets.UTF_8), JsonObject::class.java)
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun JsonObject.longOrZero(name: String): Long {
+        val value = get(name)
+        return if (value != null && value.isJsonPrimitive && value.asJsonPrimitive.isNumber) value.asLong else 0L
+    }
+}
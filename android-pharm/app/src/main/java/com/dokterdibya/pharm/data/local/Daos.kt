@@ -0,0 +1,147 @@
+package com.dokterdibya.pharm.data.local
+
+import androidx.paging.PagingSource
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import kotlinx.coroutines.flow.Flow
+
+@Dao
+interface ObatDao {
+    @Query("SELECT * FROM obat WHERE isActive = 1")
+    fun observeActive(): Flow<List<ObatEntity>>
+
+    @Query("SELECT COUNT(*) FROM obat WHERE isActive = 1")
+    suspend fun countActive(): Int
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAll(items: List<ObatEntity>)
+
+    @Query("DELETE FROM obat")
+    suspend fun deleteAll()
+
+    /**
+     * Full sync: the response is the whole active catalog
+     */
+    @Transaction
+    suspend fun replaceAll(items: List<ObatEntity>) {
+        deleteAll()
+        insertAll(items)
+    }
+
+    @Query("SELECT id FROM obat")
+    suspend fun getAllIds(): List<Int>
+
+    @Query("DELETE FROM obat WHERE id IN (:ids)")
+    suspend fun deleteByIds(ids: List<Int>)
+
+    /**
+     * Delta sync: upsert the changed rows, then drop every row the server no
+     * longer lists as active (hard-deleted ones never show up in [items]).
+     * Returns the number of rows dropped.
+     */
+    @Transaction
+    suspend fun applyDelta(items: List<ObatEntity>, activeIds: List<Int>): Int {
+        insertAll(items)
+        val active = activeIds.toHashSet()
+        val removed = getAllIds().filter { it !in active }
+        // Stay under SQLite's bound-variable limit
+        removed.chunked(500).forEach { deleteByIds(it) }
+        return removed.size
+    }
+}
+
+@Dao
+interface SyncStateDao {
+    @Query("SELECT * FROM sync_state WHERE resource = :resource")
+    suspend fun get(resource: String): SyncStateEntity?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsert(state: SyncStateEntity)
+
+    @Query("DELETE FROM sync_state")
+    suspend fun deleteAll()
+}
+
+@Dao
+interface SaleDao {
+    // Same order as the server's ORDER BY created_at DESC
+    @Query(
+        """SELECT sales.* FROM sales
+           INNER JOIN sale_list_keys ON sale_list_keys.saleId = sales.id
+           WHERE sale_list_keys.status = :status AND sale_list_keys.hospital = :hospital
+           ORDER BY sales.createdAt DESC, sales.id DESC"""
+    )
+    fun pagingSource(status: String, hospital: String): PagingSource<Int, SaleEntity>
+
+    @Query("SELECT COUNT(*) FROM sale_list_keys WHERE status = :status AND hospital = :hospital")
+    suspend fun countLoaded(status: String, hospital: String): Int
+
+    @Query(
+        """SELECT MIN(sales.createdAt) FROM sales
+           INNER JOIN sale_list_keys ON sale_list_keys.saleId = sales.id
+           WHERE sale_list_keys.status = :status AND sale_list_keys.hospital = :hospital"""
+    )
+    suspend fun oldestLoaded(status: String, hospital: String): String?
+
+    @Query("SELECT DISTINCT status, hospital FROM sale_list_keys")
+    suspend fun loadedLists(): List<LoadedSaleList>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertAll(sales: List<SaleEntity>)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insertKeys(keys: List<SaleListKey>)
+
+    @Query("DELETE FROM sale_list_keys WHERE status = :status AND hospital = :hospital")
+    suspend fun clearKeys(status: String, hospital: String)
+
+    @Query("DELETE FROM sale_list_keys WHERE status = :status AND hospital = :hospital AND saleId = :saleId")
+    suspend fun deleteKey(status: String, hospital: String, saleId: Int)
+
+    @Query("DELETE FROM sale_list_keys WHERE saleId = :saleId")
+    suspend fun deleteKeysFor(saleId: Int)
+
+    @Query("DELETE FROM sales WHERE id = :id")
+    suspend fun deleteById(id: Int)
+
+    // Rows no filter refers to any more
+    @Query("DELETE FROM sales WHERE id NOT IN (SELECT saleId FROM sale_list_keys)")
+    suspend fun deleteUnlisted()
+
+    @Query("DELETE FROM sale_list_keys")
+    suspend fun deleteAllKeys()
+
+    @Query("DELETE FROM sales")
+    suspend fun deleteAllSales()
+
+    /**
+     * Store one page of a filter's list; a refresh starts the list over
+     */
+    @Transaction
+    suspend fun insertPage(status: String, hospital: String, sales: List<SaleEntity>, refresh: Boolean) {
+        if (refresh) {
+            clearKeys(status, hospital)
+            deleteUnlisted()
+        }
+        upsertAll(sales)
+        insertKeys(sales.map { SaleListKey(status, hospital, it.id) })
+    }
+
+    @Transaction
+    suspend fun delete(id: Int) {
+        deleteKeysFor(id)
+        deleteById(id)
+    }
+
+    /**
+     * Logout: another user must not see this one's sales
+     */
+    @Transaction
+    suspend fun clear() {
+        deleteAllKeys()
+        deleteAllSales()
+    }
+}
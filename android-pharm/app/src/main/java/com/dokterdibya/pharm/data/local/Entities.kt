@@ -0,0 +1,142 @@
+package com.dokterdibya.pharm.data.local
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import com.dokterdibya.pharm.data.model.Obat
+import com.dokterdibya.pharm.data.model.ObatSale
+
+/**
+ * Room entities for the local obat catalog and the cached sales list
+ */
+
+/**
+ * One catalog row. Deactivated obat are kept with [isActive] false so a
+ * delta sync can hide them without a full reload.
+ */
+@Entity(tableName = "obat")
+data class ObatEntity(
+    @PrimaryKey val id: Int,
+    val code: String,
+    val name: String,
+    val price: Double,
+    val stock: Int,
+    val category: String?,
+    val unit: String?,
+    val isActive: Boolean,
+    val syncedAt: Long = System.currentTimeMillis()
+) {
+    fun toObat() = Obat(
+        id = id,
+        code = code,
+        name = name,
+        price = price,
+        stock = stock,
+        category = category,
+        unit = unit
+    )
+
+    companion object {
+        fun fromObat(obat: Obat) = ObatEntity(
+            id = obat.id,
+            code = obat.code,
+            name = obat.name,
+            price = obat.price,
+            stock = obat.stock,
+            category = obat.category,
+            unit = obat.unit,
+            isActive = obat.isActive != 0
+        )
+    }
+}
+
+/**
+ * Server version a synced resource is at, sent back as ?since= on the next sync
+ */
+@Entity(tableName = "sync_state")
+data class SyncStateEntity(
+    @PrimaryKey val resource: String,
+    val version: Long,
+    val syncedAt: Long = System.currentTimeMillis()
+)
+
+/**
+ * One sale as shown in the list. Items are not cached; SaleDetailScreen
+ * always loads the sale from the server.
+ */
+@Entity(tableName = "sales", indices = [Index("createdAt")])
+data class SaleEntity(
+    @PrimaryKey val id: Int,
+    val saleNumber: String,
+    val patientName: String,
+    val patientAge: String?,
+    val hospitalSource: String,
+    val hospitalName: String?,
+    val subtotal: Double,
+    val total: Double,
+    val status: String,
+    val paymentMethod: String?,
+    val invoiceUrl: String?,
+    val createdAt: String,
+    val createdBy: String?,
+    val syncedAt: Long = System.currentTimeMillis()
+) {
+    fun toSale() = ObatSale(
+        id = id,
+        saleNumber = saleNumber,
+        patientName = patientName,
+        patientAge = patientAge,
+        hospitalSource = hospitalSource,
+        hospitalName = hospitalName,
+        items = null,
+        subtotal = subtotal,
+        total = total,
+        status = status,
+        paymentMethod = paymentMethod,
+        invoiceUrl = invoiceUrl,
+        createdAt = createdAt,
+        createdBy = createdBy
+    )
+
+    companion object {
+        fun fromSale(sale: ObatSale) = SaleEntity(
+            id = sale.id,
+            saleNumber = sale.saleNumber,
+            patientName = sale.patientName,
+            patientAge = sale.patientAge,
+            hospitalSource = sale.hospitalSource,
+            hospitalName = sale.hospitalName,
+            subtotal = sale.subtotal,
+            total = sale.total,
+            status = sale.status,
+            paymentMethod = sale.paymentMethod,
+            invoiceUrl = sale.invoiceUrl,
+            createdAt = sale.createdAt,
+            createdBy = sale.createdBy
+        )
+    }
+}
+
+/**
+ * Membership of a sale in the list loaded for one filter; "" stands for
+ * "any" in [status] and [hospital]. The number of members of a filter is
+ * the offset of its next page.
+ */
+@Entity(
+    tableName = "sale_list_keys",
+    primaryKeys = ["status", "hospital", "saleId"],
+    indices = [Index("saleId")]
+)
+data class SaleListKey(
+    val status: String,
+    val hospital: String,
+    val saleId: Int
+)
+
+/**
+ * A filter with at least one loaded page
+ */
+data class LoadedSaleList(
+    val status: String,
+    val hospital: String
+)
@@ -0,0 +1,31 @@
+package com.dokterdibya.pharm.data.local
+
+import androidx.room.Database
+import androidx.room.RoomDatabase
+
+/**
+ * Room database for the obat catalog and the sales list cache
+ *
+ * Everything here can be re-downloaded, so schema changes without a
+ * migration rebuild the database (see DatabaseModule). Room exports each
+ * version's schema to app/schemas; commit it with the change.
+ */
+@Database(
+    entities = [
+        ObatEntity::class,
+        SyncStateEntity::class,
+        SaleEntity::class,
+        SaleListKey::class
+    ],
+    version = 2,
+    exportSchema = true
+)
+abstract class PharmDatabase : RoomDatabase() {
+    abstract fun obatDao(): ObatDao
+    abstract fun syncStateDao(): SyncStateDao
+    abstract fun saleDao(): SaleDao
+
+    companion object {
+        const val DATABASE_NAME = "dokterdibya_pharm_db"
+    }
+}
@@ -0,0 +1,57 @@
+package com.dokterdibya.pharm.data.metrics
+
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.IOException
+import java.net.ConnectException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Counts failed calls per route by error class
+ *
+ * Uses the same class names as the patient app's NetworkException so exports
+ * from both apps line up. Runs as an application interceptor, so it sees the
+ * outcome after OkHttp's retries and redirects.
+ */
+@Singleton
+class MetricsInterceptor @Inject constructor(
+    private val metrics: NetworkMetrics
+) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val response = try {
+            chain.proceed(request)
+        } catch (e: IOException) {
+            metrics.recordError(metrics.routeOf(request), errorClass(e))
+            throw e
+        }
+
+        if (!response.isSuccessful && response.code != 304) {
+            metrics.recordError(metrics.routeOf(request), errorClass(response.code))
+        }
+        return response
+    }
+
+    private fun errorClass(e: IOException): String {
+        return when (e) {
+            is UnknownHostException, is ConnectException -> "NoConnection"
+            is SocketTimeoutException -> "Timeout"
+            else -> "Unknown"
+        }
+    }
+
+    private fun errorClass(code: Int): String {
+        return when (code) {
+            401 -> "Unauthorized"
+            403 -> "Forbidden"
+            404 -> "NotFound"
+            422 -> "ValidationError"
+            in 500..599 -> "ServerError($code)"
+            else -> "Unknown"
+        }
+    }
+}
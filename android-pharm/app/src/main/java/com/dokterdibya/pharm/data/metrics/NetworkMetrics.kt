@@ -0,0 +1,154 @@
+package com.dokterdibya.pharm.data.metrics
+
+import com.dokterdibya.pharm.data.api.ApiService
+import com.google.gson.GsonBuilder
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.Request
+import retrofit2.Invocation
+import retrofit2.http.DELETE
+import retrofit2.http.GET
+import retrofit2.http.HTTP
+import retrofit2.http.PATCH
+import retrofit2.http.POST
+import retrofit2.http.PUT
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Per-route network measurements recorded by [MetricsEventListener] and
+ * [MetricsInterceptor]
+ *
+ * Durations are kept in microseconds. Routes are normalized templates such as
+ * `POST api/obat-sales/{id}/invoice-base64`, so ids don't split one endpoint
+ * into many rows.
+ */
+@Singleton
+class NetworkMetrics @Inject constructor() {
+
+    companion object {
+        private val API_HOST = ApiService.BASE_URL.toHttpUrl().host
+        private val ID_SEGMENT = Regex("^(\\d+|[0-9a-fA-F-]{32,36}|[0-9a-zA-Z_-]{20,})$")
+        private val HAS_DIGIT = Regex("\\d")
+    }
+
+    class RouteStats {
+        val dns = LatencyHistogram()
+        val connect = LatencyHistogram()
+        val tls = LatencyHistogram()
+        val ttfb = LatencyHistogram()
+        val body = LatencyHistogram()
+        val total = LatencyHistogram()
+        val calls = LongAdder()
+        val bytesIn = LongAdder()
+        val bytesOut = LongAdder()
+        val cacheHits = LongAdder()
+        val cacheMisses = LongAdder()
+        val conditionalHits = LongAdder()
+        val errors = ConcurrentHashMap<String, LongAdder>()
+    }
+
+    data class RouteSnapshot(
+        val route: String,
+        val calls: Long,
+        val dnsUs: LatencyHistogram.Snapshot,
+        val connectUs: LatencyHistogram.Snapshot,
+        val tlsUs: LatencyHistogram.Snapshot,
+        val ttfbUs: LatencyHistogram.Snapshot,
+        val bodyUs: LatencyHistogram.Snapshot,
+        val totalUs: LatencyHistogram.Snapshot,
+        val bytesIn: Long,
+        val bytesOut: Long,
+        val cacheHits: Long,
+        val cacheMisses: Long,
+        val conditionalHits: Long,
+        val errors: Map<String, Long>
+    )
+
+    private val routes = ConcurrentHashMap<String, RouteStats>()
+    private val gson = GsonBuilder().setPrettyPrinting().create()
+
+    @Volatile
+    private var since = System.currentTimeMillis()
+
+    fun stats(route: String): RouteStats {
+        return routes[route] ?: routes.computeIfAbsent(route) { RouteStats() }
+    }
+
+    fun recordError(route: String, errorClass: String) {
+        val errors = stats(route).errors
+        (errors[errorClass] ?: errors.computeIfAbsent(errorClass) { LongAdder() }).increment()
+    }
+
+    /**
+     * Routes sorted by slowest p90 first
+     */
+    fun snapshot(): List<RouteSnapshot> {
+        return routes.map { (route, stats) ->
+            RouteSnapshot(
+                route = route,
+                calls = stats.calls.sum(),
+                dnsUs = stats.dns.snapshot(),
+                connectUs = stats.connect.snapshot(),
+                tlsUs = stats.tls.snapshot(),
+                ttfbUs = stats.ttfb.snapshot(),
+                bodyUs = stats.body.snapshot(),
+                totalUs = stats.total.snapshot(),
+                bytesIn = stats.bytesIn.sum(),
+                bytesOut = stats.bytesOut.sum(),
+                cacheHits = stats.cacheHits.sum(),
+                cacheMisses = stats.cacheMisses.sum(),
+                conditionalHits = stats.conditionalHits.sum(),
+                errors = stats.errors.mapValues { it.value.sum() }
+            )
+        }.sortedByDescending { it.totalUs.p90 }
+    }
+
+    fun exportJson(): String {
+        return gson.toJson(
+            mapOf(
+                "since" to since,
+                "exportedAt" to System.currentTimeMillis(),
+                "unit" to "microseconds",
+                "routes" to snapshot()
+            )
+        )
+    }
+
+    fun reset() {
+        routes.clear()
+        since = System.currentTimeMillis()
+    }
+
+    /**
+     * Route template for a request: the Retrofit annotation when the call came
+     * from ApiService, otherwise the path with id-like segments replaced
+     */
+    fun routeOf(request: Request): String {
+        val template = request.tag(Invocation::class.java)?.method()?.annotations?.firstNotNullOfOrNull {
+            when (it) {
+                is GET -> it.value
+                is POST -> it.value
+                is PUT -> it.value
+                is DELETE -> it.value
+                is PATCH -> it.value
+                is HTTP -> it.path
+                else -> null
+            }
+        }
+        if (template != null) {
+            return "${request.method} ${template.trimStart('/')}"
+        }
+
+        val url = request.url
+        if (url.host != API_HOST) {
+            // Images and downloads from other hosts: one row per host
+            return "${request.method} ${url.host}"
+        }
+        val path = url.pathSegments.filter { it.isNotEmpty() }.joinToString("/") { segment ->
+            if (ID_SEGMENT.matches(segment) && HAS_DIGIT.containsMatchIn(segment)) "{id}" else segment
+        }
+        return "${request.method} $path"
+    }
+}
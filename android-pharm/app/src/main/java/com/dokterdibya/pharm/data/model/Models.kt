@@ -24,9 +24,28 @@ data class LoginResponse(
 
 data class LoginData(
     val token: String? = null,
+    @SerializedName("refresh_token")
+    val refreshToken: String? = null,
     val user: User? = null
 )
 
+data class RefreshTokenRequest(
+    @SerializedName("refresh_token")
+    val refreshToken: String
+)
+
+data class RefreshTokenResponse(
+    val success: Boolean,
+    val message: String? = null,
+    val data: RefreshTokenData? = null
+)
+
+data class RefreshTokenData(
+    val token: String,
+    @SerializedName("refresh_token")
+    val refreshToken: String
+)
+
 data class User(
     val id: String,  // Backend returns string IDs like "UDZAQUCQWZ"
     val name: String,
@@ -42,13 +61,20 @@ data class Obat(
     val name: String,
     val price: Double,
     val stock: Int,
-    val category: String? = null
+    val category: String? = null,
+    val unit: String? = null,
+    @SerializedName("is_active")
+    val isActive: Int? = null  // 0 = deactivated; only delta responses contain those
 )
 
 data class ObatListResponse(
     val success: Boolean,
     val message: String? = null,
-    val data: List<Obat> = emptyList()
+    val data: List<Obat> = emptyList(),
+    val version: Long? = null,  // Pass back as ?since= for the next delta
+    val full: Boolean? = null,  // false when data only holds rows changed since the given version
+    @SerializedName("active_ids")
+    val activeIds: List<Int>? = null  // Delta only: every active id, to drop rows deleted on the server
 )
 
 // ==================== Sales ====================
@@ -91,6 +117,19 @@ data class ObatSale(
     val createdBy: String?
 )
 
+/**
+ * Sales list filter, sent as the status and hospital query params; null is "all"
+ */
+data class SalesFilter(
+    val status: String? = null,
+    val hospital: String? = null
+) {
+    fun matches(sale: ObatSale): Boolean {
+        return (status == null || sale.status == status) &&
+            (hospital == null || sale.hospitalSource == hospital)
+    }
+}
+
 data class SalesListResponse(
     val success: Boolean,
     val data: List<ObatSale>
@@ -131,11 +170,3 @@ data class PaymentRequest(
     @SerializedName("payment_method")
     val paymentMethod: String // cash, bpjs, insurance
 )
-
-data class InvoiceBase64Response(
-    val success: Boolean,
-    val filename: String?,
-    val base64: String?,
-    val mimeType: String?,
-    val message: String? = null
-)
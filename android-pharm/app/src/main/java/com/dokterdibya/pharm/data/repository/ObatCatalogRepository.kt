@@ -0,0 +1,87 @@
+package com.dokterdibya.pharm.data.repository
+
+import com.dokterdibya.pharm.data.api.ApiService
+import com.dokterdibya.pharm.data.local.ObatDao
+import com.dokterdibya.pharm.data.local.ObatEntity
+import com.dokterdibya.pharm.data.local.SyncStateDao
+import com.dokterdibya.pharm.data.local.SyncStateEntity
+import com.dokterdibya.pharm.data.search.ObatSearchIndex
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.stateIn
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Obat catalog kept in Room and searched through [ObatSearchIndex]
+ *
+ * The first sync downloads the whole catalog. After that only rows changed
+ * since the stored version are fetched, plus the list of active ids that
+ * drops rows deleted on the server, so opening NewSaleScreen usually costs
+ * one small request and the picker works offline. The index is
+ * rebuilt off the main thread whenever the table changes.
+ */
+@Singleton
+class ObatCatalogRepository @Inject constructor(
+    private val apiService: ApiService,
+    private val obatDao: ObatDao,
+    private val syncStateDao: SyncStateDao
+) {
+    companion object {
+        private const val TAG = "ObatCatalog"
+        private const val RESOURCE = "obat_catalog"
+    }
+
+    private val scope = CoroutineScope(Dispatchers.Default + SupervisorJob())
+    private val syncMutex = Mutex()
+
+    val index: StateFlow<ObatSearchIndex> = obatDao.observeActive()
+        .map { rows -> ObatSearchIndex(rows.map { it.toObat() }) }
+        .flowOn(Dispatchers.Default)
+        .stateIn(scope, SharingStarted.Eagerly, ObatSearchIndex.EMPTY)
+
+    /**
+     * Bring the catalog up to date; returns the number of rows received
+     */
+    suspend fun sync(): Result<Int> = syncMutex.withLock {
+        try {
+            val since = syncStateDao.get(RESOURCE)?.version?.takeIf { obatDao.countActive() > 0 }
+            val response = apiService.getObatList(since)
+            val body = response.body()
+            if (!response.isSuccessful || body == null) {
+                val errorBody = response.errorBody()?.string()
+                return Result.failure(Exception("HTTP ${response.code()}: ${errorBody ?: response.message()}"))
+            }
+            if (!body.success) {
+                return Result.failure(Exception(body.message ?: "Failed to get obat list"))
+            }
+
+            val rows = body.data.map { ObatEntity.fromObat(it) }
+            val activeIds = body.activeIds
+            // A server without versioning always sends the full list
+            when {
+                body.full != false -> obatDao.replaceAll(rows)
+                activeIds != null -> {
+                    val removed = obatDao.applyDelta(rows, activeIds)
+                    if (removed > 0) android.util.Log.d(TAG, "Dropped $removed obat deleted on the server")
+                }
+                else -> obatDao.insertAll(rows)
+            }
+
+            if (body.version != null) {
+                syncStateDao.upsert(SyncStateEntity(RESOURCE, body.version))
+            }
+            android.util.Log.d(TAG, "Synced ${rows.size} obat (${if (since == null) "full" else "since $since"})")
+            Result.success(rows.size)
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.dokterdibya.pharm.data.repository
+
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.LoadType
+import androidx.paging.PagingState
+import androidx.paging.RemoteMediator
+import com.dokterdibya.pharm.data.api.ApiService
+import com.dokterdibya.pharm.data.local.SaleDao
+import com.dokterdibya.pharm.data.local.SaleEntity
+import com.dokterdibya.pharm.data.model.SalesFilter
+
+/**
+ * Fills the sales table page by page from `api/obat-sales?status&hospital&limit&offset`
+ *
+ * Each filter keeps its own list in sale_list_keys, so switching chips shows
+ * what was loaded for that filter before while the first page is refreshed.
+ */
+@OptIn(ExperimentalPagingApi::class)
+class SalesRemoteMediator(
+    private val apiService: ApiService,
+    private val saleDao: SaleDao,
+    private val filter: SalesFilter
+) : RemoteMediator<Int, SaleEntity>() {
+
+    private val status = filter.status.orEmpty()
+    private val hospital = filter.hospital.orEmpty()
+
+    override suspend fun initialize(): InitializeAction {
+        // Sales change on other devices too; show the cache, but always refresh
+        return InitializeAction.LAUNCH_INITIAL_REFRESH
+    }
+
+    override suspend fun load(loadType: LoadType, state: PagingState<Int, SaleEntity>): MediatorResult {
+        val offset = when (loadType) {
+            LoadType.REFRESH -> 0
+            // Server order is newest first, so nothing is ever prepended
+            LoadType.PREPEND -> return MediatorResult.Success(endOfPaginationReached = true)
+            LoadType.APPEND -> saleDao.countLoaded(status, hospital)
+        }
+        val limit = if (loadType == LoadType.REFRESH) state.config.initialLoadSize else state.config.pageSize
+
+        return try {
+            val response = apiService.getSales(filter.status, filter.hospital, limit, offset)
+            val body = response.body()
+            if (!response.isSuccessful || body == null) {
+                return MediatorResult.Error(Exception("Failed to get sales"))
+            }
+            saleDao.insertPage(
+                status = status,
+                hospital = hospital,
+                sales = body.data.map { SaleEntity.fromSale(it) },
+                refresh = loadType == LoadType.REFRESH
+            )
+            MediatorResult.Success(endOfPaginationReached = body.data.size < limit)
+        } catch (e: Exception) {
+            MediatorResult.Error(e)
+        }
+    }
+}
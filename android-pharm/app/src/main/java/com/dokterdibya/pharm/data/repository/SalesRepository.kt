@@ -1,16 +1,48 @@
 package com.dokterdibya.pharm.data.repository
 
+import android.content.Context
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.map
+import androidx.room.withTransaction
 import com.dokterdibya.pharm.data.api.ApiService
+import com.dokterdibya.pharm.data.local.PharmDatabase
+import com.dokterdibya.pharm.data.local.SaleDao
+import com.dokterdibya.pharm.data.local.SaleEntity
+import com.dokterdibya.pharm.data.local.SaleListKey
 import com.dokterdibya.pharm.data.model.*
-import kotlinx.coroutines.flow.first
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.withContext
+import okhttp3.ResponseBody
+import okio.buffer
+import okio.sink
+import org.json.JSONObject
+import retrofit2.Response
+import java.io.File
+import java.io.IOException
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
 class SalesRepository @Inject constructor(
     private val apiService: ApiService,
-    private val tokenRepository: TokenRepository
+    private val tokenRepository: TokenRepository,
+    private val sessionStore: SessionStore,
+    @ApplicationContext private val context: Context,
+    private val database: PharmDatabase,
+    private val saleDao: SaleDao
 ) {
+    companion object {
+        const val SALES_PAGE_SIZE = 20
+
+        private val FILENAME = Regex("filename=\"?([^\";]+)\"?")
+    }
+
     // ==================== Auth ====================
 
     suspend fun login(email: String, password: String): Result<LoginResponse> {
@@ -25,13 +57,11 @@ class SalesRepository @Inject constructor(
                 android.util.Log.d("SalesRepository", "Body: success=${body.success}, hasToken=${token != null}")
                 if (body.success && token != null) {
                     android.util.Log.d("SalesRepository", "Saving token: ${token.take(20)}...")
-                    tokenRepository.saveToken(token)
+                    // In memory before this returns, so the next request is authorized
+                    sessionStore.update(Session(token, body.data.refreshToken))
                     user?.let {
                         tokenRepository.saveUserInfo(it.name, it.email, it.role)
                     }
-                    // Verify token was saved
-                    val savedToken = tokenRepository.getToken().first()
-                    android.util.Log.d("SalesRepository", "Token verified: ${savedToken != null}")
                 } else {
                     android.util.Log.e("SalesRepository", "NO TOKEN! success=${body.success}, msg=${body.message}")
                 }
@@ -47,48 +77,37 @@ class SalesRepository @Inject constructor(
     }
 
     suspend fun logout() {
-        tokenRepository.clearAll()
-    }
-
-    // ==================== Obat ====================
-
-    suspend fun getObatList(): Result<List<Obat>> {
-        return try {
-            val response = apiService.getObatList()
-            if (response.isSuccessful && response.body() != null) {
-                val body = response.body()!!
-                if (body.success) {
-                    Result.success(body.data)
-                } else {
-                    Result.failure(Exception(body.message ?: "Failed to get obat list"))
-                }
-            } else {
-                val errorBody = response.errorBody()?.string()
-                Result.failure(Exception("HTTP ${response.code()}: ${errorBody ?: response.message()}"))
+        // Revoke the refresh token server-side; a failure only leaves it to expire
+        sessionStore.current()?.refreshToken?.let { refreshToken ->
+            try {
+                apiService.logout(RefreshTokenRequest(refreshToken))
+            } catch (e: Exception) {
+                android.util.Log.d("SalesRepository", "Logout revoke failed: ${e.message}")
             }
-        } catch (e: Exception) {
-            Result.failure(e)
         }
+        sessionStore.clear()
+        saleDao.clear()
     }
 
     // ==================== Sales ====================
 
-    suspend fun getSales(
-        status: String? = null,
-        hospital: String? = null,
-        limit: Int = 50,
-        offset: Int = 0
-    ): Result<List<ObatSale>> {
-        return try {
-            val response = apiService.getSales(status, hospital, limit, offset)
-            if (response.isSuccessful && response.body() != null) {
-                Result.success(response.body()!!.data)
-            } else {
-                Result.failure(Exception("Failed to get sales"))
-            }
-        } catch (e: Exception) {
-            Result.failure(e)
-        }
+    /**
+     * Sales list for [filter] backed by Room; pages are fetched by
+     * [SalesRemoteMediator] as the user scrolls. Mutations below update the
+     * affected sale in place instead of reloading the list.
+     */
+    @OptIn(ExperimentalPagingApi::class)
+    fun getSalesPaged(filter: SalesFilter): Flow<PagingData<ObatSale>> {
+        return Pager(
+            config = PagingConfig(
+                pageSize = SALES_PAGE_SIZE,
+                prefetchDistance = SALES_PAGE_SIZE / 3,
+                initialLoadSize = SALES_PAGE_SIZE * 2,
+                enablePlaceholders = true
+            ),
+            remoteMediator = SalesRemoteMediator(apiService, saleDao, filter),
+            pagingSourceFactory = { saleDao.pagingSource(filter.status.orEmpty(), filter.hospital.orEmpty()) }
+        ).flow.map { pagingData -> pagingData.map { it.toSale() } }
     }
 
     suspend fun getSaleDetail(id: Int): Result<ObatSale> {
@@ -116,6 +135,7 @@ class SalesRepository @Inject constructor(
             if (response.isSuccessful && response.body() != null) {
                 val body = response.body()!!
                 if (body.success && body.data != null) {
+                    refreshCachedSale(body.data.id)
                     Result.success(body.data)
                 } else {
                     Result.failure(Exception(body.message ?: "Failed to create sale"))
@@ -133,6 +153,7 @@ class SalesRepository @Inject constructor(
             val request = UpdateSaleRequest(items)
             val response = apiService.updateSale(id, request)
             if (response.isSuccessful && response.body()?.success == true) {
+                refreshCachedSale(id)
                 Result.success(Unit)
             } else {
                 Result.failure(Exception("Failed to update sale"))
@@ -146,6 +167,7 @@ class SalesRepository @Inject constructor(
         return try {
             val response = apiService.confirmSale(id, PaymentRequest(paymentMethod))
             if (response.isSuccessful && response.body()?.success == true) {
+                refreshCachedSale(id)
                 Result.success(Unit)
             } else {
                 Result.failure(Exception(response.body()?.message ?: "Failed to confirm sale"))
@@ -159,6 +181,7 @@ class SalesRepository @Inject constructor(
         return try {
             val response = apiService.markPaid(id)
             if (response.isSuccessful && response.body()?.success == true) {
+                refreshCachedSale(id)
                 Result.success(Unit)
             } else {
                 Result.failure(Exception("Failed to mark as paid"))
@@ -168,52 +191,118 @@ class SalesRepository @Inject constructor(
         }
     }
 
-    suspend fun getInvoiceBase64(id: Int): Result<InvoiceBase64Response> {
+    suspend fun getInvoicePdf(id: Int, status: String?): Result<File> {
+        return getSalePdf(id, status, "invoices", "invoice") { apiService.downloadInvoicePdf(id) }
+    }
+
+    suspend fun getEtiketPdf(id: Int, status: String?): Result<File> {
+        return getSalePdf(id, status, "etikets", "etiket") { apiService.downloadEtiketPdf(id) }
+    }
+
+    suspend fun deleteSale(id: Int): Result<Unit> {
         return try {
-            val response = apiService.getInvoiceBase64(id)
-            if (response.isSuccessful && response.body() != null) {
-                val body = response.body()!!
-                if (body.success && body.base64 != null) {
-                    Result.success(body)
-                } else {
-                    Result.failure(Exception(body.message ?: "Failed to get invoice"))
-                }
+            val response = apiService.deleteSale(id)
+            if (response.isSuccessful && response.body()?.success == true) {
+                saleDao.delete(id)
+                Result.success(Unit)
             } else {
-                Result.failure(Exception("Failed to get invoice"))
+                Result.failure(Exception("Failed to delete sale"))
             }
         } catch (e: Exception) {
             Result.failure(e)
         }
     }
 
-    suspend fun getEtiketBase64(id: Int): Result<InvoiceBase64Response> {
-        return try {
-            val response = apiService.getEtiketBase64(id)
-            if (response.isSuccessful && response.body() != null) {
-                val body = response.body()!!
-                if (body.success && body.base64 != null) {
-                    Result.success(body)
-                } else {
-                    Result.failure(Exception(body.message ?: "Failed to get etiket"))
+    /**
+     * Re-read one sale after a mutation and apply it to every cached list;
+     * Room then invalidates the visible page without a network reload
+     */
+    private suspend fun refreshCachedSale(id: Int) {
+        try {
+            val response = apiService.getSaleDetail(id)
+            val sale = response.body()?.data
+            if (!response.isSuccessful || sale == null) {
+                android.util.Log.d("SalesRepository", "Sale $id not refreshed: HTTP ${response.code()}")
+                return
+            }
+            database.withTransaction {
+                saleDao.upsertAll(listOf(SaleEntity.fromSale(sale)))
+                for (list in saleDao.loadedLists()) {
+                    val filter = SalesFilter(list.status.ifEmpty { null }, list.hospital.ifEmpty { null })
+                    if (!filter.matches(sale)) {
+                        saleDao.deleteKey(list.status, list.hospital, sale.id)
+                        continue
+                    }
+                    // Past the loaded pages the next APPEND brings it, at the right offset
+                    val oldest = saleDao.oldestLoaded(list.status, list.hospital)
+                    if (oldest == null || sale.createdAt >= oldest) {
+                        saleDao.insertKeys(listOf(SaleListKey(list.status, list.hospital, sale.id)))
+                    }
                 }
-            } else {
-                Result.failure(Exception("Failed to get etiket"))
             }
         } catch (e: Exception) {
-            Result.failure(e)
+            // The list catches up on its next refresh
+            android.util.Log.d("SalesRepository", "Sale $id not refreshed: ${e.message}")
         }
     }
 
-    suspend fun deleteSale(id: Int): Result<Unit> {
-        return try {
-            val response = apiService.deleteSale(id)
-            if (response.isSuccessful && response.body()?.success == true) {
-                Result.success(Unit)
-            } else {
-                Result.failure(Exception("Failed to delete sale"))
+    /**
+     * Sale PDF cached under cacheDir/[folder]/{id}_{status}/
+     *
+     * The server renders the same document until the sale's status changes,
+     * so a cached copy is shared without a request. Downloads go from the
+     * socket to disk through Okio and only replace the cache once complete.
+     */
+    private suspend fun getSalePdf(
+        id: Int,
+        status: String?,
+        folder: String,
+        label: String,
+        download: suspend () -> Response<ResponseBody>
+    ): Result<File> = withContext(Dispatchers.IO) {
+        try {
+            val root = File(context.cacheDir, folder)
+            if (status != null) {
+                cachedPdf(File(root, "${id}_$status"))?.let {
+                    return@withContext Result.success(it)
+                }
             }
+
+            val response = download()
+            val body = response.body()
+            if (!response.isSuccessful || body == null) {
+                val message = response.errorBody()?.string()?.let {
+                    try { JSONObject(it).optString("message").ifEmpty { null } } catch (e: Exception) { null }
+                }
+                return@withContext Result.failure(Exception(message ?: "Failed to get $label"))
+            }
+
+            // A status change made the older copies stale
+            root.listFiles { file -> file.name.startsWith("${id}_") }?.forEach { it.deleteRecursively() }
+            val dir = File(root, "${id}_${response.headers()["X-Sale-Status"] ?: status}")
+            dir.mkdirs()
+
+            val name = response.headers()["Content-Disposition"]
+                ?.let { FILENAME.find(it)?.groupValues?.get(1) }
+                ?.let { File(it).name }
+                ?: "$label-$id.pdf"
+            val file = File(dir, name)
+            val partial = File(dir, "$name.part")
+            body.use { responseBody ->
+                partial.sink().buffer().use { sink -> sink.writeAll(responseBody.source()) }
+            }
+            if (!partial.renameTo(file)) {
+                partial.delete()
+                return@withContext Result.failure(IOException("Failed to save $label"))
+            }
+            android.util.Log.d("SalesRepository", "Downloaded $label $id (${file.length()} bytes)")
+            Result.success(file)
         } catch (e: Exception) {
             Result.failure(e)
         }
     }
+
+    private fun cachedPdf(dir: File): File? {
+        return dir.listFiles()?.firstOrNull { it.isFile && it.extension == "pdf" && it.length() > 0 }
+    }
 }
@@ -0,0 +1,115 @@
+package com.dokterdibya.pharm.data.repository
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+
+data class Session(
+    val token: String,
+    val refreshToken: String?
+)
+
+/**
+ * In-memory copy of the signed-in session, read by AuthInterceptor
+ *
+ * DataStore is read once at startup ([hydrate]); after that every request
+ * reads a volatile field. Login, refresh and logout replace the whole
+ * [Session] at once, then persist it. A request sent before hydration has
+ * finished waits on a latch instead of polling DataStore.
+ */
+@Singleton
+class SessionStore @Inject constructor(
+    private val tokenRepository: TokenRepository
+) {
+    companion object {
+        private const val TAG = "SessionStore"
+    }
+
+    @Volatile
+    private var session: Session? = null
+
+    // Set once login/refresh/logout has run, so a slow hydration can't undo it
+    private var replaced = false
+    private val lock = Any()
+
+    private val hydrationStarted = AtomicBoolean(false)
+    private val hydrated = CountDownLatch(1)
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+
+    /**
+     * Load the stored session. Called from Application.onCreate; safe to call again.
+     */
+    fun hydrate() {
+        if (!hydrationStarted.compareAndSet(false, true)) return
+        scope.launch {
+            try {
+                val stored = tokenRepository.readSession()
+                synchronized(lock) {
+                    if (!replaced) session = stored
+                }
+                android.util.Log.d(TAG, "Hydrated, signed in: ${stored != null}")
+            } catch (e: Exception) {
+                android.util.Log.e(TAG, "Hydration failed: ${e.message}")
+            } finally {
+                hydrated.countDown()
+            }
+        }
+    }
+
+    /**
+     * Current session without blocking; null before hydration or when signed out
+     */
+    fun current(): Session? = session
+
+    /**
+     * Current session, waiting up to [timeoutMs] for hydration on first use
+     */
+    fun await(timeoutMs: Long): Session? {
+        if (hydrated.count > 0L) {
+            hydrate()
+            if (!hydrated.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                android.util.Log.w(TAG, "Session not hydrated after ${timeoutMs}ms")
+            }
+        }
+        return session
+    }
+
+    suspend fun update(newSession: Session) {
+        replace(newSession)
+        tokenRepository.saveSession(newSession)
+    }
+
+    /**
+     * [update] for OkHttp threads: memory now, DataStore in the background
+     */
+    fun updateAsync(newSession: Session) {
+        replace(newSession)
+        scope.launch { tokenRepository.saveSession(newSession) }
+    }
+
+    suspend fun clear() {
+        replace(null)
+        tokenRepository.clearAll()
+    }
+
+    /**
+     * [clear] for OkHttp threads, after the server rejected the refresh token
+     */
+    fun clearAsync() {
+        replace(null)
+        scope.launch { tokenRepository.clearAll() }
+    }
+
+    private fun replace(newSession: Session?) {
+        synchronized(lock) {
+            replaced = true
+            session = newSession
+        }
+    }
+}
@@ -8,6 +8,7 @@ import androidx.datastore.preferences.core.stringPreferencesKey
 import androidx.datastore.preferences.preferencesDataStore
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.map
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -20,6 +21,7 @@ class TokenRepository @Inject constructor(
 ) {
     companion object {
         private val TOKEN_KEY = stringPreferencesKey("jwt_token")
+        private val REFRESH_TOKEN_KEY = stringPreferencesKey("refresh_token")
         private val USER_NAME_KEY = stringPreferencesKey("user_name")
         private val USER_EMAIL_KEY = stringPreferencesKey("user_email")
         private val USER_ROLE_KEY = stringPreferencesKey("user_role")
@@ -31,11 +33,23 @@ class TokenRepository @Inject constructor(
         }
     }
 
-    suspend fun saveToken(token: String) {
-        android.util.Log.d("TokenRepository", "saveToken called: ${token.take(20)}...")
+    /**
+     * One DataStore read for SessionStore to hydrate from
+     */
+    suspend fun readSession(): Session? {
+        val preferences = context.dataStore.data.first()
+        val token = preferences[TOKEN_KEY] ?: return null
+        return Session(token, preferences[REFRESH_TOKEN_KEY])
+    }
+
+    suspend fun saveSession(session: Session) {
         context.dataStore.edit { preferences ->
-            preferences[TOKEN_KEY] = token
-            android.util.Log.d("TokenRepository", "Token saved to DataStore")
+            preferences[TOKEN_KEY] = session.token
+            if (session.refreshToken != null) {
+                preferences[REFRESH_TOKEN_KEY] = session.refreshToken
+            } else {
+                preferences.remove(REFRESH_TOKEN_KEY)
+            }
         }
     }
 
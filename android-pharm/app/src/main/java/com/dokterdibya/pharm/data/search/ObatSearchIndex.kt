@@ -0,0 +1,254 @@
+package com.dokterdibya.pharm.data.search
+
+import com.dokterdibya.pharm.data.model.Obat
+import java.text.Normalizer
+import java.util.Locale
+
+/**
+ * In-memory search over the obat catalog, rebuilt whenever the catalog changes
+ *
+ * Names and codes are split into words and folded (see [fold]) so that
+ * English and Indonesian spellings of a drug meet: "Amoxicillin" and
+ * "Amoksisilin" both become "amoksisilin". Every distinct word goes into
+ * - a prefix trie, for matches while a word is still being typed
+ * - a trigram index, for typos ("parasetmol")
+ *
+ * Every word of the query must match some word of the obat, or the query
+ * must be the obat's code. Results are ranked by match quality (exact,
+ * prefix, fuzzy, with a bonus for the first word of the name), then
+ * in-stock first, then shorter names.
+ *
+ * Immutable; build a new index instead of updating this one.
+ */
+class ObatSearchIndex(items: List<Obat>) {
+
+    companion object {
+        const val DEFAULT_LIMIT = 50
+
+        private const val EXACT = 1.0f
+        private const val PREFIX = 0.8f
+        private const val FUZZY = 0.6f
+        private const val FIRST_WORD_BONUS = 0.1f
+        private const val CODE_MATCH = 3.0f
+
+        // Dice similarity over trigrams below which a word is not a typo of another
+        private const val FUZZY_MIN_SIMILARITY = 0.45f
+        private const val MIN_FUZZY_LENGTH = 3
+
+        private val SEPARATORS = Regex("[^\\p{L}\\p{Nd}]+")
+
+        fun words(text: String): List<String> {
+            return text.split(SEPARATORS)
+                .map { fold(it) }
+                .filter { it.isNotEmpty() }
+        }
+
+        /**
+         * Lowercase, strip accents and punctuation, and map spellings that
+         * Indonesian drug names vary on to one form:
+         * ph -> f, th -> t, ch -> k, c before e/i/y -> s, other c and q -> k,
+         * x -> ks, y -> i, doubled letters -> one, and a final e after a
+         * consonant is dropped ("cetirizine" -> "setirizin").
+         */
+        fun fold(word: String): String {
+            val plain = Normalizer.normalize(word.lowercase(Locale.ROOT), Normalizer.Form.NFD)
+                .filter { it in 'a'..'z' || it in '0'..'9' }
+
+            val mapped = StringBuilder(plain.length + 2)
+            var i = 0
+            while (i < plain.length) {
+                val c = plain[i]
+                val next = plain.getOrNull(i + 1)
+                when {
+                    c == 'p' && next == 'h' -> { mapped.append('f'); i++ }
+                    c == 't' && next == 'h' -> { mapped.append('t'); i++ }
+                    c == 'c' && next == 'h' -> { mapped.append('k'); i++ }
+                    c == 'c' && (next == 'e' || next == 'i' || next == 'y') -> mapped.append('s')
+                    c == 'c' || c == 'q' -> mapped.append('k')
+                    c == 'x' -> mapped.append("ks")
+                    c == 'y' -> mapped.append('i')
+                    else -> mapped.append(c)
+                }
+                i++
+            }
+
+            val folded = StringBuilder(mapped.length)
+            for (c in mapped) {
+                // Digits stay doubled: "500" is not "50"
+                if (c.isLetter() && folded.isNotEmpty() && folded.last() == c) continue
+                folded.append(c)
+            }
+
+            val n = folded.length
+            if (n > 4 && folded[n - 1] == 'e' && folded[n - 2].isLetter() && folded[n - 2] !in "aiueo") {
+                folded.setLength(n - 1)
+            }
+            return folded.toString()
+        }
+
+        private fun trigrams(word: String, closed: Boolean): List<String> {
+            // Leading padding weights the start of a word. Queries are left
+            // open at the end because the user may still be typing.
+            val padded = "  " + word + if (closed) " " else ""
+            return (0..padded.length - 3).map { padded.substring(it, it + 3) }.distinct()
+        }
+
+        // Last, so the constants above are initialized when it is built
+        val EMPTY = ObatSearchIndex(emptyList())
+    }
+
+    private class TrieNode {
+        val children = HashMap<Char, TrieNode>(4)
+        var ownTerms: MutableList<Int>? = null
+
+        // Terms ending at or below this node
+        var terms: IntArray = IntArray(0)
+    }
+
+    private val docs: List<Obat> = items
+    private val byName: List<Obat> = items.sortedBy { it.name.lowercase(Locale.ROOT) }
+    private val codeKeys: Array<String> = Array(items.size) { fold(items[it].code) }
+
+    private val terms = ArrayList<String>()
+    private val termDocs: Array<IntArray>
+    private val firstTerm: IntArray
+    private val termGramCount: IntArray
+    private val grams: Map<String, IntArray>
+    private val root = TrieNode()
+
+    val size: Int get() = docs.size
+
+    init {
+        val termIds = HashMap<String, Int>()
+        val docSets = ArrayList<MutableSet<Int>>()
+        fun termId(word: String): Int = termIds.getOrPut(word) {
+            terms.add(word)
+            docSets.add(HashSet())
+            terms.size - 1
+        }
+
+        firstTerm = IntArray(docs.size) { -1 }
+        docs.forEachIndexed { doc, obat ->
+            words(obat.name).forEachIndexed { position, word ->
+                val id = termId(word)
+                docSets[id].add(doc)
+                if (position == 0) firstTerm[doc] = id
+            }
+            words(obat.code).forEach { word -> docSets[termId(word)].add(doc) }
+        }
+        termDocs = Array(terms.size) { docSets[it].toIntArray() }
+
+        terms.forEachIndexed { id, term ->
+            var node = root
+            for (c in term) node = node.children.getOrPut(c) { TrieNode() }
+            (node.ownTerms ?: ArrayList<Int>().also { node.ownTerms = it }).add(id)
+        }
+        collectTerms(root)
+
+        val gramLists = HashMap<String, MutableList<Int>>()
+        termGramCount = IntArray(terms.size)
+        terms.forEachIndexed { id, term ->
+            val termGrams = trigrams(term, closed = true)
+            termGramCount[id] = termGrams.size
+            termGrams.forEach { gramLists.getOrPut(it) { ArrayList() }.add(id) }
+        }
+        grams = gramLists.mapValues { it.value.toIntArray() }
+    }
+
+    /**
+     * Ranked matches for [query]; the catalog sorted by name when it is blank
+     */
+    fun search(query: String, limit: Int = DEFAULT_LIMIT): List<Obat> {
+        val queryWords = words(query)
+        if (queryWords.isEmpty()) return byName.take(limit)
+
+        val total = FloatArray(docs.size)
+        val matchedWords = IntArray(docs.size)
+        val best = FloatArray(docs.size)
+
+        for (word in queryWords) {
+            best.fill(0f)
+            for ((term, score) in matchTerms(word)) {
+                for (doc in termDocs[term]) {
+                    val docScore = if (firstTerm[doc] == term) score + FIRST_WORD_BONUS else score
+                    if (docScore > best[doc]) best[doc] = docScore
+                }
+            }
+            for (doc in best.indices) {
+                if (best[doc] > 0f) {
+                    total[doc] += best[doc]
+                    matchedWords[doc]++
+                }
+            }
+        }
+
+        // A scanned or typed code: a prefix once it has a digit, else the whole code
+        val code = fold(query)
+        val codeHasDigit = code.any { it.isDigit() }
+
+        val results = ArrayList<Int>()
+        for (doc in docs.indices) {
+            val key = codeKeys[doc]
+            if (code.isNotEmpty() && (key == code || (codeHasDigit && key.startsWith(code)))) {
+                total[doc] += CODE_MATCH
+                results.add(doc)
+            } else if (matchedWords[doc] == queryWords.size) {
+                results.add(doc)
+            }
+        }
+
+        return results
+            .sortedWith(
+                compareByDescending<Int> { total[it] }
+                    .thenByDescending { docs[it].stock > 0 }
+                    .thenBy { docs[it].name.length }
+                    .thenBy { docs[it].name }
+            )
+            .take(limit)
+            .map { docs[it] }
+    }
+
+    /**
+     * Terms [word] matches, with their score
+     */
+    private fun matchTerms(word: String): Map<Int, Float> {
+        val matches = HashMap<Int, Float>()
+
+        prefixNode(word)?.terms?.forEach { term ->
+            matches[term] = if (terms[term].length == word.length) EXACT else PREFIX
+        }
+
+        if (word.length >= MIN_FUZZY_LENGTH) {
+            val queryGrams = trigrams(word, closed = false)
+            val shared = HashMap<Int, Int>()
+            for (gram in queryGrams) {
+                grams[gram]?.forEach { term -> shared[term] = (shared[term] ?: 0) + 1 }
+            }
+            for ((term, count) in shared) {
+                if (term in matches) continue
+                val similarity = 2f * count / (queryGrams.size + termGramCount[term])
+                if (similarity >= FUZZY_MIN_SIMILARITY) {
+                    matches[term] = FUZZY * similarity
+                }
+            }
+        }
+        return matches
+    }
+
+    private fun prefixNode(word: String): TrieNode? {
+        var node = root
+        for (c in word) node = node.children[c] ?: return null
+        return node
+    }
+
+    private fun collectTerms(node: TrieNode): IntArray {
+        val ids = ArrayList<Int>()
+        node.ownTerms?.let { ids.addAll(it) }
+        for (child in node.children.values) {
+            collectTerms(child).forEach { ids.add(it) }
+        }
+        node.terms = ids.toIntArray()
+        node.ownTerms = null
+        return node.terms
+    }
+}
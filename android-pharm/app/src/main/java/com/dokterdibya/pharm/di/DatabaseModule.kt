@@ -0,0 +1,47 @@
+package com.dokterdibya.pharm.di
+
+import android.content.Context
+import androidx.room.Room
+import com.dokterdibya.pharm.data.local.ObatDao
+import com.dokterdibya.pharm.data.local.PharmDatabase
+import com.dokterdibya.pharm.data.local.SaleDao
+import com.dokterdibya.pharm.data.local.SyncStateDao
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.android.qualifiers.ApplicationContext
+import dagger.hilt.components.SingletonComponent
+import javax.inject.Singleton
+
+@Module
+@InstallIn(SingletonComponent::class)
+object DatabaseModule {
+
+    @Provides
+    @Singleton
+    fun providePharmDatabase(@ApplicationContext context: Context): PharmDatabase {
+        return Room.databaseBuilder(
+            context,
+            PharmDatabase::class.java,
+            PharmDatabase.DATABASE_NAME
+        )
+            // Catalog and sales are re-fetched from the server after a rebuild
+            .fallbackToDestructiveMigration()
+            .build()
+    }
+
+    @Provides
+    fun provideObatDao(database: PharmDatabase): ObatDao {
+        return database.obatDao()
+    }
+
+    @Provides
+    fun provideSyncStateDao(database: PharmDatabase): SyncStateDao {
+        return database.syncStateDao()
+    }
+
+    @Provides
+    fun provideSaleDao(database: PharmDatabase): SaleDao {
+        return database.saleDao()
+    }
+}
@@ -2,21 +2,30 @@ package com.dokterdibya.pharm.di
 
 import com.dokterdibya.pharm.data.api.ApiService
 import com.dokterdibya.pharm.data.api.AuthInterceptor
+import com.dokterdibya.pharm.data.api.TokenAuthenticator
+import com.dokterdibya.pharm.data.metrics.MetricsEventListener
+import com.dokterdibya.pharm.data.metrics.MetricsInterceptor
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
 import dagger.hilt.components.SingletonComponent
 import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
+import retrofit2.Invocation
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.http.Streaming
 import java.util.concurrent.TimeUnit
+import javax.inject.Named
 import javax.inject.Singleton
 
 @Module
 @InstallIn(SingletonComponent::class)
 object NetworkModule {
 
+    /** Client without auth, for the token refresh call */
+    const val AUTH_CLIENT = "auth"
+
     @Provides
     @Singleton
     fun provideLoggingInterceptor(): HttpLoggingInterceptor {
@@ -25,21 +34,52 @@ object NetworkModule {
         }
     }
 
+    /**
+     * Metrics and timeouts only. No logging either, since the body carries
+     * the refresh token.
+     */
     @Provides
     @Singleton
-    fun provideOkHttpClient(
-        authInterceptor: AuthInterceptor,
-        loggingInterceptor: HttpLoggingInterceptor
+    @Named(AUTH_CLIENT)
+    fun provideAuthOkHttpClient(
+        metricsInterceptor: MetricsInterceptor,
+        metricsEventListenerFactory: MetricsEventListener.Factory
     ): OkHttpClient {
         return OkHttpClient.Builder()
-            .addInterceptor(authInterceptor)
-            .addInterceptor(loggingInterceptor)
+            .eventListenerFactory(metricsEventListenerFactory)
+            .addInterceptor(metricsInterceptor)
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
             .build()
     }
 
+    @Provides
+    @Singleton
+    fun provideOkHttpClient(
+        @Named(AUTH_CLIENT) authClient: OkHttpClient,
+        authInterceptor: AuthInterceptor,
+        tokenAuthenticator: TokenAuthenticator,
+        loggingInterceptor: HttpLoggingInterceptor
+    ): OkHttpClient {
+        // BODY logging reads the whole response into memory first; PDFs are
+        // downloaded with @Streaming, so only their headers are logged
+        val headersLogging = HttpLoggingInterceptor().apply {
+            level = HttpLoggingInterceptor.Level.HEADERS
+        }
+
+        // Shares the auth client's connection pool and dispatcher
+        return authClient.newBuilder()
+            .addInterceptor(authInterceptor)
+            .addInterceptor { chain ->
+                val streaming = chain.request().tag(Invocation::class.java)
+                    ?.method()?.isAnnotationPresent(Streaming::class.java) == true
+                (if (streaming) headersLogging else loggingInterceptor).intercept(chain)
+            }
+            .authenticator(tokenAuthenticator)
+            .build()
+    }
+
     @Provides
     @Singleton
     fun provideRetrofit(okHttpClient: OkHttpClient): Retrofit {
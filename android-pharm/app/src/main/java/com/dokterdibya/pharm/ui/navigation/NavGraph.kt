@@ -6,6 +6,7 @@ import androidx.navigation.NavType
 import androidx.navigation.compose.NavHost
 import androidx.navigation.compose.composable
 import androidx.navigation.navArgument
+import com.dokterdibya.pharm.ui.screens.debug.NetworkMetricsScreen
 import com.dokterdibya.pharm.ui.screens.intro.IntroScreen
 import com.dokterdibya.pharm.ui.screens.login.LoginScreen
 import com.dokterdibya.pharm.ui.screens.sales.NewSaleScreen
@@ -20,6 +21,7 @@ sealed class Screen(val route: String) {
     object SaleDetail : Screen("sale_detail/{saleId}") {
         fun createRoute(saleId: Int) = "sale_detail/$saleId"
     }
+    object NetworkMetrics : Screen("network_metrics")
 }
 
 @Composable
@@ -63,10 +65,19 @@ fun NavGraph(
                     navController.navigate(Screen.Login.route) {
                         popUpTo(0) { inclusive = true }
                     }
+                },
+                onOpenNetworkMetrics = {
+                    navController.navigate(Screen.NetworkMetrics.route)
                 }
             )
         }
 
+        composable(Screen.NetworkMetrics.route) {
+            NetworkMetricsScreen(
+                onBack = { navController.popBackStack() }
+            )
+        }
+
         composable(Screen.NewSale.route) {
             NewSaleScreen(
                 onBack = { navController.popBackStack() },
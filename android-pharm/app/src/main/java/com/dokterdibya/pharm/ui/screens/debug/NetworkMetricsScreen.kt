@@ -0,0 +1,187 @@
+package com.dokterdibya.pharm.ui.screens.debug
+
+import android.content.Intent
+import androidx.compose.foundation.background
+import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.shape.RoundedCornerShape
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.automirrored.filled.ArrowBack
+import androidx.compose.material.icons.filled.*
+import androidx.compose.material3.*
+import androidx.compose.runtime.*
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.graphics.Brush
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.text.font.FontWeight
+import androidx.compose.ui.unit.dp
+import androidx.compose.ui.unit.sp
+import androidx.hilt.navigation.compose.hiltViewModel
+import com.dokterdibya.pharm.data.metrics.LatencyHistogram
+import com.dokterdibya.pharm.data.metrics.NetworkMetrics
+import com.dokterdibya.pharm.ui.theme.*
+import com.dokterdibya.pharm.viewmodel.NetworkMetricsViewModel
+
+/**
+ * Debug-only view of [NetworkMetrics], reachable from the sales list in
+ * debuggable builds
+ */
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+fun NetworkMetricsScreen(
+    onBack: () -> Unit,
+    viewModel: NetworkMetricsViewModel = hiltViewModel()
+) {
+    val uiState by viewModel.uiState.collectAsState()
+    val context = LocalContext.current
+
+    Box(
+        modifier = Modifier
+            .fillMaxSize()
+            .background(Brush.verticalGradient(colors = listOf(BgDark, BgDarkEnd)))
+    ) {
+    Scaffold(
+        topBar = {
+            TopAppBar(
+                title = {
+                    Text(
+                        "Network Metrics",
+                        fontWeight = FontWeight.SemiBold
+                    )
+                },
+                navigationIcon = {
+                    IconButton(onClick = onBack) {
+                        Icon(Icons.AutoMirrored.Filled.ArrowBack, "Back")
+                    }
+                },
+                actions = {
+                    IconButton(onClick = { viewModel.refresh() }) {
+                        Icon(Icons.Default.Refresh, "Refresh")
+                    }
+                    IconButton(onClick = { viewModel.reset() }) {
+                        Icon(Icons.Default.Delete, "Reset")
+                    }
+                    IconButton(onClick = {
+                        val intent = Intent(Intent.ACTION_SEND).apply {
+                            type = "application/json"
+                            putExtra(Intent.EXTRA_SUBJECT, "network-metrics.json")
+                            putExtra(Intent.EXTRA_TEXT, viewModel.exportJson())
+                        }
+                        context.startActivity(Intent.createChooser(intent, "Export JSON"))
+                    }) {
+                        Icon(Icons.Default.Share, "Export")
+                    }
+                },
+                colors = TopAppBarDefaults.topAppBarColors(
+                    containerColor = Color.Transparent,
+                    titleContentColor = TextPrimaryDark,
+                    navigationIconContentColor = TextPrimaryDark,
+                    actionIconContentColor = TextPrimaryDark
+                )
+            )
+        },
+        containerColor = Color.Transparent
+    ) { paddingValues ->
+        if (uiState.routes.isEmpty()) {
+            Box(
+                modifier = Modifier
+                    .fillMaxSize()
+                    .padding(paddingValues),
+                contentAlignment = Alignment.Center
+            ) {
+                Text("Belum ada request tercatat", color = TextSecondaryDark)
+            }
+        } else {
+            LazyColumn(
+                modifier = Modifier
+                    .fillMaxSize()
+                    .padding(paddingValues)
+                    .padding(horizontal = 16.dp),
+                verticalArrangement = Arrangement.spacedBy(12.dp),
+                contentPadding = PaddingValues(vertical = 16.dp)
+            ) {
+                items(uiState.routes, key = { it.route }) { route ->
+                    RouteMetricsCard(route)
+                }
+            }
+        }
+    }
+    }
+}
+
+@Composable
+private fun RouteMetricsCard(route: NetworkMetrics.RouteSnapshot) {
+    Card(
+        modifier = Modifier.fillMaxWidth(),
+        shape = RoundedCornerShape(12.dp),
+        colors = CardDefaults.cardColors(containerColor = CardDark)
+    ) {
+        Column(modifier = Modifier.padding(16.dp)) {
+            Text(
+                text = route.route,
+                fontSize = 13.sp,
+                fontWeight = FontWeight.SemiBold,
+                color = TextPrimaryDark
+            )
+            Spacer(modifier = Modifier.height(4.dp))
+            Text(
+                text = "${route.calls} calls · in ${formatBytes(route.bytesIn)} · out ${formatBytes(route.bytesOut)}",
+                fontSize = 12.sp,
+                color = TextSecondaryDark
+            )
+            Text(
+                text = "cache hit ${route.cacheHits} · 304 ${route.conditionalHits} · miss ${route.cacheMisses}",
+                fontSize = 12.sp,
+                color = TextSecondaryDark
+            )
+            Spacer(modifier = Modifier.height(8.dp))
+            PhaseRow("total", route.totalUs)
+            PhaseRow("ttfb", route.ttfbUs)
+            PhaseRow("body", route.bodyUs)
+            PhaseRow("dns", route.dnsUs)
+            PhaseRow("connect", route.connectUs)
+            PhaseRow("tls", route.tlsUs)
+            if (route.errors.isNotEmpty()) {
+                Spacer(modifier = Modifier.height(8.dp))
+                Text(
+                    text = route.errors.entries.joinToString { "${it.key} ×${it.value}" },
+                    fontSize = 12.sp,
+                    color = Danger
+                )
+            }
+        }
+    }
+}
+
+@Composable
+private fun PhaseRow(label: String, snapshot: LatencyHistogram.Snapshot) {
+    if (snapshot.count == 0L) return
+    Text(
+        text = "%-8s p50 %s  p90 %s  p99 %s  max %s".format(
+            label,
+            formatMicros(snapshot.p50),
+            formatMicros(snapshot.p90),
+            formatMicros(snapshot.p99),
+            formatMicros(snapshot.max)
+        ),
+        fontSize = 11.sp,
+        fontFamily = FontFamily.Monospace,
+        color = TextPrimaryDark
+    )
+}
+
+private fun formatMicros(us: Long): String {
+    return if (us < 1000) "${us}µs" else "${us / 1000}ms"
+}
+
+private fun formatBytes(bytes: Long): String {
+    return when {
+        bytes < 1024 -> "${bytes}B"
+        bytes < 1024 * 1024 -> "${bytes / 1024}KB"
+        else -> "%.1fMB".format(bytes / (1024.0 * 1024.0))
+    }
+}
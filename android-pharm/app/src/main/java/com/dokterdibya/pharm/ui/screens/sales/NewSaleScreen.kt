@@ -21,6 +21,7 @@ import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
 import com.dokterdibya.pharm.data.model.Obat
+import com.dokterdibya.pharm.data.search.ObatSearchIndex
 import com.dokterdibya.pharm.ui.theme.*
 import com.dokterdibya.pharm.viewmodel.FormItem
 import com.dokterdibya.pharm.viewmodel.SalesViewModel
@@ -37,6 +38,7 @@ fun NewSaleScreen(
     val patientAge by viewModel.patientAge.collectAsState()
     val hospitalSource by viewModel.hospitalSource.collectAsState()
     val formItems by viewModel.formItems.collectAsState()
+    val obatIndex by viewModel.obatIndex.collectAsState()
 
     val hospitals = listOf(
         "rsia_melinda" to "RSIA Melinda",
@@ -44,10 +46,8 @@ fun NewSaleScreen(
         "rs_bhayangkara" to "RS Bhayangkara"
     )
 
-    // Load obat list when screen is displayed
-    // Small delay ensures token is persisted to DataStore
+    // Sync the local obat catalog; the picker already searches what's stored
     LaunchedEffect(Unit) {
-        kotlinx.coroutines.delay(300)
         viewModel.loadObatList()
     }
 
@@ -188,7 +188,7 @@ fun NewSaleScreen(
                                 ItemRow(
                                     index = index,
                                     item = item,
-                                    obatList = uiState.obatList,
+                                    obatIndex = obatIndex,
                                     onObatChange = { viewModel.updateItemObat(index, it) },
                                     onQuantityChange = { viewModel.updateItemQuantity(index, it) },
                                     onRemove = { viewModel.removeItem(index) },
@@ -301,7 +301,7 @@ fun NewSaleScreen(
 fun ItemRow(
     index: Int,
     item: FormItem,
-    obatList: List<Obat>,
+    obatIndex: ObatSearchIndex,
     onObatChange: (Obat) -> Unit,
     onQuantityChange: (Int) -> Unit,
     onRemove: () -> Unit,
@@ -311,18 +311,27 @@ fun ItemRow(
         Row(
             verticalAlignment = Alignment.CenterVertically
         ) {
-            // Obat Selector
+            // Obat Selector: type a name or code, typos allowed
             var obatExpanded by remember { mutableStateOf(false) }
+            var query by remember(item.obat) { mutableStateOf(item.obat?.name ?: "") }
+            val results = remember(obatIndex, query, item.obat) {
+                // Field still shows the picked obat: offer the whole catalog again
+                obatIndex.search(if (query == item.obat?.name) "" else query)
+            }
             ExposedDropdownMenuBox(
                 expanded = obatExpanded,
                 onExpandedChange = { obatExpanded = it },
                 modifier = Modifier.weight(1f)
             ) {
                 OutlinedTextField(
-                    value = item.obat?.name ?: "",
-                    onValueChange = {},
-                    readOnly = true,
-                    label = { Text("Pilih Obat") },
+                    value = query,
+                    onValueChange = {
+                        query = it
+                        obatExpanded = true
+                    },
+                    label = { Text("Cari Obat") },
+                    placeholder = { Text("Nama atau kode") },
+                    singleLine = true,
                     trailingIcon = {
                         ExposedDropdownMenuDefaults.TrailingIcon(expanded = obatExpanded)
                     },
@@ -337,20 +346,28 @@ fun ItemRow(
                     onDismissRequest = { obatExpanded = false },
                     modifier = Modifier.background(SurfaceDark)
                 ) {
-                    obatList.forEach { obat ->
+                    if (results.isEmpty()) {
+                        DropdownMenuItem(
+                            text = { Text("Obat tidak ditemukan", color = TextSecondaryDark) },
+                            onClick = {},
+                            enabled = false
+                        )
+                    }
+                    results.forEach { obat ->
                         DropdownMenuItem(
                             text = {
                                 Column {
                                     Text(obat.name, color = TextPrimaryDark)
                                     Text(
-                                        "Rp ${String.format("%,.0f", obat.price)} - Stok: ${obat.stock}",
+                                        "${obat.code} · Rp ${String.format("%,.0f", obat.price)} - Stok: ${obat.stock}",
                                         fontSize = 12.sp,
-                                        color = TextSecondaryDark
+                                        color = if (obat.stock > 0) TextSecondaryDark else Danger
                                     )
                                 }
                             },
                             onClick = {
                                 onObatChange(obat)
+                                query = obat.name
                                 obatExpanded = false
                             }
                         )
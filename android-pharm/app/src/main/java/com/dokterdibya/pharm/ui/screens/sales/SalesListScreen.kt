@@ -1,10 +1,12 @@
 package com.dokterdibya.pharm.ui.screens.sales
 
+import android.content.pm.ApplicationInfo
 import androidx.compose.foundation.background
 import androidx.compose.foundation.clickable
 import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.horizontalScroll
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.rememberScrollState
 import androidx.compose.foundation.shape.CircleShape
 import androidx.compose.foundation.shape.RoundedCornerShape
 import androidx.compose.material.icons.Icons
@@ -16,12 +18,17 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.draw.clip
 import androidx.compose.ui.graphics.Brush
 import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextOverflow
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
+import androidx.paging.LoadState
+import androidx.paging.compose.collectAsLazyPagingItems
+import androidx.paging.compose.itemKey
 import com.dokterdibya.pharm.data.model.ObatSale
+import com.dokterdibya.pharm.data.model.SalesFilter
 import com.dokterdibya.pharm.ui.theme.*
 import com.dokterdibya.pharm.viewmodel.AuthViewModel
 import com.dokterdibya.pharm.viewmodel.SalesViewModel
@@ -34,18 +41,18 @@ fun SalesListScreen(
     onNewSale: () -> Unit,
     onSaleClick: (Int) -> Unit,
     onLogout: () -> Unit,
+    onOpenNetworkMetrics: () -> Unit = {},
     salesViewModel: SalesViewModel = hiltViewModel(),
     authViewModel: AuthViewModel = hiltViewModel()
 ) {
-    val uiState by salesViewModel.uiState.collectAsState()
+    val sales = salesViewModel.sales.collectAsLazyPagingItems()
+    val filter by salesViewModel.salesFilter.collectAsState()
     var showLogoutDialog by remember { mutableStateOf(false) }
+    val context = LocalContext.current
+    val isDebug = (context.applicationInfo.flags and ApplicationInfo.FLAG_DEBUGGABLE) != 0
 
-    // Load sales data when screen is first displayed
-    // Small delay ensures token is persisted to DataStore
-    LaunchedEffect(Unit) {
-        kotlinx.coroutines.delay(300) // Wait for token to be persisted
-        salesViewModel.loadSales()
-    }
+    val isRefreshing = sales.loadState.refresh is LoadState.Loading
+    val refreshError = sales.loadState.refresh as? LoadState.Error
 
     Box(
         modifier = Modifier
@@ -77,10 +84,10 @@ fun SalesListScreen(
                 },
                 actions = {
                     IconButton(
-                        onClick = { salesViewModel.loadSales() },
-                        enabled = !uiState.isLoading
+                        onClick = { sales.refresh() },
+                        enabled = !isRefreshing
                     ) {
-                        if (uiState.isLoading) {
+                        if (isRefreshing) {
                             CircularProgressIndicator(
                                 modifier = Modifier.size(20.dp),
                                 color = TextSecondaryDark,
@@ -94,6 +101,15 @@ fun SalesListScreen(
                             )
                         }
                     }
+                    if (isDebug) {
+                        IconButton(onClick = onOpenNetworkMetrics) {
+                            Icon(
+                                Icons.Default.NetworkCheck,
+                                contentDescription = "Network Metrics",
+                                tint = TextSecondaryDark
+                            )
+                        }
+                    }
                     IconButton(onClick = { showLogoutDialog = true }) {
                         Icon(
                             Icons.Default.Logout,
@@ -107,16 +123,21 @@ fun SalesListScreen(
                 )
             )
 
+            SalesFilterChips(
+                filter = filter,
+                onFilterChange = { salesViewModel.updateSalesFilter(it) }
+            )
+
             // Sales List
             Box(
                 modifier = Modifier.fillMaxSize()
             ) {
-                if (uiState.isLoading && uiState.sales.isEmpty()) {
+                if (sales.itemCount == 0 && isRefreshing) {
                     CircularProgressIndicator(
                         modifier = Modifier.align(Alignment.Center),
                         color = Primary
                     )
-                } else if (uiState.sales.isEmpty()) {
+                } else if (sales.itemCount == 0) {
                     Column(
                         modifier = Modifier.align(Alignment.Center),
                         horizontalAlignment = Alignment.CenterHorizontally
@@ -129,11 +150,15 @@ fun SalesListScreen(
                         )
                         Spacer(modifier = Modifier.height(16.dp))
                         Text(
-                            text = "Belum ada penjualan",
+                            text = if (refreshError != null) {
+                                "Gagal memuat penjualan"
+                            } else {
+                                "Belum ada penjualan"
+                            },
                             color = TextSecondaryDark
                         )
                         Spacer(modifier = Modifier.height(8.dp))
-                        TextButton(onClick = { salesViewModel.loadSales() }) {
+                        TextButton(onClick = { sales.refresh() }) {
                             Text("Refresh", color = Primary)
                         }
                     }
@@ -143,11 +168,40 @@ fun SalesListScreen(
                         contentPadding = PaddingValues(16.dp),
                         verticalArrangement = Arrangement.spacedBy(12.dp)
                     ) {
-                        items(uiState.sales) { sale ->
-                            SaleCard(
-                                sale = sale,
-                                onClick = { onSaleClick(sale.id) }
-                            )
+                        items(
+                            count = sales.itemCount,
+                            key = sales.itemKey { it.id }
+                        ) { index ->
+                            val sale = sales[index]
+                            if (sale != null) {
+                                SaleCard(
+                                    sale = sale,
+                                    onClick = { onSaleClick(sale.id) }
+                                )
+                            }
+                        }
+                        when (sales.loadState.append) {
+                            is LoadState.Loading -> item {
+                                Box(
+                                    modifier = Modifier.fillMaxWidth(),
+                                    contentAlignment = Alignment.Center
+                                ) {
+                                    CircularProgressIndicator(
+                                        modifier = Modifier.size(24.dp),
+                                        color = Primary,
+                                        strokeWidth = 2.dp
+                                    )
+                                }
+                            }
+                            is LoadState.Error -> item {
+                                TextButton(
+                                    onClick = { sales.retry() },
+                                    modifier = Modifier.fillMaxWidth()
+                                ) {
+                                    Text("Gagal memuat, coba lagi", color = Primary)
+                                }
+                            }
+                            else -> Unit
                         }
                         // Bottom padding for FAB
                         item { Spacer(modifier = Modifier.height(80.dp)) }
@@ -198,6 +252,67 @@ fun SalesListScreen(
     }
 }
 
+private val STATUS_FILTERS = listOf(
+    null to "Semua",
+    "draft" to "Draft",
+    "confirmed" to "Dikonfirmasi",
+    "payment_pending" to "Menunggu",
+    "paid" to "Dibayar"
+)
+
+private val HOSPITAL_FILTERS = listOf(
+    null to "Semua RS",
+    "rsia_melinda" to "RSIA Melinda",
+    "rsud_gambiran" to "RSUD Gambiran",
+    "rs_bhayangkara" to "RS Bhayangkara"
+)
+
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+fun SalesFilterChips(
+    filter: SalesFilter,
+    onFilterChange: (SalesFilter) -> Unit
+) {
+    val chipColors = FilterChipDefaults.filterChipColors(
+        containerColor = CardDark,
+        labelColor = TextSecondaryDark,
+        selectedContainerColor = Primary.copy(alpha = 0.2f),
+        selectedLabelColor = Primary
+    )
+
+    Column(
+        modifier = Modifier.padding(horizontal = 16.dp),
+        verticalArrangement = Arrangement.spacedBy(4.dp)
+    ) {
+        Row(
+            modifier = Modifier.horizontalScroll(rememberScrollState()),
+            horizontalArrangement = Arrangement.spacedBy(8.dp)
+        ) {
+            STATUS_FILTERS.forEach { (status, label) ->
+                FilterChip(
+                    selected = filter.status == status,
+                    onClick = { onFilterChange(filter.copy(status = status)) },
+                    label = { Text(label) },
+                    colors = chipColors
+                )
+            }
+        }
+        Row(
+            modifier = Modifier.horizontalScroll(rememberScrollState()),
+            horizontalArrangement = Arrangement.spacedBy(8.dp)
+        ) {
+            HOSPITAL_FILTERS.forEach { (hospital, label) ->
+                FilterChip(
+                    selected = filter.hospital == hospital,
+                    onClick = { onFilterChange(filter.copy(hospital = hospital)) },
+                    label = { Text(label) },
+                    colors = chipColors
+                )
+            }
+        }
+    }
+}
+
 @Composable
 fun SaleCard(
     sale: ObatSale,
@@ -2,26 +2,30 @@ package com.dokterdibya.pharm.viewmodel
 
 import android.content.Context
 import android.content.Intent
-import android.util.Base64
 import androidx.core.content.FileProvider
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
 import com.dokterdibya.pharm.data.model.Obat
 import com.dokterdibya.pharm.data.model.ObatSale
 import com.dokterdibya.pharm.data.model.SaleItemRequest
+import com.dokterdibya.pharm.data.model.SalesFilter
+import com.dokterdibya.pharm.data.repository.ObatCatalogRepository
 import com.dokterdibya.pharm.data.repository.SalesRepository
+import com.dokterdibya.pharm.data.search.ObatSearchIndex
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.flatMapLatest
 import kotlinx.coroutines.launch
-import java.io.File
 import javax.inject.Inject
 
 data class SalesUiState(
     val isLoading: Boolean = false,
-    val sales: List<ObatSale> = emptyList(),
-    val obatList: List<Obat> = emptyList(),
     val selectedSale: ObatSale? = null,
     val error: String? = null,
     val successMessage: String? = null
@@ -32,14 +36,27 @@ data class FormItem(
     val quantity: Int = 1
 )
 
+@OptIn(ExperimentalCoroutinesApi::class)
 @HiltViewModel
 class SalesViewModel @Inject constructor(
-    private val salesRepository: SalesRepository
+    private val salesRepository: SalesRepository,
+    private val obatCatalogRepository: ObatCatalogRepository
 ) : ViewModel() {
 
     private val _uiState = MutableStateFlow(SalesUiState())
     val uiState: StateFlow<SalesUiState> = _uiState.asStateFlow()
 
+    private val _salesFilter = MutableStateFlow(SalesFilter())
+    val salesFilter: StateFlow<SalesFilter> = _salesFilter.asStateFlow()
+
+    // Cached per filter in Room; mutations below update single rows of it
+    val sales: Flow<PagingData<ObatSale>> = _salesFilter
+        .flatMapLatest { salesRepository.getSalesPaged(it) }
+        .cachedIn(viewModelScope)
+
+    // Local catalog; searchable while the sync below is still running
+    val obatIndex: StateFlow<ObatSearchIndex> = obatCatalogRepository.index
+
     // Form state
     private val _patientName = MutableStateFlow("")
     val patientName: StateFlow<String> = _patientName.asStateFlow()
@@ -55,42 +72,23 @@ class SalesViewModel @Inject constructor(
 
     init {
         // Data loading moved to screens to avoid race condition with token
-        // loadSales() called from SalesListScreen
         // loadObatList() called from NewSaleScreen
     }
 
-    fun loadSales() {
-        viewModelScope.launch {
-            _uiState.value = _uiState.value.copy(isLoading = true)
-            salesRepository.getSales().fold(
-                onSuccess = { sales ->
-                    _uiState.value = _uiState.value.copy(
-                        isLoading = false,
-                        sales = sales
-                    )
-                },
-                onFailure = { error ->
-                    _uiState.value = _uiState.value.copy(
-                        isLoading = false,
-                        error = error.message
-                    )
-                }
-            )
-        }
+    fun updateSalesFilter(filter: SalesFilter) {
+        _salesFilter.value = filter
     }
 
     fun loadObatList() {
         viewModelScope.launch {
-            salesRepository.getObatList().fold(
-                onSuccess = { obatList ->
-                    _uiState.value = _uiState.value.copy(obatList = obatList)
-                },
-                onFailure = { error ->
+            obatCatalogRepository.sync().onFailure { error ->
+                // With a stored catalog the picker keeps working; only say so when it's empty
+                if (obatIndex.value.size == 0) {
                     _uiState.value = _uiState.value.copy(
                         error = "Gagal memuat daftar obat: ${error.message}"
                     )
                 }
-            )
+            }
         }
     }
 
@@ -183,7 +181,6 @@ class SalesViewModel @Inject constructor(
                         successMessage = "Penjualan berhasil dibuat"
                     )
                     resetForm()
-                    loadSales()
                     onSuccess(sale.id)
                 },
                 onFailure = { error ->
@@ -205,7 +202,6 @@ class SalesViewModel @Inject constructor(
                         isLoading = false,
                         successMessage = "Penjualan berhasil dikonfirmasi"
                     )
-                    loadSales()
                     loadSaleDetail(id)
                     onSuccess()
                 },
@@ -222,18 +218,11 @@ class SalesViewModel @Inject constructor(
     fun shareInvoiceViaWhatsApp(context: Context, saleId: Int) {
         viewModelScope.launch {
             _uiState.value = _uiState.value.copy(isLoading = true)
-            salesRepository.getInvoiceBase64(saleId).fold(
-                onSuccess = { response ->
+            val sale = _uiState.value.selectedSale?.takeIf { it.id == saleId }
+            // Streamed to the cache file; a repeat share for the same status is served from it
+            salesRepository.getInvoicePdf(saleId, sale?.status).fold(
+                onSuccess = { pdfFile ->
                     try {
-                        // Decode base64 to bytes
-                        val pdfBytes = Base64.decode(response.base64, Base64.DEFAULT)
-
-                        // Save to cache directory
-                        val cacheDir = File(context.cacheDir, "invoices")
-                        cacheDir.mkdirs()
-                        val pdfFile = File(cacheDir, response.filename ?: "invoice.pdf")
-                        pdfFile.writeBytes(pdfBytes)
-
                         // Get URI via FileProvider
                         val uri = FileProvider.getUriForFile(
                             context,
@@ -242,7 +231,6 @@ class SalesViewModel @Inject constructor(
                         )
 
                         // Create WhatsApp intent
-                        val sale = _uiState.value.selectedSale
                         val message = buildString {
                             appendLine("Invoice Penjualan Obat")
                             appendLine("Pasien: ${sale?.patientName ?: "-"}")
@@ -298,18 +286,11 @@ class SalesViewModel @Inject constructor(
     fun shareEtiketViaWhatsApp(context: Context, saleId: Int) {
         viewModelScope.launch {
             _uiState.value = _uiState.value.copy(isLoading = true)
-            salesRepository.getEtiketBase64(saleId).fold(
-                onSuccess = { response ->
+            val sale = _uiState.value.selectedSale?.takeIf { it.id == saleId }
+            // Streamed to the cache file; a repeat share for the same status is served from it
+            salesRepository.getEtiketPdf(saleId, sale?.status).fold(
+                onSuccess = { pdfFile ->
                     try {
-                        // Decode base64 to bytes
-                        val pdfBytes = Base64.decode(response.base64, Base64.DEFAULT)
-
-                        // Save to cache directory
-                        val cacheDir = File(context.cacheDir, "etikets")
-                        cacheDir.mkdirs()
-                        val pdfFile = File(cacheDir, response.filename ?: "etiket.pdf")
-                        pdfFile.writeBytes(pdfBytes)
-
                         // Get URI via FileProvider
                         val uri = FileProvider.getUriForFile(
                             context,
@@ -318,7 +299,6 @@ class SalesViewModel @Inject constructor(
                         )
 
                         // Create WhatsApp intent
-                        val sale = _uiState.value.selectedSale
                         val message = buildString {
                             appendLine("Etiket Obat")
                             appendLine("Pasien: ${sale?.patientName ?: "-"}")
@@ -377,7 +357,6 @@ class SalesViewModel @Inject constructor(
                         isLoading = false,
                         successMessage = "Penjualan berhasil dihapus"
                     )
-                    loadSales()
                     onSuccess()
                 },
                 onFailure = { error ->
@@ -0,0 +1,216 @@
+package com.dokterdibya.pharm.data.api
+
+import androidx.datastore.core.DataStore
+import androidx.datastore.preferences.core.PreferenceDataStoreFactory
+import androidx.datastore.preferences.core.Preferences
+import androidx.datastore.preferences.core.edit
+import androidx.datastore.preferences.core.stringPreferencesKey
+import com.dokterdibya.pharm.data.repository.Session
+import com.dokterdibya.pharm.data.repository.SessionStore
+import com.dokterdibya.pharm.data.repository.TokenRepository
+import io.mockk.coEvery
+import io.mockk.just
+import io.mockk.mockk
+import io.mockk.runs
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.runBlocking
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Base64
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cost of AuthInterceptor.intercept per request, with a fake chain so only
+ * the interceptor is measured
+ *
+ * Compares the SessionStore read against the previous implementation, which
+ * ran runBlocking { tokenRepository.getToken().first() } on every request.
+ * That path is replayed here against a real file-backed Preferences DataStore
+ * holding the same token. Its debug logging is left out, which only flatters it.
+ */
+class AuthInterceptorBenchmark {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val dataStoreScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    private lateinit var dataStore: DataStore<Preferences>
+    private lateinit var sessionStore: SessionStore
+    private lateinit var refresher: SessionRefresher
+
+    private val token = jwt()
+    private val request = Request.Builder().url("https://dokterdibya.com/api/obat-sales").build()
+
+    @Before
+    fun setUp() {
+        dataStore = PreferenceDataStoreFactory.create(scope = dataStoreScope) {
+            File(folder.root, "auth.preferences_pb")
+        }
+        runBlocking { dataStore.edit { it[TOKEN_KEY] = token } }
+
+        val tokenRepository = mockk<TokenRepository> {
+            coEvery { saveSession(any()) } just runs
+        }
+        sessionStore = SessionStore(tokenRepository)
+        runBlocking { sessionStore.update(Session(token, "refresh-token")) }
+        refresher = SessionRefresher(sessionStore, OkHttpClient())
+    }
+
+    @After
+    fun tearDown() {
+        dataStoreScope.cancel()
+    }
+
+    @Test
+    fun sessionStoreReadIsCheaperThanRunBlockingDataStore() {
+        val current = AuthInterceptor(sessionStore, refresher)
+        val previous = RunBlockingAuthInterceptor(dataStore.data.map { it[TOKEN_KEY] }, refresher)
+
+        // Both send the same header
+        assertEquals("Bearer $token", current.intercept(FakeChain(request)).request.header("Authorization"))
+        assertEquals("Bearer $token", previous.intercept(FakeChain(request)).request.header("Authorization"))
+
+        val previousNs = measure(previous)
+        val currentNs = measure(current)
+        println(
+            "AuthInterceptor.intercept: runBlocking+DataStore %,d ns/op, SessionStore.current() %,d ns/op (%.1fx)"
+                .format(previousNs, currentNs, previousNs.toDouble() / currentNs)
+        )
+
+        assertTrue(currentNs < previousNs)
+    }
+
+    /**
+     * Median ns per intercept() over [ROUNDS] rounds, after warm-up
+     */
+    private fun measure(interceptor: Interceptor): Long {
+        val chain = FakeChain(request)
+        repeat(WARMUP_ITERATIONS) { interceptor.intercept(chain) }
+
+        val rounds = LongArray(ROUNDS) {
+            val start = System.nanoTime()
+            repeat(ITERATIONS_PER_ROUND) { interceptor.intercept(chain) }
+            (System.nanoTime() - start) / ITERATIONS_PER_ROUND
+        }
+        rounds.sort()
+        return rounds[ROUNDS / 2]
+    }
+
+    /**
+     * AuthInterceptor as it was before SessionStore, minus its Log calls
+     */
+    private class RunBlockingAuthInterceptor(
+        private val tokens: Flow<String?>,
+        private val sessionRefresher: SessionRefresher
+    ) : Interceptor {
+
+        override fun intercept(chain: Interceptor.Chain): Response {
+            val originalRequest = chain.request()
+            if (originalRequest.url.encodedPath.contains("auth/login")) {
+                return chain.proceed(originalRequest)
+            }
+
+            var token = runBlocking {
+                var attempts = 0
+                var result: String? = null
+                while (attempts < 50 && result == null) {
+                    result = tokens.first()
+                    if (result == null) {
+                        delay(100)
+                        attempts++
+                    }
+                }
+                result
+            }
+
+            if (token != null && sessionRefresher.isExpiring(token)) {
+                token = sessionRefresher.refresh(staleToken = token) ?: token
+            }
+
+            return if (token != null) {
+                val newRequest = originalRequest.newBuilder()
+                    .addHeader("Authorization", "Bearer $token")
+                    .addHeader("Cache-Control", "no-cache")
+                    .build()
+                chain.proceed(newRequest)
+            } else {
+                chain.proceed(originalRequest)
+            }
+        }
+    }
+
+    /**
+     * Answers every request with an empty 200 without touching the network
+     */
+    private class FakeChain(private val request: Request) : Interceptor.Chain {
+
+        override fun request(): Request = request
+
+        override fun proceed(request: Request): Response {
+            return Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body("".toResponseBody())
+                .build()
+        }
+
+        override fun connection(): Connection? = null
+
+        override fun call(): Call = throw UnsupportedOperationException()
+
+        override fun connectTimeoutMillis(): Int = 0
+
+        override fun withConnectTimeout(timeout: Int, unit: TimeUnit): Interceptor.Chain = this
+
+        override fun readTimeoutMillis(): Int = 0
+
+        override fun withReadTimeout(timeout: Int, unit: TimeUnit): Interceptor.Chain = this
+
+        override fun writeTimeoutMillis(): Int = 0
+
+        override fun withWriteTimeout(timeout: Int, unit: TimeUnit): Interceptor.Chain = this
+    }
+
+    companion object {
+        private val TOKEN_KEY = stringPreferencesKey("jwt_token")
+        private const val WARMUP_ITERATIONS = 20_000
+        private const val ROUNDS = 15
+        private const val ITERATIONS_PER_ROUND = 5_000
+
+        /**
+         * A token with a week left, so neither path refreshes
+         */
+        private fun jwt(): String {
+            val now = System.currentTimeMillis() / 1000
+            val encoder = Base64.getUrlEncoder().withoutPadding()
+            val header = encoder.encodeToString("""{"alg":"HS256","typ":"JWT"}""".toByteArray())
+            val payload = encoder.encodeToString(
+                """{"id":"U0001","role":"apoteker","iat":$now,"exp":${now + 7 * 24 * 3600}}""".toByteArray()
+            )
+            return "$header.$payload.signature"
+        }
+    }
+}
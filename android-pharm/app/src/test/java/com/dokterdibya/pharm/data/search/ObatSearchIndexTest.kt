@@ -0,0 +1,99 @@
+package com.dokterdibya.pharm.data.search
+
+import com.dokterdibya.pharm.data.model.Obat
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ObatSearchIndexTest {
+
+    private val catalog = listOf(
+        obat(1, "AMX500", "Amoxicillin 500 mg", stock = 20),
+        obat(2, "AMK250", "Amoksisilin Sirup 125 mg", stock = 0),
+        obat(3, "PCT500", "Paracetamol 500 mg", stock = 50),
+        obat(4, "PCT-SYR", "Parasetamol Sirup", stock = 10),
+        obat(5, "CTZ10", "Cetirizine 10 mg", stock = 5),
+        obat(6, "IBU400", "Ibuprofen 400 mg", stock = 0),
+        obat(7, "ASM500", "Asam Mefenamat 500 mg", stock = 15)
+    )
+
+    private val index = ObatSearchIndex(catalog)
+
+    @Test
+    fun foldMapsEnglishAndIndonesianSpellingsToOneForm() {
+        assertEquals("amoksisilin", ObatSearchIndex.fold("Amoxicillin"))
+        assertEquals("amoksisilin", ObatSearchIndex.fold("Amoksisilin"))
+        assertEquals("parasetamol", ObatSearchIndex.fold("Paracetamol"))
+        assertEquals("setirizin", ObatSearchIndex.fold("Cetirizine"))
+        // Digits keep their doubles
+        assertEquals("500", ObatSearchIndex.fold("500"))
+    }
+
+    @Test
+    fun eitherSpellingFindsBothProducts() {
+        assertEquals(listOf(1, 2), ids(index.search("amoxicillin")))
+        assertEquals(listOf(1, 2), ids(index.search("amoksisilin")))
+        assertEquals(listOf(4, 3), ids(index.search("paracetamol")))
+    }
+
+    @Test
+    fun typoStillMatches() {
+        assertEquals(setOf(3, 4), ids(index.search("parasetmol")).toSet())
+        assertEquals(listOf(5), ids(index.search("setirizin")))
+    }
+
+    @Test
+    fun partialWordMatchesByPrefix() {
+        assertEquals(listOf(6), ids(index.search("ibu")))
+        assertEquals(listOf(7), ids(index.search("asam mef")))
+    }
+
+    @Test
+    fun everyQueryWordMustMatch() {
+        assertEquals(listOf(2), ids(index.search("amoxicillin sirup")))
+    }
+
+    @Test
+    fun codeMatchesWholeOrByPrefix() {
+        assertEquals(3, index.search("PCT500").first().id)
+        assertEquals(3, index.search("pct5").first().id)
+    }
+
+    @Test
+    fun ranksExactThenPrefixWithFirstWordBonus() {
+        val ranking = ObatSearchIndex(
+            listOf(
+                obat(1, "A1", "Sirupin", stock = 10),
+                obat(2, "A2", "Parasetamol Sirup", stock = 10),
+                obat(3, "A3", "Sirup Obat Batuk", stock = 5)
+            )
+        )
+
+        // Exact first word, then exact later word, then prefix
+        assertEquals(listOf(3, 2, 1), ids(ranking.search("sirup")))
+    }
+
+    @Test
+    fun tiesPreferInStockThenShorterNames() {
+        // Same score for both sirups; the out-of-stock one goes last
+        assertEquals(listOf(4, 2), ids(index.search("sirup")))
+    }
+
+    @Test
+    fun blankQueryListsCatalogByName() {
+        val all = index.search("  ")
+        assertEquals(catalog.size, all.size)
+        assertEquals("Amoksisilin Sirup 125 mg", all.first().name)
+        assertTrue(index.search("", limit = 3).size == 3)
+    }
+
+    private fun ids(results: List<Obat>): List<Int> = results.map { it.id }
+
+    private fun obat(id: Int, code: String, name: String, stock: Int) = Obat(
+        id = id,
+        code = code,
+        name = name,
+        price = 10_000.0,
+        stock = stock
+    )
+}
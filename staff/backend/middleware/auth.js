@@ -650,7 +650,26 @@ function requireMenuAccess(menuKey) {
     };
 }
 
+/**
+ * Verified token payload of the request, or null; never responds
+ * For middleware that runs before the route's own auth check
+ */
+function readTokenPayload(req) {
+    const authHeader = req.headers['authorization'] || req.headers['Authorization'];
+    const parts = authHeader ? authHeader.split(' ') : [];
+    if (parts.length !== 2 || parts[0] !== 'Bearer') {
+        return null;
+    }
+
+    try {
+        return jwt.verify(parts[1], JWT_SECRET);
+    } catch (err) {
+        return null;
+    }
+}
+
 module.exports = {
+    readTokenPayload,
     verifyToken,
     verifyPatientToken,
     verifyStaffToken,  // Block patients from staff routes
@@ -0,0 +1,96 @@
+/**
+ * Conditional GET Middleware
+ * Adds ETag / Last-Modified validators to JSON responses and answers
+ * If-None-Match / If-Modified-Since with 304 when nothing changed
+ */
+
+const crypto = require('crypto');
+
+const SAFE_METHODS = ['GET', 'HEAD'];
+
+/**
+ * Strong ETag over the JSON body; `ignore` drops per-request fields
+ * (e.g. a sync cursor stamped with the current time) from the hash
+ */
+const computeEtag = (body, ignore = []) => {
+    let hashed = body;
+    if (ignore.length > 0 && body && typeof body === 'object' && !Array.isArray(body)) {
+        hashed = { ...body };
+        ignore.forEach(field => delete hashed[field]);
+    }
+    const digest = crypto.createHash('sha1').update(JSON.stringify(hashed)).digest('base64url');
+    return `"${digest}"`;
+};
+
+/**
+ * If-None-Match may hold several tags, `*`, or weak tags (W/"...")
+ */
+const matchesEtag = (header, etag) => {
+    if (!header) return false;
+    const strip = tag => tag.trim().replace(/^W\//, '');
+    return header.split(',').some(tag => tag.trim() === '*' || strip(tag) === etag);
+};
+
+/**
+ * HTTP dates have second precision, so compare whole seconds
+ */
+const notModifiedSince = (header, lastModified) => {
+    if (!header || !lastModified) return false;
+    const since = Date.parse(header);
+    if (Number.isNaN(since)) return false;
+    return Math.floor(lastModified.getTime() / 1000) <= Math.floor(since / 1000);
+};
+
+/**
+ * @param {Object} options
+ * @param {string[]} options.ignore - top-level body fields left out of the ETag
+ * @param {Function} options.lastModified - (body) => Date|null, for Last-Modified.
+ *   Only for bodies whose every change bumps that date; lists that can lose rows
+ *   without any timestamp moving should rely on the ETag alone.
+ */
+const conditionalGet = (options = {}) => {
+    const { ignore = [], lastModified } = options;
+
+    return (req, res, next) => {
+        if (!SAFE_METHODS.includes(req.method)) {
+            return next();
+        }
+
+        const originalJson = res.json.bind(res);
+        res.json = (body) => {
+            if (res.statusCode < 200 || res.statusCode >= 300) {
+                return originalJson(body);
+            }
+
+            const etag = computeEtag(body, ignore);
+            const modifiedAt = lastModified ? lastModified(body) : null;
+
+            res.set('ETag', etag);
+            // Clients may store the response but must revalidate before reusing it
+            res.set('Cache-Control', 'private, no-cache');
+            res.removeHeader('Pragma');
+            res.removeHeader('Expires');
+            if (modifiedAt) {
+                res.set('Last-Modified', modifiedAt.toUTCString());
+            }
+
+            const ifNoneMatch = req.headers['if-none-match'];
+            // If-None-Match takes precedence; If-Modified-Since only applies without it (RFC 9110)
+            const unchanged = ifNoneMatch
+                ? matchesEtag(ifNoneMatch, etag)
+                : notModifiedSince(req.headers['if-modified-since'], modifiedAt);
+
+            if (unchanged) {
+                return res.status(304).end();
+            }
+            return originalJson(body);
+        };
+
+        next();
+    };
+};
+
+module.exports = {
+    conditionalGet,
+    computeEtag
+};
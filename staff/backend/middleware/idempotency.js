@@ -0,0 +1,180 @@
+/**
+ * Idempotency Middleware
+ * Replays the stored response when a client retries a write with the same Idempotency-Key
+ *
+ * Keys are scoped to the authenticated subject (patient or staff user), not to
+ * the bearer token: the mobile outbox may replay hours later, after the access
+ * token was refreshed. Entries live in the idempotency_keys table so they
+ * survive restarts and are shared between workers.
+ */
+
+const db = require('../utils/database');
+const logger = require('../utils/logger');
+const { readTokenPayload } = require('./auth');
+
+const IDEMPOTENCY_TTL_HOURS = 24;
+const MUTATING_METHODS = ['POST', 'PUT', 'PATCH', 'DELETE'];
+const MAX_KEY_LENGTH = 128;
+
+// A request still marked in progress after this long died without answering
+const IN_PROGRESS_TIMEOUT_SECONDS = 120;
+
+const CLEANUP_INTERVAL_MS = 60 * 60 * 1000;
+let lastCleanup = 0;
+
+/**
+ * patient:<id> or user:<id>; null when the request carries no valid token
+ * Runs before the route's own auth, so it verifies the token itself
+ */
+const resolveSubject = (req) => {
+    if (req.patient?.id) return `patient:${req.patient.id}`;
+    if (req.user?.id) return `user:${req.user.id}`;
+
+    const payload = readTokenPayload(req);
+    if (!payload?.id) return null;
+    const isPatient = payload.user_type === 'patient' || payload.role === 'patient';
+    return `${isPatient ? 'patient' : 'user'}:${payload.id}`;
+};
+
+/**
+ * Claim the key for this request
+ * Returns { id } when this request owns it, or { entry } for an existing one
+ */
+const claimKey = async (subject, idempotencyKey, method, path) => {
+    const inserted = await db.query(
+        `INSERT IGNORE INTO idempotency_keys (subject, idempotency_key, method, path, expires_at)
+         VALUES (?, ?, ?, ?, DATE_ADD(NOW(), INTERVAL ? HOUR))`,
+        [subject, idempotencyKey, method, path, IDEMPOTENCY_TTL_HOURS]
+    );
+    if (inserted.affectedRows === 1) {
+        return { id: inserted.insertId };
+    }
+
+    const entry = await db.queryOne(
+        `SELECT id, method, path, status_code, response_body,
+                expires_at <= NOW() AS expired,
+                created_at <= DATE_SUB(NOW(), INTERVAL ? SECOND) AS stale
+         FROM idempotency_keys
+         WHERE subject = ? AND idempotency_key = ?`,
+        [IN_PROGRESS_TIMEOUT_SECONDS, subject, idempotencyKey]
+    );
+    if (!entry) {
+        // Removed by the cleanup in between; let the request through unguarded
+        return { id: null };
+    }
+
+    if (entry.expired || (entry.status_code === null && entry.stale)) {
+        // Only one of several concurrent retries wins the takeover
+        const taken = await db.query(
+            `UPDATE idempotency_keys
+             SET method = ?, path = ?, status_code = NULL, response_body = NULL,
+                 created_at = NOW(), expires_at = DATE_ADD(NOW(), INTERVAL ? HOUR)
+             WHERE id = ?
+               AND (expires_at <= NOW()
+                    OR (status_code IS NULL AND created_at <= DATE_SUB(NOW(), INTERVAL ? SECOND)))`,
+            [method, path, IDEMPOTENCY_TTL_HOURS, entry.id, IN_PROGRESS_TIMEOUT_SECONDS]
+        );
+        if (taken.affectedRows === 1) {
+            return { id: entry.id };
+        }
+        return { entry: { ...entry, status_code: null } };
+    }
+
+    return { entry };
+};
+
+const cleanupExpired = () => {
+    const now = Date.now();
+    if (now - lastCleanup < CLEANUP_INTERVAL_MS) return;
+    lastCleanup = now;
+
+    db.query('DELETE FROM idempotency_keys WHERE expires_at <= NOW()')
+        .catch(error => logger.warn('Idempotency cleanup failed', { error: error.message }));
+};
+
+const idempotencyMiddleware = async (req, res, next) => {
+    const idempotencyKey = req.headers['idempotency-key'];
+    if (!idempotencyKey || !MUTATING_METHODS.includes(req.method)) {
+        return next();
+    }
+
+    const subject = resolveSubject(req);
+    if (!subject) {
+        // The route's own auth check answers unauthenticated requests
+        return next();
+    }
+
+    const key = String(idempotencyKey).slice(0, MAX_KEY_LENGTH);
+    const path = req.originalUrl || req.url;
+
+    let claim;
+    try {
+        claim = await claimKey(subject, key, req.method, path);
+    } catch (error) {
+        logger.warn('Idempotency store unavailable', { error: error.message, path });
+        return next();
+    }
+
+    const { entry } = claim;
+    if (entry) {
+        if (entry.method !== req.method || entry.path !== path) {
+            return res.status(422).json({
+                success: false,
+                code: 'IDEMPOTENCY_KEY_REUSED',
+                message: 'Idempotency-Key sudah dipakai untuk permintaan lain'
+            });
+        }
+
+        if (entry.status_code === null) {
+            return res.status(409).json({
+                success: false,
+                code: 'IDEMPOTENCY_IN_PROGRESS',
+                message: 'Permintaan yang sama sedang diproses'
+            });
+        }
+
+        logger.debug('Idempotent replay', { path, statusCode: entry.status_code });
+        res.set('Idempotent-Replayed', 'true');
+        return res.status(entry.status_code).json(JSON.parse(entry.response_body));
+    }
+
+    if (claim.id === null) {
+        return next();
+    }
+
+    let settled = false;
+    const release = () => db.query(
+        'DELETE FROM idempotency_keys WHERE id = ? AND status_code IS NULL',
+        [claim.id]
+    );
+
+    const originalJson = res.json.bind(res);
+    res.json = (body) => {
+        settled = true;
+        const write = res.statusCode >= 500
+            // Server errors are not final; let the client retry for real
+            ? release()
+            : db.query(
+                'UPDATE idempotency_keys SET status_code = ?, response_body = ? WHERE id = ?',
+                [res.statusCode, JSON.stringify(body), claim.id]
+            );
+        write.catch(error => logger.warn('Idempotency store write failed', { error: error.message, path }));
+        return originalJson(body);
+    };
+
+    // Responses sent without res.json (or aborted) must not block retries
+    const releaseUnsettled = () => {
+        if (settled) return;
+        settled = true;
+        release().catch(error => logger.warn('Idempotency release failed', { error: error.message, path }));
+    };
+    res.on('finish', releaseUnsettled);
+    res.on('close', releaseUnsettled);
+
+    cleanupExpired();
+    next();
+};
+
+module.exports = {
+    idempotencyMiddleware
+};
@@ -0,0 +1,10 @@
+-- Track when each obat row last changed
+-- The pharmacy app keeps a local catalog and asks /api/obat-sales/obat-list?since=<version>
+-- for rows changed after its last sync; stock updates and deactivation bump this column
+-- Run with: mysql -u root -p dibyaklinik < 20261016_add_obat_updated_at.sql
+
+USE dibyaklinik;
+
+ALTER TABLE obat
+    ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    ADD INDEX idx_obat_updated_at (updated_at);
@@ -0,0 +1,19 @@
+-- Refresh Tokens Table
+-- Long-lived tokens the mobile apps exchange at /api/auth/refresh for a new access token
+-- Only the SHA-256 of each token is stored; every refresh rotates the token within its family
+
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    token_hash CHAR(64) NOT NULL UNIQUE,
+    family_id CHAR(36) NOT NULL COMMENT 'Shared by all tokens rotated from one login',
+    subject VARCHAR(50) NOT NULL COMMENT 'User or patient ID the token was issued to',
+    claims JSON NOT NULL COMMENT 'Payload re-signed into each new access token',
+    expires_at DATETIME NOT NULL,
+    revoked_at DATETIME DEFAULT NULL,
+    replaced_by INT DEFAULT NULL COMMENT 'Token issued when this one was rotated',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+
+    INDEX idx_family_id (family_id),
+    INDEX idx_subject (subject),
+    INDEX idx_expires_at (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,18 @@
+-- Idempotency Keys Table
+-- Responses to writes sent with an Idempotency-Key, replayed when the mobile outbox retries
+-- Scoped to the authenticated subject, so a replay after a token refresh still matches
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    subject VARCHAR(64) NOT NULL COMMENT 'patient:<id> or user:<id>',
+    idempotency_key VARCHAR(128) NOT NULL,
+    method VARCHAR(10) NOT NULL,
+    path VARCHAR(255) NOT NULL,
+    status_code SMALLINT DEFAULT NULL COMMENT 'NULL while the first request is in progress',
+    response_body MEDIUMTEXT DEFAULT NULL,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    expires_at DATETIME NOT NULL,
+
+    UNIQUE KEY uniq_subject_key (subject, idempotency_key),
+    INDEX idx_expires_at (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -3,6 +3,7 @@ const router = express.Router();
 const db = require('../db');
 const logger = require('../utils/logger');
 const { verifyToken, requirePermission } = require('../middleware/auth');
+const { conditionalGet } = require('../middleware/conditionalGet');
 const multer = require('multer');
 const r2Storage = require('../services/r2Storage');
 
@@ -115,9 +116,20 @@ router.post('/upload-image', verifyToken, requirePermission('announcements.creat
 });
 
 // Get all active announcements (public - for patient dashboard)
-router.get('/active', async (req, res) => {
+// Delta sync: with ?since=<sync_cursor>, only active announcements updated after
+// that time are returned, together with active_ids so the client can drop the rest.
+// sync_cursor is the request time, so it is left out of the ETag.
+router.get('/active', conditionalGet({ ignore: ['sync_cursor'] }), async (req, res) => {
     try {
         const patientId = req.query.patient_id; // Optional: to check if patient liked
+        const since = req.query.since ? new Date(req.query.since) : null;
+
+        if (since && Number.isNaN(since.getTime())) {
+            return res.status(400).json({ success: false, message: 'Cursor sinkronisasi tidak valid' });
+        }
+
+        // Taken before querying so changes made during the request are picked up next sync
+        const syncedAt = new Date();
 
         // Check if new columns exist by querying information_schema
         let hasNewColumns = false;
@@ -134,12 +146,12 @@ router.get('/active', async (req, res) => {
         }
 
         // Build query based on available columns
-        let selectColumns = 'id, title, message, created_by_name, priority, created_at, COALESCE(like_count, 0) as like_count';
+        let selectColumns = 'id, title, message, created_by_name, priority, created_at, updated_at, COALESCE(like_count, 0) as like_count';
         if (hasNewColumns) {
-            selectColumns = 'id, title, message, image_url, formatted_content, content_type, created_by_name, priority, created_at, COALESCE(like_count, 0) as like_count';
+            selectColumns = 'id, title, message, image_url, formatted_content, content_type, created_by_name, priority, created_at, updated_at, COALESCE(like_count, 0) as like_count';
         }
 
-        const [announcements] = await db.query(
+        const [active] = await db.query(
             `SELECT ${selectColumns}
              FROM announcements
              WHERE status = 'active'
@@ -153,8 +165,12 @@ router.get('/active', async (req, res) => {
              LIMIT 10`
         );
 
+        const announcements = since
+            ? active.filter(a => !a.updated_at || new Date(a.updated_at) > since)
+            : active;
+
         // If patient_id provided, check which announcements they liked
-        if (patientId) {
+        if (patientId && announcements.length > 0) {
             const [likes] = await db.query(
                 'SELECT announcement_id FROM announcement_likes WHERE patient_id = ?',
                 [patientId]
@@ -165,7 +181,13 @@ router.get('/active', async (req, res) => {
             });
         }
 
-        res.json({ success: true, data: announcements });
+        res.json({
+            success: true,
+            data: announcements,
+            delta: Boolean(since),
+            active_ids: active.map(a => a.id),
+            sync_cursor: syncedAt.toISOString()
+        });
     } catch (error) {
         console.error('Error fetching active announcements:', error);
         res.status(500).json({ success: false, message: error.message });
@@ -1,13 +1,14 @@
 const express = require('express');
 const router = express.Router();
 const db = require('../db');
+const { conditionalGet } = require('../middleware/conditionalGet');
 
 /**
  * GET /api/app/version
  * Returns the latest version info for the Android app
  * Used by the app to check for updates
  */
-router.get('/version', async (req, res) => {
+router.get('/version', conditionalGet(), async (req, res) => {
     try {
         // Get version from settings table, or return default
         const [settings] = await db.query(
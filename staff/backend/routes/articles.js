@@ -9,11 +9,12 @@ const db = require('../db');
 const { verifyToken, requireRoles } = require('../middleware/auth');
 const { ROLE_NAMES } = require('../constants/roles');
 const logger = require('../utils/logger');
+const { conditionalGet } = require('../middleware/conditionalGet');
 
 /**
  * GET /api/articles - Get all published articles (public)
  */
-router.get('/', async (req, res) => {
+router.get('/', conditionalGet(), async (req, res) => {
     try {
         const { category, limit = 20, offset = 0 } = req.query;
 
@@ -78,6 +79,8 @@ router.get('/categories', async (req, res) => {
 
 /**
  * GET /api/articles/:id - Get single article
+ * ?prefetch=1 skips the view count (app background prefetch); the app
+ * counts the view with POST /:id/view when the article is actually opened
  */
 router.get('/:id', async (req, res) => {
     try {
@@ -91,8 +94,10 @@ router.get('/:id', async (req, res) => {
             return res.status(404).json({ success: false, message: 'Article not found' });
         }
 
-        // Increment view count
-        await db.query(`UPDATE health_articles SET view_count = view_count + 1 WHERE id = ?`, [id]);
+        // Increment view count (not for background prefetches from the app)
+        if (req.query.prefetch !== '1') {
+            await db.query(`UPDATE health_articles SET view_count = view_count + 1 WHERE id = ?`, [id]);
+        }
 
         res.json({
             success: true,
@@ -105,6 +110,28 @@ router.get('/:id', async (req, res) => {
     }
 });
 
+/**
+ * POST /api/articles/:id/view - Count a view without sending the article
+ * The app calls this when it opens an article from its own cache
+ */
+router.post('/:id/view', async (req, res) => {
+    try {
+        const [result] = await db.query(
+            `UPDATE health_articles SET view_count = view_count + 1 WHERE id = ? AND is_published = 1`,
+            [req.params.id]
+        );
+
+        if (result.affectedRows === 0) {
+            return res.status(404).json({ success: false, message: 'Article not found' });
+        }
+
+        res.json({ success: true });
+    } catch (error) {
+        logger.error('Error recording article view:', error);
+        res.status(500).json({ success: false, message: 'Failed to record view' });
+    }
+});
+
 // ============ ADMIN ROUTES (require authentication) ============
 
 /**
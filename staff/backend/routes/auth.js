@@ -13,6 +13,8 @@ const logger = require('../utils/logger');
 const { deletePatientWithRelations, deletePatientByEmail } = require('../services/patientDeletion');
 const { ROLE_IDS, isSuperadminRole } = require('../constants/roles');
 const activityLogger = require('../services/activityLogger');
+const refreshTokens = require('../services/refreshTokens');
+const { buildUserClaims } = require('../services/sessionClaims');
 
 const JWT_EXPIRES_IN = process.env.JWT_EXPIRES_IN || '7d';
 
@@ -77,18 +79,9 @@ router.post('/api/auth/login', validateLogin, asyncHandler(async (req, res) => {
         throw new AppError('Akses ditolak. Pasien tidak dapat mengakses panel admin.', HTTP_STATUS.FORBIDDEN);
     }
 
-    const token = jwt.sign(
-        {
-            id: userId,
-            name: user.name || 'Staff',
-            role: roleForToken,
-            role_id: user.role_id || null,
-            user_type: user.user_type || 'patient',
-            is_superadmin: user.is_superadmin || false
-        },
-        JWT_SECRET,
-        { expiresIn: JWT_EXPIRES_IN }
-    );
+    const claims = buildUserClaims(user);
+    const token = jwt.sign(claims, JWT_SECRET, { expiresIn: JWT_EXPIRES_IN });
+    const refreshToken = await refreshTokens.issue(claims);
 
     logger.info(`User logged in: ${user.email}`);
 
@@ -102,6 +95,7 @@ router.post('/api/auth/login', validateLogin, asyncHandler(async (req, res) => {
 
     sendSuccess(res, {
         token,
+        refresh_token: refreshToken,
         user: {
             id: userId,
             name: user.name,
@@ -163,23 +157,15 @@ router.post('/api/auth/patient-login', asyncHandler(async (req, res) => {
         throw new AppError('Akses ditolak. Silakan gunakan halaman login staff.', HTTP_STATUS.FORBIDDEN);
     }
 
-    const token = jwt.sign(
-        {
-            id: userId,
-            email: user.email,
-            name: user.name || 'Patient',
-            role: 'patient',
-            user_type: 'patient',
-            is_superadmin: false
-        },
-        JWT_SECRET,
-        { expiresIn: JWT_EXPIRES_IN }
-    );
+    const claims = buildUserClaims(user);
+    const token = jwt.sign(claims, JWT_SECRET, { expiresIn: JWT_EXPIRES_IN });
+    const refreshToken = await refreshTokens.issue(claims);
 
     logger.info(`Patient logged in: ${user.email}`);
 
     sendSuccess(res, {
         token,
+        refresh_token: refreshToken,
         user: {
             id: userId,
             name: user.name,
@@ -191,6 +177,35 @@ router.post('/api/auth/patient-login', asyncHandler(async (req, res) => {
     }, SUCCESS_MESSAGES.LOGIN_SUCCESS);
 }));
 
+// POST /api/auth/refresh - Exchange a refresh token for a new access token
+// The presented refresh token is rotated; clients must store the returned one
+router.post('/api/auth/refresh', asyncHandler(async (req, res) => {
+    const { refresh_token: presented } = req.body;
+
+    if (!presented) {
+        throw new AppError('Refresh token wajib diisi', HTTP_STATUS.BAD_REQUEST);
+    }
+
+    const { claims, refreshToken } = await refreshTokens.rotate(presented);
+    const token = jwt.sign(claims, JWT_SECRET, { expiresIn: JWT_EXPIRES_IN });
+
+    sendSuccess(res, {
+        token,
+        refresh_token: refreshToken
+    }, 'Sesi diperbarui');
+}));
+
+// POST /api/auth/logout - Revoke the refresh token family of this session
+router.post('/api/auth/logout', asyncHandler(async (req, res) => {
+    const { refresh_token: presented } = req.body;
+
+    if (presented) {
+        await refreshTokens.revokeFamily(presented);
+    }
+
+    sendSuccess(res, null, 'Logout berhasil');
+}));
+
 // GET /api/auth/me
 router.get('/api/auth/me', verifyToken, asyncHandler(async (req, res) => {
     const userId = req.user?.id;
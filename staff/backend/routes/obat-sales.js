@@ -109,20 +109,51 @@ router.get('/', verifyToken, async (req, res, next) => {
  * GET /api/obat-sales/obat-list
  * Get obat list for mobile app (no additional permission required)
  * All authenticated staff can access this for creating sales
+ *
+ * Without ?since the full active catalog is returned. With ?since=<version> (from a
+ * previous response) only rows changed since then are returned, including deactivated
+ * ones so the app can drop them. Rows changed within the version's second are sent
+ * again; the app upserts, so that is harmless.
+ *
+ * Hard-deleted rows leave no trace to send, so a delta also carries active_ids, the
+ * ids of the whole active catalog; the app drops every cached row not listed.
  */
 router.get('/obat-list', verifyToken, async (req, res, next) => {
     try {
-        const [rows] = await db.query(`
-            SELECT id, code, name, category, price, unit, stock
-            FROM obat
-            WHERE is_active = 1
-            ORDER BY category, name
-        `);
+        const since = parseInt(req.query.since, 10);
+        const isDelta = Number.isFinite(since) && since > 0;
+
+        const [[{ version }]] = await db.query(
+            'SELECT COALESCE(UNIX_TIMESTAMP(MAX(updated_at)), 0) AS version FROM obat'
+        );
+
+        const [rows] = isDelta
+            ? await db.query(`
+                SELECT id, code, name, category, price, unit, stock, is_active
+                FROM obat
+                WHERE updated_at >= FROM_UNIXTIME(?)
+                ORDER BY category, name
+            `, [since])
+            : await db.query(`
+                SELECT id, code, name, category, price, unit, stock, is_active
+                FROM obat
+                WHERE is_active = 1
+                ORDER BY category, name
+            `);
+
+        let activeIds;
+        if (isDelta) {
+            const [active] = await db.query('SELECT id FROM obat WHERE is_active = 1');
+            activeIds = active.map(row => row.id);
+        }
 
         res.json({
             success: true,
             data: rows,
-            count: rows.length
+            count: rows.length,
+            version: Number(version),
+            full: !isDelta,
+            active_ids: activeIds
         });
     } catch (error) {
         logger.error('Failed to fetch obat list for mobile', { error: error.message });
@@ -808,6 +839,77 @@ router.post('/:id/etiket-base64', verifyToken, async (req, res, next) => {
     }
 });
 
+/**
+ * Generate a sale PDF and send it as raw application/pdf
+ * Same checks as the *-base64 routes, without the base64 overhead. The
+ * generated buffer goes straight to the response; nothing is stored in R2,
+ * since these routes never record a URL for the file.
+ */
+const SALE_PDFS = {
+    invoice: { label: 'Invoice', generate: 'generateObatSaleInvoice' },
+    etiket: { label: 'Etiket', generate: 'generateObatSaleEtiket' }
+};
+
+const streamSalePdf = (kind) => async (req, res, next) => {
+    const { label, generate } = SALE_PDFS[kind];
+    try {
+        const [[sale]] = await db.query(
+            'SELECT * FROM obat_sales WHERE id = ?',
+            [req.params.id]
+        );
+
+        if (!sale) {
+            return res.status(404).json({ success: false, message: 'Sale not found' });
+        }
+
+        if (!['confirmed', 'payment_pending', 'paid'].includes(sale.status)) {
+            return res.status(400).json({
+                success: false,
+                message: `${label} hanya bisa dibuat untuk penjualan yang sudah dikonfirmasi`
+            });
+        }
+
+        const [items] = await db.query(
+            'SELECT * FROM obat_sale_items WHERE sale_id = ?',
+            [sale.id]
+        );
+        sale.items = items;
+
+        const pdfGenerator = require('../utils/pdf-generator');
+        const result = await pdfGenerator[generate](sale, { upload: false });
+
+        res.set({
+            'Content-Type': 'application/pdf',
+            'Content-Disposition': `attachment; filename="${result.filename}"`,
+            'Content-Length': String(result.size),
+            // Lets the app key its cached copy by status
+            'X-Sale-Status': sale.status,
+            'Cache-Control': 'no-store'
+        });
+        res.end(result.buffer);
+
+        logger.info(`Obat sale ${kind} sent`, {
+            saleNumber: sale.sale_number,
+            size: result.size
+        });
+    } catch (error) {
+        logger.error(`Failed to send obat sale ${kind}`, { error: error.message });
+        next(error);
+    }
+};
+
+/**
+ * POST /api/obat-sales/:id/invoice-pdf
+ * Generate invoice PDF and stream it (for mobile apps)
+ */
+router.post('/:id/invoice-pdf', verifyToken, streamSalePdf('invoice'));
+
+/**
+ * POST /api/obat-sales/:id/etiket-pdf
+ * Generate etiket (label) PDF and stream it (for mobile apps)
+ */
+router.post('/:id/etiket-pdf', verifyToken, streamSalePdf('etiket'));
+
 /**
  * POST /api/obat-sales/:id/print-invoice
  * Generate and return invoice PDF
@@ -865,3 +967,4 @@ router.post('/:id/print-invoice', verifyToken, async (req, res, next) => {
 });
 
 module.exports = router;
+module.exports.streamSalePdf = streamSalePdf;
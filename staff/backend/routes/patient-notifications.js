@@ -11,16 +11,66 @@ const { verifyPatientToken } = require('../middleware/auth');
 /**
  * GET /api/patient-notifications
  * Get notifications for current patient
+ *
+ * Delta sync: when since_id and since are given (the sync_cursor from a
+ * previous response), only notifications created after since_id are
+ * returned, plus the ids of older notifications read after since.
  */
+const DELTA_PAGE_SIZE = 500;
+
 router.get('/', verifyPatientToken, async (req, res) => {
     try {
         const patientId = req.patient?.patientId || req.patient?.id;
-        const { limit = 20, offset = 0, unread_only = false } = req.query;
+        const { limit = 20, offset = 0, unread_only = false, since_id, since } = req.query;
 
         if (!patientId) {
             return res.status(401).json({ success: false, message: 'Patient not authenticated' });
         }
 
+        // Taken before querying so changes made during the request are picked up next sync
+        const syncedAt = new Date();
+
+        if (since_id !== undefined && since) {
+            const sinceId = parseInt(since_id);
+            const sinceDate = new Date(since);
+            if (Number.isNaN(sinceId) || Number.isNaN(sinceDate.getTime())) {
+                return res.status(400).json({ success: false, message: 'Cursor sinkronisasi tidak valid' });
+            }
+
+            const [notifications] = await db.query(
+                `SELECT * FROM patient_notifications
+                 WHERE patient_id = ? AND id > ?
+                 ORDER BY id ASC LIMIT ?`,
+                [patientId, sinceId, DELTA_PAGE_SIZE]
+            );
+            const [readRows] = await db.query(
+                `SELECT id FROM patient_notifications
+                 WHERE patient_id = ? AND id <= ? AND is_read = 1 AND read_at > ?`,
+                [patientId, sinceId, sinceDate]
+            );
+            const [countResult] = await db.query(
+                'SELECT COUNT(*) as count FROM patient_notifications WHERE patient_id = ? AND is_read = 0',
+                [patientId]
+            );
+
+            const hasMore = notifications.length === DELTA_PAGE_SIZE;
+            const maxId = notifications.reduce((max, n) => Math.max(max, n.id), sinceId);
+
+            return res.json({
+                success: true,
+                delta: true,
+                notifications,
+                read_ids: readRows.map(r => r.id),
+                unread_count: countResult[0].count,
+                has_more: hasMore,
+                sync_cursor: {
+                    max_id: maxId,
+                    // Keep the old timestamp until all pages are fetched so no read change is skipped
+                    synced_at: hasMore ? sinceDate.toISOString() : syncedAt.toISOString()
+                }
+            });
+        }
+
         let query = `
             SELECT * FROM patient_notifications
             WHERE patient_id = ?
@@ -45,7 +95,11 @@ router.get('/', verifyPatientToken, async (req, res) => {
         res.json({
             success: true,
             notifications,
-            unread_count: countResult[0].count
+            unread_count: countResult[0].count,
+            sync_cursor: {
+                max_id: notifications.reduce((max, n) => Math.max(max, n.id), 0),
+                synced_at: syncedAt.toISOString()
+            }
         });
 
     } catch (error) {
@@ -9,6 +9,8 @@ const path = require('path');
 const db = require('../db');
 const cache = require('../utils/cache');
 const { deletePatientWithRelations } = require('../services/patientDeletion');
+const refreshTokens = require('../services/refreshTokens');
+const { buildPatientClaims } = require('../services/sessionClaims');
 const r2Storage = require('../services/r2Storage');
 const logger = require('../utils/logger');
 const { ROLE_NAMES, isSuperadminRole } = require('../constants/roles');
@@ -357,21 +359,14 @@ router.post('/login', async (req, res) => {
         }
         
         // Generate JWT token
-        const token = jwt.sign(
-            { 
-                id: patient.id,
-                medicalRecordId: patient.id,
-                email: patient.email, 
-                full_name: patient.full_name,
-                role: 'patient'
-            },
-            JWT_SECRET,
-            { expiresIn: JWT_EXPIRES_IN }
-        );
+        const claims = buildPatientClaims(patient);
+        const token = jwt.sign(claims, JWT_SECRET, { expiresIn: JWT_EXPIRES_IN });
+        const refreshToken = await refreshTokens.issue(claims);
         
         res.json({
             message: 'Login berhasil',
             token,
+            refresh_token: refreshToken,
             user: {
                 id: patient.id,
                 medicalRecordId: patient.id,
@@ -466,22 +461,14 @@ router.post('/auth/google', async (req, res) => {
         }
         
         // Generate JWT token
-        const token = jwt.sign(
-            { 
-                id: patient.id,
-                medicalRecordId: patient.id,
-                email: patient.email, 
-                full_name: patient.full_name,
-                fullname: patient.full_name,
-                role: 'patient'
-            },
-            JWT_SECRET,
-            { expiresIn: JWT_EXPIRES_IN }
-        );
+        const claims = buildPatientClaims(patient);
+        const token = jwt.sign(claims, JWT_SECRET, { expiresIn: JWT_EXPIRES_IN });
+        const refreshToken = await refreshTokens.issue(claims);
         
         res.json({
             message: 'Login dengan Google berhasil',
             token,
+            refresh_token: refreshToken,
             user: {
                 id: patient.id,
                 medicalRecordId: patient.id,
@@ -597,23 +584,15 @@ router.post('/google-auth-code', async (req, res) => {
         }
 
         // Generate JWT token
-        const token = jwt.sign(
-            {
-                id: patient.id,
-                medicalRecordId: patient.id,
-                email: patient.email,
-                full_name: patient.full_name,
-                fullname: patient.full_name,
-                role: 'patient'
-            },
-            JWT_SECRET,
-            { expiresIn: JWT_EXPIRES_IN }
-        );
+        const claims = buildPatientClaims(patient);
+        const token = jwt.sign(claims, JWT_SECRET, { expiresIn: JWT_EXPIRES_IN });
+        const refreshToken = await refreshTokens.issue(claims);
 
         res.json({
             success: true,
             message: 'Login dengan Google berhasil',
             token,
+            refresh_token: refreshToken,
             user: {
                 id: patient.id,
                 medicalRecordId: patient.id,
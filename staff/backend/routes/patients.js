@@ -10,6 +10,7 @@ const sharp = require('sharp');
 const r2Storage = require('../services/r2Storage');
 const { verifyToken, verifyPatientToken } = require('../middleware/auth');
 const { validatePatient } = require('../middleware/validation');
+const { conditionalGet } = require('../middleware/conditionalGet');
 const { deletePatientWithRelations } = require('../services/patientDeletion');
 const activityLogger = require('../services/activityLogger');
 
@@ -1431,12 +1432,8 @@ router.get('/api/patients/generate-id', async (req, res) => {
 // ==================== MEDICATIONS (TERAPI) ====================
 
 // GET medications/terapi for logged-in patient (Android App)
-router.get('/api/patients/medications', verifyPatientToken, async (req, res) => {
-    // Prevent browser caching - always fetch fresh data
-    res.set('Cache-Control', 'no-store, no-cache, must-revalidate, proxy-revalidate');
-    res.set('Pragma', 'no-cache');
-    res.set('Expires', '0');
-
+// conditionalGet marks the response private/no-cache: stored by the app, but always revalidated
+router.get('/api/patients/medications', verifyPatientToken, conditionalGet(), async (req, res) => {
     try {
         const patientId = req.patient.id;
 
@@ -12,6 +12,7 @@ const logger = require('./utils/logger');
 const { errorHandler, notFoundHandler } = require('./middleware/errorHandler');
 const { requestLogger, performanceLogger } = require('./middleware/requestLogger');
 const { metricsMiddleware, getMetrics, resetMetrics } = require('./middleware/metrics');
+const { idempotencyMiddleware } = require('./middleware/idempotency');
 const swaggerUi = require('swagger-ui-express');
 const swaggerSpec = require('./config/swagger');
 const activityLogger = require('./services/activityLogger');
@@ -83,6 +84,9 @@ app.use(cors({
 }));
 app.use(express.json({ limit: '10mb' }));
 
+// Replay retried writes that carry an Idempotency-Key (mobile offline outbox)
+app.use('/api', idempotencyMiddleware);
+
 // Rate limiting COMPLETELY DISABLED for development
 // Uncomment and configure for production use
 /*
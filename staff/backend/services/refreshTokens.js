@@ -0,0 +1,154 @@
+/**
+ * Refresh Token Service
+ * Rotating refresh tokens for the mobile apps
+ *
+ * Each login starts a token family. A refresh revokes the presented token and
+ * issues its successor in the same family. Presenting a token that was already
+ * rotated means it leaked (or a client replayed it), so the whole family is
+ * revoked and the user has to log in again.
+ *
+ * Each refresh rebuilds the access token claims from the account as it is now,
+ * so role changes apply and deactivated accounts are signed out. A family also
+ * ends REFRESH_FAMILY_MAX_DAYS after its login, however often it was rotated.
+ */
+
+const crypto = require('crypto');
+const db = require('../utils/database');
+const logger = require('../utils/logger');
+const { AppError } = require('../middleware/errorHandler');
+const { HTTP_STATUS, ERROR_MESSAGES } = require('../config/constants');
+const { loadCurrentClaims } = require('./sessionClaims');
+
+const REFRESH_TOKEN_TTL_DAYS = parseInt(process.env.REFRESH_TOKEN_TTL_DAYS) || 60;
+const REFRESH_FAMILY_MAX_DAYS = parseInt(process.env.REFRESH_FAMILY_MAX_DAYS) || 90;
+
+// Two requests racing with the same token (e.g. app and its background worker)
+// both present it within this window; the loser gets a 401 but the family survives
+const ROTATION_GRACE_SECONDS = 30;
+
+// JWT bookkeeping that must not be copied into the next access token
+const RESERVED_CLAIMS = ['iat', 'exp', 'nbf', 'jti'];
+
+const hashToken = (token) => crypto.createHash('sha256').update(token).digest('hex');
+
+const cleanClaims = (claims) => {
+    const result = { ...claims };
+    RESERVED_CLAIMS.forEach(key => delete result[key]);
+    return result;
+};
+
+const insertToken = async (executor, claims, familyId) => {
+    const token = crypto.randomBytes(32).toString('base64url');
+    const [result] = await executor.query(
+        `INSERT INTO refresh_tokens (token_hash, family_id, subject, claims, expires_at)
+         VALUES (?, ?, ?, ?, DATE_ADD(NOW(), INTERVAL ? DAY))`,
+        [hashToken(token), familyId, String(claims.id), JSON.stringify(claims), REFRESH_TOKEN_TTL_DAYS]
+    );
+    return { token, id: result.insertId };
+};
+
+/**
+ * Issue the first refresh token of a new family, at login
+ */
+const issue = async (claims) => {
+    const payload = cleanClaims(claims);
+    const { token } = await db.transaction(connection =>
+        insertToken(connection, payload, crypto.randomUUID())
+    );
+    return token;
+};
+
+const revokeFamilyWith = (executor, familyId) => executor.query(
+    'UPDATE refresh_tokens SET revoked_at = NOW() WHERE family_id = ? AND revoked_at IS NULL',
+    [familyId]
+);
+
+/**
+ * Exchange a refresh token for its successor
+ * Returns the claims to sign into the new access token, reloaded from the account
+ */
+const rotate = async (token) => {
+    return db.transaction(async (connection) => {
+        const [rows] = await connection.query(
+            `SELECT t.id, t.family_id, t.subject, t.claims,
+                    t.expires_at <= NOW() AS expired,
+                    t.revoked_at IS NOT NULL AS revoked,
+                    t.revoked_at > DATE_SUB(NOW(), INTERVAL ? SECOND) AS recently_revoked,
+                    (SELECT MIN(f.created_at) FROM refresh_tokens f WHERE f.family_id = t.family_id)
+                        <= DATE_SUB(NOW(), INTERVAL ? DAY) AS family_expired
+             FROM refresh_tokens t
+             WHERE t.token_hash = ?
+             FOR UPDATE`,
+            [ROTATION_GRACE_SECONDS, REFRESH_FAMILY_MAX_DAYS, hashToken(token)]
+        );
+
+        if (rows.length === 0) {
+            throw new AppError(ERROR_MESSAGES.UNAUTHORIZED, HTTP_STATUS.UNAUTHORIZED);
+        }
+
+        const row = rows[0];
+
+        if (row.revoked) {
+            if (!row.recently_revoked) {
+                logger.warn('Refresh token reuse detected, revoking family', {
+                    subject: row.subject,
+                    familyId: row.family_id
+                });
+                await revokeFamilyWith(connection, row.family_id);
+            }
+            throw new AppError(ERROR_MESSAGES.UNAUTHORIZED, HTTP_STATUS.UNAUTHORIZED);
+        }
+
+        if (row.expired) {
+            throw new AppError(ERROR_MESSAGES.UNAUTHORIZED, HTTP_STATUS.UNAUTHORIZED);
+        }
+
+        if (row.family_expired) {
+            logger.info('Refresh token family reached its maximum lifetime', {
+                subject: row.subject,
+                familyId: row.family_id
+            });
+            await revokeFamilyWith(connection, row.family_id);
+            throw new AppError(ERROR_MESSAGES.UNAUTHORIZED, HTTP_STATUS.UNAUTHORIZED);
+        }
+
+        const issuedClaims = typeof row.claims === 'string' ? JSON.parse(row.claims) : row.claims;
+        const claims = await loadCurrentClaims(connection, issuedClaims);
+        if (!claims) {
+            logger.warn('Refresh rejected for deleted or inactive account', {
+                subject: row.subject,
+                familyId: row.family_id
+            });
+            await revokeFamilyWith(connection, row.family_id);
+            throw new AppError(ERROR_MESSAGES.UNAUTHORIZED, HTTP_STATUS.UNAUTHORIZED);
+        }
+
+        const next = await insertToken(connection, claims, row.family_id);
+        await connection.query(
+            'UPDATE refresh_tokens SET revoked_at = NOW(), replaced_by = ? WHERE id = ?',
+            [next.id, row.id]
+        );
+
+        return { claims, refreshToken: next.token };
+    });
+};
+
+/**
+ * Revoke every token of the family the given token belongs to, at logout
+ */
+const revokeFamily = async (token) => {
+    const row = await db.queryOne(
+        'SELECT family_id FROM refresh_tokens WHERE token_hash = ?',
+        [hashToken(token)]
+    );
+    if (!row) return;
+
+    await revokeFamilyWith(db, row.family_id);
+};
+
+module.exports = {
+    issue,
+    rotate,
+    revokeFamily,
+    hashToken
+};
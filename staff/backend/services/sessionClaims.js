@@ -0,0 +1,86 @@
+/**
+ * Session Claims
+ * The access token payload for staff users and patients
+ *
+ * Built in one place so a token refresh signs exactly what a fresh login
+ * would, from the account as it is now (role changes, renames, deactivation).
+ */
+
+/**
+ * Claims for an account in the users table
+ * Staff sign in at /api/auth/login, users-table patients at /api/auth/patient-login
+ */
+const buildUserClaims = (user) => {
+    if (user.user_type === 'patient') {
+        return {
+            id: user.new_id,
+            email: user.email,
+            name: user.name || 'Patient',
+            role: 'patient',
+            user_type: 'patient',
+            is_superadmin: false
+        };
+    }
+
+    // Use actual role from DB (e.g., managerial, bidan, front_office) for role_visibility to work
+    const role = user.is_superadmin ? 'dokter' :
+                 user.role || user.resolved_role_name || 'viewer';
+
+    return {
+        id: user.new_id,
+        name: user.name || 'Staff',
+        role,
+        role_id: user.role_id || null,
+        user_type: user.user_type || 'patient',
+        is_superadmin: user.is_superadmin || false
+    };
+};
+
+/**
+ * Claims for an account in the patients table (patient app logins)
+ */
+const buildPatientClaims = (patient) => ({
+    id: patient.id,
+    medicalRecordId: patient.id,
+    email: patient.email,
+    full_name: patient.full_name,
+    fullname: patient.full_name,
+    role: 'patient'
+});
+
+/**
+ * Reload the account behind previously issued claims and rebuild them
+ * Returns null when the account was deleted or deactivated
+ *
+ * Tokens from the patients table carry no user_type; users-table tokens always do.
+ */
+const loadCurrentClaims = async (executor, claims) => {
+    if (!claims.user_type) {
+        const [patients] = await executor.query(
+            'SELECT id, email, full_name FROM patients WHERE id = ? AND status = "active"',
+            [claims.id]
+        );
+        return patients.length > 0 ? buildPatientClaims(patients[0]) : null;
+    }
+
+    const [users] = await executor.query(
+        `SELECT u.new_id, u.name, u.email, u.role, u.role_id, u.user_type, u.is_superadmin,
+                r.name AS resolved_role_name
+         FROM users u
+         LEFT JOIN roles r ON u.role_id = r.id
+         WHERE u.new_id = ? AND COALESCE(u.is_active, 1) = 1`,
+        [claims.id]
+    );
+    if (users.length === 0) return null;
+
+    const current = buildUserClaims(users[0]);
+    // A login on one portal must not refresh into the other
+    if ((current.user_type === 'patient') !== (claims.user_type === 'patient')) return null;
+    return current;
+};
+
+module.exports = {
+    buildUserClaims,
+    buildPatientClaims,
+    loadCurrentClaims
+};
@@ -0,0 +1,108 @@
+const { conditionalGet, computeEtag } = require('../../middleware/conditionalGet');
+
+const createReq = (overrides = {}) => ({
+    method: 'GET',
+    headers: {},
+    ...overrides
+});
+
+const createRes = () => {
+    const res = {
+        statusCode: 200,
+        headers: {},
+        status: jest.fn(function(code) { this.statusCode = code; return this; }),
+        set: jest.fn(function(name, value) { this.headers[name] = value; return this; }),
+        removeHeader: jest.fn(function(name) { delete this.headers[name]; }),
+        json: jest.fn(function(body) { this.body = body; return this; }),
+        end: jest.fn(function() { this.ended = true; return this; })
+    };
+    return res;
+};
+
+const send = (middleware, req, body, setup = () => {}) => {
+    const res = createRes();
+    middleware(req, res, () => {
+        setup(res);
+        res.json(body);
+    });
+    return res;
+};
+
+describe('conditionalGet middleware', () => {
+    const body = { success: true, data: [{ id: 1, title: 'Halo' }] };
+
+    it('adds a strong ETag and revalidation headers', () => {
+        const res = send(conditionalGet(), createReq(), body);
+
+        expect(res.statusCode).toBe(200);
+        expect(res.body).toEqual(body);
+        expect(res.headers.ETag).toBe(computeEtag(body));
+        expect(res.headers.ETag).toMatch(/^"[^"]+"$/);
+        expect(res.headers['Cache-Control']).toBe('private, no-cache');
+    });
+
+    it('answers a matching If-None-Match with 304 and no body', () => {
+        const etag = computeEtag(body);
+        const res = send(conditionalGet(), createReq({ headers: { 'if-none-match': `"other", W/${etag}` } }), body);
+
+        expect(res.statusCode).toBe(304);
+        expect(res.ended).toBe(true);
+        expect(res.body).toBeUndefined();
+    });
+
+    it('sends the full body when the ETag changed', () => {
+        const stale = computeEtag({ success: true, data: [] });
+        const res = send(conditionalGet(), createReq({ headers: { 'if-none-match': stale } }), body);
+
+        expect(res.statusCode).toBe(200);
+        expect(res.body).toEqual(body);
+    });
+
+    it('leaves ignored fields out of the ETag', () => {
+        const middleware = conditionalGet({ ignore: ['sync_cursor'] });
+        const first = send(middleware, createReq(), { ...body, sync_cursor: '2026-01-01T00:00:00.000Z' });
+        const second = send(
+            middleware,
+            createReq({ headers: { 'if-none-match': first.headers.ETag } }),
+            { ...body, sync_cursor: '2026-01-01T00:05:00.000Z' }
+        );
+
+        expect(second.statusCode).toBe(304);
+    });
+
+    it('uses If-Modified-Since only when If-None-Match is absent', () => {
+        const modifiedAt = new Date('2026-01-01T10:00:00Z');
+        const middleware = conditionalGet({ lastModified: () => modifiedAt });
+
+        const notModified = send(middleware, createReq({ headers: { 'if-modified-since': modifiedAt.toUTCString() } }), body);
+        expect(notModified.statusCode).toBe(304);
+        expect(notModified.headers['Last-Modified']).toBe(modifiedAt.toUTCString());
+
+        const etagWins = send(middleware, createReq({
+            headers: { 'if-none-match': '"other"', 'if-modified-since': modifiedAt.toUTCString() }
+        }), body);
+        expect(etagWins.statusCode).toBe(200);
+    });
+
+    it('overrides no-store headers set by the route', () => {
+        const res = send(conditionalGet(), createReq(), body, (r) => {
+            r.set('Cache-Control', 'no-store');
+            r.set('Pragma', 'no-cache');
+        });
+
+        expect(res.headers['Cache-Control']).toBe('private, no-cache');
+        expect(res.headers.Pragma).toBeUndefined();
+    });
+
+    it('ignores error responses and non-GET requests', () => {
+        const error = send(conditionalGet(), createReq(), { success: false }, (r) => r.status(500));
+        expect(error.headers.ETag).toBeUndefined();
+
+        const next = jest.fn();
+        const res = createRes();
+        conditionalGet()(createReq({ method: 'POST' }), res, next);
+        expect(next).toHaveBeenCalled();
+        res.json(body);
+        expect(res.headers.ETag).toBeUndefined();
+    });
+});
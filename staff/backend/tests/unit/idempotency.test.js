@@ -0,0 +1,204 @@
+jest.mock('../../utils/database', () => ({
+    query: jest.fn(),
+    queryOne: jest.fn()
+}));
+
+jest.mock('../../utils/logger', () => ({
+    debug: jest.fn(),
+    warn: jest.fn()
+}));
+
+jest.mock('../../middleware/auth', () => ({
+    readTokenPayload: jest.fn()
+}));
+
+const db = require('../../utils/database');
+const { readTokenPayload } = require('../../middleware/auth');
+const { idempotencyMiddleware } = require('../../middleware/idempotency');
+
+const PATH = '/api/sunday-appointments/book';
+
+const createReq = (overrides = {}) => ({
+    method: 'POST',
+    originalUrl: PATH,
+    ip: '127.0.0.1',
+    headers: {
+        authorization: 'Bearer patient-token',
+        'idempotency-key': 'key-1'
+    },
+    ...overrides
+});
+
+const createRes = () => {
+    const listeners = {};
+    const res = {
+        statusCode: 200,
+        headers: {},
+        status: jest.fn(function(code) { this.statusCode = code; return this; }),
+        set: jest.fn(function(name, value) { this.headers[name] = value; return this; }),
+        json: jest.fn(function(body) { this.body = body; return this; }),
+        on: jest.fn((event, handler) => { listeners[event] = handler; }),
+        emit: (event) => listeners[event] && listeners[event]()
+    };
+    return res;
+};
+
+const storedEntry = (overrides = {}) => ({
+    id: 5,
+    method: 'POST',
+    path: PATH,
+    status_code: 201,
+    response_body: JSON.stringify({ success: true, id: 42 }),
+    expired: 0,
+    stale: 0,
+    ...overrides
+});
+
+describe('idempotency middleware', () => {
+    beforeEach(() => {
+        jest.clearAllMocks();
+        readTokenPayload.mockImplementation(() => ({ id: 'P0001', role: 'patient' }));
+        db.query.mockResolvedValue({ affectedRows: 1 });
+    });
+
+    it('passes through requests without a key or with safe methods', async () => {
+        const next = jest.fn();
+        await idempotencyMiddleware(createReq({ headers: {} }), createRes(), next);
+        await idempotencyMiddleware(createReq({ method: 'GET' }), createRes(), next);
+        expect(next).toHaveBeenCalledTimes(2);
+        expect(db.query).not.toHaveBeenCalled();
+    });
+
+    it('leaves requests without a valid token to the route auth', async () => {
+        readTokenPayload.mockImplementation(() => null);
+        const next = jest.fn();
+
+        await idempotencyMiddleware(createReq(), createRes(), next);
+
+        expect(next).toHaveBeenCalled();
+        expect(db.query).not.toHaveBeenCalled();
+    });
+
+    it('claims a new key and stores the response', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 1, insertId: 5 });
+        const res = createRes();
+        const next = jest.fn();
+
+        await idempotencyMiddleware(createReq(), res, next);
+        res.status(201).json({ success: true, id: 42 });
+
+        expect(next).toHaveBeenCalled();
+        expect(db.query).toHaveBeenCalledWith(
+            expect.stringContaining('UPDATE idempotency_keys SET status_code'),
+            [201, JSON.stringify({ success: true, id: 42 }), 5]
+        );
+    });
+
+    it('keys on the authenticated subject, not the bearer token', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 1, insertId: 5 });
+        await idempotencyMiddleware(createReq(), createRes(), jest.fn());
+
+        // Same patient after a token refresh
+        db.query.mockResolvedValueOnce({ affectedRows: 1, insertId: 6 });
+        await idempotencyMiddleware(createReq({
+            headers: { authorization: 'Bearer refreshed-token', 'idempotency-key': 'key-1' }
+        }), createRes(), jest.fn());
+
+        const subjects = db.query.mock.calls
+            .filter(([sql]) => sql.includes('INSERT IGNORE'))
+            .map(([, params]) => params[0]);
+        expect(subjects).toEqual(['patient:P0001', 'patient:P0001']);
+    });
+
+    it('prefers the subject set by an earlier auth middleware', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 1, insertId: 5 });
+
+        await idempotencyMiddleware(createReq({ user: { id: 7 } }), createRes(), jest.fn());
+
+        expect(db.query.mock.calls[0][1][0]).toBe('user:7');
+        expect(readTokenPayload).not.toHaveBeenCalled();
+    });
+
+    it('replays the stored response for a retried key', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 0 });
+        db.queryOne.mockResolvedValueOnce(storedEntry());
+        const retry = createRes();
+        const next = jest.fn();
+
+        await idempotencyMiddleware(createReq(), retry, next);
+
+        expect(next).not.toHaveBeenCalled();
+        expect(retry.statusCode).toBe(201);
+        expect(retry.body).toEqual({ success: true, id: 42 });
+        expect(retry.headers['Idempotent-Replayed']).toBe('true');
+    });
+
+    it('returns 409 while the first request is still in flight', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 0 });
+        db.queryOne.mockResolvedValueOnce(storedEntry({ status_code: null, response_body: null }));
+        const concurrent = createRes();
+
+        await idempotencyMiddleware(createReq(), concurrent, jest.fn());
+
+        expect(concurrent.statusCode).toBe(409);
+        expect(concurrent.body.code).toBe('IDEMPOTENCY_IN_PROGRESS');
+    });
+
+    it('takes over a key whose request died in progress', async () => {
+        db.query
+            .mockResolvedValueOnce({ affectedRows: 0 })
+            .mockResolvedValueOnce({ affectedRows: 1 });
+        db.queryOne.mockResolvedValueOnce(storedEntry({ status_code: null, response_body: null, stale: 1 }));
+        const next = jest.fn();
+
+        await idempotencyMiddleware(createReq(), createRes(), next);
+
+        expect(next).toHaveBeenCalled();
+    });
+
+    it('rejects a key reused for a different request', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 0 });
+        db.queryOne.mockResolvedValueOnce(storedEntry({ path: '/api/fertility/intercourse' }));
+        const res = createRes();
+
+        await idempotencyMiddleware(createReq(), res, jest.fn());
+
+        expect(res.statusCode).toBe(422);
+        expect(res.body.code).toBe('IDEMPOTENCY_KEY_REUSED');
+    });
+
+    it('releases the key on server errors so the client can retry', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 1, insertId: 5 });
+        const first = createRes();
+
+        await idempotencyMiddleware(createReq(), first, jest.fn());
+        first.status(500).json({ success: false });
+
+        expect(db.query).toHaveBeenCalledWith(
+            expect.stringContaining('DELETE FROM idempotency_keys WHERE id = ?'),
+            [5]
+        );
+    });
+
+    it('releases the key when the response ends without json', async () => {
+        db.query.mockResolvedValueOnce({ affectedRows: 1, insertId: 5 });
+        const res = createRes();
+
+        await idempotencyMiddleware(createReq(), res, jest.fn());
+        res.emit('close');
+
+        expect(db.query).toHaveBeenCalledWith(
+            expect.stringContaining('DELETE FROM idempotency_keys WHERE id = ?'),
+            [5]
+        );
+    });
+
+    it('lets the request through when the store is unavailable', async () => {
+        db.query.mockImplementation(() => Promise.reject(new Error('connection lost')));
+        const next = jest.fn();
+
+        await idempotencyMiddleware(createReq(), createRes(), next);
+
+        expect(next).toHaveBeenCalled();
+    });
+});
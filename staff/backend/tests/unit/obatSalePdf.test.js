@@ -0,0 +1,134 @@
+/**
+ * Unit tests for the streamed obat sale PDFs (invoice-pdf / etiket-pdf)
+ */
+
+jest.mock('../../db', () => ({
+    query: jest.fn()
+}));
+
+jest.mock('../../utils/logger', () => ({
+    info: jest.fn(),
+    warn: jest.fn(),
+    error: jest.fn(),
+    debug: jest.fn()
+}));
+
+jest.mock('../../middleware/auth', () => ({
+    verifyToken: jest.fn()
+}));
+
+jest.mock('../../services/InventoryService', () => ({}));
+
+jest.mock('../../utils/pdf-generator', () => ({
+    generateObatSaleInvoice: jest.fn(),
+    generateObatSaleEtiket: jest.fn()
+}));
+
+const { PassThrough } = require('stream');
+const db = require('../../db');
+const pdfGenerator = require('../../utils/pdf-generator');
+const { streamSalePdf } = require('../../routes/obat-sales');
+
+const PDF = Buffer.from('%PDF-1.4 test');
+
+const createReq = () => ({ params: { id: '5' } });
+
+// A writable sink standing in for the Express response
+const createRes = () => {
+    const res = new PassThrough();
+    res.statusCode = 200;
+    res.headers = {};
+    res.headersSent = false;
+    res.chunks = [];
+    res.status = jest.fn(function(code) { this.statusCode = code; return this; });
+    res.set = jest.fn(function(field, value) {
+        if (typeof field === 'object') Object.assign(this.headers, field);
+        else this.headers[field] = value;
+        return this;
+    });
+    res.json = jest.fn(function(body) { this.body = body; return this; });
+    res.on('data', chunk => res.chunks.push(chunk));
+    return res;
+};
+
+const mockSale = (status) => {
+    db.query
+        .mockResolvedValueOnce([[{ id: 5, sale_number: 'OS-0005', status }]])
+        .mockResolvedValueOnce([[{ id: 1, sale_id: 5, obat_name: 'Paracetamol 500 mg', quantity: 10 }]]);
+};
+
+describe('streamSalePdf', () => {
+    beforeEach(() => {
+        jest.clearAllMocks();
+    });
+
+    it('returns 404 for an unknown sale', async () => {
+        db.query.mockResolvedValueOnce([[]]);
+        const res = createRes();
+
+        await streamSalePdf('invoice')(createReq(), res, jest.fn());
+
+        expect(res.statusCode).toBe(404);
+        expect(pdfGenerator.generateObatSaleInvoice).not.toHaveBeenCalled();
+    });
+
+    it('refuses sales that are not confirmed yet', async () => {
+        db.query.mockResolvedValueOnce([[{ id: 5, sale_number: 'OS-0005', status: 'draft' }]]);
+        const res = createRes();
+
+        await streamSalePdf('etiket')(createReq(), res, jest.fn());
+
+        expect(res.statusCode).toBe(400);
+        expect(res.body.message).toContain('Etiket');
+        expect(pdfGenerator.generateObatSaleEtiket).not.toHaveBeenCalled();
+    });
+
+    it('sends the generated PDF with download headers', async () => {
+        mockSale('paid');
+        pdfGenerator.generateObatSaleInvoice.mockResolvedValueOnce({
+            filename: 'OS-0005inv.pdf',
+            buffer: PDF,
+            size: PDF.length
+        });
+        const res = createRes();
+
+        await streamSalePdf('invoice')(createReq(), res, jest.fn());
+
+        expect(res.headers['Content-Type']).toBe('application/pdf');
+        expect(res.headers['Content-Disposition']).toBe('attachment; filename="OS-0005inv.pdf"');
+        expect(res.headers['X-Sale-Status']).toBe('paid');
+        expect(res.headers['Cache-Control']).toBe('no-store');
+        expect(res.headers['Content-Length']).toBe(String(PDF.length));
+        expect(Buffer.concat(res.chunks).equals(PDF)).toBe(true);
+    });
+
+    it('does not store the PDF in R2', async () => {
+        mockSale('confirmed');
+        pdfGenerator.generateObatSaleEtiket.mockResolvedValueOnce({
+            filename: 'OS-0005e.pdf',
+            buffer: PDF,
+            size: PDF.length
+        });
+        const res = createRes();
+
+        await streamSalePdf('etiket')(createReq(), res, jest.fn());
+
+        const [sale, options] = pdfGenerator.generateObatSaleEtiket.mock.calls[0];
+        expect(sale.items.length).toBe(1);
+        expect(options).toEqual({ upload: false });
+        expect(res.headers['X-Sale-Status']).toBe('confirmed');
+        expect(res.headers['Content-Length']).toBe(String(PDF.length));
+        expect(Buffer.concat(res.chunks).equals(PDF)).toBe(true);
+    });
+
+    it('passes generator errors to the error handler', async () => {
+        mockSale('paid');
+        const error = new Error('Failed to render PDF');
+        pdfGenerator.generateObatSaleInvoice.mockRejectedValueOnce(error);
+        const next = jest.fn();
+
+        await streamSalePdf('invoice')(createReq(), createRes(), next);
+
+        expect(next).toHaveBeenCalledWith(error);
+    });
+});
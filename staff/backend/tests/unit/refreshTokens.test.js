@@ -0,0 +1,192 @@
+/**
+ * Unit tests for refresh token rotation
+ */
+
+jest.mock('../../utils/database', () => ({
+    query: jest.fn(),
+    queryOne: jest.fn(),
+    transaction: jest.fn()
+}));
+
+jest.mock('../../utils/logger', () => ({
+    warn: jest.fn(),
+    info: jest.fn(),
+    error: jest.fn(),
+    debug: jest.fn()
+}));
+
+const db = require('../../utils/database');
+const refreshTokens = require('../../services/refreshTokens');
+
+const claims = {
+    id: 'P0001',
+    medicalRecordId: 'P0001',
+    email: 'pasien@example.com',
+    full_name: 'Siti Aminah',
+    fullname: 'Siti Aminah',
+    role: 'patient'
+};
+
+const patientRow = { id: 'P0001', email: 'pasien@example.com', full_name: 'Siti Aminah' };
+
+const storedRow = (overrides = {}) => ({
+    id: 7,
+    family_id: 'family-1',
+    subject: 'P0001',
+    claims: JSON.stringify(claims),
+    expired: 0,
+    revoked: 0,
+    recently_revoked: null,
+    family_expired: 0,
+    ...overrides
+});
+
+describe('refreshTokens', () => {
+    let connection;
+
+    beforeEach(() => {
+        jest.clearAllMocks();
+        connection = { query: jest.fn() };
+        db.transaction.mockImplementation(callback => callback(connection));
+    });
+
+    describe('issue', () => {
+        it('stores only the hash and strips JWT bookkeeping claims', async () => {
+            connection.query.mockResolvedValueOnce([{ insertId: 1 }]);
+
+            const token = await refreshTokens.issue({ ...claims, iat: 1, exp: 2 });
+
+            expect(typeof token).toBe('string');
+            const params = connection.query.mock.calls[0][1];
+            expect(params[0]).toBe(refreshTokens.hashToken(token));
+            expect(params[0]).not.toBe(token);
+            expect(params[2]).toBe('P0001');
+            expect(JSON.parse(params[3])).toEqual(claims);
+        });
+    });
+
+    describe('rotate', () => {
+        it('revokes the presented token and issues a successor in the same family', async () => {
+            connection.query
+                .mockResolvedValueOnce([[storedRow()]])
+                .mockResolvedValueOnce([[patientRow]])
+                .mockResolvedValueOnce([{ insertId: 8 }])
+                .mockResolvedValueOnce([{ affectedRows: 1 }]);
+
+            const result = await refreshTokens.rotate('old-token');
+
+            expect(result.claims).toEqual(claims);
+            expect(result.refreshToken).not.toBe('old-token');
+
+            const insertParams = connection.query.mock.calls[2][1];
+            expect(insertParams[1]).toBe('family-1');
+
+            const [revokeSql, revokeParams] = connection.query.mock.calls[3];
+            expect(revokeSql).toContain('replaced_by');
+            expect(revokeParams).toEqual([8, 7]);
+        });
+
+        it('signs the account as it is now, not as it was at login', async () => {
+            const staffClaims = { id: 'U0002', name: 'Bidan', role: 'bidan', role_id: 3, user_type: 'staff', is_superadmin: false };
+            connection.query
+                .mockResolvedValueOnce([[storedRow({ subject: 'U0002', claims: JSON.stringify(staffClaims) })]])
+                .mockResolvedValueOnce([[{
+                    new_id: 'U0002', name: 'Bidan', role: 'managerial', role_id: 5,
+                    user_type: 'staff', is_superadmin: 0
+                }]])
+                .mockResolvedValueOnce([{ insertId: 8 }])
+                .mockResolvedValueOnce([{ affectedRows: 1 }]);
+
+            const result = await refreshTokens.rotate('old-token');
+
+            expect(result.claims).toMatchObject({ id: 'U0002', role: 'managerial', role_id: 5 });
+            const [lookupSql, lookupParams] = connection.query.mock.calls[1];
+            expect(lookupSql).toContain('FROM users u');
+            expect(lookupParams).toEqual(['U0002']);
+            expect(JSON.parse(connection.query.mock.calls[2][1][3]).role).toBe('managerial');
+        });
+
+        it('ends the session of a deleted or inactive account', async () => {
+            connection.query
+                .mockResolvedValueOnce([[storedRow()]])
+                .mockResolvedValueOnce([[]])
+                .mockResolvedValueOnce([{ affectedRows: 1 }]);
+
+            await expect(refreshTokens.rotate('old-token')).rejects.toMatchObject({ statusCode: 401 });
+
+            const [lookupSql] = connection.query.mock.calls[1];
+            expect(lookupSql).toContain('status = "active"');
+            const [sql, params] = connection.query.mock.calls[2];
+            expect(sql).toContain('WHERE family_id = ?');
+            expect(params).toEqual(['family-1']);
+        });
+
+        it('ends the family once it reaches its maximum lifetime', async () => {
+            connection.query
+                .mockResolvedValueOnce([[storedRow({ family_expired: 1 })]])
+                .mockResolvedValueOnce([{ affectedRows: 1 }]);
+
+            await expect(refreshTokens.rotate('old-token')).rejects.toMatchObject({ statusCode: 401 });
+
+            expect(connection.query.mock.calls[0][1][1]).toBe(90);
+            const [sql, params] = connection.query.mock.calls[1];
+            expect(sql).toContain('WHERE family_id = ?');
+            expect(params).toEqual(['family-1']);
+            expect(connection.query).toHaveBeenCalledTimes(2);
+        });
+
+        it('rejects unknown tokens', async () => {
+            connection.query.mockResolvedValueOnce([[]]);
+
+            await expect(refreshTokens.rotate('unknown')).rejects.toMatchObject({ statusCode: 401 });
+        });
+
+        it('rejects expired tokens without revoking the family', async () => {
+            connection.query.mockResolvedValueOnce([[storedRow({ expired: 1 })]]);
+
+            await expect(refreshTokens.rotate('expired')).rejects.toMatchObject({ statusCode: 401 });
+            expect(connection.query).toHaveBeenCalledTimes(1);
+        });
+
+        it('revokes the whole family when a rotated token is reused', async () => {
+            connection.query
+                .mockResolvedValueOnce([[storedRow({ revoked: 1, recently_revoked: 0 })]])
+                .mockResolvedValueOnce([{ affectedRows: 3 }]);
+
+            await expect(refreshTokens.rotate('replayed')).rejects.toMatchObject({ statusCode: 401 });
+
+            const [sql, params] = connection.query.mock.calls[1];
+            expect(sql).toContain('WHERE family_id = ?');
+            expect(params).toEqual(['family-1']);
+        });
+
+        it('keeps the family when two refreshes race within the grace window', async () => {
+            connection.query.mockResolvedValueOnce([[storedRow({ revoked: 1, recently_revoked: 1 })]]);
+
+            await expect(refreshTokens.rotate('raced')).rejects.toMatchObject({ statusCode: 401 });
+            expect(connection.query).toHaveBeenCalledTimes(1);
+        });
+    });
+
+    describe('revokeFamily', () => {
+        it('revokes every live token of the family', async () => {
+            db.queryOne.mockResolvedValueOnce({ family_id: 'family-1' });
+            db.query.mockResolvedValueOnce({ affectedRows: 2 });
+
+            await refreshTokens.revokeFamily('token');
+
+            expect(db.query).toHaveBeenCalledWith(
+                expect.stringContaining('revoked_at IS NULL'),
+                ['family-1']
+            );
+        });
+
+        it('ignores unknown tokens', async () => {
+            db.queryOne.mockResolvedValueOnce(null);
+
+            await refreshTokens.revokeFamily('unknown');
+
+            expect(db.query).not.toHaveBeenCalled();
+        });
+    });
+});
@@ -839,8 +839,9 @@ class PDFGenerator {
      * Generate Obat Sale Invoice PDF (A6 Format)
      * Hospital-branded header (not Dr. Dibya clinic)
      * Uploads to R2: invoices/obat-sales/DDMMYYYY/{saleNumber}inv.pdf
+     * With options.upload === false, resolves with the PDF buffer and stores nothing
      */
-    async generateObatSaleInvoice(saleData) {
+    async generateObatSaleInvoice(saleData, options = {}) {
         return new Promise((resolve, reject) => {
             try {
                 const hospitalHeaders = {
@@ -990,6 +991,11 @@ class PDFGenerator {
                 doc.on('end', async () => {
                     try {
                         const pdfBuffer = Buffer.concat(chunks);
+                        if (options.upload === false) {
+                            resolve({ filename, buffer: pdfBuffer, size: pdfBuffer.length });
+                            return;
+                        }
+
                         const dateFolder = this.getDateFolder();
                         const uniqueSuffix = `${Date.now()}-${Math.random().toString(36).substr(2, 6)}`;
                         const uniqueFilename = `${saleData.sale_number}inv-${uniqueSuffix}.pdf`;
@@ -1022,8 +1028,9 @@ class PDFGenerator {
     /**
      * Generate Etiket (Label) PDF for Obat Sales - 3 columns per page
      * Uploads to R2: etikets/obat-sales/DDMMYYYY/{saleNumber}e.pdf
+     * With options.upload === false, resolves with the PDF buffer and stores nothing
      */
-    async generateObatSaleEtiket(saleData) {
+    async generateObatSaleEtiket(saleData, options = {}) {
         return new Promise((resolve, reject) => {
             try {
                 const hospitalHeaders = {
@@ -1148,6 +1155,11 @@ class PDFGenerator {
                 doc.on('end', async () => {
                     try {
                         const pdfBuffer = Buffer.concat(chunks);
+                        if (options.upload === false) {
+                            resolve({ filename, buffer: pdfBuffer, size: pdfBuffer.length });
+                            return;
+                        }
+
                         const dateFolder = this.getDateFolder();
                         const uniqueSuffix = `${Date.now()}-${Math.random().toString(36).substr(2, 6)}`;
                         const uniqueFilename = `${saleData.sale_number}e-${uniqueSuffix}.pdf`;